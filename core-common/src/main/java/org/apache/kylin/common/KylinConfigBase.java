@@ -296,6 +296,26 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.dictionary.max-cache-entry", "3000"));
     }
 
+    // when set, cached dictionaries are evicted by their total byte size instead of the entry count
+    public long getCachedDictMaxMB() {
+        return Long.parseLong(getOptional("kylin.dictionary.max-cache-mb", "0"));
+    }
+
+    // dictionaries are copied to a local dir and queried from memory mapped files, instead of loaded onto heap
+    public boolean isDictMmapEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.dictionary.mmap-enabled", "false"));
+    }
+
+    public String getDictMmapCacheDir() {
+        return getOptional("kylin.dictionary.mmap-cache-dir", System.getProperty("java.io.tmpdir") + "/kylin-dict-mmap");
+    }
+
+    // values looked up from dictionaries are cached in one cache of this size shared by all dictionaries; by default only
+    // query servers have it, elsewhere (0) each dictionary caches its lookups in soft references as before
+    public long getDictValueCacheMB(boolean queryServer) {
+        return Long.parseLong(getOptional("kylin.dictionary.value-cache-mb", queryServer ? "256" : "0"));
+    }
+
     public boolean isGrowingDictEnabled() {
         return Boolean.parseBoolean(this.getOptional("kylin.dictionary.growing-enabled", "false"));
     }
@@ -312,10 +332,39 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(getOptional("kylin.dictionary.append-version-ttl", "259200000"));
     }
 
+    // values of a global dictionary are added in batches by this many threads, 1 to add them one by one
+    public int getGlobalDictBuildThreads() {
+        return Integer.parseInt(getOptional("kylin.dictionary.global-build-threads", "1"));
+    }
+
+    public int getGlobalDictBuildBatchSize() {
+        return Integer.parseInt(getOptional("kylin.dictionary.global-build-batch-size", "1000000"));
+    }
+
+    // slices of global dictionaries are kept on local disk after read from HDFS, to be reloaded cheaply; off by default,
+    // as the dir is not bounded in size and needs room for the latest version of every global dictionary used on the node
+    public boolean isAppendDictLocalCacheEnabled() {
+        return Boolean.parseBoolean(getOptional("kylin.dictionary.append-local-cache-enabled", "false"));
+    }
+
+    public String getAppendDictLocalCacheDir() {
+        return getOptional("kylin.dictionary.append-local-cache-dir", System.getProperty("java.io.tmpdir") + "/kylin-global-dict");
+    }
+
+    // how many following slices to load in background when a global dictionary slice is loaded
+    public int getAppendDictPrefetchSlices() {
+        return Integer.parseInt(getOptional("kylin.dictionary.append-prefetch-slices", "1"));
+    }
+
     public int getCachedSnapshotMaxEntrySize() {
         return Integer.parseInt(getOptional("kylin.snapshot.max-cache-entry", "500"));
     }
 
+    // lookup tables built from snapshots are shared by queries in a cache of this size
+    public long getCachedLookupTableMaxMB() {
+        return Long.parseLong(getOptional("kylin.snapshot.lookup-cache-mb", "1024"));
+    }
+
     public int getTableSnapshotMaxMB() {
         return Integer.parseInt(getOptional("kylin.snapshot.max-mb", "300"));
     }
@@ -373,8 +422,15 @@ abstract public class KylinConfigBase implements Serializable {
         return Boolean.parseBoolean(getOptional("kylin.cube.allow-appear-in-multiple-projects", "false"));
     }
     
+    // coprocessors of an older level ignore the fields added after it; raise to 3 for chunked results, 4 for the result
+    // codec and 5 for the GTInfo digest only after the coprocessors of all region servers are redeployed
     public int getGTScanRequestSerializationLevel() {
-        return Integer.parseInt(getOptional("kylin.cube.gtscanrequest-serialization-level", "1"));
+        return Integer.parseInt(getOptional("kylin.cube.gtscanrequest-serialization-level", "2"));
+    }
+
+    // space budget of recommended cuboids, relative to the current size of cube
+    public double getCubeCuboidRecommendSpaceRatio() {
+        return Double.parseDouble(getOptional("kylin.cube.cuboid-recommend.space-ratio", "1.0"));
     }
 
     // ============================================================================
@@ -718,6 +774,10 @@ abstract public class KylinConfigBase implements Serializable {
         return Boolean.parseBoolean(this.getOptional("kylin.storage.partition.aggr-spill-enabled", "true"));
     }
 
+    public boolean getQueryCoprocessorHashAggrEnabled() {
+        return Boolean.parseBoolean(this.getOptional("kylin.storage.partition.aggr-hash-enabled", "false"));
+    }
+
     public long getPartitionMaxScanBytes() {
         long value = Long.parseLong(this.getOptional("kylin.storage.partition.max-scan-bytes", String.valueOf(3L * 1024 * 1024 * 1024)));
         return value > 0 ? value : Long.MAX_VALUE;
@@ -727,6 +787,17 @@ abstract public class KylinConfigBase implements Serializable {
         return Integer.parseInt(this.getOptional("kylin.storage.hbase.coprocessor-timeout-seconds", "0"));
     }
 
+    // max number of threads one query may use to scan a region in parallel, 1 means scanning on the rpc handler thread only
+    public int getQueryCoprocessorScanParallelism() {
+        return Integer.parseInt(this.getOptional("kylin.storage.hbase.coprocessor-scan-parallelism", "1"));
+    }
+
+    // size of the region server wide pool shared by all parallel region scans, 0 means the number of cores
+    public int getQueryCoprocessorScanPoolSize() {
+        int size = Integer.parseInt(this.getOptional("kylin.storage.hbase.coprocessor-scan-pool-size", "0"));
+        return size > 0 ? size : Runtime.getRuntime().availableProcessors();
+    }
+
     public int getQueryScanFuzzyKeyMax() {
         return Integer.parseInt(this.getOptional("kylin.storage.hbase.max-fuzzykey-scan", "200"));
     }
@@ -775,6 +846,28 @@ abstract public class KylinConfigBase implements Serializable {
         return Boolean.parseBoolean(getOptional("kylin.storage.hbase.endpoint-compress-result", "true"));
     }
 
+    // one of NONE, DEFLATE, LZ4, SNAPPY; by default DEFLATE or NONE according to kylin.storage.hbase.endpoint-compress-result,
+    // takes effect at serialization level 4 or above, below it is always the default
+    public String getEndpointResultCodec() {
+        return getOptional("kylin.storage.hbase.endpoint-result-codec", getEndpointLegacyResultCodec());
+    }
+
+    // the codec of coprocessors before the result codec was sent with the request
+    public String getEndpointLegacyResultCodec() {
+        return getCompressionResult() ? "DEFLATE" : "NONE";
+    }
+
+    // rows returned by a region are cut into chunks of about this size, so the query can consume them one by one; 0 returns one blob per region,
+    // takes effect at serialization level 3 or above, i.e. once the coprocessors are redeployed, e.g. 1048576
+    public int getEndpointResultChunkBytes() {
+        return Integer.parseInt(getOptional("kylin.storage.hbase.endpoint-result-chunk-bytes", "0"));
+    }
+
+    // max bytes of decoded chunks a query buffers before they are consumed, regions responding later wait for room
+    public long getEndpointResultWindowBytes() {
+        return Long.parseLong(getOptional("kylin.storage.hbase.endpoint-result-window-bytes", String.valueOf(128L * 1024 * 1024)));
+    }
+
     public int getHBaseMaxConnectionThreads() {
         return Integer.parseInt(getOptional("kylin.storage.hbase.max-hconnection-threads", "2048"));
     }
@@ -787,6 +880,20 @@ abstract public class KylinConfigBase implements Serializable {
         return Long.parseLong(getOptional("kylin.storage.hbase.hconnection-threads-alive-seconds", "60"));
     }
 
+    // threads that dispatch endpoint RPCs and wait for their results, one per segment scan
+    public int getEndpointRPCMaxThreads() {
+        return Integer.parseInt(getOptional("kylin.storage.hbase.endpoint-rpc-max-threads", "512"));
+    }
+
+    public int getEndpointRPCMaxQueueSize() {
+        return Integer.parseInt(getOptional("kylin.storage.hbase.endpoint-rpc-max-queue-size", "10000"));
+    }
+
+    // max region calls of one query running at the same time on the hconnection pool, 0 means no limit
+    public int getQueryMaxConcurrentRegionCalls() {
+        return Integer.parseInt(getOptional("kylin.storage.hbase.max-concurrent-region-calls-per-query", "128"));
+    }
+
     // ============================================================================
     // ENGINE.MR
     // ============================================================================
@@ -983,6 +1090,104 @@ abstract public class KylinConfigBase implements Serializable {
         return Boolean.parseBoolean(this.getOptional("kylin.query.cache-enabled", "true"));
     }
 
+    // cache storage results by normalized SQLDigest, shared by SQL of different text but same meaning
+    public boolean isQueryDigestCacheEnabled() {
+        return Boolean.parseBoolean(this.getOptional("kylin.query.digest-cache-enabled", "false"));
+    }
+
+    public long getQueryDigestCacheMaxBytes() {
+        return Long.parseLong(this.getOptional("kylin.query.digest-cache-max-bytes", String.valueOf(256L * 1024 * 1024)));
+    }
+
+    public int getQueryDigestCacheMaxRows() {
+        return Integer.parseInt(this.getOptional("kylin.query.digest-cache-max-rows", String.valueOf(10000)));
+    }
+
+    // cache partial aggregates of each segment scan off-heap, only new or changed segments are scanned again
+    public boolean isQuerySegmentCacheEnabled() {
+        return Boolean.parseBoolean(this.getOptional("kylin.query.segment-cache-enabled", "false"));
+    }
+
+    public long getQuerySegmentCacheMaxBytes() {
+        return Long.parseLong(this.getOptional("kylin.query.segment-cache-max-bytes", String.valueOf(256L * 1024 * 1024)));
+    }
+
+    public int getQuerySegmentCacheMaxEntryBytes() {
+        return Integer.parseInt(this.getOptional("kylin.query.segment-cache-max-entry-bytes", String.valueOf(16 * 1024 * 1024)));
+    }
+
+    // choose cuboid and realization by cuboid row counts of segment statistics, when all segments have them;
+    // the counts are kept with segments built while this or scan-plan-cost-based-enabled is on
+    public boolean isQueryCostBasedSelectionEnabled() {
+        return Boolean.parseBoolean(this.getOptional("kylin.query.cost-based-selection-enabled", "false"));
+    }
+
+    // choose among fuzzy, exact multi-range and merged range scans by the estimated bytes read from storage
+    public boolean isQueryScanPlanCostBasedEnabled() {
+        return Boolean.parseBoolean(this.getOptional("kylin.query.scan-plan-cost-based-enabled", "false"));
+    }
+
+    public int getQueryScanPlanSeekBytes() {
+        return Integer.parseInt(this.getOptional("kylin.query.scan-plan-seek-bytes", String.valueOf(64 * 1024)));
+    }
+
+    // read the segments of a query ahead in parallel, 1 to scan them one after another
+    public int getQuerySegmentScanParallelism() {
+        return Integer.parseInt(this.getOptional("kylin.query.segment-scan-parallelism", "1"));
+    }
+
+    public int getQuerySegmentScanMaxThreads() {
+        return Integer.parseInt(this.getOptional("kylin.query.segment-scan-max-threads", "64"));
+    }
+
+    public int getQuerySegmentScanBufferRows() {
+        return Integer.parseInt(this.getOptional("kylin.query.segment-scan-buffer-rows", "4096"));
+    }
+
+    // record the cuboids queries hit, input of cuboid recommendation
+    public boolean isQueryCuboidHitRecordEnabled() {
+        return Boolean.parseBoolean(this.getOptional("kylin.query.cuboid-hit-record-enabled", "false"));
+    }
+
+    public int getQueryCuboidHitFlushIntervalSeconds() {
+        return Integer.parseInt(this.getOptional("kylin.query.cuboid-hit-flush-interval-seconds", "60"));
+    }
+
+    // merge concurrent scans of the same segment and cuboid, arrived within the window, into one storage visit
+    public boolean isQuerySharedScanEnabled() {
+        return Boolean.parseBoolean(this.getOptional("kylin.query.shared-scan-enabled", "false"));
+    }
+
+    public int getQuerySharedScanWindowMillis() {
+        return Integer.parseInt(this.getOptional("kylin.query.shared-scan-window-ms", "20"));
+    }
+
+    public int getQuerySharedScanMaxQueries() {
+        return Integer.parseInt(this.getOptional("kylin.query.shared-scan-max-queries", "32"));
+    }
+
+    public int getQuerySharedScanMaxResultBytes() {
+        return Integer.parseInt(this.getOptional("kylin.query.shared-scan-max-result-bytes", String.valueOf(64 * 1024 * 1024)));
+    }
+
+    // async queries run in a separate pool, results beyond the memory rows are spilled to local disk
+    public int getQueryAsyncMaxThreads() {
+        return Integer.parseInt(this.getOptional("kylin.query.async-max-threads", "10"));
+    }
+
+    public int getQueryAsyncResultMemoryRows() {
+        return Integer.parseInt(this.getOptional("kylin.query.async-result-memory-rows", "10000"));
+    }
+
+    public int getQueryAsyncResultTTLSeconds() {
+        return Integer.parseInt(this.getOptional("kylin.query.async-result-ttl-seconds", "600"));
+    }
+
+    // rows per batch of the binary streaming result format
+    public int getQueryStreamBinaryBatchRows() {
+        return Integer.parseInt(this.getOptional("kylin.query.stream-binary-batch-rows", "1024"));
+    }
+
     public boolean isQueryIgnoreUnknownFunction() {
         return Boolean.parseBoolean(this.getOptional("kylin.query.ignore-unknown-function", "false"));
     }
@@ -36,6 +36,8 @@ public class QueryContext {
     private String queryId;
     private AtomicLong scannedRows = new AtomicLong();
     private AtomicLong scannedBytes = new AtomicLong();
+    private AtomicLong digestCacheHitCount = new AtomicLong();
+    private AtomicLong digestCacheMissCount = new AtomicLong();
 
     private QueryContext() {
         // use QueryContext.current() instead
@@ -74,4 +76,20 @@ public class QueryContext {
     public long addAndGetScannedBytes(long deltaBytes) {
         return scannedBytes.addAndGet(deltaBytes);
     }
+
+    public long getDigestCacheHitCount() {
+        return digestCacheHitCount.get();
+    }
+
+    public long addAndGetDigestCacheHitCount(long delta) {
+        return digestCacheHitCount.addAndGet(delta);
+    }
+
+    public long getDigestCacheMissCount() {
+        return digestCacheMissCount.get();
+    }
+
+    public long addAndGetDigestCacheMissCount(long delta) {
+        return digestCacheMissCount.addAndGet(delta);
+    }
 }
@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.common.util;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link DataInputStream} over a {@link ByteBuffer}, which can also hand out part of the content as a buffer view
+ * without copying, e.g. to read a memory mapped file in place.
+ *
+ * <b>Not thread-safe</b>
+ */
+public class ByteBufferDataInput extends DataInputStream {
+    private final ByteBuffer buffer;
+
+    public ByteBufferDataInput(ByteBuffer buffer) {
+        super(new ByteBufferBackedInputStream(buffer));
+        this.buffer = buffer;
+    }
+
+    /**
+     * Returns a view of the remaining content, without skipping it.
+     */
+    public ByteBuffer peek() {
+        return buffer.slice();
+    }
+
+    /**
+     * Returns the next len bytes as a view sharing the content with the underlying buffer, and skips them.
+     */
+    public ByteBuffer slice(int len) throws EOFException {
+        if (len > buffer.remaining())
+            throw new EOFException("Need " + len + " bytes but only " + buffer.remaining() + " left");
+
+        ByteBuffer slice = buffer.slice();
+        slice.limit(len);
+        buffer.position(buffer.position() + len);
+        return slice;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.common.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.DataFormatException;
+
+import org.iq80.snappy.Snappy;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+/**
+ * Codecs to compress query results sent between region servers and query servers.
+ * All of them are pure Java, so the same jar works on any region server.
+ *
+ * DEFLATE is the one used by {@link CompressionUtils}; LZ4 and SNAPPY trade compression ratio for much less CPU.
+ */
+public enum CompressionAlgorithm {
+
+    NONE {
+        @Override
+        public byte[] compress(byte[] data) {
+            return data;
+        }
+
+        @Override
+        public byte[] decompress(byte[] data, int offset, int length) {
+            return Arrays.copyOfRange(data, offset, offset + length);
+        }
+
+        @Override
+        public byte[] decompress(byte[] data) {
+            return data;
+        }
+    },
+
+    DEFLATE {
+        @Override
+        public byte[] compress(byte[] data) throws IOException {
+            return CompressionUtils.compress(data);
+        }
+
+        @Override
+        public byte[] decompress(byte[] data, int offset, int length) throws IOException {
+            try {
+                return CompressionUtils.decompress(data, offset, length);
+            } catch (DataFormatException e) {
+                throw new IOException(e);
+            }
+        }
+    },
+
+    LZ4 {
+        // the original length is prefixed, as LZ4 block format does not keep it
+        @Override
+        public byte[] compress(byte[] data) {
+            LZ4Compressor compressor = LZ4Holder.FACTORY.fastCompressor();
+            byte[] output = new byte[4 + compressor.maxCompressedLength(data.length)];
+            ByteBuffer.wrap(output).putInt(data.length);
+            int length = compressor.compress(data, 0, data.length, output, 4, output.length - 4);
+            return Arrays.copyOf(output, 4 + length);
+        }
+
+        @Override
+        public byte[] decompress(byte[] data, int offset, int length) {
+            int rawLength = ByteBuffer.wrap(data, offset, length).getInt();
+            LZ4FastDecompressor decompressor = LZ4Holder.FACTORY.fastDecompressor();
+            byte[] output = new byte[rawLength];
+            decompressor.decompress(data, offset + 4, output, 0, rawLength);
+            return output;
+        }
+    },
+
+    SNAPPY {
+        @Override
+        public byte[] compress(byte[] data) {
+            byte[] output = new byte[Snappy.maxCompressedLength(data.length)];
+            int length = Snappy.compress(data, 0, data.length, output, 0);
+            return Arrays.copyOf(output, length);
+        }
+
+        @Override
+        public byte[] decompress(byte[] data, int offset, int length) throws IOException {
+            return Snappy.uncompress(data, offset, length);
+        }
+    };
+
+    abstract public byte[] compress(byte[] data) throws IOException;
+
+    abstract public byte[] decompress(byte[] data, int offset, int length) throws IOException;
+
+    public byte[] decompress(byte[] data) throws IOException {
+        return decompress(data, 0, data.length);
+    }
+
+    public static CompressionAlgorithm of(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown compression algorithm '" + name + "', should be one of " + Arrays.toString(values()));
+        }
+    }
+
+    // the pure Java instance avoids loading native libraries inside region servers
+    private static class LZ4Holder {
+        static final LZ4Factory FACTORY = LZ4Factory.fastestJavaInstance();
+    }
+}
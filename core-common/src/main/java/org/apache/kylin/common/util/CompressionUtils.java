@@ -51,11 +51,15 @@ public class CompressionUtils {
     }
 
     public static byte[] decompress(byte[] data) throws IOException, DataFormatException {
+        return decompress(data, 0, data.length);
+    }
+
+    public static byte[] decompress(byte[] data, int offset, int length) throws IOException, DataFormatException {
         long startTime = System.currentTimeMillis();
         Inflater inflater = new Inflater();
-        inflater.setInput(data);
+        inflater.setInput(data, offset, length);
 
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(length);
         byte[] buffer = new byte[1024];
         while (!inflater.finished()) {
             int count = inflater.inflate(buffer);
@@ -64,7 +68,7 @@ public class CompressionUtils {
         outputStream.close();
         byte[] output = outputStream.toByteArray();
 
-        logger.debug("Original: " + data.length + " bytes. " + "Decompressed: " + output.length + " bytes. Time: " + (System.currentTimeMillis() - startTime));
+        logger.debug("Original: " + length + " bytes. " + "Decompressed: " + output.length + " bytes. Time: " + (System.currentTimeMillis() - startTime));
         return output;
     }
 }
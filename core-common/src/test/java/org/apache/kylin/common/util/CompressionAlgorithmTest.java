@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.common.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CompressionAlgorithmTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        byte[] data = new byte[100000];
+        Random rand = new Random(0);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) rand.nextInt(16); // compressible
+        }
+
+        for (CompressionAlgorithm codec : CompressionAlgorithm.values()) {
+            byte[] compressed = codec.compress(data);
+            assertArrayEquals(codec.name(), data, codec.decompress(compressed));
+
+            // decompress from the middle of a bigger array
+            byte[] framed = new byte[compressed.length + 10];
+            System.arraycopy(compressed, 0, framed, 3, compressed.length);
+            assertArrayEquals(codec.name(), data, codec.decompress(framed, 3, compressed.length));
+
+            assertArrayEquals(codec.name(), new byte[0], codec.decompress(codec.compress(new byte[0])));
+        }
+    }
+
+    @Test
+    public void testOf() {
+        assertEquals(CompressionAlgorithm.LZ4, CompressionAlgorithm.of("lz4"));
+        assertEquals(CompressionAlgorithm.SNAPPY, CompressionAlgorithm.of(" Snappy "));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknown() {
+        CompressionAlgorithm.of("zstd");
+    }
+}
@@ -27,6 +27,7 @@ import org.apache.kylin.common.KylinConfigExt;
 import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.common.persistence.RootPersistentEntity;
 import org.apache.kylin.common.util.Pair;
+import org.apache.kylin.cube.cuboid.CuboidCostModel;
 import org.apache.kylin.cube.model.CubeDesc;
 import org.apache.kylin.metadata.model.ColumnDesc;
 import org.apache.kylin.metadata.model.DataModelDesc;
@@ -295,6 +296,9 @@ public class CubeInstance extends RootPersistentEntity implements IRealization,
             for (CapabilityInfluence i : result.influences) {
                 result.cost *= (i.suggestCostMultiplier() == 0) ? 1.0 : i.suggestCostMultiplier();
             }
+            CuboidCostModel costModel = CuboidCostModel.create(this, digest.filter);
+            if (costModel != null)
+                result.estimatedRows = costModel.estimateScanRows(digest);
         } else {
             result.cost = -1;
         }
@@ -673,9 +673,8 @@ public class CubeManager implements IRealizationProvider {
                     + cubeSegment.getCubeInstance().getName() + "/" + cubeSegment);
 
         try {
-            SnapshotTable snapshot = getSnapshotManager().getSnapshotTable(snapshotResPath);
             TableDesc tableDesc = getMetadataManager().getTableDesc(tableName);
-            return new LookupStringTable(tableDesc, pkCols, snapshot);
+            return getSnapshotManager().getLookupTable(snapshotResPath, tableDesc, pkCols);
         } catch (IOException e) {
             throw new IllegalStateException(
                     "Failed to load lookup table " + tableName + " from snapshot " + snapshotResPath, e);
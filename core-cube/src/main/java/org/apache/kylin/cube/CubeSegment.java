@@ -101,6 +101,10 @@ public class CubeSegment implements Comparable<CubeSegment>, IBuildable, ISegmen
     @JsonProperty("rowkey_stats")
     private List<Object[]> rowkeyStats = Lists.newArrayList();
 
+    @JsonProperty("cuboid_row_counts")
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private Map<Long, Long> cuboidRowCounts = Maps.newHashMap(); // cuboid id ==> estimated rows, from statistics
+
     @JsonProperty("source_partition_offset_start")
     @JsonInclude(JsonInclude.Include.NON_EMPTY)
     private Map<Integer, Long> sourcePartitionOffsetStart = Maps.newHashMap();
@@ -266,6 +270,17 @@ public class CubeSegment implements Comparable<CubeSegment>, IBuildable, ISegmen
         return rowkeyStats;
     }
 
+    /**
+     * @return estimated row count of each cuboid, empty if the segment was built without statistics
+     */
+    public Map<Long, Long> getCuboidRowCounts() {
+        return cuboidRowCounts;
+    }
+
+    public void setCuboidRowCounts(Map<Long, Long> cuboidRowCounts) {
+        this.cuboidRowCounts = cuboidRowCounts;
+    }
+
     public Map<String, String> getDictionaries() {
         if (dictionaries == null)
             dictionaries = new ConcurrentHashMap<String, String>();
@@ -49,6 +49,9 @@ public class Cuboid implements Comparable<Cuboid>, Serializable {
 
     private final static Map<String, Map<Long, Cuboid>> CUBOID_CACHE = new ConcurrentHashMap<String, Map<Long, Cuboid>>();
 
+    // cuboids chosen by cost model that differ from translateToValidCuboid(), may change as segments are built
+    private final static Map<String, Map<Long, Cuboid>> COST_BASED_CUBOID_CACHE = new ConcurrentHashMap<String, Map<Long, Cuboid>>();
+
     // smaller is better
     public final static Comparator<Long> cuboidSelectComparator = new Comparator<Long>() {
         @Override
@@ -63,6 +66,30 @@ public class Cuboid implements Comparable<Cuboid>, Serializable {
         return Cuboid.findById(cubeDesc, cuboidID);
     }
 
+    // choose the cheapest valid ancestor by cost model if it has the statistics, otherwise same as above
+    public static Cuboid identifyCuboid(CubeDesc cubeDesc, Set<TblColRef> dimensions, Collection<FunctionDesc> metrics, CuboidCostModel costModel) {
+        long cuboidID = identifyCuboidId(cubeDesc, dimensions, metrics);
+        Cuboid cuboid = Cuboid.findById(cubeDesc, cuboidID);
+        if (costModel == null)
+            return cuboid;
+
+        long validCuboidID = costModel.selectCuboid(cuboidID);
+        if (validCuboidID < 0 || validCuboidID == cuboid.getId())
+            return cuboid;
+
+        Map<Long, Cuboid> cubeCache = COST_BASED_CUBOID_CACHE.get(cubeDesc.getName());
+        if (cubeCache == null) {
+            cubeCache = new ConcurrentHashMap<Long, Cuboid>();
+            COST_BASED_CUBOID_CACHE.put(cubeDesc.getName(), cubeCache);
+        }
+        cuboid = cubeCache.get(cuboidID);
+        if (cuboid == null || cuboid.getId() != validCuboidID) {
+            cuboid = new Cuboid(cubeDesc, cuboidID, validCuboidID);
+            cubeCache.put(cuboidID, cuboid);
+        }
+        return cuboid;
+    }
+
     public static long identifyCuboidId(CubeDesc cubeDesc, Set<TblColRef> dimensions, Collection<FunctionDesc> metrics) {
         for (FunctionDesc metric : metrics) {
             if (metric.getMeasureType().onlyAggrInBaseCuboid())
@@ -308,10 +335,12 @@ public class Cuboid implements Comparable<Cuboid>, Serializable {
 
     public static void clearCache() {
         CUBOID_CACHE.clear();
+        COST_BASED_CUBOID_CACHE.clear();
     }
 
     public static void reloadCache(String cubeDescName) {
         CUBOID_CACHE.remove(cubeDescName);
+        COST_BASED_CUBOID_CACHE.remove(cubeDescName);
     }
 
     @Override
@@ -0,0 +1,269 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.cube.cuboid;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.cube.model.RowKeyColDesc;
+import org.apache.kylin.metadata.filter.CompareTupleFilter;
+import org.apache.kylin.metadata.filter.LogicalTupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
+import org.apache.kylin.metadata.model.FunctionDesc;
+import org.apache.kylin.metadata.model.SegmentStatusEnum;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.metadata.realization.SQLDigest;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Estimates the cost of answering a query from a cuboid, using the cuboid row counts kept on segments
+ * (see {@link CubeSegment#getCuboidRowCounts()}) and the cardinality of rowkey columns.
+ *
+ * The cost is the rows to scan: the stored rows of the cuboid over all ready segments, narrowed by EQ and IN
+ * filters on the leading rowkey columns of the cuboid, which become range scans. Scanning an ancestor of the
+ * requested cuboid costs extra, as the rows have to be aggregated again.
+ *
+ * The rows of each cuboid over all ready segments are summed once per set of ready segments of a cube, not per query.
+ */
+public class CuboidCostModel {
+
+    // extra cost per row, when the rows of an ancestor cuboid are aggregated to the requested one
+    static final double POST_AGGREGATION_WEIGHT = 0.5;
+
+    private static final Cache<CubeInstance, SegmentTotals> totalsCache = CacheBuilder.newBuilder().weakKeys().build();
+
+    /**
+     * @return the model, or null if disabled or any ready segment has no statistics
+     */
+    public static CuboidCostModel create(CubeInstance cube, TupleFilter filter) {
+        if (!cube.getConfig().isQueryCostBasedSelectionEnabled())
+            return null;
+
+        List<CubeSegment> segments = cube.getSegments(SegmentStatusEnum.READY);
+        for (CubeSegment seg : segments) {
+            if (seg.getCuboidRowCounts() == null || seg.getCuboidRowCounts().isEmpty())
+                return null;
+        }
+
+        SegmentTotals totals = totalsCache.getIfPresent(cube);
+        if (totals == null || !totals.isOf(segments)) {
+            totals = new SegmentTotals(segments);
+            totalsCache.put(cube, totals);
+        }
+        return new CuboidCostModel(cube.getDescriptor(), totals, filter);
+    }
+
+    private final CubeDesc cubeDesc;
+    private final SegmentTotals totals;
+    private final Map<TblColRef, Integer> pointFilters; // column ==> number of values of EQ or IN
+
+    CuboidCostModel(CubeDesc cubeDesc, List<CubeSegment> segments, TupleFilter filter) {
+        this(cubeDesc, new SegmentTotals(segments), filter);
+    }
+
+    private CuboidCostModel(CubeDesc cubeDesc, SegmentTotals totals, TupleFilter filter) {
+        this.cubeDesc = cubeDesc;
+        this.totals = totals;
+        this.pointFilters = collectPointFilters(filter);
+    }
+
+    /**
+     * @return stored rows of the cuboid over all segments, or -1 if any segment has no count for it
+     */
+    public long estimateStoredRows(long cuboidId) {
+        if (totals.segments.isEmpty())
+            return 0;
+        Long rows = totals.rows.get(cuboidId);
+        return rows == null ? -1 : rows;
+    }
+
+    /**
+     * @return rows to scan from the cuboid after the range narrowed by filter, or -1 if unknown
+     */
+    public long estimateScanRows(long cuboidId) {
+        long rows = estimateStoredRows(cuboidId);
+        if (rows <= 0)
+            return rows;
+
+        double selectivity = 1.0;
+        for (RowKeyColDesc rowkey : cubeDesc.getRowkey().getRowKeyColumns()) {
+            if ((cuboidId & (1L << rowkey.getBitIndex())) == 0)
+                continue;
+
+            // only the filtered prefix of rowkey narrows the scan range
+            Integer values = pointFilters.get(rowkey.getColRef());
+            Long card = totals.cardinality.get(rowkey.getColRef().getIdentity());
+            if (values == null || card == null || card <= 0)
+                break;
+            selectivity *= Math.min(1.0, (double) values / card);
+        }
+        return Math.max(1, Math.round(rows * selectivity));
+    }
+
+    /**
+     * @return cost of answering the requested cuboid from the given valid cuboid, or -1 if unknown
+     */
+    public double estimateCost(long requestedId, long cuboidId) {
+        long rows = estimateScanRows(cuboidId);
+        if (rows < 0)
+            return -1;
+        return cuboidId == requestedId ? rows : rows * (1 + POST_AGGREGATION_WEIGHT);
+    }
+
+    /**
+     * @return the cheapest valid cuboid containing all dimensions of the requested, or -1 if unknown
+     */
+    public long selectCuboid(long requestedId) {
+        long best = -1;
+        double bestCost = 0;
+        for (long id : cubeDesc.getAllCuboids()) {
+            if ((id & requestedId) != requestedId)
+                continue;
+
+            double cost = estimateCost(requestedId, id);
+            if (cost < 0)
+                return -1;
+
+            if (best < 0 || cost < bestCost || (cost == bestCost && Cuboid.cuboidSelectComparator.compare(id, best) < 0)) {
+                best = id;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return rows to scan for the query, by the cuboid it would be answered from, or -1 if unknown
+     */
+    public long estimateScanRows(SQLDigest digest) {
+        Set<TblColRef> dimensions = Sets.newHashSet();
+        for (TblColRef col : digest.allColumns) {
+            // skip measure columns, as GTCubeStorageQueryBase does
+            if (digest.metricColumns.contains(col) && !(digest.groupbyColumns.contains(col) || digest.filterColumns.contains(col)))
+                continue;
+
+            if (cubeDesc.hasHostColumn(col)) {
+                Collections.addAll(dimensions, cubeDesc.getHostInfo(col).columns);
+            } else {
+                dimensions.add(col);
+            }
+        }
+        dimensions.retainAll(cubeDesc.listDimensionColumnsExcludingDerived(true));
+
+        Collection<FunctionDesc> metrics = digest.aggregations == null ? Collections.<FunctionDesc> emptyList() : digest.aggregations;
+        long requestedId = Cuboid.identifyCuboidId(cubeDesc, dimensions, metrics);
+        long cuboidId = selectCuboid(requestedId);
+        return cuboidId < 0 ? -1 : estimateScanRows(cuboidId);
+    }
+
+    private static Map<TblColRef, Integer> collectPointFilters(TupleFilter filter) {
+        Map<TblColRef, Integer> result = Maps.newHashMap();
+        if (filter instanceof CompareTupleFilter) {
+            addPointFilter((CompareTupleFilter) filter, result);
+        } else if (filter instanceof LogicalTupleFilter && filter.getOperator() == FilterOperatorEnum.AND) {
+            for (TupleFilter child : filter.getChildren()) {
+                if (child instanceof CompareTupleFilter)
+                    addPointFilter((CompareTupleFilter) child, result);
+            }
+        }
+        return result;
+    }
+
+    private static void addPointFilter(CompareTupleFilter compare, Map<TblColRef, Integer> result) {
+        if (compare.getColumn() == null || compare.getFunction() != null)
+            return;
+
+        FilterOperatorEnum op = compare.getOperator();
+        if ((op == FilterOperatorEnum.EQ || op == FilterOperatorEnum.IN) && !compare.getValues().isEmpty()) {
+            Integer old = result.get(compare.getColumn());
+            int n = compare.getValues().size();
+            result.put(compare.getColumn(), old == null ? n : Math.min(old, n));
+        }
+    }
+
+    /**
+     * What the model needs of a list of segments, independent of the query.
+     */
+    private static final class SegmentTotals {
+        private final List<CubeSegment> segments;
+        private final List<Map<Long, Long>> segmentRows; // to tell a segment whose counts are replaced
+        private final Map<Long, Long> rows = Maps.newHashMap(); // cuboid id ==> rows of all segments having a count
+        private final Map<String, Long> cardinality = Maps.newHashMap(); // column identity ==> max cardinality of segments
+
+        SegmentTotals(List<CubeSegment> segments) {
+            this.segments = Lists.newArrayList(segments);
+            this.segmentRows = Lists.newArrayListWithCapacity(segments.size());
+            for (CubeSegment seg : segments) {
+                segmentRows.add(seg.getCuboidRowCounts());
+            }
+
+            for (int i = 0; i < segments.size(); i++) {
+                Map<Long, Long> segRows = segmentRows.get(i);
+                if (i == 0) {
+                    rows.putAll(segRows);
+                    continue;
+                }
+                Iterator<Map.Entry<Long, Long>> it = rows.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<Long, Long> entry = it.next();
+                    Long r = segRows.get(entry.getKey());
+                    if (r == null)
+                        it.remove();
+                    else
+                        entry.setValue(entry.getValue() + r);
+                }
+            }
+
+            for (CubeSegment seg : segments) {
+                for (Object[] stat : seg.getRowkeyStats()) {
+                    // [column identity, dictionary size, size of id]
+                    String col = (String) stat[0];
+                    long card = ((Number) stat[1]).longValue();
+                    Long old = cardinality.get(col);
+                    if (old == null || old < card)
+                        cardinality.put(col, card);
+                }
+            }
+        }
+
+        boolean isOf(List<CubeSegment> other) {
+            if (other.size() != segments.size())
+                return false;
+            for (int i = 0; i < segments.size(); i++) {
+                CubeSegment seg = other.get(i);
+                if (seg != segments.get(i) || seg.getCuboidRowCounts() != segmentRows.get(i))
+                    return false;
+            }
+            return true;
+        }
+    }
+}
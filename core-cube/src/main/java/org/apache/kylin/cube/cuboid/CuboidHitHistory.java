@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.cube.cuboid;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.kylin.common.persistence.ResourceStore;
+import org.apache.kylin.common.persistence.RootPersistentEntity;
+import org.apache.kylin.metadata.MetadataConstants;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The cuboids queries of a cube asked for, and the cuboids that served them.
+ */
+@SuppressWarnings("serial")
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.NONE, getterVisibility = JsonAutoDetect.Visibility.NONE, isGetterVisibility = JsonAutoDetect.Visibility.NONE, setterVisibility = JsonAutoDetect.Visibility.NONE)
+public class CuboidHitHistory extends RootPersistentEntity {
+
+    @JsonProperty("cube")
+    private String cube;
+    @JsonProperty("hits")
+    private TreeMap<Long, CuboidHit> hits = new TreeMap<>(); // requested cuboid id ==> hit
+
+    public CuboidHitHistory() {
+    }
+
+    public CuboidHitHistory(String cube) {
+        this.updateRandomUuid();
+        this.cube = cube;
+    }
+
+    public String getCube() {
+        return cube;
+    }
+
+    public Map<Long, CuboidHit> getHits() {
+        return hits;
+    }
+
+    public void merge(Map<Long, CuboidHit> delta) {
+        for (Map.Entry<Long, CuboidHit> entry : delta.entrySet()) {
+            CuboidHit hit = hits.get(entry.getKey());
+            if (hit == null) {
+                hit = new CuboidHit();
+                hits.put(entry.getKey(), hit);
+            }
+            hit.merge(entry.getValue());
+        }
+    }
+
+    public String getResourcePath() {
+        return concatResourcePath(cube);
+    }
+
+    public static String concatResourcePath(String cube) {
+        return ResourceStore.CUBOID_HIT_RESOURCE_ROOT + "/" + cube + MetadataConstants.FILE_SURFIX;
+    }
+
+    @Override
+    public String toString() {
+        return "CuboidHitHistory [ cube=" + cube + "]";
+    }
+
+    @JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.NONE, getterVisibility = JsonAutoDetect.Visibility.NONE, isGetterVisibility = JsonAutoDetect.Visibility.NONE, setterVisibility = JsonAutoDetect.Visibility.NONE)
+    public static class CuboidHit {
+        @JsonProperty("served_by")
+        private long servedBy; // the cuboid last used to answer
+        @JsonProperty("hit_count")
+        private long hitCount;
+        @JsonProperty("post_aggregation_count")
+        private long postAggregationCount; // hits answered by aggregating an ancestor
+        @JsonProperty("returned_rows")
+        private long returnedRows; // rows returned by storage, of all hits
+
+        public void add(long servedBy, boolean postAggregation, long returnedRows) {
+            this.servedBy = servedBy;
+            this.hitCount++;
+            if (postAggregation)
+                this.postAggregationCount++;
+            this.returnedRows += returnedRows;
+        }
+
+        void merge(CuboidHit other) {
+            this.servedBy = other.servedBy;
+            this.hitCount += other.hitCount;
+            this.postAggregationCount += other.postAggregationCount;
+            this.returnedRows += other.returnedRows;
+        }
+
+        public long getServedBy() {
+            return servedBy;
+        }
+
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        public long getPostAggregationCount() {
+            return postAggregationCount;
+        }
+
+        public long getReturnedRows() {
+            return returnedRows;
+        }
+
+        public long getAvgReturnedRows() {
+            return hitCount == 0 ? 0 : returnedRows / hitCount;
+        }
+    }
+}
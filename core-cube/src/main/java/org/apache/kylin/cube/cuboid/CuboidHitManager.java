@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.cube.cuboid;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.persistence.JsonSerializer;
+import org.apache.kylin.common.persistence.ResourceStore;
+import org.apache.kylin.common.persistence.Serializer;
+import org.apache.kylin.cube.cuboid.CuboidHitHistory.CuboidHit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Collects cuboid hits of queries in memory, and merges them into {@link CuboidHitHistory} in metadata store
+ * at most once per flush interval. Hits failed to flush are kept for the next time.
+ */
+public class CuboidHitManager {
+    public static final Serializer<CuboidHitHistory> CUBOID_HIT_SERIALIZER = new JsonSerializer<>(CuboidHitHistory.class);
+    private static final Logger logger = LoggerFactory.getLogger(CuboidHitManager.class);
+
+    private static final ConcurrentMap<KylinConfig, CuboidHitManager> CACHE = new ConcurrentHashMap<>();
+
+    public static CuboidHitManager getInstance(KylinConfig config) {
+        CuboidHitManager r = CACHE.get(config);
+        if (r != null) {
+            return r;
+        }
+
+        synchronized (CuboidHitManager.class) {
+            r = CACHE.get(config);
+            if (r != null) {
+                return r;
+            }
+            r = new CuboidHitManager(config);
+            CACHE.put(config, r);
+            if (CACHE.size() > 1) {
+                logger.warn("More than one singleton exist");
+            }
+            return r;
+        }
+    }
+
+    public static void clearCache() {
+        CACHE.clear();
+    }
+
+    // ============================================================================
+
+    private final KylinConfig kylinConfig;
+    private Map<String, Map<Long, CuboidHit>> pending = Maps.newHashMap(); // cube ==> requested cuboid ==> hit
+    private long lastFlushTime = System.currentTimeMillis();
+
+    private CuboidHitManager(KylinConfig config) {
+        logger.info("Initializing CuboidHitManager with config " + config);
+        this.kylinConfig = config;
+    }
+
+    private ResourceStore getStore() {
+        return ResourceStore.getStore(this.kylinConfig);
+    }
+
+    /**
+     * @param returnedRows rows returned from storage for the query
+     */
+    public void record(String cube, Cuboid cuboid, long returnedRows) {
+        if (!kylinConfig.isQueryCuboidHitRecordEnabled())
+            return;
+
+        boolean needFlush;
+        synchronized (this) {
+            Map<Long, CuboidHit> hits = pending.get(cube);
+            if (hits == null) {
+                hits = Maps.newHashMap();
+                pending.put(cube, hits);
+            }
+            CuboidHit hit = hits.get(cuboid.getInputID());
+            if (hit == null) {
+                hit = new CuboidHit();
+                hits.put(cuboid.getInputID(), hit);
+            }
+            hit.add(cuboid.getId(), cuboid.requirePostAggregation(), returnedRows);
+
+            needFlush = System.currentTimeMillis() - lastFlushTime > kylinConfig.getQueryCuboidHitFlushIntervalSeconds() * 1000L;
+            if (needFlush)
+                lastFlushTime = System.currentTimeMillis();
+        }
+
+        if (needFlush)
+            flush();
+    }
+
+    /**
+     * Merge the pending hits into metadata store.
+     */
+    public void flush() {
+        Map<String, Map<Long, CuboidHit>> toFlush;
+        synchronized (this) {
+            toFlush = pending;
+            pending = Maps.newHashMap();
+        }
+
+        for (Map.Entry<String, Map<Long, CuboidHit>> entry : toFlush.entrySet()) {
+            try {
+                CuboidHitHistory history = getCuboidHitHistory(entry.getKey());
+                history.merge(entry.getValue());
+                getStore().putResource(history.getResourcePath(), history, CUBOID_HIT_SERIALIZER);
+            } catch (Exception e) {
+                // e.g. conflict with another query server, try again next time
+                logger.warn("Failed to save cuboid hits of cube " + entry.getKey(), e);
+                synchronized (this) {
+                    Map<Long, CuboidHit> hits = pending.get(entry.getKey());
+                    if (hits == null) {
+                        pending.put(entry.getKey(), entry.getValue());
+                    } else {
+                        for (Map.Entry<Long, CuboidHit> h : entry.getValue().entrySet()) {
+                            CuboidHit hit = hits.get(h.getKey());
+                            if (hit == null)
+                                hits.put(h.getKey(), h.getValue());
+                            else
+                                hit.merge(h.getValue());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    public CuboidHitHistory getCuboidHitHistory(String cube) throws IOException {
+        CuboidHitHistory history = getStore().getResource(CuboidHitHistory.concatResourcePath(cube), CuboidHitHistory.class, CUBOID_HIT_SERIALIZER);
+        if (history == null) {
+            history = new CuboidHitHistory(cube);
+        }
+        return history;
+    }
+
+    public void removeCuboidHitHistory(String cube) throws IOException {
+        getStore().deleteResource(CuboidHitHistory.concatResourcePath(cube));
+    }
+}
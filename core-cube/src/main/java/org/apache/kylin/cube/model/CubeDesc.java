@@ -654,6 +654,18 @@ public class CubeDesc extends RootPersistentEntity implements IEngineAware {
         return cuboidBlackSet.contains(cuboidID);
     }
 
+    public Set<Long> getCuboidBlackSet() {
+        return cuboidBlackSet;
+    }
+
+    public void setCuboidBlackSet(Set<Long> cuboidBlackSet) {
+        this.cuboidBlackSet = cuboidBlackSet;
+        synchronized (cuboidTreeLock) {
+            allCuboids = null;
+            parent2Child = null;
+        }
+    }
+
     public void validateAggregationGroupsCombination() {
         int index = 0;
 
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.gridtable;
+
+import java.util.Arrays;
+
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.measure.MeasureAggregator;
+import org.apache.kylin.measure.basic.BasicAggregationColumn;
+
+/**
+ * Columnar aggregation states indexed by group id.
+ *
+ * Primitive basic measures (long/double SUM, COUNT, MIN, MAX) are kept in {@link BasicAggregationColumn} slabs.
+ * Other measures, including decimals, fall back to one {@link MeasureAggregator} object per group.
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class AggregationColumnStore {
+
+    final IGTCodeSystem codeSystem;
+    final ImmutableBitSet metrics;
+    final String[] metricsAggrFuncs;
+
+    final BasicAggregationColumn[] basicColumns; // null for measures that are not primitive
+    final MeasureAggregator[][] objectColumns; // null for primitive measures
+    final MeasureAggregator[] emitAggrs; // reused to expose the state of one group
+    final int nObjectColumns;
+
+    private int size;
+    private int capacity;
+
+    public AggregationColumnStore(IGTCodeSystem codeSystem, ImmutableBitSet metrics, String[] metricsAggrFuncs) {
+        this.codeSystem = codeSystem;
+        this.metrics = metrics;
+        this.metricsAggrFuncs = metricsAggrFuncs;
+
+        this.emitAggrs = codeSystem.newMetricsAggregators(metrics, metricsAggrFuncs);
+        this.basicColumns = new BasicAggregationColumn[emitAggrs.length];
+        this.objectColumns = new MeasureAggregator[emitAggrs.length][];
+
+        int n = 0;
+        for (int i = 0; i < emitAggrs.length; i++) {
+            basicColumns[i] = BasicAggregationColumn.create(emitAggrs[i]);
+            if (basicColumns[i] == null) {
+                objectColumns[i] = new MeasureAggregator[0];
+                n++;
+            }
+        }
+        this.nObjectColumns = n;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** allocate states for a new group and return its id */
+    public int addGroup() {
+        int groupId = size++;
+        if (size > capacity) {
+            capacity = Math.max(16, capacity * 2);
+            for (int i = 0; i < basicColumns.length; i++) {
+                if (basicColumns[i] != null)
+                    basicColumns[i].ensureCapacity(capacity);
+                else
+                    objectColumns[i] = Arrays.copyOf(objectColumns[i], capacity);
+            }
+        }
+
+        if (nObjectColumns > 0) {
+            MeasureAggregator[] aggrs = codeSystem.newMetricsAggregators(metrics, metricsAggrFuncs);
+            for (int i = 0; i < objectColumns.length; i++) {
+                if (objectColumns[i] != null)
+                    objectColumns[i][groupId] = aggrs[i];
+            }
+        }
+        return groupId;
+    }
+
+    public void aggregate(int groupId, int measureIndex, Object value) {
+        BasicAggregationColumn basic = basicColumns[measureIndex];
+        if (basic != null)
+            basic.aggregate(groupId, value);
+        else
+            objectColumns[measureIndex][groupId].aggregate(value);
+    }
+
+    /**
+     * Return aggregators holding the states of given group. The returned array is reused by the next call.
+     */
+    public MeasureAggregator[] loadGroup(int groupId) {
+        for (int i = 0; i < emitAggrs.length; i++) {
+            if (basicColumns[i] != null) {
+                emitAggrs[i].reset();
+                Object state = basicColumns[i].getState(groupId);
+                if (state != null)
+                    emitAggrs[i].aggregate(state);
+            } else {
+                emitAggrs[i] = objectColumns[i][groupId];
+            }
+        }
+        return emitAggrs;
+    }
+
+    /**
+     * Memory held by the states. Primitive slabs are counted exactly; measure objects are estimated by a sample.
+     */
+    public long getMemBytes() {
+        long bytes = 0;
+        for (int i = 0; i < basicColumns.length; i++) {
+            if (basicColumns[i] != null) {
+                bytes += basicColumns[i].getMemBytes();
+            } else {
+                bytes += capacity * 8L; // references
+                if (size > 0)
+                    bytes += (long) size * objectColumns[i][0].getMemBytesEstimate();
+            }
+        }
+        return bytes;
+    }
+}
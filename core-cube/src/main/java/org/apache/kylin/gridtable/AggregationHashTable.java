@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.gridtable;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * An open-addressing (linear probing) hash table that maps fixed-length keys to dense group ids.
+ *
+ * Keys are copied into one contiguous byte slab, so probing an existing group allocates nothing.
+ * Only bytes selected by the compare mask take part in hashing and equality, which aligns with
+ * the comparator of the tree map based aggregation cache. Group ids are sorted only when
+ * {@link #sortedGroupIds()} is called, i.e. at emit or spill time.
+ */
+public class AggregationHashTable {
+
+    private static final int INITIAL_CAPACITY = 1024; // must be power of 2
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private final int keyLength;
+    private final boolean[] compareMask; // null means compare all bytes
+
+    private int[] slots; // slot -> group id + 1, 0 means empty
+    private int[] hashes; // group id -> hash
+    private byte[] keys; // group id -> key bytes at [id * keyLength, (id + 1) * keyLength)
+    private int size;
+
+    public AggregationHashTable(int keyLength, boolean[] compareMask) {
+        this.keyLength = keyLength;
+        this.compareMask = isAllTrue(compareMask) ? null : compareMask;
+        this.slots = new int[INITIAL_CAPACITY];
+        this.hashes = new int[(int) (INITIAL_CAPACITY * LOAD_FACTOR)];
+        this.keys = new byte[hashes.length * keyLength];
+    }
+
+    private static boolean isAllTrue(boolean[] mask) {
+        if (mask == null)
+            return true;
+        for (boolean b : mask) {
+            if (!b)
+                return false;
+        }
+        return true;
+    }
+
+    /** number of groups, group ids are [0, size) */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** return the group id of the key, or -1 if absent; the key is not retained */
+    public int find(byte[] key) {
+        return find(key, hash(key));
+    }
+
+    /** add an absent key and return its group id; the key is copied into the table */
+    public int add(byte[] key) {
+        if (size == hashes.length)
+            grow();
+
+        int h = hash(key);
+        int id = size++;
+        System.arraycopy(key, 0, keys, id * keyLength, keyLength);
+        hashes[id] = h;
+        insertSlot(id, h);
+        return id;
+    }
+
+    /** return a copy of the key of given group */
+    public byte[] getKey(int groupId) {
+        return Arrays.copyOfRange(keys, groupId * keyLength, (groupId + 1) * keyLength);
+    }
+
+    private int find(byte[] key, int h) {
+        int mask = slots.length - 1;
+        for (int slot = h & mask;; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id < 0)
+                return -1;
+            if (hashes[id] == h && keyEquals(id, key))
+                return id;
+        }
+    }
+
+    private void insertSlot(int id, int h) {
+        int mask = slots.length - 1;
+        int slot = h & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = id + 1;
+    }
+
+    private void grow() {
+        int newCapacity = slots.length * 2;
+        if (newCapacity < 0)
+            throw new IllegalStateException("AggregationHashTable cannot grow beyond " + slots.length + " slots");
+
+        int newGroupCapacity = (int) (newCapacity * LOAD_FACTOR);
+        hashes = Arrays.copyOf(hashes, newGroupCapacity);
+        keys = Arrays.copyOf(keys, newGroupCapacity * keyLength);
+
+        slots = new int[newCapacity];
+        for (int id = 0; id < size; id++) {
+            insertSlot(id, hashes[id]);
+        }
+    }
+
+    private int hash(byte[] key) {
+        int h = 1;
+        for (int i = 0; i < keyLength; i++) {
+            if (compareMask == null || compareMask[i])
+                h = 31 * h + key[i];
+        }
+        // spread the bits as low bits are used for slot index
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return h;
+    }
+
+    private boolean keyEquals(int id, byte[] key) {
+        int offset = id * keyLength;
+        for (int i = 0; i < keyLength; i++) {
+            if ((compareMask == null || compareMask[i]) && keys[offset + i] != key[i])
+                return false;
+        }
+        return true;
+    }
+
+    private int compareKeys(int id1, int id2) {
+        int offset1 = id1 * keyLength;
+        int offset2 = id2 * keyLength;
+        for (int i = 0; i < keyLength; i++) {
+            if (compareMask == null || compareMask[i]) {
+                int a = (keys[offset1 + i] & 0xff);
+                int b = (keys[offset2 + i] & 0xff);
+                if (a != b)
+                    return a - b;
+            }
+        }
+        return 0;
+    }
+
+    /** heap usage of the table, exact except for array headers */
+    public long getMemBytes() {
+        return slots.length * 4L + hashes.length * 4L + keys.length;
+    }
+
+    /** group ids in key order */
+    public int[] sortedGroupIds() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return compareKeys(o1, o2);
+            }
+        });
+
+        int[] result = new int[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = order[i];
+        }
+        return result;
+    }
+}
@@ -74,6 +74,7 @@ public class GTAggregateScanner implements IGTScanner {
     final long spillThreshold; // 0 means no memory control && no spill
     final int storagePushDownLimit;//default to be Int.MAX
     final boolean spillEnabled;
+    final boolean hashAggregation;
     final TupleFilter havingFilter;
 
     private int aggregatedRowCount = 0;
@@ -85,6 +86,19 @@ public class GTAggregateScanner implements IGTScanner {
     }
 
     public GTAggregateScanner(IGTScanner inputScanner, GTScanRequest req, boolean spillEnabled) {
+        this(inputScanner, req, spillEnabled, 1);
+    }
+
+    /**
+     * Create a scanner that aggregates one of several partitions of the input. Outputs of the partial scanners
+     * are to be merged by a normal GTAggregateScanner, thus the having filter is left to the final merge and
+     * the memory threshold is shared evenly among partitions.
+     */
+    public static GTAggregateScanner newPartialScanner(IGTScanner inputScanner, GTScanRequest req, boolean spillEnabled, int numOfPartitions) {
+        return new GTAggregateScanner(inputScanner, req, spillEnabled, numOfPartitions);
+    }
+
+    private GTAggregateScanner(IGTScanner inputScanner, GTScanRequest req, boolean spillEnabled, int numOfPartitions) {
         if (!req.hasAggregation())
             throw new IllegalStateException();
 
@@ -95,12 +109,13 @@ public class GTAggregateScanner implements IGTScanner {
         this.metricsAggrFuncs = req.getAggrMetricsFuncs();
         this.inputScanner = inputScanner;
         this.measureCodec = req.createMeasureCodec();
-        this.aggrCache = new AggregationCache();
-        this.spillThreshold = (long) (req.getAggCacheMemThreshold() * MemoryBudgetController.ONE_GB);
+        this.spillThreshold = (long) (req.getAggCacheMemThreshold() * MemoryBudgetController.ONE_GB / numOfPartitions);
         this.aggrMask = new boolean[metricsAggrFuncs.length];
         this.storagePushDownLimit = req.getStoragePushDownLimit();
         this.spillEnabled = spillEnabled;
-        this.havingFilter = req.getHavingFilterPushDown();
+        this.hashAggregation = req.isHashAggregation();
+        this.havingFilter = numOfPartitions > 1 ? null : req.getHavingFilterPushDown();
+        this.aggrCache = new AggregationCache();
 
         Arrays.fill(aggrMask, true);
     }
@@ -212,7 +227,11 @@ public class GTAggregateScanner implements IGTScanner {
             }
         };
 
+        // either aggBufMap, or aggBufTable together with aggBufStore is in use, depending on hashAggregation
         SortedMap<byte[], MeasureAggregator[]> aggBufMap;
+        AggregationHashTable aggBufTable; // key -> group id
+        AggregationColumnStore aggBufStore; // group id -> measure states
+        final byte[] keyBuf; // reused key in hash aggregation mode
 
         public AggregationCache() {
             compareMask = createCompareMask();
@@ -221,7 +240,8 @@ public class GTAggregateScanner implements IGTScanner {
             }
             keyLength = compareMask.length;
             dumps = Lists.newArrayList();
-            aggBufMap = createBuffMap();
+            keyBuf = hashAggregation ? new byte[keyLength] : null;
+            resetBuffer();
         }
 
         private boolean[] createCompareMask() {
@@ -245,18 +265,69 @@ public class GTAggregateScanner implements IGTScanner {
             return mask;
         }
 
-        private SortedMap<byte[], MeasureAggregator[]> createBuffMap() {
-            return Maps.newTreeMap(bytesComparator);
+        private void resetBuffer() {
+            if (hashAggregation) {
+                aggBufMap = null;
+                aggBufTable = new AggregationHashTable(keyLength, compareMask);
+                aggBufStore = new AggregationColumnStore(info.codeSystem, metrics, metricsAggrFuncs);
+            } else {
+                aggBufMap = Maps.newTreeMap(bytesComparator);
+                aggBufTable = null;
+                aggBufStore = null;
+            }
+        }
+
+        private int bufferSize() {
+            return hashAggregation ? aggBufTable.size() : aggBufMap.size();
+        }
+
+        private boolean isBufferEmpty() {
+            return bufferSize() == 0;
+        }
+
+        private Iterator<Entry<byte[], MeasureAggregator[]>> bufferIterator() {
+            if (!hashAggregation)
+                return aggBufMap.entrySet().iterator();
+
+            final int[] sortedIds = aggBufTable.sortedGroupIds();
+            final AggregationHashTable table = aggBufTable;
+            final AggregationColumnStore store = aggBufStore;
+            return new Iterator<Entry<byte[], MeasureAggregator[]>>() {
+                int cursor = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return cursor < sortedIds.length;
+                }
+
+                @Override
+                public Entry<byte[], MeasureAggregator[]> next() {
+                    int groupId = sortedIds[cursor++];
+                    return new SimpleEntry(table.getKey(groupId), store.loadGroup(groupId));
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
         }
 
         private byte[] createKey(GTRecord record) {
-            byte[] result = new byte[keyLength];
+            return fillKey(record, new byte[keyLength]);
+        }
+
+        private byte[] fillKey(GTRecord record, byte[] result) {
             int offset = 0;
             for (int i = 0; i < dimensions.trueBitCount(); i++) {
                 int c = dimensions.trueBitAt(i);
                 final ByteArray byteArray = record.cols[c];
                 final int columnLength = info.codeSystem.maxCodeLength(c);
                 System.arraycopy(byteArray.array(), byteArray.offset(), result, offset, byteArray.length());
+                if (byteArray.length() < columnLength) {
+                    // the key buffer may be reused, clear leftover from previous record
+                    Arrays.fill(result, offset + byteArray.length(), offset + columnLength, (byte) 0);
+                }
                 offset += columnLength;
             }
             assert offset == result.length;
@@ -275,10 +346,14 @@ public class GTAggregateScanner implements IGTScanner {
                         throw new ResourceLimitExceededException("aggregation's memory consumption " + estMemSize + " exceeds threshold " + spillThreshold);
                     }
                     spillBuffMap(estMemSize); // spill to disk
-                    aggBufMap = createBuffMap();
+                    resetBuffer();
                 }
             }
 
+            if (hashAggregation) {
+                return aggregateByHash(r, stopForLimit);
+            }
+
             final byte[] key = createKey(r);
             MeasureAggregator[] aggrs = aggBufMap.get(key);
             if (aggrs == null) {
@@ -301,9 +376,32 @@ public class GTAggregateScanner implements IGTScanner {
             return true;
         }
 
+        private boolean aggregateByHash(GTRecord r, int stopForLimit) {
+            final byte[] key = fillKey(r, keyBuf);
+            int groupId = aggBufTable.find(key);
+            if (groupId < 0) {
+
+                //for storage push down limit
+                if (aggBufTable.size() >= stopForLimit) {
+                    return false;
+                }
+
+                groupId = aggBufTable.add(key); // key is copied into the table
+                aggBufStore.addGroup();
+            }
+            for (int i = 0; i < aggrMask.length; i++) {
+                if (aggrMask[i]) {
+                    int col = metrics.trueBitAt(i);
+                    Object metrics = info.codeSystem.decodeColumnValue(col, r.cols[col].asBuffer());
+                    aggBufStore.aggregate(groupId, i, metrics);
+                }
+            }
+            return true;
+        }
+
         private void spillBuffMap(long estMemSize) throws RuntimeException {
             try {
-                Dump dump = new Dump(aggBufMap, estMemSize);
+                Dump dump = new Dump(bufferIterator(), bufferSize(), estMemSize);
                 dump.flush();
                 dumps.add(dump);
             } catch (Exception e) {
@@ -327,9 +425,13 @@ public class GTAggregateScanner implements IGTScanner {
         }
 
         public long estimatedMemSize() {
-            if (aggBufMap.isEmpty())
+            if (isBufferEmpty())
                 return 0;
 
+            if (hashAggregation) {
+                return aggBufTable.getMemBytes() + aggBufStore.getMemBytes();
+            }
+
             byte[] sampleKey = aggBufMap.firstKey();
             MeasureAggregator<?>[] sampleValue = aggBufMap.get(sampleKey);
             return estimateSizeOfAggrCache(sampleKey, sampleValue, aggBufMap.size());
@@ -340,10 +442,10 @@ public class GTAggregateScanner implements IGTScanner {
 
             if (dumps.isEmpty()) {
                 // the all-in-mem case
-                it = aggBufMap.entrySet().iterator();
+                it = bufferIterator();
             } else {
                 // the spill case
-                if (!aggBufMap.isEmpty()) {
+                if (!isBufferEmpty()) {
                     spillBuffMap(getEstimateSizeOfAggrCache()); // TODO allow merge in-mem map with spilled dumps
                 }
                 DumpMerger merger = new DumpMerger(dumps);
@@ -515,14 +617,16 @@ public class GTAggregateScanner implements IGTScanner {
 
         class Dump implements Iterable<Pair<byte[], byte[]>> {
             final File dumpedFile;
-            SortedMap<byte[], MeasureAggregator[]> buffMap;
+            Iterator<Entry<byte[], MeasureAggregator[]>> buffIterator; // sorted by key
+            final int buffSize;
             final long estMemSize;
 
             DataInputStream dis;
 
-            public Dump(SortedMap<byte[], MeasureAggregator[]> buffMap, long estMemSize) throws IOException {
+            public Dump(Iterator<Entry<byte[], MeasureAggregator[]>> buffIterator, int buffSize, long estMemSize) throws IOException {
                 this.dumpedFile = File.createTempFile("KYLIN_SPILL_", ".tmp");
-                this.buffMap = buffMap;
+                this.buffIterator = buffIterator;
+                this.buffSize = buffSize;
                 this.estMemSize = estMemSize;
             }
 
@@ -570,15 +674,16 @@ public class GTAggregateScanner implements IGTScanner {
             }
 
             public void flush() throws IOException {
-                logger.info("AggregationCache(size={} est_mem_size={} threshold={}) will spill to {}", buffMap.size(), estMemSize, spillThreshold, dumpedFile.getAbsolutePath());
+                logger.info("AggregationCache(size={} est_mem_size={} threshold={}) will spill to {}", buffSize, estMemSize, spillThreshold, dumpedFile.getAbsolutePath());
 
-                if (buffMap != null) {
+                if (buffIterator != null) {
                     DataOutputStream dos = null;
                     Object[] aggrResult = null;
                     try {
                         dos = new DataOutputStream(new FileOutputStream(dumpedFile));
-                        dos.writeInt(buffMap.size());
-                        for (Entry<byte[], MeasureAggregator[]> entry : buffMap.entrySet()) {
+                        dos.writeInt(buffSize);
+                        while (buffIterator.hasNext()) {
+                            Entry<byte[], MeasureAggregator[]> entry = buffIterator.next();
                             MeasureAggregators aggs = new MeasureAggregators(entry.getValue());
                             aggrResult = new Object[metrics.trueBitCount()];
                             aggs.collectStates(aggrResult);
@@ -589,14 +694,14 @@ public class GTAggregateScanner implements IGTScanner {
                             dos.write(metricsBuf.array(), 0, metricsBuf.position());
                         }
                     } finally {
-                        buffMap = null;
+                        buffIterator = null;
                         IOUtils.closeQuietly(dos);
                     }
                 }
             }
 
             public void terminate() throws IOException {
-                buffMap = null;
+                buffIterator = null;
                 if (dis != null)
                     dis.close();
                 if (dumpedFile != null && dumpedFile.exists())
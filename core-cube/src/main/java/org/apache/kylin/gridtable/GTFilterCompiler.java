@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.gridtable;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.metadata.filter.ColumnTupleFilter;
+import org.apache.kylin.metadata.filter.CompareTupleFilter;
+import org.apache.kylin.metadata.filter.ConstantTupleFilter;
+import org.apache.kylin.metadata.filter.IFilterCodeSystem;
+import org.apache.kylin.metadata.filter.LogicalTupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter;
+import org.apache.kylin.metadata.tuple.IEvaluatableTuple;
+import org.codehaus.janino.ClassBodyEvaluator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Lists;
+
+/**
+ * Compiles a pushed down filter into a class by Janino, which evaluates the whole tree in one method without
+ * recursive calls. AND, OR, NOT and column-vs-constant comparison on GTRecord cells are compiled; any other node
+ * is kept as a sub tree evaluated by the interpreter.
+ *
+ * Constants are referenced by position in the generated source, so filters of the same shape share one class.
+ * Compiled classes are cached by their source.
+ */
+public class GTFilterCompiler {
+
+    private static final Logger logger = LoggerFactory.getLogger(GTFilterCompiler.class);
+
+    public static boolean ENABLED = true; // enable compile by default
+
+    private static final LoadingCache<String, Class<?>> classCache = CacheBuilder.newBuilder().maximumSize(1000).build(new CacheLoader<String, Class<?>>() {
+        @Override
+        public Class<?> load(String body) throws Exception {
+            ClassBodyEvaluator cbe = new ClassBodyEvaluator();
+            cbe.setExtendedClass(CompiledFilter.class);
+            cbe.setParentClassLoader(GTFilterCompiler.class.getClassLoader());
+            cbe.cook(body);
+            return cbe.getClazz();
+        }
+    });
+
+    /**
+     * Base of generated classes.
+     */
+    public static abstract class CompiledFilter {
+        protected ByteArray[] c; // constants of compare
+        protected Set[] s; // constant sets of IN and NOT IN
+        protected TupleFilter[] f; // sub trees left to interpreter
+        protected IFilterCodeSystem cs;
+
+        /**
+         * @param r the record to evaluate
+         * @param t the same record as tuple, for sub trees left to interpreter
+         */
+        public abstract boolean evaluate(GTRecord r, IEvaluatableTuple t);
+    }
+
+    /**
+     * @return the compiled filter, or null if disabled or compile failed
+     */
+    public static CompiledFilter compile(TupleFilter filter, IFilterCodeSystem<ByteArray> cs) {
+        if (!ENABLED || filter == null)
+            return null;
+
+        GTFilterCompiler compiler = new GTFilterCompiler(cs);
+        String expr = compiler.translate(filter);
+        String body = "public boolean evaluate(org.apache.kylin.gridtable.GTRecord r, org.apache.kylin.metadata.tuple.IEvaluatableTuple t) {\n" //
+                + "    return " + expr + ";\n" //
+                + "}\n";
+
+        try {
+            CompiledFilter result = (CompiledFilter) classCache.get(body).newInstance();
+            result.c = compiler.constants.toArray(new ByteArray[compiler.constants.size()]);
+            result.s = compiler.sets.toArray(new Set[compiler.sets.size()]);
+            result.f = compiler.fallbacks.toArray(new TupleFilter[compiler.fallbacks.size()]);
+            result.cs = cs;
+            return result;
+        } catch (ExecutionException | InstantiationException | IllegalAccessException | RuntimeException | LinkageError e) {
+            logger.warn("Failed to compile filter " + filter + ", will evaluate by interpreter", e);
+            return null;
+        }
+    }
+
+    private final List<ByteArray> constants = Lists.newArrayList();
+    private final List<Set<?>> sets = Lists.newArrayList();
+    private final List<TupleFilter> fallbacks = Lists.newArrayList();
+
+    private final IFilterCodeSystem<ByteArray> cs;
+
+    private GTFilterCompiler(IFilterCodeSystem<ByteArray> cs) {
+        this.cs = cs;
+    }
+
+    private String translate(TupleFilter filter) {
+        if (filter instanceof LogicalTupleFilter) {
+            switch (filter.getOperator()) {
+            case AND:
+                return join(filter.getChildren(), " && ", "true");
+            case OR:
+                return join(filter.getChildren(), " || ", "false");
+            case NOT:
+                return "!" + translate(filter.getChildren().get(0));
+            default:
+                return fallback(filter);
+            }
+        }
+
+        if (filter instanceof CompareTupleFilter) {
+            String result = translateCompare((CompareTupleFilter) filter);
+            if (result != null)
+                return result;
+        }
+
+        return fallback(filter);
+    }
+
+    private String join(List<? extends TupleFilter> children, String op, String empty) {
+        if (children.isEmpty())
+            return empty;
+
+        StringBuilder buf = new StringBuilder("(");
+        for (int i = 0; i < children.size(); i++) {
+            if (i > 0)
+                buf.append(op);
+            buf.append(translate(children.get(i)));
+        }
+        return buf.append(")").toString();
+    }
+
+    // mirrors CompareTupleFilter.evaluate()
+    private String translateCompare(CompareTupleFilter compare) {
+        if (compare.getColumn() == null || compare.getFunction() != null)
+            return null;
+
+        // exactly one column child, the others constants
+        ColumnTupleFilter column = null;
+        for (TupleFilter child : compare.getChildren()) {
+            if (child instanceof ColumnTupleFilter && column == null)
+                column = (ColumnTupleFilter) child;
+            else if (!(child instanceof ConstantTupleFilter))
+                return null;
+        }
+        if (column == null)
+            return null;
+
+        String v = "r.get(" + column.getColumn().getColumnDesc().getZeroBasedIndex() + ")";
+        String notNull = "!cs.isNull(" + v + ")";
+
+        switch (compare.getOperator()) {
+        case ISNULL:
+            return "cs.isNull(" + v + ")";
+        case ISNOTNULL:
+            return "(" + notNull + ")";
+        default:
+        }
+
+        Object first = compare.getFirstValue();
+        if (!(first instanceof ByteArray) || cs.isNull((ByteArray) first))
+            return "false";
+
+        String cmp = "cs.compare(" + v + ", c[" + constants.size() + "])";
+        String result;
+        switch (compare.getOperator()) {
+        case EQ:
+            result = cmp + " == 0";
+            break;
+        case NEQ:
+            result = cmp + " != 0";
+            break;
+        case LT:
+            result = cmp + " < 0";
+            break;
+        case LTE:
+            result = cmp + " <= 0";
+            break;
+        case GT:
+            result = cmp + " > 0";
+            break;
+        case GTE:
+            result = cmp + " >= 0";
+            break;
+        case IN:
+            result = "s[" + sets.size() + "].contains(" + v + ")";
+            sets.add(compare.getValues());
+            return "(" + notNull + " && " + result + ")";
+        case NOTIN:
+            result = "!s[" + sets.size() + "].contains(" + v + ")";
+            sets.add(compare.getValues());
+            return "(" + notNull + " && " + result + ")";
+        default:
+            return "false";
+        }
+        constants.add((ByteArray) first);
+        return "(" + notNull + " && " + result + ")";
+    }
+
+    private String fallback(TupleFilter filter) {
+        String result = "f[" + fallbacks.size() + "].evaluate(t, cs)";
+        fallbacks.add(filter);
+        return result;
+    }
+}
@@ -39,6 +39,7 @@ public class GTFilterScanner extends GTForwardingScanner {
     final private TupleFilter filter;
     final private IFilterCodeSystem<ByteArray> filterCodeSystem;
     final private IEvaluatableTuple oneTuple; // avoid instance creation
+    final private GTFilterCompiler.CompiledFilter compiledFilter; // null if not compiled
 
     private GTRecord next = null;
 
@@ -55,6 +56,8 @@ public class GTFilterScanner extends GTForwardingScanner {
 
         if (!TupleFilter.isEvaluableRecursively(filter))
             throw new IllegalArgumentException();
+
+        this.compiledFilter = GTFilterCompiler.compile(filter, filterCodeSystem);
     }
 
     @Override
@@ -89,7 +92,7 @@ public class GTFilterScanner extends GTForwardingScanner {
                 if (cachedResult != null)
                     return cachedResult[0];
 
-                boolean result = filter.evaluate(oneTuple, filterCodeSystem);
+                boolean result = evaluateFilter(next);
                 resultCache.setLastResult(result);
                 return result;
             }
@@ -116,6 +119,14 @@ public class GTFilterScanner extends GTForwardingScanner {
         };
     }
 
+    // 'record' and 'oneTuple' must be referring to the same record
+    private boolean evaluateFilter(GTRecord record) {
+        if (compiledFilter != null)
+            return compiledFilter.evaluate(record, oneTuple);
+        else
+            return filter.evaluate(oneTuple, filterCodeSystem);
+    }
+
     // cache the last one input and result, can reuse because rowkey are ordered, and same input could come in small group
     public static class FilterResultCache {
         static final int CHECKPOINT = 10000;
@@ -18,15 +18,18 @@
 
 package org.apache.kylin.gridtable;
 
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.kylin.common.util.BytesSerializer;
 import org.apache.kylin.common.util.BytesUtil;
 import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.common.util.SerializeToByteBuffer;
 import org.apache.kylin.cube.gridtable.CubeCodeSystem;
 import org.apache.kylin.cube.gridtable.TrimmedCubeCodeSystem;
 import org.apache.kylin.metadata.datatype.DataType;
@@ -34,6 +37,11 @@ import org.apache.kylin.metadata.model.TblColRef;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.Hashing;
+
 public class GTInfo {
     private static final Logger logger = LoggerFactory.getLogger(GTInfo.class);
 
@@ -362,4 +370,49 @@ public class GTInfo {
         }
     };
 
+    // deserialized GTInfo by digest of its bytes, shared by the requests of the same segment and cuboid on a region server
+    private static final int DIGEST_CACHE_MAX_ENTRIES = 1000;
+    private static final Cache<String, GTInfo> digestCache = CacheBuilder.newBuilder().maximumSize(DIGEST_CACHE_MAX_ENTRIES) //
+            .expireAfterAccess(1, TimeUnit.HOURS).recordStats().build();
+
+    public static CacheStats getDigestCacheStats() {
+        return digestCache.stats();
+    }
+
+    /**
+     * Writes the serialized GTInfo after a digest of it. The reader deserializes the same GTInfo only once and takes
+     * it from cache afterwards, as every region of a segment and every query on the same cuboid send the same GTInfo.
+     * The GTInfo read is shared, it must not be changed.
+     */
+    public static final BytesSerializer<GTInfo> digestSerializer = new BytesSerializer<GTInfo>() {
+        @Override
+        public void serialize(final GTInfo value, ByteBuffer out) {
+            ByteBuffer buf = SerializeToByteBuffer.retrySerialize(new SerializeToByteBuffer.IWriter() {
+                @Override
+                public void write(ByteBuffer byteBuffer) throws BufferOverflowException {
+                    serializer.serialize(value, byteBuffer);
+                }
+            });
+            String digest = Hashing.md5().hashBytes(buf.array(), 0, buf.position()).toString();
+            BytesUtil.writeAsciiString(digest, out);
+            BytesUtil.writeByteArray(buf.array(), 0, buf.position(), out);
+        }
+
+        @Override
+        public GTInfo deserialize(ByteBuffer in) {
+            String digest = BytesUtil.readAsciiString(in);
+            int length = BytesUtil.readVInt(in);
+            int end = in.position() + length;
+
+            GTInfo info = digestCache.getIfPresent(digest);
+            if (info == null) {
+                ByteBuffer slice = in.duplicate();
+                slice.limit(end);
+                info = serializer.deserialize(slice);
+                digestCache.put(digest, info);
+            }
+            in.position(end);
+            return info;
+        }
+    };
 }
@@ -43,6 +43,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
 
 public class GTScanRequest {
 
@@ -74,14 +75,21 @@ public class GTScanRequest {
     private double aggCacheMemThreshold;
     private int storageScanRowNumThreshold;
     private int storagePushDownLimit;
+    private boolean hashAggregation;
+    private int resultChunkBytes; // 0 means the storage returns its result as one block
+    private String resultCodec; // null means decided by storage config
 
     // runtime computed fields
     private transient boolean doingStorageAggregation = false;
 
+    // estimate of the scan plan, client side only, -1 if unknown
+    private transient long estimatedScanRows = -1;
+    private transient long estimatedScanBytes = -1;
+
     GTScanRequest(GTInfo info, List<GTScanRange> ranges, ImmutableBitSet dimensions, ImmutableBitSet aggrGroupBy, //
             ImmutableBitSet aggrMetrics, String[] aggrMetricsFuncs, TupleFilter filterPushDown, TupleFilter havingFilterPushDown, // 
             boolean allowStorageAggregation, double aggCacheMemThreshold, int storageScanRowNumThreshold, //
-            int storagePushDownLimit, String storageBehavior, long startTime, long timeout) {
+            int storagePushDownLimit, boolean hashAggregation, String storageBehavior, long startTime, long timeout) {
         this.info = info;
         if (ranges == null) {
             this.ranges = Lists.newArrayList(new GTScanRange(new GTRecord(info), new GTRecord(info)));
@@ -103,6 +111,7 @@ public class GTScanRequest {
         this.aggCacheMemThreshold = aggCacheMemThreshold;
         this.storageScanRowNumThreshold = storageScanRowNumThreshold;
         this.storagePushDownLimit = storagePushDownLimit;
+        this.hashAggregation = hashAggregation;
 
         validate(info);
     }
@@ -135,6 +144,27 @@ public class GTScanRequest {
         this.timeout = timeout;
     }
 
+    public void setResultChunkBytes(int resultChunkBytes) {
+        this.resultChunkBytes = resultChunkBytes;
+    }
+
+    public void setResultCodec(String resultCodec) {
+        this.resultCodec = resultCodec;
+    }
+
+    public void setEstimatedScan(long rows, long bytes) {
+        this.estimatedScanRows = rows;
+        this.estimatedScanBytes = bytes;
+    }
+
+    public long getEstimatedScanRows() {
+        return estimatedScanRows;
+    }
+
+    public long getEstimatedScanBytes() {
+        return estimatedScanBytes;
+    }
+
     private void validateFilterPushDown(GTInfo info) {
         if (!hasFilterPushDown())
             return;
@@ -321,6 +351,18 @@ public class GTScanRequest {
         return this.storagePushDownLimit;
     }
 
+    public boolean isHashAggregation() {
+        return hashAggregation;
+    }
+
+    public int getResultChunkBytes() {
+        return resultChunkBytes;
+    }
+
+    public String getResultCodec() {
+        return resultCodec;
+    }
+
     public String getStorageBehavior() {
         return storageBehavior;
     }
@@ -348,15 +390,77 @@ public class GTScanRequest {
         return Arrays.copyOf(byteBuffer.array(), byteBuffer.position());
     }
 
+    /**
+     * Digest of what decides the scan result, i.e. ranges, columns, filters, aggregation and limit. Left out are the
+     * info, which is decided by segment and cuboid, and per-run settings like timeout and thresholds.
+     */
+    public String getResultDigest() {
+        ByteBuffer byteBuffer = SerializeToByteBuffer.retrySerialize(new SerializeToByteBuffer.IWriter() {
+            @Override
+            public void write(ByteBuffer out) throws BufferOverflowException {
+                BytesUtil.writeVInt(ranges.size(), out);
+                for (GTScanRange range : ranges) {
+                    serializeGTRecord(range.pkStart, out);
+                    serializeGTRecord(range.pkEnd, out);
+                    BytesUtil.writeVInt(range.fuzzyKeys.size(), out);
+                    for (GTRecord f : range.fuzzyKeys) {
+                        serializeGTRecord(f, out);
+                    }
+                }
+
+                ImmutableBitSet.serializer.serialize(columns, out);
+                BytesUtil.writeByteArray(GTUtil.serializeGTFilter(filterPushDown, info), out);
+                BytesUtil.writeByteArray(TupleFilterSerializer.serialize(havingFilterPushDown, StringCodeSystem.INSTANCE), out);
+                ImmutableBitSet.serializer.serialize(aggrGroupBy, out);
+                ImmutableBitSet.serializer.serialize(aggrMetrics, out);
+                BytesUtil.writeAsciiStringArray(aggrMetricsFuncs, out);
+                BytesUtil.writeVInt(allowStorageAggregation ? 1 : 0, out);
+                BytesUtil.writeVInt(storagePushDownLimit, out);
+            }
+        });
+        return Hashing.md5().hashBytes(byteBuffer.array(), 0, byteBuffer.position()).toString();
+    }
+
+    private static void serializeGTRecord(GTRecord gtRecord, ByteBuffer out) {
+        BytesUtil.writeVInt(gtRecord.cols.length, out);
+        for (ByteArray col : gtRecord.cols) {
+            col.exportData(out);
+        }
+    }
+
     private static final int SERIAL_0_BASE = 0;
     private static final int SERIAL_1_HAVING_FILTER = 1;
+    private static final int SERIAL_2_HASH_AGGREGATION = 2;
+    private static final int SERIAL_3_RESULT_CHUNK = 3;
+    private static final int SERIAL_4_RESULT_CODEC = 4;
+    private static final int SERIAL_5_INFO_DIGEST = 5;
+
+    /**
+     * Whether requests of the serialization level carry the result chunk size, i.e. whether the storage may frame its
+     * result into chunks.
+     */
+    public static boolean isResultChunkSerialized(int serialLevel) {
+        return serialLevel >= SERIAL_3_RESULT_CHUNK;
+    }
+
+    /**
+     * Whether requests of the serialization level carry the result codec. Below it the storage compresses its result
+     * by kylin.storage.hbase.endpoint-compress-result, as coprocessors before the codec do.
+     */
+    public static boolean isResultCodecSerialized(int serialLevel) {
+        return serialLevel >= SERIAL_4_RESULT_CODEC;
+    }
     
     public static final BytesSerializer<GTScanRequest> serializer = new BytesSerializer<GTScanRequest>() {
         @Override
         public void serialize(GTScanRequest value, ByteBuffer out) {
             final int serialLevel = KylinConfig.getInstanceFromEnv().getGTScanRequestSerializationLevel();
             
-            GTInfo.serializer.serialize(value.info, out);
+            if (serialLevel >= SERIAL_5_INFO_DIGEST) {
+                GTInfo.digestSerializer.serialize(value.info, out);
+            } else {
+                GTInfo.serializer.serialize(value.info, out);
+            }
 
             BytesUtil.writeVInt(value.ranges.size(), out);
             for (GTScanRange range : value.ranges) {
@@ -385,13 +489,23 @@ public class GTScanRequest {
             BytesUtil.writeVLong(value.startTime, out);
             BytesUtil.writeVLong(value.timeout, out);
             BytesUtil.writeUTFString(value.storageBehavior, out);
+
+            if (serialLevel >= SERIAL_2_HASH_AGGREGATION) {
+                BytesUtil.writeVInt(value.hashAggregation ? 1 : 0, out);
+            }
+            if (serialLevel >= SERIAL_3_RESULT_CHUNK) {
+                BytesUtil.writeVInt(value.resultChunkBytes, out);
+            }
+            if (serialLevel >= SERIAL_4_RESULT_CODEC) {
+                BytesUtil.writeAsciiString(value.resultCodec, out);
+            }
         }
 
         @Override
         public GTScanRequest deserialize(ByteBuffer in) {
             final int serialLevel = KylinConfig.getInstanceFromEnv().getGTScanRequestSerializationLevel();
             
-            GTInfo sInfo = GTInfo.serializer.deserialize(in);
+            GTInfo sInfo = serialLevel >= SERIAL_5_INFO_DIGEST ? GTInfo.digestSerializer.deserialize(in) : GTInfo.serializer.deserialize(in);
 
             List<GTScanRange> sRanges = Lists.newArrayList();
             int sRangesCount = BytesUtil.readVInt(in);
@@ -426,18 +540,27 @@ public class GTScanRequest {
             long timeout = BytesUtil.readVLong(in);
             String storageBehavior = BytesUtil.readUTFString(in);
 
-            return new GTScanRequestBuilder().setInfo(sInfo).setRanges(sRanges).setDimensions(sColumns).//
+            boolean hashAggregation = false;
+            if (serialLevel >= SERIAL_2_HASH_AGGREGATION) {
+                hashAggregation = (BytesUtil.readVInt(in) == 1);
+            }
+            int resultChunkBytes = 0;
+            if (serialLevel >= SERIAL_3_RESULT_CHUNK) {
+                resultChunkBytes = BytesUtil.readVInt(in);
+            }
+            String resultCodec = null;
+            if (serialLevel >= SERIAL_4_RESULT_CODEC) {
+                resultCodec = BytesUtil.readAsciiString(in);
+            }
+
+            GTScanRequest result = new GTScanRequestBuilder().setInfo(sInfo).setRanges(sRanges).setDimensions(sColumns).//
             setAggrGroupBy(sAggGroupBy).setAggrMetrics(sAggrMetrics).setAggrMetricsFuncs(sAggrMetricFuncs).//
             setFilterPushDown(sGTFilter).setHavingFilterPushDown(sGTHavingFilter).setAllowStorageAggregation(sAllowPreAggr).setAggCacheMemThreshold(sAggrCacheGB).//
-            setStorageScanRowNumThreshold(storageScanRowNumThreshold).setStoragePushDownLimit(storagePushDownLimit).//
+            setStorageScanRowNumThreshold(storageScanRowNumThreshold).setStoragePushDownLimit(storagePushDownLimit).setHashAggregation(hashAggregation).//
             setStartTime(startTime).setTimeout(timeout).setStorageBehavior(storageBehavior).createGTScanRequest();
-        }
-
-        private void serializeGTRecord(GTRecord gtRecord, ByteBuffer out) {
-            BytesUtil.writeVInt(gtRecord.cols.length, out);
-            for (ByteArray col : gtRecord.cols) {
-                col.exportData(out);
-            }
+            result.setResultChunkBytes(resultChunkBytes);
+            result.setResultCodec(resultCodec);
+            return result;
         }
 
         private GTRecord deserializeGTRecord(ByteBuffer in, GTInfo sInfo) {
@@ -38,6 +38,7 @@ public class GTScanRequestBuilder {
     private double aggCacheMemThreshold = 0;
     private int storageScanRowNumThreshold = Integer.MAX_VALUE;// storage should terminate itself when $storageScanRowNumThreshold cuboid rows are scanned, and throw exception.   
     private int storagePushDownLimit = Integer.MAX_VALUE;// storage can quit scanning safely when $toragePushDownLimit aggregated rows are produced. 
+    private boolean hashAggregation = false;// aggregate in an open-addressing hash table instead of a sorted tree map
     private long startTime = -1;
     private long timeout = -1;
     private String storageBehavior = null;
@@ -102,6 +103,11 @@ public class GTScanRequestBuilder {
         return this;
     }
 
+    public GTScanRequestBuilder setHashAggregation(boolean hashAggregation) {
+        this.hashAggregation = hashAggregation;
+        return this;
+    }
+
     public GTScanRequestBuilder setStartTime(long startTime) {
         this.startTime = startTime;
         return this;
@@ -137,6 +143,6 @@ public class GTScanRequestBuilder {
         this.startTime = startTime == -1 ? System.currentTimeMillis() : startTime;
         this.timeout = timeout == -1 ? 300000 : timeout;
 
-        return new GTScanRequest(info, ranges, dimensions, aggrGroupBy, aggrMetrics, aggrMetricsFuncs, filterPushDown, havingFilterPushDown, allowStorageAggregation, aggCacheMemThreshold, storageScanRowNumThreshold, storagePushDownLimit, storageBehavior, startTime, timeout);
+        return new GTScanRequest(info, ranges, dimensions, aggrGroupBy, aggrMetrics, aggrMetricsFuncs, filterPushDown, havingFilterPushDown, allowStorageAggregation, aggCacheMemThreshold, storageScanRowNumThreshold, storagePushDownLimit, hashAggregation, storageBehavior, startTime, timeout);
     }
 }
\ No newline at end of file
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.gridtable.benchmark;
+
+import java.io.IOException;
+
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTInfo.Builder;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTSampleCodeSystem;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.GTScanRequestBuilder;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.metadata.datatype.DataType;
+
+/**
+ * Benchmark of aggregating 10 million GTRecords, tree map based aggregation cache vs. hash table based one.
+ * 5 dimensions of type int4, and 2 measures of type long8. The last dimension is of high cardinality.
+ */
+public class GTAggregateScannerBenchmark {
+
+    final GTInfo info;
+    final SortedGTRecordGenerator gen;
+
+    final ImmutableBitSet dimensions = ImmutableBitSet.valueOf(0, 1, 2, 3, 4);
+    final ImmutableBitSet metrics = ImmutableBitSet.valueOf(5, 6);
+    final String[] aggrFuncs = new String[] { "SUM", "SUM" };
+
+    final long N = 10000000; // 10M
+    final long genTime;
+
+    public GTAggregateScannerBenchmark() {
+        Builder builder = GTInfo.builder();
+        builder.setCodeSystem(new GTSampleCodeSystem());
+        DataType tint = DataType.getType("int4");
+        DataType tlong = DataType.getType("long8");
+        builder.setColumns(tint, tint, tint, tint, tint, tlong, tlong);
+        builder.setPrimaryKey(ImmutableBitSet.valueOf(0, 1, 2, 3, 4));
+        info = builder.build();
+
+        gen = new SortedGTRecordGenerator(info);
+        gen.addDimension(10, 4, null);
+        gen.addDimension(10, 4, null);
+        gen.addDimension(10, 4, null);
+        gen.addDimension(10, 4, null);
+        gen.addDimension(100000, 4, null);
+        gen.addMeasure(8);
+        gen.addMeasure(8);
+
+        // warm up
+        long t = System.currentTimeMillis();
+        testGenerate();
+        genTime = System.currentTimeMillis() - t;
+    }
+
+    @SuppressWarnings("unused")
+    public void testGenerate() {
+        long count = 0;
+        for (GTRecord rec : gen.generate(N)) {
+            count++;
+        }
+    }
+
+    //@Test
+    public void testLowCardinality() throws IOException {
+        testAggregate(ImmutableBitSet.valueOf(0, 1), false);
+        testAggregate(ImmutableBitSet.valueOf(0, 1), true);
+    }
+
+    //@Test
+    public void testMediumCardinality() throws IOException {
+        testAggregate(ImmutableBitSet.valueOf(0, 1, 2, 3), false);
+        testAggregate(ImmutableBitSet.valueOf(0, 1, 2, 3), true);
+    }
+
+    //@Test
+    public void testHighCardinality() throws IOException {
+        testAggregate(ImmutableBitSet.valueOf(3, 4), false);
+        testAggregate(ImmutableBitSet.valueOf(3, 4), true);
+    }
+
+    //@Test
+    public void testHighCardinalityAll() throws IOException {
+        testAggregate(ImmutableBitSet.valueOf(0, 1, 2, 3, 4), false);
+        testAggregate(ImmutableBitSet.valueOf(0, 1, 2, 3, 4), true);
+    }
+
+    @SuppressWarnings("unused")
+    private void testAggregate(ImmutableBitSet groupBy, boolean hashAggregation) throws IOException {
+        long t = System.currentTimeMillis();
+        GTScanRequest req = new GTScanRequestBuilder().setInfo(info).setRanges(null).setDimensions(dimensions).setAggrGroupBy(groupBy).setAggrMetrics(metrics).setAggrMetricsFuncs(aggrFuncs).setFilterPushDown(null).setHashAggregation(hashAggregation).createGTScanRequest();
+        IGTScanner scanner = req.decorateScanner(gen.generate(N));
+
+        long count = 0;
+        for (GTRecord rec : scanner) {
+            count++;
+        }
+        scanner.close();
+
+        t = System.currentTimeMillis() - t;
+        System.out.println(N + " records aggregated to " + count + " by " + (hashAggregation ? "hash table" : "tree map") + ", " + calcSpeed(t) + "K rec/sec");
+    }
+
+    private int calcSpeed(long t) {
+        double sec = (double) (t - genTime) / 1000;
+        return (int) (N / sec / 1000);
+    }
+
+    public static void main(String[] args) throws IOException {
+        GTAggregateScannerBenchmark benchmark = new GTAggregateScannerBenchmark();
+
+        benchmark.testLowCardinality();
+        benchmark.testMediumCardinality();
+        benchmark.testHighCardinality();
+        benchmark.testHighCardinalityAll();
+    }
+}
@@ -19,9 +19,11 @@
 package org.apache.kylin.gridtable.benchmark;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.BytesSerializer;
 import org.apache.kylin.common.util.BytesUtil;
 import org.apache.kylin.common.util.ImmutableBitSet;
 import org.apache.kylin.gridtable.GTInfo;
@@ -167,6 +169,26 @@ public class GTScannerBenchmark {
         System.out.println(N + " records filtered to " + count + ", " + calcSpeed(t) + "K rec/sec");
     }
 
+    //@Test
+    public void testInfoSerialization() {
+        int rounds = 100000;
+        ByteBuffer buffer = ByteBuffer.allocate(BytesSerializer.SERIALIZE_BUFFER_SIZE);
+        long plainTime = testRoundTrip(GTInfo.serializer, buffer, rounds);
+        long digestTime = testRoundTrip(GTInfo.digestSerializer, buffer, rounds);
+        System.out.println(rounds + " GTInfo round trips of " + buffer.limit() + " bytes, " + plainTime + " ms plain, " + digestTime + " ms with digest");
+    }
+
+    private long testRoundTrip(BytesSerializer<GTInfo> serializer, ByteBuffer buffer, int rounds) {
+        long t = System.currentTimeMillis();
+        for (int i = 0; i < rounds; i++) {
+            buffer.clear();
+            serializer.serialize(info, buffer);
+            buffer.flip();
+            serializer.deserialize(buffer);
+        }
+        return System.currentTimeMillis() - t;
+    }
+
     private LogicalTupleFilter and(TupleFilter... filters) {
         return logical(FilterOperatorEnum.AND, filters);
     }
@@ -226,5 +248,7 @@ public class GTScannerBenchmark {
         benchmark.testAggregate2_();
         benchmark.testAggregate4();
         benchmark.testAggregate5();
+
+        benchmark.testInfoSerialization();
     }
 }
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.cube.cuboid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeDescManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.cube.model.RowKeyColDesc;
+import org.apache.kylin.metadata.MetadataManager;
+import org.apache.kylin.metadata.filter.ColumnTupleFilter;
+import org.apache.kylin.metadata.filter.CompareTupleFilter;
+import org.apache.kylin.metadata.filter.ConstantTupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
+import org.apache.kylin.metadata.model.FunctionDesc;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+public class CuboidCostModelTest extends LocalFileMetadataTestCase {
+
+    private CubeDesc cubeDesc;
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+        MetadataManager.clearCache();
+        cubeDesc = CubeDescManager.getInstance(getTestConfig()).getCubeDesc("test_kylin_cube_with_slr_desc");
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testSelectCheapestAncestor() {
+        long requested = findInvalidCuboid();
+        long byDefault = Cuboid.translateToValidCuboid(cubeDesc, requested);
+
+        // the widest ancestor, made the cheapest one
+        long cheapest = -1;
+        for (long id : cubeDesc.getAllCuboids()) {
+            if ((id & requested) == requested && id != byDefault && (cheapest < 0 || Long.bitCount(id) > Long.bitCount(cheapest)))
+                cheapest = id;
+        }
+        assertTrue(cheapest > 0);
+
+        CubeSegment seg = newSegment(cheapest);
+        CuboidCostModel model = new CuboidCostModel(cubeDesc, Collections.singletonList(seg), null);
+        assertEquals(cheapest, model.selectCuboid(requested));
+
+        Cuboid cuboid = Cuboid.identifyCuboid(cubeDesc, columnsOf(requested), Collections.<FunctionDesc> emptyList(), model);
+        assertEquals(cheapest, cuboid.getId());
+        assertEquals(requested, cuboid.getInputID());
+        assertEquals(byDefault, Cuboid.identifyCuboid(cubeDesc, columnsOf(requested), Collections.<FunctionDesc> emptyList(), null).getId());
+    }
+
+    @Test
+    public void testFilterSelectivity() {
+        RowKeyColDesc first = cubeDesc.getRowkey().getRowKeyColumns()[0];
+        long cuboidId = Cuboid.getBaseCuboidId(cubeDesc);
+
+        CubeSegment seg = newSegment(-1);
+        seg.getRowkeyStats().add(new Object[] { first.getColRef().getIdentity(), 100, 1 });
+
+        CompareTupleFilter filter = new CompareTupleFilter(FilterOperatorEnum.EQ);
+        filter.addChild(new ColumnTupleFilter(first.getColRef()));
+        filter.addChild(new ConstantTupleFilter("A"));
+
+        CuboidCostModel noFilter = new CuboidCostModel(cubeDesc, Collections.singletonList(seg), null);
+        CuboidCostModel withFilter = new CuboidCostModel(cubeDesc, Collections.singletonList(seg), filter);
+        long rows = noFilter.estimateScanRows(cuboidId);
+        assertEquals(seg.getCuboidRowCounts().get(cuboidId).longValue(), rows);
+        assertEquals(rows / 100, withFilter.estimateScanRows(cuboidId));
+        assertNotEquals(-1, withFilter.estimateCost(cuboidId, cuboidId));
+    }
+
+    @Test
+    public void testStoredRowsOverSegments() {
+        long base = Cuboid.getBaseCuboidId(cubeDesc);
+        long other = Cuboid.translateToValidCuboid(cubeDesc, findInvalidCuboid()); // not the base cuboid
+
+        CubeSegment seg1 = newSegment(-1);
+        CubeSegment seg2 = newSegment(-1);
+        seg2.getCuboidRowCounts().remove(base);
+
+        CuboidCostModel model = new CuboidCostModel(cubeDesc, Arrays.asList(seg1, seg2), null);
+        assertEquals(2 * seg1.getCuboidRowCounts().get(other), model.estimateStoredRows(other));
+        assertEquals(-1, model.estimateStoredRows(base));
+    }
+
+    private CubeSegment newSegment(long cheapest) {
+        Map<Long, Long> rowCounts = Maps.newHashMap();
+        for (long id : cubeDesc.getAllCuboids()) {
+            rowCounts.put(id, id == cheapest ? 1L : 10000L * Long.bitCount(id));
+        }
+        CubeSegment seg = new CubeSegment();
+        seg.setCuboidRowCounts(rowCounts);
+        return seg;
+    }
+
+    private long findInvalidCuboid() {
+        long full = Cuboid.getBaseCuboidId(cubeDesc);
+        for (long id = 1; id < full; id++) {
+            if (!Cuboid.isValid(cubeDesc, id) && Cuboid.translateToValidCuboid(cubeDesc, id) != full)
+                return id;
+        }
+        throw new IllegalStateException();
+    }
+
+    private Set<TblColRef> columnsOf(long cuboidId) {
+        Set<TblColRef> result = Sets.newHashSet();
+        for (RowKeyColDesc rowkey : cubeDesc.getRowkey().getRowKeyColumns()) {
+            if ((cuboidId & (1L << rowkey.getBitIndex())) != 0)
+                result.add(rowkey.getColRef());
+        }
+        return result;
+    }
+}
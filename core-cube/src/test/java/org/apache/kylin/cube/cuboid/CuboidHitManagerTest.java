@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.cube.cuboid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeDescManager;
+import org.apache.kylin.cube.cuboid.CuboidHitHistory.CuboidHit;
+import org.apache.kylin.cube.model.CubeDesc;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CuboidHitManagerTest extends LocalFileMetadataTestCase {
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+        System.setProperty("kylin.query.cuboid-hit-record-enabled", "true");
+        CuboidHitManager.clearCache();
+    }
+
+    @After
+    public void after() throws Exception {
+        System.clearProperty("kylin.query.cuboid-hit-record-enabled");
+        CuboidHitManager.clearCache();
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testRecordAndFlush() throws Exception {
+        CubeDesc cubeDesc = CubeDescManager.getInstance(getTestConfig()).getCubeDesc("test_kylin_cube_with_slr_desc");
+        Cuboid base = Cuboid.getBaseCuboid(cubeDesc);
+        CuboidHitManager manager = CuboidHitManager.getInstance(getTestConfig());
+
+        assertTrue(manager.getCuboidHitHistory("test_kylin_cube_with_slr_ready").getHits().isEmpty());
+
+        manager.record("test_kylin_cube_with_slr_ready", base, 10);
+        manager.record("test_kylin_cube_with_slr_ready", base, 20);
+        manager.flush();
+        manager.record("test_kylin_cube_with_slr_ready", base, 30);
+        manager.flush();
+
+        CuboidHitHistory history = manager.getCuboidHitHistory("test_kylin_cube_with_slr_ready");
+        assertEquals(1, history.getHits().size());
+        CuboidHit hit = history.getHits().get(base.getId());
+        assertEquals(base.getId(), hit.getServedBy());
+        assertEquals(3, hit.getHitCount());
+        assertEquals(0, hit.getPostAggregationCount());
+        assertEquals(60, hit.getReturnedRows());
+        assertEquals(20, hit.getAvgReturnedRows());
+
+        manager.removeCuboidHitHistory("test_kylin_cube_with_slr_ready");
+        assertTrue(manager.getCuboidHitHistory("test_kylin_cube_with_slr_ready").getHits().isEmpty());
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.gridtable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.gridtable.benchmark.SortedGTRecordGenerator;
+import org.apache.kylin.metadata.datatype.DataType;
+import org.apache.kylin.metadata.filter.ColumnTupleFilter;
+import org.apache.kylin.metadata.filter.CompareTupleFilter;
+import org.apache.kylin.metadata.filter.ConstantTupleFilter;
+import org.apache.kylin.metadata.filter.IFilterCodeSystem;
+import org.apache.kylin.metadata.filter.LogicalTupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.metadata.tuple.IEvaluatableTuple;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class GTFilterCompilerTest extends LocalFileMetadataTestCase {
+
+    private GTInfo info;
+    private List<GTRecord> data;
+    private IFilterCodeSystem<ByteArray> cs;
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+
+        GTInfo.Builder builder = GTInfo.builder();
+        builder.setCodeSystem(new GTSampleCodeSystem());
+        DataType tint = DataType.getType("int4");
+        DataType tlong = DataType.getType("long8");
+        builder.setColumns(tint, tint, tint, tlong);
+        builder.setPrimaryKey(ImmutableBitSet.valueOf(0, 1, 2));
+        info = builder.build();
+        cs = GTUtil.wrap(info.getCodeSystem().getComparator());
+
+        SortedGTRecordGenerator gen = new SortedGTRecordGenerator(info);
+        gen.addDimension(10, 4, null);
+        gen.addDimension(10, 4, null);
+        gen.addDimension(10, 4, null);
+        gen.addMeasure(8);
+
+        data = Lists.newArrayList();
+        for (GTRecord r : gen.generate(2000)) {
+            data.add(r.clone());
+        }
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testSameResultAsInterpreter() {
+        // (c0 > 3 AND c1 IN (1, 5)) OR NOT (c2 <= 6)
+        LogicalTupleFilter and = new LogicalTupleFilter(FilterOperatorEnum.AND);
+        and.addChild(compare(0, FilterOperatorEnum.GT, 3));
+        and.addChild(compare(1, FilterOperatorEnum.IN, 1, 5));
+        LogicalTupleFilter not = new LogicalTupleFilter(FilterOperatorEnum.NOT);
+        not.addChild(compare(2, FilterOperatorEnum.LTE, 6));
+        LogicalTupleFilter or = new LogicalTupleFilter(FilterOperatorEnum.OR);
+        or.addChild(and);
+        or.addChild(not);
+
+        verify(or);
+        verify(compare(0, FilterOperatorEnum.NEQ, 2));
+        verify(compare(1, FilterOperatorEnum.NOTIN, 0, 9));
+    }
+
+    @Test
+    public void testClassReused() {
+        GTFilterCompiler.CompiledFilter a = GTFilterCompiler.compile(compare(0, FilterOperatorEnum.EQ, 3), cs);
+        GTFilterCompiler.CompiledFilter b = GTFilterCompiler.compile(compare(0, FilterOperatorEnum.EQ, 7), cs);
+        assertNotNull(a);
+        assertNotNull(b);
+        assertSame(a.getClass(), b.getClass());
+    }
+
+    private void verify(TupleFilter filter) {
+        GTFilterCompiler.CompiledFilter compiled = GTFilterCompiler.compile(filter, cs);
+        assertNotNull(compiled);
+
+        final GTRecord[] current = new GTRecord[1];
+        IEvaluatableTuple tuple = new IEvaluatableTuple() {
+            @Override
+            public Object getValue(TblColRef col) {
+                return current[0].get(col.getColumnDesc().getZeroBasedIndex());
+            }
+        };
+
+        int matched = 0;
+        for (GTRecord r : data) {
+            current[0] = r;
+            boolean expected = filter.evaluate(tuple, cs);
+            assertEquals(expected, compiled.evaluate(r, tuple));
+            if (expected)
+                matched++;
+        }
+        assertTrue(matched > 0 && matched < data.size());
+    }
+
+    private CompareTupleFilter compare(int col, FilterOperatorEnum op, int... values) {
+        CompareTupleFilter filter = new CompareTupleFilter(op);
+        filter.addChild(new ColumnTupleFilter(info.colRef(col)));
+        for (int v : values) {
+            ByteArray bytes = new ByteArray(4);
+            BytesUtil.writeLong(v, bytes.array(), bytes.offset(), 4);
+            filter.addChild(new ConstantTupleFilter(bytes));
+        }
+        return filter;
+    }
+}
@@ -19,9 +19,12 @@
 package org.apache.kylin.gridtable;
 
 import java.nio.ByteBuffer;
+import java.util.List;
 
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.ByteArray;
 import org.apache.kylin.common.util.BytesSerializer;
+import org.apache.kylin.common.util.BytesUtil;
 import org.apache.kylin.common.util.ImmutableBitSet;
 import org.apache.kylin.common.util.LocalFileMetadataTestCase;
 import org.apache.kylin.cube.CubeInstance;
@@ -30,11 +33,17 @@ import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.cube.cuboid.Cuboid;
 import org.apache.kylin.cube.gridtable.CubeGridTable;
 import org.apache.kylin.cube.kv.CubeDimEncMap;
+import org.apache.kylin.metadata.filter.ColumnTupleFilter;
+import org.apache.kylin.metadata.filter.CompareTupleFilter;
+import org.apache.kylin.metadata.filter.ConstantTupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.collect.Lists;
+
 public class GTScanReqSerDerTest extends LocalFileMetadataTestCase {
 
     private ByteBuffer buffer = ByteBuffer.allocate(BytesSerializer.SERIALIZE_BUFFER_SIZE);
@@ -100,6 +109,100 @@ public class GTScanReqSerDerTest extends LocalFileMetadataTestCase {
         this.compareTwoGTInfo(info, sInfo);
     }
 
+    @Test
+    public void testGTInfoDigest() {
+        GTInfo info = baseCuboidInfo();
+        GTInfo.digestSerializer.serialize(info, buffer);
+        buffer.putInt(42);
+        buffer.flip();
+
+        GTInfo sInfo = GTInfo.digestSerializer.deserialize(buffer);
+        this.compareTwoGTInfo(info, sInfo);
+        Assert.assertEquals(42, buffer.getInt());
+
+        // the same GTInfo again is taken from cache
+        long hits = GTInfo.getDigestCacheStats().hitCount();
+        buffer.clear();
+        GTInfo.digestSerializer.serialize(info, buffer);
+        buffer.flip();
+        Assert.assertSame(sInfo, GTInfo.digestSerializer.deserialize(buffer));
+        Assert.assertEquals(hits + 1, GTInfo.getDigestCacheStats().hitCount());
+        Assert.assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void testGTScanRequestWithInfoDigest() {
+        KylinConfig.getInstanceFromEnv().setProperty("kylin.cube.gtscanrequest-serialization-level", "5");
+
+        GTInfo info = baseCuboidInfo();
+        ImmutableBitSet pk = info.getPrimaryKey();
+        GTRecord pkStart = new GTRecord(info);
+        GTRecord pkEnd = new GTRecord(info);
+        GTRecord fuzzyKey = new GTRecord(info);
+        pkStart.set(0, code(info, 0, 1));
+        pkEnd.set(0, code(info, 0, 5));
+        fuzzyKey.set(1, code(info, 1, 3));
+        List<GTScanRange> ranges = Lists.newArrayList(new GTScanRange(pkStart, pkEnd, Lists.newArrayList(fuzzyKey)));
+
+        CompareTupleFilter filter = new CompareTupleFilter(FilterOperatorEnum.EQ);
+        filter.addChild(new ColumnTupleFilter(info.colRef(0)));
+        filter.addChild(new ConstantTupleFilter(code(info, 0, 2)));
+
+        GTScanRequest req = new GTScanRequestBuilder().setInfo(info).setRanges(ranges).setDimensions(pk).setAggrGroupBy(pk).//
+                setAggrMetrics(ImmutableBitSet.valueOf(pk.trueBitCount())).setAggrMetricsFuncs(new String[] { "COUNT" }).setFilterPushDown(filter).//
+                setAllowStorageAggregation(true).setStoragePushDownLimit(100).setHashAggregation(true).setTimeout(1000).createGTScanRequest();
+        req.setResultChunkBytes(65536);
+        req.setResultCodec("LZ4");
+
+        GTScanRequest.serializer.serialize(req, buffer);
+        buffer.putInt(42);
+        buffer.flip();
+        GTScanRequest sReq = GTScanRequest.serializer.deserialize(buffer);
+        Assert.assertEquals(42, buffer.getInt());
+
+        compareTwoGTInfo(info, sReq.getInfo());
+        Assert.assertEquals(1, sReq.getGTScanRanges().size());
+        GTScanRange sRange = sReq.getGTScanRanges().get(0);
+        Assert.assertEquals(pkStart.get(0), sRange.pkStart.get(0));
+        Assert.assertEquals(pkEnd.get(0), sRange.pkEnd.get(0));
+        Assert.assertEquals(1, sRange.fuzzyKeys.size());
+        Assert.assertEquals(fuzzyKey.get(1), sRange.fuzzyKeys.get(0).get(1));
+        Assert.assertEquals(req.getColumns(), sReq.getColumns());
+        Assert.assertEquals(req.getFilterPushDown().toString(), sReq.getFilterPushDown().toString());
+        Assert.assertEquals(req.getAggrGroupBy(), sReq.getAggrGroupBy());
+        Assert.assertEquals(req.getAggrMetrics(), sReq.getAggrMetrics());
+        Assert.assertArrayEquals(req.getAggrMetricsFuncs(), sReq.getAggrMetricsFuncs());
+        Assert.assertTrue(sReq.isAllowStorageAggregation());
+        Assert.assertEquals(100, sReq.getStoragePushDownLimit());
+        Assert.assertTrue(sReq.isHashAggregation());
+        Assert.assertEquals(req.getStartTime(), sReq.getStartTime());
+        Assert.assertEquals(1000, sReq.getTimeout());
+        Assert.assertEquals(req.getStorageBehavior(), sReq.getStorageBehavior());
+        Assert.assertEquals(65536, sReq.getResultChunkBytes());
+        Assert.assertEquals("LZ4", sReq.getResultCodec());
+
+        // the next request of the cuboid takes the GTInfo from cache
+        buffer.clear();
+        GTScanRequest.serializer.serialize(req, buffer);
+        buffer.flip();
+        Assert.assertSame(sReq.getInfo(), GTScanRequest.serializer.deserialize(buffer).getInfo());
+        Assert.assertFalse(buffer.hasRemaining());
+    }
+
+    private ByteArray code(GTInfo info, int col, int value) {
+        int len = info.getCodeSystem().maxCodeLength(col);
+        ByteArray bytes = new ByteArray(len);
+        BytesUtil.writeLong(value, bytes.array(), bytes.offset(), len);
+        return bytes;
+    }
+
+    private GTInfo baseCuboidInfo() {
+        CubeInstance cube = CubeManager.getInstance(KylinConfig.getInstanceFromEnv()).getCube("test_kylin_cube_with_slr_ready");
+        CubeSegment segment = cube.getFirstSegment();
+        Cuboid baseCuboid = Cuboid.getBaseCuboid(cube.getDescriptor());
+        return CubeGridTable.newGTInfo(baseCuboid, new CubeDimEncMap(segment));
+    }
+
     private void compareTwoGTInfo(GTInfo info, GTInfo sInfo) {
         Assert.assertEquals(info.tableName, sInfo.tableName);
         Assert.assertEquals(info.primaryKey, sInfo.primaryKey);
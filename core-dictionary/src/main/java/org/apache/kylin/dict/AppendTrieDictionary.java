@@ -19,14 +19,17 @@ package org.apache.kylin.dict;
 
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.hadoop.fs.Path;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.util.Dictionary;
 import org.apache.kylin.dict.global.AppendDictSlice;
 import org.apache.kylin.dict.global.AppendDictSliceKey;
+import org.apache.kylin.dict.global.AppendDictSliceLocalCache;
 import org.apache.kylin.dict.global.GlobalDictHDFSStore;
 import org.apache.kylin.dict.global.GlobalDictMetadata;
 import org.apache.kylin.dict.global.GlobalDictStore;
@@ -34,11 +37,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.io.DataInput;
 import java.io.DataOutput;
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 import static com.google.common.base.Preconditions.checkState;
 
 /**
@@ -52,6 +62,10 @@ import static com.google.common.base.Preconditions.checkState;
  * roughly 10 times slower, so there's a cache layer overlays on top of Trie and
  * gracefully fall back to Trie using a weak reference.
  * <p>
+ * Slices are loaded lazily and kept in memory as soft references. A loaded slice is also kept on local disk
+ * (see {@link AppendDictSliceLocalCache}), and the slices following it are loaded in background, since values
+ * are often looked up roughly in order.
+ * <p>
  * The implementation is NOT thread-safe for now.
  * <p>
  * TODO making it thread-safe
@@ -64,9 +78,17 @@ public class AppendTrieDictionary<T> extends CacheDictionary<T> {
     public static final int HEAD_SIZE_I = HEAD_MAGIC.length;
     private static final Logger logger = LoggerFactory.getLogger(AppendTrieDictionary.class);
 
+    private static final ExecutorService prefetchExecutor = Executors.newFixedThreadPool(2, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("global-dict-prefetch-%d").build());
+
     transient private String baseDir;
     transient private GlobalDictMetadata metadata;
     transient private LoadingCache<AppendDictSliceKey, AppendDictSlice> dictCache;
+    transient private AppendDictSliceLocalCache localCache; // null if disabled
+    transient private int prefetchSlices;
+    transient private Set<AppendDictSliceKey> prefetching;
+    transient private AtomicLong localLoadCount;
+    transient private AtomicLong remoteLoadCount;
+    transient private AtomicLong loadMillis;
 
     public void init(String baseDir) throws IOException {
         this.baseDir = baseDir;
@@ -77,7 +99,23 @@ public class AppendTrieDictionary<T> extends CacheDictionary<T> {
         final Path latestVersionPath = globalDictStore.getVersionDir(latestVersion);
         this.metadata = globalDictStore.getMetadata(latestVersion);
         this.bytesConvert = metadata.bytesConverter;
-        this.dictCache = CacheBuilder.newBuilder().softValues().removalListener(new RemovalListener<AppendDictSliceKey, AppendDictSlice>() {
+
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        this.localCache = null;
+        if (config.isAppendDictLocalCacheEnabled()) {
+            try {
+                this.localCache = new AppendDictSliceLocalCache(new File(config.getAppendDictLocalCacheDir()), baseDir, latestVersionPath.toString());
+            } catch (IllegalStateException e) {
+                logger.warn("Local cache of global dict disabled", e);
+            }
+        }
+        this.prefetchSlices = config.getAppendDictPrefetchSlices();
+        this.prefetching = Collections.newSetFromMap(new ConcurrentHashMap<AppendDictSliceKey, Boolean>());
+        this.localLoadCount = new AtomicLong();
+        this.remoteLoadCount = new AtomicLong();
+        this.loadMillis = new AtomicLong();
+
+        this.dictCache = CacheBuilder.newBuilder().softValues().recordStats().removalListener(new RemovalListener<AppendDictSliceKey, AppendDictSlice>() {
             @Override
             public void onRemoval(RemovalNotification<AppendDictSliceKey, AppendDictSlice> notification) {
                 logger.info("Evict slice with key {} and value {} caused by {}, size {}/{}", notification.getKey(), notification.getValue(), notification.getCause(), dictCache.size(), metadata.sliceFileMap.size());
@@ -85,29 +123,115 @@ public class AppendTrieDictionary<T> extends CacheDictionary<T> {
         }).build(new CacheLoader<AppendDictSliceKey, AppendDictSlice>() {
             @Override
             public AppendDictSlice load(AppendDictSliceKey key) throws Exception {
-                AppendDictSlice slice = globalDictStore.readSlice(latestVersionPath.toString(), metadata.sliceFileMap.get(key));
-                logger.info("Load slice with key {} and value {}", key, slice);
+                AppendDictSlice slice = loadSlice(globalDictStore, latestVersionPath, key);
+                prefetch(globalDictStore, latestVersionPath, key);
                 return slice;
             }
         });
     }
 
-    @Override
-    public int getIdFromValueBytesWithoutCache(byte[] value, int offset, int len, int roundingFlag) {
-        byte[] val = Arrays.copyOfRange(value, offset, offset + len);
-        AppendDictSliceKey sliceKey = metadata.sliceFileMap.floorKey(AppendDictSliceKey.wrap(val));
-        if (sliceKey == null) {
-            sliceKey = metadata.sliceFileMap.firstKey();
+    private AppendDictSlice loadSlice(GlobalDictStore globalDictStore, Path versionPath, AppendDictSliceKey key) throws IOException {
+        long start = System.currentTimeMillis();
+        String sliceFileName = metadata.sliceFileMap.get(key);
+        AppendDictSlice slice = null;
+        if (localCache != null) {
+            try {
+                slice = localCache.read(sliceFileName);
+            } catch (IOException e) {
+                logger.warn("Failed to read slice " + sliceFileName + " from local cache " + localCache.getDir(), e);
+            }
+        }
+
+        if (slice != null) {
+            localLoadCount.incrementAndGet();
+        } else {
+            slice = globalDictStore.readSlice(versionPath.toString(), sliceFileName);
+            remoteLoadCount.incrementAndGet();
+            if (localCache != null) {
+                try {
+                    localCache.write(sliceFileName, slice);
+                } catch (IOException e) {
+                    logger.warn("Failed to write slice " + sliceFileName + " to local cache " + localCache.getDir(), e);
+                }
+            }
+        }
+
+        long time = System.currentTimeMillis() - start;
+        loadMillis.addAndGet(time);
+        logger.info("Load slice with key {} and value {} in {} ms", key, slice, time);
+        return slice;
+    }
+
+    // loads the following slices in background, they are put to cache directly so as not to prefetch further
+    private void prefetch(final GlobalDictStore globalDictStore, final Path versionPath, AppendDictSliceKey key) {
+        AppendDictSliceKey next = key;
+        for (int i = 0; i < prefetchSlices; i++) {
+            next = metadata.sliceFileMap.higherKey(next);
+            if (next == null)
+                break;
+            final AppendDictSliceKey nextKey = next;
+            if (dictCache.getIfPresent(nextKey) != null || !prefetching.add(nextKey))
+                continue;
+
+            prefetchExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (dictCache.getIfPresent(nextKey) == null)
+                            dictCache.put(nextKey, loadSlice(globalDictStore, versionPath, nextKey));
+                    } catch (Exception e) {
+                        logger.warn("Failed to prefetch slice with key " + nextKey, e);
+                    } finally {
+                        prefetching.remove(nextKey);
+                    }
+                }
+            });
         }
-        AppendDictSlice slice;
+    }
+
+    private AppendDictSlice getSlice(AppendDictSliceKey sliceKey) {
         try {
-            slice = dictCache.get(sliceKey);
+            return dictCache.get(sliceKey);
         } catch (ExecutionException e) {
             throw new RuntimeException("Failed to load slice with key " + sliceKey, e.getCause());
         }
+    }
+
+    private AppendDictSliceKey getSliceKey(AppendDictSliceKey valueKey) {
+        AppendDictSliceKey sliceKey = metadata.sliceFileMap.floorKey(valueKey);
+        if (sliceKey == null) {
+            sliceKey = metadata.sliceFileMap.firstKey();
+        }
+        return sliceKey;
+    }
+
+    @Override
+    public int getIdFromValueBytesWithoutCache(byte[] value, int offset, int len, int roundingFlag) {
+        byte[] val = Arrays.copyOfRange(value, offset, offset + len);
+        AppendDictSlice slice = getSlice(getSliceKey(AppendDictSliceKey.wrap(val)));
         return slice.getIdFromValueBytesImpl(value, offset, len, roundingFlag);
     }
 
+    /**
+     * Stats of the in-memory slice cache, a miss is a slice loaded from local disk or HDFS.
+     */
+    public CacheStats getSliceCacheStats() {
+        return dictCache.stats();
+    }
+
+    public long getSliceLocalLoadCount() {
+        return localLoadCount.get();
+    }
+
+    public long getSliceRemoteLoadCount() {
+        return remoteLoadCount.get();
+    }
+
+    // total time to load slices, including the prefetched ones
+    public long getSliceLoadMillis() {
+        return loadMillis.get();
+    }
+
     @Override
     public int getMinId() {
         return metadata.baseId;
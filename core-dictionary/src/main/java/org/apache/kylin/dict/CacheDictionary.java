@@ -18,21 +18,33 @@
 
 package org.apache.kylin.dict;
 
-import org.apache.kylin.common.util.Dictionary;
-
 import java.lang.ref.SoftReference;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.kylin.common.util.Dictionary;
 
 /**
+ * Caches the lookups of a dictionary in the {@link DictionaryValueCache} shared by all dictionaries. Where the shared
+ * cache is disabled, e.g. in build tasks by default, each dictionary caches its own lookups in soft referenced maps,
+ * which are dropped when memory runs short.
  */
 public abstract class CacheDictionary<T> extends Dictionary<T> {
     private static final long serialVersionUID = 1L;
 
+    private transient DictionaryValueCache cache; // null when the shared cache is disabled
+
     private transient SoftReference<ConcurrentHashMap> valueToIdCache;
 
     private transient SoftReference<Object[]> idToValueCache;
 
+    private transient int cacheDictId;
+
+    private transient AtomicLong cacheHits = new AtomicLong();
+
+    private transient AtomicLong cacheMisses = new AtomicLong();
+
     protected transient int baseId;
 
     protected BytesConverter<T> bytesConvert;
@@ -44,16 +56,32 @@ public abstract class CacheDictionary<T> extends Dictionary<T> {
     //value --> id
     @Override
     protected final int getIdFromValueImpl(T value, int roundingFlag) {
+        DictionaryValueCache cache = this.cache;
+        if (cache != null && roundingFlag == 0) {
+            DictionaryValueCache.Key key = new DictionaryValueCache.Key(cacheDictId, true, value);
+            Integer id = (Integer) cache.get(key);
+            if (id != null) {
+                cacheHits.incrementAndGet();
+                return id.intValue();
+            }
+            cacheMisses.incrementAndGet();
+            byte[] valueBytes = bytesConvert.convertToBytes(value);
+            id = getIdFromValueBytesWithoutCache(valueBytes, 0, valueBytes.length, roundingFlag);
+            cache.admit(key, id);
+            return id;
+        }
         if (this.valueToIdCache != null && roundingFlag == 0) {
-            Map cache = valueToIdCache.get(); // SoftReference to skip cache gracefully when short of memory
-            if (cache != null) {
-                Integer id;
-                id = (Integer) cache.get(value);
-                if (id != null)
+            Map localCache = valueToIdCache.get(); // SoftReference to skip cache gracefully when short of memory
+            if (localCache != null) {
+                Integer id = (Integer) localCache.get(value);
+                if (id != null) {
+                    cacheHits.incrementAndGet();
                     return id.intValue();
+                }
+                cacheMisses.incrementAndGet();
                 byte[] valueBytes = bytesConvert.convertToBytes(value);
                 id = getIdFromValueBytesWithoutCache(valueBytes, 0, valueBytes.length, roundingFlag);
-                cache.put(value, id);
+                localCache.put(value, id);
                 return id;
             }
         }
@@ -64,15 +92,34 @@ public abstract class CacheDictionary<T> extends Dictionary<T> {
     //id --> value
     @Override
     protected final T getValueFromIdImpl(int id) {
+        DictionaryValueCache cache = this.cache;
+        if (cache != null) {
+            calcSeqNoFromId(id); // check id before looking up cache
+            DictionaryValueCache.Key key = new DictionaryValueCache.Key(cacheDictId, false, id);
+            T value = (T) cache.get(key);
+            if (value != null) {
+                cacheHits.incrementAndGet();
+                return value;
+            }
+            cacheMisses.incrementAndGet();
+            byte[] valueBytes = getValueBytesFromIdWithoutCache(id);
+            value = bytesConvert.convertFromBytes(valueBytes, 0, valueBytes.length);
+            if (value != null)
+                cache.admit(key, value);
+            return value;
+        }
         if (this.idToValueCache != null) {
-            Object[] cache = idToValueCache.get();
-            if (cache != null) {
+            Object[] localCache = idToValueCache.get();
+            if (localCache != null) {
                 int seq = calcSeqNoFromId(id);
-                if (cache[seq] != null)
-                    return (T) cache[seq];
+                if (localCache[seq] != null) {
+                    cacheHits.incrementAndGet();
+                    return (T) localCache[seq];
+                }
+                cacheMisses.incrementAndGet();
                 byte[] valueBytes = getValueBytesFromIdWithoutCache(id);
                 T value = bytesConvert.convertFromBytes(valueBytes, 0, valueBytes.length);
-                cache[seq] = value;
+                localCache[seq] = value;
                 return value;
             }
         }
@@ -89,17 +136,41 @@ public abstract class CacheDictionary<T> extends Dictionary<T> {
     }
 
     public final void enableCache() {
-        if (this.valueToIdCache == null)
+        if (this.cache == null && this.valueToIdCache == null) {
+            enableCache(DictionaryValueCache.getInstance());
+        }
+    }
+
+    final void enableCache(DictionaryValueCache cache) {
+        disableCache();
+        this.cacheHits = new AtomicLong();
+        this.cacheMisses = new AtomicLong();
+        if (cache.isEnabled()) {
+            this.cacheDictId = cache.newDictionaryId();
+            this.cache = cache;
+        } else {
             this.valueToIdCache = new SoftReference<>(new ConcurrentHashMap());
-        if (this.idToValueCache == null)
             this.idToValueCache = new SoftReference<>(new Object[getSize()]);
+        }
     }
 
+    /**
+     * Entries already in the shared cache are left to be evicted.
+     */
     public final void disableCache() {
+        this.cache = null;
         this.valueToIdCache = null;
         this.idToValueCache = null;
     }
 
+    public long getCacheHitCount() {
+        return cacheHits == null ? 0 : cacheHits.get();
+    }
+
+    public long getCacheMissCount() {
+        return cacheMisses == null ? 0 : cacheMisses.get();
+    }
+
     abstract protected byte[] getValueBytesFromIdWithoutCache(int id);
 
     abstract protected int getIdFromValueBytesWithoutCache(byte[] valueBytes, int offset, int length, int roundingFlag);
@@ -48,6 +48,7 @@ public class DictionaryInfo extends RootPersistentEntity {
     private int cardinality;
 
     transient Dictionary<String> dictionaryObject;
+    transient long byteSize; // serialized size when loaded, for cache eviction
 
     public DictionaryInfo() {
     }
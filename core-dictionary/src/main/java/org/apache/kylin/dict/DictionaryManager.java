@@ -20,7 +20,9 @@ package org.apache.kylin.dict;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.util.List;
 import java.util.NavigableSet;
@@ -29,8 +31,10 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.persistence.RawResource;
 import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.common.util.ClassUtil;
 import org.apache.kylin.common.util.Dictionary;
@@ -51,7 +55,9 @@ import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
 import com.google.common.collect.Lists;
+import com.google.common.io.CountingInputStream;
 
 public class DictionaryManager {
 
@@ -87,22 +93,37 @@ public class DictionaryManager {
 
     private KylinConfig config;
     private LoadingCache<String, DictionaryInfo> dictCache; // resource
+    private MappedDictionaryCache mappedCache; // null if mmap is not enabled
 
     private DictionaryManager(KylinConfig config) {
         this.config = config;
-        this.dictCache = CacheBuilder.newBuilder()//
-                .softValues()//
+        if (config.isDictMmapEnabled()) {
+            this.mappedCache = new MappedDictionaryCache(new File(config.getDictMmapCacheDir()));
+        }
+
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().softValues();
+        if (config.getCachedDictMaxMB() > 0) {
+            builder.maximumWeight(config.getCachedDictMaxMB() * 1024).weigher(new Weigher<String, DictionaryInfo>() {
+                @Override
+                public int weigh(String key, DictionaryInfo value) {
+                    return (int) Math.min(Integer.MAX_VALUE, value.byteSize / 1024 + 1); // in KB
+                }
+            });
+        } else {
+            builder.maximumSize(config.getCachedDictMaxEntrySize());
+        }
+
+        this.dictCache = builder//
                 .removalListener(new RemovalListener<String, DictionaryInfo>() {
                     @Override
                     public void onRemoval(RemovalNotification<String, DictionaryInfo> notification) {
                         DictionaryManager.logger.info("Dict with resource path " + notification.getKey() + " is removed due to " + notification.getCause());
                     }
                 })//
-                .maximumSize(config.getCachedDictMaxEntrySize())//
                 .expireAfterWrite(1, TimeUnit.DAYS).build(new CacheLoader<String, DictionaryInfo>() {
                     @Override
                     public DictionaryInfo load(String key) throws Exception {
-                        DictionaryInfo dictInfo = DictionaryManager.this.load(key, true);
+                        DictionaryInfo dictInfo = DictionaryManager.this.loadForCache(key);
                         if (dictInfo == null) {
                             return NONE_INDICATOR;
                         } else {
@@ -441,6 +462,27 @@ public class DictionaryManager {
         inputStream.close();
     }
 
+    private DictionaryInfo loadForCache(String resourcePath) throws IOException {
+        ResourceStore store = MetadataManager.getInstance(config).getStore();
+        if (mappedCache != null)
+            return mappedCache.load(store, resourcePath);
+
+        logger.info("DictionaryManager(" + System.identityHashCode(this) + ") loading DictionaryInfo(loadDictObj:true) at " + resourcePath);
+        RawResource res = store.getResource(resourcePath);
+        if (res == null)
+            return null;
+
+        CountingInputStream in = new CountingInputStream(res.inputStream);
+        try {
+            DictionaryInfo info = DictionaryInfoSerializer.FULL_SERIALIZER.deserialize(new DataInputStream(in));
+            info.setLastModified(res.timestamp);
+            info.byteSize = in.getCount();
+            return info;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
     DictionaryInfo load(String resourcePath, boolean loadDictObj) throws IOException {
         ResourceStore store = MetadataManager.getInstance(config).getStore();
 
@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.dict;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.kylin.common.KylinConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+
+/**
+ * One cache of value --> id and id --> value lookups shared by all {@link CacheDictionary}, bounded by the estimated
+ * bytes of its entries, see "kylin.dictionary.value-cache-mb". It is on by default in query servers only, where it is
+ * disabled each dictionary keeps its own soft referenced cache.
+ *
+ * A lookup is only admitted into the cache once it is seen again recently, counted by a {@link FrequencySketch}.
+ * This is the admission idea of TinyLFU, it keeps one-off lookups, e.g. from a large scan, from evicting the
+ * frequently used entries.
+ */
+public class DictionaryValueCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DictionaryValueCache.class);
+
+    private static final int ENTRY_OVERHEAD = 96; // the key object and the cache entry
+    private static final int AVG_ENTRY_BYTES = 128;
+    private static final int MAX_SKETCH_WIDTH = 1 << 20;
+
+    private static volatile DictionaryValueCache instance;
+    private static volatile boolean queryServer;
+
+    /**
+     * Called by a query server when it starts, before dictionaries are loaded, so the cache is on by default there.
+     * Other processes, e.g. MR and Spark build tasks, only have the cache when it is configured, and otherwise use the
+     * per-dictionary cache of {@link CacheDictionary}.
+     */
+    public static void setQueryServer() {
+        queryServer = true;
+    }
+
+    public static DictionaryValueCache getInstance() {
+        if (instance == null) {
+            synchronized (DictionaryValueCache.class) {
+                if (instance == null) {
+                    instance = new DictionaryValueCache(getCacheMB() * 1024 * 1024);
+                }
+            }
+        }
+        return instance;
+    }
+
+    private static long getCacheMB() {
+        try {
+            return KylinConfig.getInstanceFromEnv().getDictValueCacheMB(queryServer);
+        } catch (IllegalStateException e) {
+            // dictionaries are also used where no KylinConfig is around, e.g. tools and tests
+            logger.warn("No KylinConfig found, the dictionary value cache is disabled", e);
+            return 0;
+        }
+    }
+
+    // ============================================================================
+
+    private final AtomicInteger dictIdSeq = new AtomicInteger();
+    private final Cache<Key, Object> cache;
+    private final FrequencySketch sketch;
+
+    DictionaryValueCache(long maxBytes) {
+        if (maxBytes > 0) {
+            this.cache = CacheBuilder.newBuilder() //
+                    .maximumWeight(maxBytes) //
+                    .weigher(new Weigher<Key, Object>() {
+                        @Override
+                        public int weigh(Key key, Object value) {
+                            return ENTRY_OVERHEAD + estimateBytes(key.valueOrId) + estimateBytes(value);
+                        }
+                    }) //
+                    .concurrencyLevel(Runtime.getRuntime().availableProcessors()) //
+                    .recordStats() //
+                    .build();
+            long entries = maxBytes / AVG_ENTRY_BYTES;
+            this.sketch = new FrequencySketch((int) Math.min(entries, MAX_SKETCH_WIDTH));
+        } else {
+            this.cache = null;
+            this.sketch = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * Gives out an id that identifies the entries of one dictionary in the cache.
+     */
+    int newDictionaryId() {
+        return dictIdSeq.incrementAndGet();
+    }
+
+    Object get(Key key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Puts the entry in cache if the key was looked up before recently, a missed lookup should call this.
+     */
+    void admit(Key key, Object value) {
+        if (sketch.incrementAndEstimate(key.hashCode()) > 1) {
+            cache.put(key, value);
+        }
+    }
+
+    public long size() {
+        return cache == null ? 0 : cache.size();
+    }
+
+    public CacheStats stats() {
+        return cache == null ? new CacheStats(0, 0, 0, 0, 0, 0) : cache.stats();
+    }
+
+    public void clear() {
+        if (cache != null)
+            cache.invalidateAll();
+    }
+
+    private static int estimateBytes(Object o) {
+        if (o instanceof String)
+            return 40 + 2 * ((String) o).length();
+        if (o instanceof byte[])
+            return 16 + ((byte[]) o).length;
+        if (o instanceof Number)
+            return 16;
+        return 64;
+    }
+
+    static final class Key {
+        final int dictId;
+        final boolean valueToId;
+        final Object valueOrId;
+        final int hashCode;
+
+        Key(int dictId, boolean valueToId, Object valueOrId) {
+            this.dictId = dictId;
+            this.valueToId = valueToId;
+            this.valueOrId = valueOrId;
+            this.hashCode = 31 * (31 * dictId + (valueToId ? 1 : 0)) + valueOrId.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return dictId == other.dictId && valueToId == other.valueToId && valueOrId.equals(other.valueOrId);
+        }
+    }
+
+    /**
+     * A count-min sketch estimating how often a hash was seen recently. Counters saturate at 15 and are all halved
+     * after every 10 * width increments, so old popularity fades out. Updates are not atomic, losing some under
+     * contention only makes the estimate a little lower.
+     */
+    static final class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = { 0x97cb3127, 0xb1a6d5e1, 0x8cb92ba7, 0xc2b2ae35 };
+
+        private final byte[][] table;
+        private final int mask;
+        private final int resetPeriod;
+        private final AtomicLong additions = new AtomicLong();
+
+        FrequencySketch(int expectedEntries) {
+            int width = Integer.highestOneBit(Math.max(expectedEntries, 16) - 1) << 1;
+            this.table = new byte[DEPTH][width];
+            this.mask = width - 1;
+            this.resetPeriod = 10 * width;
+        }
+
+        int incrementAndEstimate(int hash) {
+            int min = MAX_COUNT;
+            for (int i = 0; i < DEPTH; i++) {
+                byte[] row = table[i];
+                int index = indexOf(hash, i);
+                int count = row[index];
+                if (count < MAX_COUNT)
+                    row[index] = (byte) ++count;
+                min = Math.min(min, count);
+            }
+            if (additions.incrementAndGet() % resetPeriod == 0) {
+                reset();
+            }
+            return min;
+        }
+
+        int estimate(int hash) {
+            int min = MAX_COUNT;
+            for (int i = 0; i < DEPTH; i++) {
+                min = Math.min(min, table[i][indexOf(hash, i)]);
+            }
+            return min;
+        }
+
+        private int indexOf(int hash, int i) {
+            int h = hash * SEEDS[i];
+            h ^= h >>> 16;
+            return h & mask;
+        }
+
+        private void reset() {
+            for (byte[] row : table) {
+                for (int j = 0; j < row.length; j++) {
+                    row[j] = (byte) (row[j] >> 1);
+                }
+            }
+        }
+    }
+}
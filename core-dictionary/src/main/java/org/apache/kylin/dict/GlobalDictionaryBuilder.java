@@ -19,6 +19,8 @@
 package org.apache.kylin.dict;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.lock.DistributedLock;
@@ -39,6 +41,9 @@ public class GlobalDictionaryBuilder implements IDictionaryBuilder {
     private DistributedLock lock;
     private String sourceColumn;
     private int counter;
+    private int buildThreads;
+    private int batchSize;
+    private List<String> batch; // null if values are added one by one
 
     private static Logger logger = LoggerFactory.getLogger(GlobalDictionaryBuilder.class);
 
@@ -52,9 +57,15 @@ public class GlobalDictionaryBuilder implements IDictionaryBuilder {
         lock = KylinConfig.getInstanceFromEnv().getDistributedLockFactory().lockForCurrentThread();
         lock.lock(getLockPath(sourceColumn), Long.MAX_VALUE);
 
-        int maxEntriesPerSlice = KylinConfig.getInstanceFromEnv().getAppendDictEntrySize();
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        int maxEntriesPerSlice = config.getAppendDictEntrySize();
         this.builder = new AppendTrieDictionaryBuilder(dictInfo.getResourceDir(), maxEntriesPerSlice);
         this.baseId = baseId;
+        this.buildThreads = config.getGlobalDictBuildThreads();
+        if (buildThreads > 1) {
+            this.batchSize = config.getGlobalDictBuildBatchSize();
+            this.batch = new ArrayList<>(batchSize);
+        }
     }
 
     @Override
@@ -72,7 +83,13 @@ public class GlobalDictionaryBuilder implements IDictionaryBuilder {
         }
 
         try {
-            builder.addValue(value);
+            if (batch != null) {
+                batch.add(value);
+                if (batch.size() >= batchSize)
+                    addBatch();
+            } else {
+                builder.addValue(value);
+            }
         } catch (Throwable e) {
             lock.unlock(getLockPath(sourceColumn));
             throw new RuntimeException(String.format("Failed to create global dictionary on %s ", sourceColumn), e);
@@ -85,6 +102,8 @@ public class GlobalDictionaryBuilder implements IDictionaryBuilder {
     public Dictionary<String> build() throws IOException {
         try {
             if (lock.lock(getLockPath(sourceColumn))) {
+                if (batch != null && !batch.isEmpty())
+                    addBatch();
                 return builder.build(baseId);
             }
         } finally {
@@ -93,6 +112,11 @@ public class GlobalDictionaryBuilder implements IDictionaryBuilder {
         return new AppendTrieDictionary<>();
     }
 
+    private void addBatch() throws IOException {
+        builder.addValues(batch, buildThreads);
+        batch.clear();
+    }
+
     private String getLockPath(String pathName) {
         return "/dict/" + pathName + "/lock";
     }
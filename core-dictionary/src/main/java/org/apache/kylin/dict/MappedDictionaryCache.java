@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.dict;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.kylin.common.persistence.RawResource;
+import org.apache.kylin.common.persistence.ResourceStore;
+import org.apache.kylin.common.util.ByteBufferDataInput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps local disk copies of dictionaries, and loads them from memory mapped files. Trie based dictionaries are
+ * queried in place of the mapped bytes (see {@link TrieDictionary#readFields}), so only a few fields stay on heap and
+ * the bulk lives in OS page cache. A mapping is released when its dictionary is garbage collected.
+ */
+public class MappedDictionaryCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedDictionaryCache.class);
+
+    private static final char VERSION_SEPARATOR = '@';
+
+    private final File dir;
+
+    public MappedDictionaryCache(File dir) {
+        this.dir = dir;
+        if (!dir.exists() && !dir.mkdirs() && !dir.exists())
+            throw new IllegalStateException("Cannot create dictionary cache dir " + dir);
+    }
+
+    /**
+     * Returns null if the dictionary does not exist.
+     */
+    public DictionaryInfo load(ResourceStore store, String resourcePath) throws IOException {
+        long ts = store.getResourceTimestamp(resourcePath);
+        if (ts == 0)
+            return null;
+
+        File file = localFile(resourcePath, ts);
+        if (!file.exists()) {
+            file = download(store, resourcePath);
+            if (file == null)
+                return null;
+        }
+
+        MappedByteBuffer buffer;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        }
+
+        logger.info("Loading DictionaryInfo from mapped file " + file + ", size " + buffer.capacity());
+        DictionaryInfo info = DictionaryInfoSerializer.FULL_SERIALIZER.deserialize(new ByteBufferDataInput(buffer));
+        info.setLastModified(ts);
+        info.byteSize = buffer.capacity();
+        return info;
+    }
+
+    private File download(ResourceStore store, String resourcePath) throws IOException {
+        RawResource res = store.getResource(resourcePath);
+        if (res == null)
+            return null;
+
+        File file = localFile(resourcePath, res.timestamp);
+        File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(tmp);
+            IOUtils.copyLarge(res.inputStream, out);
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        } finally {
+            IOUtils.closeQuietly(out);
+            IOUtils.closeQuietly(res.inputStream);
+        }
+
+        // files of other versions are not needed any more, deleting a file that is still mapped is fine
+        String prefix = versionPrefix(resourcePath);
+        File[] others = dir.listFiles();
+        if (others != null) {
+            for (File other : others) {
+                if (other.getName().startsWith(prefix) && !other.getName().equals(file.getName()) && !other.getName().endsWith(".tmp"))
+                    other.delete();
+            }
+        }
+
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            if (!file.exists())
+                throw new IOException("Failed to move " + tmp + " to " + file);
+        }
+        logger.info("Copied dictionary " + resourcePath + " to " + file);
+        return file;
+    }
+
+    File localFile(String resourcePath, long ts) {
+        return new File(dir, versionPrefix(resourcePath) + ts);
+    }
+
+    private String versionPrefix(String resourcePath) {
+        StringBuilder buf = new StringBuilder(resourcePath.length() + 1);
+        for (char c : resourcePath.toCharArray()) {
+            buf.append(Character.isLetterOrDigit(c) || c == '.' || c == '-' ? c : '_');
+        }
+        return buf.append(VERSION_SEPARATOR).toString();
+    }
+}
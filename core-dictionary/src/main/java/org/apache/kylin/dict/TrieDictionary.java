@@ -27,9 +27,9 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.PrintStream;
-import java.util.Arrays;
-
+import java.nio.ByteBuffer;
 
+import org.apache.kylin.common.util.ByteBufferDataInput;
 import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.BytesUtil;
 import org.apache.kylin.common.util.ClassUtil;
@@ -48,6 +48,9 @@ import com.google.common.base.Preconditions;
  * roughly 10 times slower, so there's a cache layer overlays on top of Trie and
  * gracefully fall back to Trie using a weak reference.
  * <p>
+ * The trie is queried in place of its serialized bytes, which can be a heap
+ * array or a memory mapped file when read from a {@link ByteBufferDataInput}.
+ * <p>
  * The implementation is thread-safe.
  *
  * @author yangli9
@@ -64,7 +67,7 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
 
     private static final Logger logger = LoggerFactory.getLogger(TrieDictionary.class);
 
-    private byte[] trieBytes;
+    private ByteBuffer trieBytes; // position is always 0, absolute gets only
 
     // non-persistent part
     transient private int headSize;
@@ -84,17 +87,22 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
     }
 
     public TrieDictionary(byte[] trieBytes) {
-        init(trieBytes);
+        init(ByteBuffer.wrap(trieBytes));
     }
 
-    private void init(byte[] trieBytes) {
+    private void init(ByteBuffer trieBytes) {
         this.trieBytes = trieBytes;
-        if (BytesUtil.compareBytes(MAGIC, 0, trieBytes, 0, MAGIC.length) != 0)
-            throw new IllegalArgumentException("Wrong file type (magic does not match)");
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (trieBytes.get(i) != MAGIC[i])
+                throw new IllegalArgumentException("Wrong file type (magic does not match)");
+        }
 
         try {
+            byte[] head = new byte[trieBytes.getShort(MAGIC_SIZE_I)];
+            ByteBuffer headBuf = trieBytes.duplicate();
+            headBuf.get(head);
             DataInputStream headIn = new DataInputStream(//
-                    new ByteArrayInputStream(trieBytes, MAGIC_SIZE_I, trieBytes.length - MAGIC_SIZE_I));
+                    new ByteArrayInputStream(head, MAGIC_SIZE_I, head.length - MAGIC_SIZE_I));
             this.headSize = headIn.readShort();
             this.bodyLen = headIn.readInt();
             this.sizeChildOffset = headIn.read();
@@ -106,7 +114,7 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
             if (converterName.isEmpty() == false)
                 setConverterByName(converterName);
 
-            this.nValues = BytesUtil.readUnsigned(trieBytes, headSize + sizeChildOffset, sizeNoValuesBeneath);
+            this.nValues = readUnsigned(headSize + sizeChildOffset, sizeNoValuesBeneath);
             this.sizeOfId = BytesUtil.sizeForValue(baseId + nValues + 1L); // note baseId could raise 1 byte in ID space, +1 to reserve all 0xFF for NULL case
             this.childOffsetMask = ~((long) (BIT_IS_LAST_CHILD | BIT_IS_END_OF_VALUE) << ((sizeChildOffset - 1) * 8));
             this.firstByteOffset = sizeChildOffset + sizeNoValuesBeneath + 1; // the offset from begin of node to its first value byte
@@ -174,12 +182,12 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
             // match the current node, note [0] of node's value has been matched
             // when this node is selected by its parent
             int p = n + firstByteOffset; // start of node's value
-            int end = p + BytesUtil.readUnsigned(trieBytes, p - 1, 1); // end of node's value
+            int end = p + readUnsigned(p - 1, 1); // end of node's value
             for (p++; p < end && o < inpEnd; p++, o++) { // note matching start from [1]
-                if (trieBytes[p] != inp[o]) {
-                    int comp = BytesUtil.compareByteUnsigned(trieBytes[p], inp[o]);
+                if (trieBytes.get(p) != inp[o]) {
+                    int comp = BytesUtil.compareByteUnsigned(trieBytes.get(p), inp[o]);
                     if (comp < 0) {
-                        seq += BytesUtil.readUnsigned(trieBytes, n + sizeChildOffset, sizeNoValuesBeneath);
+                        seq += readUnsigned(n + sizeChildOffset, sizeNoValuesBeneath);
                     }
                     return roundSeqNo(roundingFlag, seq - 1, -1, seq); // mismatch
                 }
@@ -201,16 +209,16 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
             int comp;
             while (true) {
                 p = c + firstByteOffset;
-                comp = BytesUtil.compareByteUnsigned(trieBytes[p], inpByte);
+                comp = BytesUtil.compareByteUnsigned(trieBytes.get(p), inpByte);
                 if (comp == 0) { // continue in the matching child, reset n and loop again
                     n = c;
                     o++;
                     break;
                 } else if (comp < 0) { // try next child
-                    seq += BytesUtil.readUnsigned(trieBytes, c + sizeChildOffset, sizeNoValuesBeneath);
+                    seq += readUnsigned(c + sizeChildOffset, sizeNoValuesBeneath);
                     if (checkFlag(c, BIT_IS_LAST_CHILD))
                         return roundSeqNo(roundingFlag, seq - 1, -1, seq); // no child can match the next byte of input
-                    c = p + BytesUtil.readUnsigned(trieBytes, p - 1, 1);
+                    c = p + readUnsigned(p - 1, 1);
                 } else { // children are ordered by their first value byte
                     return roundSeqNo(roundingFlag, seq - 1, -1, seq); // no child can match the next byte of input
                 }
@@ -219,8 +227,8 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
     }
 
     private int getChildOffset(int n) {
-        long offset = headSize + (BytesUtil.readLong(trieBytes, n, sizeChildOffset) & childOffsetMask);
-        assert offset < trieBytes.length;
+        long offset = headSize + (readLong(n, sizeChildOffset) & childOffsetMask);
+        assert offset < trieBytes.limit();
         return (int) offset;
     }
 
@@ -266,8 +274,10 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
         while (true) {
             // write current node value
             int p = n + firstByteOffset;
-            int len = BytesUtil.readUnsigned(trieBytes, p - 1, 1);
-            System.arraycopy(trieBytes, p, returnValue, o, len);
+            int len = readUnsigned(p - 1, 1);
+            for (int i = 0; i < len; i++) {
+                returnValue[o + i] = trieBytes.get(p + i);
+            }
             o += len;
 
             // if the value is ended
@@ -284,7 +294,7 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
                 return -1; // no child? corrupted dictionary!
             int nValuesBeneath;
             while (true) {
-                nValuesBeneath = BytesUtil.readUnsigned(trieBytes, c + sizeChildOffset, sizeNoValuesBeneath);
+                nValuesBeneath = readUnsigned(c + sizeChildOffset, sizeNoValuesBeneath);
                 if (seq - nValuesBeneath < 0) { // value is under this child, reset n and loop again
                     n = c;
                     break;
@@ -293,14 +303,55 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
                     if (checkFlag(c, BIT_IS_LAST_CHILD))
                         return -1; // no more child? corrupted dictionary!
                     p = c + firstByteOffset;
-                    c = p + BytesUtil.readUnsigned(trieBytes, p - 1, 1);
+                    c = p + readUnsigned(p - 1, 1);
                 }
             }
         }
     }
 
     private boolean checkFlag(int offset, int bit) {
-        return (trieBytes[offset] & bit) > 0;
+        return (trieBytes.get(offset) & bit) > 0;
+    }
+
+    private int readUnsigned(int offset, int size) {
+        int integer = 0;
+        for (int i = offset, n = offset + size; i < n; i++) {
+            integer <<= 8;
+            integer |= (int) trieBytes.get(i) & 0xFF;
+        }
+        return integer;
+    }
+
+    private long readLong(int offset, int size) {
+        long integer = 0;
+        for (int i = offset, n = offset + size; i < n; i++) {
+            integer <<= 8;
+            integer |= (long) trieBytes.get(i) & 0xFF;
+        }
+        return integer;
+    }
+
+    private byte[] getTrieBytes() {
+        if (trieBytes.hasArray() && trieBytes.arrayOffset() == 0 && trieBytes.array().length == trieBytes.limit())
+            return trieBytes.array();
+
+        byte[] bytes = new byte[trieBytes.limit()];
+        trieBytes.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * True if the trie is not on heap, e.g. read from a memory mapped file.
+     */
+    public boolean isDirect() {
+        return trieBytes.isDirect();
+    }
+
+    /**
+     * Size of the serialized trie, which is also its footprint whether it's on heap or mapped.
+     */
+    public int getTrieByteSize() {
+        return trieBytes.limit();
     }
 
     private int calcIdFromSeqNo(int seq) {
@@ -312,11 +363,21 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
 
     @Override
     public void write(DataOutput out) throws IOException {
-        out.write(trieBytes);
+        out.write(getTrieBytes());
     }
 
     @Override
     public void readFields(DataInput in) throws IOException {
+        // query in place of the buffer, e.g. a memory mapped file, instead of copying to heap
+        if (in instanceof ByteBufferDataInput) {
+            ByteBufferDataInput bufIn = (ByteBufferDataInput) in;
+            ByteBuffer view = bufIn.peek();
+            int headSize = view.getShort(MAGIC_SIZE_I);
+            int bodyLen = view.getInt(MAGIC_SIZE_I + 2);
+            init(bufIn.slice(headSize + bodyLen));
+            return;
+        }
+
         byte[] headPartial = new byte[MAGIC.length + Short.SIZE + Integer.SIZE];
         in.readFully(headPartial);
 
@@ -333,12 +394,13 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
         System.arraycopy(headPartial, 0, all, 0, headPartial.length);
         in.readFully(all, headPartial.length, all.length - headPartial.length);
 
-        init(all);
+        init(ByteBuffer.wrap(all));
     }
 
     private void writeObject(java.io.ObjectOutputStream stream) throws IOException {
-        stream.writeInt(trieBytes.length);
-        stream.write(trieBytes);
+        byte[] bytes = getTrieBytes();
+        stream.writeInt(bytes.length);
+        stream.write(bytes);
     }
 
     private void readObject(java.io.ObjectInputStream stream) throws IOException, ClassNotFoundException {
@@ -349,7 +411,7 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
         while ((currentCount = stream.read(trieBytes, idx, length - idx)) > 0) {
             idx += currentCount;
         }
-        init(trieBytes);
+        init(ByteBuffer.wrap(trieBytes));
     }
 
     @Override
@@ -364,7 +426,7 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(trieBytes);
+        return trieBytes.hashCode();
     }
 
     @Override
@@ -374,7 +436,7 @@ public class TrieDictionary<T> extends CacheDictionary<T> {
             return false;
         }
         TrieDictionary that = (TrieDictionary) o;
-        return Arrays.equals(this.trieBytes, that.trieBytes);
+        return this.trieBytes.equals(that.trieBytes);
     }
 
     @Override
@@ -25,6 +25,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInput;
 import java.io.DataInputStream;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -95,6 +96,11 @@ public class AppendDictSlice {
         return new AppendDictSlice(all);
     }
 
+    // writes the same bytes as read by deserializeFrom()
+    public void write(DataOutput out) throws IOException {
+        out.write(trieBytes);
+    }
+
     public byte[] getFirstValue() {
         int nodeOffset = headSize;
         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
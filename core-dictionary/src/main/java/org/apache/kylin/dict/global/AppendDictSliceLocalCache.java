@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.dict.global;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+
+/**
+ * Keeps the slices of one version of a global dictionary on local disk, so a slice evicted from memory is reloaded
+ * from local disk instead of HDFS, also by other tasks on the same node. Slice files of a version never change, they
+ * are written to a temp file then renamed, so concurrent readers and writers are fine.
+ */
+public class AppendDictSliceLocalCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(AppendDictSliceLocalCache.class);
+
+    private static final char VERSION_SEPARATOR = '@';
+
+    private final File dir;
+
+    /**
+     * @param rootDir the local root dir shared by all global dictionaries
+     * @param baseDir base directory of the global dictionary
+     * @param versionDir directory of the version that is read
+     */
+    public AppendDictSliceLocalCache(File rootDir, String baseDir, String versionDir) {
+        String prefix = Hashing.md5().hashString(baseDir, Charsets.UTF_8).toString() + VERSION_SEPARATOR;
+        this.dir = new File(rootDir, prefix + new File(versionDir).getName());
+        if (!dir.exists() && !dir.mkdirs() && !dir.exists())
+            throw new IllegalStateException("Cannot create global dictionary cache dir " + dir);
+
+        // slices of other versions are not needed any more, a slice still being read is reloaded from HDFS
+        File[] others = rootDir.listFiles();
+        if (others != null) {
+            for (File other : others) {
+                if (other.getName().startsWith(prefix) && !other.equals(dir)) {
+                    logger.info("Delete slices of old version at {}", other);
+                    FileUtils.deleteQuietly(other);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns null if the slice is not on local disk.
+     */
+    public AppendDictSlice read(String sliceFileName) throws IOException {
+        File file = localFile(sliceFileName);
+        if (!file.exists())
+            return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return AppendDictSlice.deserializeFrom(in);
+        }
+    }
+
+    public void write(String sliceFileName, AppendDictSlice slice) throws IOException {
+        File file = localFile(sliceFileName);
+        File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                slice.write(out);
+            }
+            if (!tmp.renameTo(file) && !file.exists())
+                throw new IOException("Failed to move " + tmp + " to " + file);
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    // slice file names of the old index format may contain any char of the slice key
+    private File localFile(String sliceFileName) {
+        return new File(dir, Hashing.md5().hashString(sliceFileName, Charsets.UTF_8).toString());
+    }
+
+    public File getDir() {
+        return dir;
+    }
+}
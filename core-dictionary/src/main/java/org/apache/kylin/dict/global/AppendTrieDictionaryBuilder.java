@@ -19,19 +19,40 @@
 package org.apache.kylin.dict.global;
 
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.BytesUtil;
 import org.apache.kylin.dict.AppendTrieDictionary;
 import org.apache.kylin.dict.BytesConverter;
 import org.apache.kylin.dict.StringBytesConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static com.google.common.base.Preconditions.checkState;
 
 public class AppendTrieDictionaryBuilder {
 
+    private static final Logger logger = LoggerFactory.getLogger(AppendTrieDictionaryBuilder.class);
+
+    private static final Comparator<byte[]> BYTES_COMPARATOR = new Comparator<byte[]>() {
+        @Override
+        public int compare(byte[] o1, byte[] o2) {
+            return Bytes.compareTo(o1, o2);
+        }
+    };
+
     private final String baseDir;
     private final String workingDir;
     private final int maxEntriesPerSlice;
@@ -53,6 +74,17 @@ public class AppendTrieDictionaryBuilder {
         init();
     }
 
+    // extends the slices from sliceKey till the next slice key of parent, giving out ids after maxId
+    private AppendTrieDictionaryBuilder(AppendTrieDictionaryBuilder parent, AppendDictSliceKey sliceKey, int maxId) {
+        this.baseDir = parent.baseDir;
+        this.workingDir = parent.workingDir;
+        this.maxEntriesPerSlice = parent.maxEntriesPerSlice;
+        this.store = parent.store;
+        this.bytesConverter = parent.bytesConverter;
+        this.maxId = maxId;
+        this.sliceFileMap.put(sliceKey, parent.sliceFileMap.get(sliceKey));
+    }
+
     public synchronized void init() throws IOException {
         this.store = new GlobalDictHDFSStore(baseDir);
         store.prepareForWrite(workingDir);
@@ -72,18 +104,19 @@ public class AppendTrieDictionaryBuilder {
             this.nValues = metadata.nValues;
             this.bytesConverter = metadata.bytesConverter;
             this.sliceFileMap = new TreeMap<>(metadata.sliceFileMap);
+            checkState(sliceFileMap.firstKey().equals(AppendDictSliceKey.START_KEY), "first key should be \"\", but got \"%s\"", sliceFileMap.firstKey());
         }
     }
 
     @SuppressWarnings("unchecked")
     public void addValue(String value) throws IOException {
-        byte[] valueBytes = bytesConverter.convertToBytes(value);
+        addValueBytes(bytesConverter.convertToBytes(value));
+    }
 
+    private void addValueBytes(byte[] valueBytes) throws IOException {
         if (sliceFileMap.isEmpty()) {
-            curNode = new AppendDictNode(new byte[0], false);
             sliceFileMap.put(AppendDictSliceKey.START_KEY, null);
         }
-        checkState(sliceFileMap.firstKey().equals(AppendDictSliceKey.START_KEY), "first key should be \"\", but got \"%s\"", sliceFileMap.firstKey());
 
         AppendDictSliceKey nextKey = sliceFileMap.floorKey(AppendDictSliceKey.wrap(valueBytes));
 
@@ -97,8 +130,13 @@ public class AppendTrieDictionaryBuilder {
             curNode = null;
         }
         if (curNode == null) { // read next slice
-            AppendDictSlice slice = store.readSlice(workingDir, sliceFileMap.get(nextKey));
-            curNode = slice.rebuildTrieTree();
+            String sliceFile = sliceFileMap.get(nextKey);
+            if (sliceFile == null) { // a new slice
+                curNode = new AppendDictNode(new byte[0], false);
+            } else {
+                AppendDictSlice slice = store.readSlice(workingDir, sliceFile);
+                curNode = slice.rebuildTrieTree();
+            }
         }
         curKey = nextKey;
 
@@ -116,6 +154,138 @@ public class AppendTrieDictionaryBuilder {
         maxValueLength = Math.max(maxValueLength, valueBytes.length);
     }
 
+    /**
+     * Adds a batch of values using several threads, as an alternative to {@link #addValue(String)} for large number
+     * of values. The values are sorted and partitioned by the slice they fall into, then each partition works on its
+     * own slices concurrently: it finds its new values, and adds them giving out ids from a range reserved for it.
+     * When the dictionary is empty, the partitions are cut from the sorted values, so they become new slices.
+     * The result is committed by {@link #build(int)} as usual.
+     */
+    public void addValues(Collection<String> values, int threads) throws IOException {
+        if (curNode != null) {
+            flushCurrentNode();
+            curNode = null;
+            curKey = null;
+        }
+
+        List<byte[]> sorted = new ArrayList<>(values.size());
+        for (String value : values) {
+            if (value != null)
+                sorted.add(bytesConverter.convertToBytes(value));
+        }
+        Collections.sort(sorted, BYTES_COMPARATOR);
+        int distinct = 0;
+        for (byte[] value : sorted) {
+            if (distinct == 0 || !Bytes.equals(sorted.get(distinct - 1), value))
+                sorted.set(distinct++, value);
+        }
+        sorted = sorted.subList(0, distinct);
+
+        final List<AppendDictSliceKey> partKeys = new ArrayList<>();
+        final List<List<byte[]>> partValues = new ArrayList<>();
+        if (sliceFileMap.isEmpty()) {
+            int partSize = Math.max(1, maxEntriesPerSlice / 2);
+            for (int i = 0; i < sorted.size(); i += partSize) {
+                AppendDictSliceKey key = i == 0 ? AppendDictSliceKey.START_KEY : AppendDictSliceKey.wrap(sorted.get(i));
+                partKeys.add(key);
+                partValues.add(sorted.subList(i, Math.min(i + partSize, sorted.size())));
+            }
+        } else {
+            AppendDictSliceKey nextKey = null; // values from here on belong to the following slices
+            int start = 0;
+            for (int i = 0; i < sorted.size(); i++) {
+                AppendDictSliceKey valueKey = AppendDictSliceKey.wrap(sorted.get(i));
+                if (i == 0 || (nextKey != null && valueKey.compareTo(nextKey) >= 0)) {
+                    if (i > 0)
+                        partValues.add(sorted.subList(start, i));
+                    AppendDictSliceKey key = sliceFileMap.floorKey(valueKey);
+                    partKeys.add(key);
+                    nextKey = sliceFileMap.higherKey(key);
+                    start = i;
+                }
+            }
+            if (!sorted.isEmpty())
+                partValues.add(sorted.subList(start, sorted.size()));
+        }
+        for (AppendDictSliceKey key : partKeys) {
+            if (!sliceFileMap.containsKey(key))
+                sliceFileMap.put(key, null);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            // find the new values of each partition
+            List<Future<List<byte[]>>> newValueFutures = new ArrayList<>(partKeys.size());
+            for (int i = 0; i < partKeys.size(); i++) {
+                final String sliceFile = sliceFileMap.get(partKeys.get(i));
+                final List<byte[]> part = partValues.get(i);
+                newValueFutures.add(executor.submit(new Callable<List<byte[]>>() {
+                    @Override
+                    public List<byte[]> call() throws Exception {
+                        return findNewValues(sliceFile, part);
+                    }
+                }));
+            }
+
+            // reserve id ranges, then add the new values by partition
+            List<Future<AppendTrieDictionaryBuilder>> partFutures = new ArrayList<>(partKeys.size());
+            int partMaxId = maxId;
+            for (int i = 0; i < partKeys.size(); i++) {
+                final List<byte[]> newValues = getResult(newValueFutures.get(i));
+                final AppendTrieDictionaryBuilder partBuilder = new AppendTrieDictionaryBuilder(this, partKeys.get(i), partMaxId);
+                partMaxId += newValues.size();
+                partFutures.add(executor.submit(new Callable<AppendTrieDictionaryBuilder>() {
+                    @Override
+                    public AppendTrieDictionaryBuilder call() throws Exception {
+                        for (byte[] value : newValues) {
+                            partBuilder.addValueBytes(value);
+                        }
+                        if (partBuilder.curNode != null)
+                            partBuilder.flushCurrentNode();
+                        return partBuilder;
+                    }
+                }));
+            }
+
+            int nNewValues = 0;
+            for (Future<AppendTrieDictionaryBuilder> future : partFutures) {
+                AppendTrieDictionaryBuilder partBuilder = getResult(future);
+                sliceFileMap.putAll(partBuilder.sliceFileMap);
+                nNewValues += partBuilder.nValues;
+                maxValueLength = Math.max(maxValueLength, partBuilder.maxValueLength);
+            }
+            maxId = partMaxId;
+            nValues += nNewValues;
+            logger.info("Added {} new values of {} in {} partitions, {} slices in total", nNewValues, sorted.size(), partKeys.size(), sliceFileMap.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<byte[]> findNewValues(String sliceFile, List<byte[]> values) throws IOException {
+        if (sliceFile == null)
+            return values;
+
+        AppendDictSlice slice = store.readSlice(workingDir, sliceFile);
+        List<byte[]> result = new ArrayList<>();
+        for (byte[] value : values) {
+            if (slice.getIdFromValueBytesImpl(value, 0, value.length, 0) == -1)
+                result.add(value);
+        }
+        return result;
+    }
+
+    private static <V> V getResult(Future<V> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted when adding values to global dict", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to add values to global dict", e.getCause());
+        }
+    }
+
     public AppendTrieDictionary build(int baseId) throws IOException {
         if (curNode != null) {
             flushCurrentNode();
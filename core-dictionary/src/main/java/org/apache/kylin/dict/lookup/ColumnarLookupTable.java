@@ -0,0 +1,409 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.dict.lookup;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.kylin.common.util.Array;
+import org.apache.kylin.common.util.Pair;
+import org.apache.kylin.metadata.model.TableDesc;
+import org.apache.kylin.source.IReadableTable;
+import org.apache.kylin.source.IReadableTable.TableReader;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.Sets;
+
+/**
+ * A {@link LookupStringTable} kept column by column, for sharing one copy among queries. Cells are encoded as ids of
+ * a sorted array of the distinct values of the table, and rows are found by an open addressing hash index of the
+ * primary key, so there is no object per row. Rows are decoded on access. Immutable once built.
+ *
+ * Every column also has an inverted index from each of its distinct values to the rows holding it, so a filter on a
+ * column is evaluated once per distinct value instead of once per row, see {@link #findRows(String, Predicate)}.
+ */
+public class ColumnarLookupTable extends LookupStringTable {
+
+    private static final int NULL_ID = -1;
+    private static final int NOT_FOUND_ID = -2;
+
+    private String[] values; // sorted distinct values
+    private int[][] columns; // column -> row -> value id
+    private int rowCount;
+    private int[] keyColIdx;
+    private int[] index; // hash slot -> row + 1, 0 if empty
+    private int indexMask;
+
+    // inverted index of each column, the rows holding valueIds[col][i] are postings[col][offsets[col][i]] until
+    // postings[col][offsets[col][i + 1]], in ascending order
+    private int[][] postingValueIds;
+    private int[][] postingOffsets;
+    private int[][] postings;
+
+    public ColumnarLookupTable(TableDesc tableDesc, String[] keyColumns, IReadableTable table) throws IOException {
+        super(tableDesc, keyColumns, table);
+    }
+
+    @Override
+    protected void init() throws IOException {
+        initColumnTypes();
+
+        keyColIdx = new int[keyColumns.length];
+        for (int i = 0; i < keyColumns.length; i++) {
+            keyColIdx[i] = tableDesc.findColumnByName(keyColumns[i]).getZeroBasedIndex();
+        }
+
+        int columnCount = tableDesc.getColumnCount();
+        columns = new int[columnCount][16];
+        rowCount = 0;
+        Map<String, Integer> valueIds = new HashMap<>();
+        List<String> valueList = new ArrayList<>();
+
+        TableReader reader = table.getReader();
+        try {
+            while (reader.next()) {
+                String[] row = convertRow(reader.getRow());
+                if (rowCount == columns[0].length) {
+                    for (int c = 0; c < columnCount; c++)
+                        columns[c] = Arrays.copyOf(columns[c], rowCount * 2);
+                }
+                for (int c = 0; c < columnCount; c++) {
+                    String cell = row[c];
+                    int id = NULL_ID;
+                    if (cell != null) {
+                        Integer existing = valueIds.get(cell);
+                        if (existing == null) {
+                            existing = valueList.size();
+                            valueIds.put(cell, existing);
+                            valueList.add(cell);
+                        }
+                        id = existing;
+                    }
+                    columns[c][rowCount] = id;
+                }
+                rowCount++;
+            }
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+
+        // sort the values, so ids compare like values and a value is found by binary search
+        values = valueList.toArray(new String[valueList.size()]);
+        Arrays.sort(values);
+        int[] newIds = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            newIds[valueIds.get(values[i])] = i;
+        }
+        for (int c = 0; c < columnCount; c++) {
+            int[] column = Arrays.copyOf(columns[c], rowCount);
+            for (int r = 0; r < rowCount; r++) {
+                if (column[r] != NULL_ID)
+                    column[r] = newIds[column[r]];
+            }
+            columns[c] = column;
+        }
+
+        buildIndex();
+        buildInvertedIndex();
+    }
+
+    private void buildIndex() {
+        int size = Integer.highestOneBit(Math.max(rowCount, 1) * 2 - 1) << 1;
+        index = new int[size];
+        indexMask = size - 1;
+        int[] keyIds = new int[keyColIdx.length];
+        for (int r = 0; r < rowCount; r++) {
+            for (int i = 0; i < keyColIdx.length; i++) {
+                keyIds[i] = columns[keyColIdx[i]][r];
+            }
+            int slot = hash(keyIds) & indexMask;
+            while (index[slot] != 0) {
+                int existing = index[slot] - 1;
+                if (keyEquals(existing, keyIds))
+                    throw new IllegalStateException("The table: " + tableDesc.getName() + " Dup key found, key=" + toString(decodeKey(keyIds)) + ", value1=" + toString(decodeRow(existing)) + ", value2=" + toString(decodeRow(r)));
+                slot = (slot + 1) & indexMask;
+            }
+            index[slot] = r + 1;
+        }
+    }
+
+    private void buildInvertedIndex() {
+        int columnCount = columns.length;
+        postingValueIds = new int[columnCount][];
+        postingOffsets = new int[columnCount][];
+        postings = new int[columnCount][];
+
+        // counting sort of row numbers by value id, slot 0 holds null and slot id + 1 holds value id
+        int[] slots = new int[values.length + 1];
+        for (int c = 0; c < columnCount; c++) {
+            int[] column = columns[c];
+            int distinct = 0;
+            for (int r = 0; r < rowCount; r++) {
+                if (slots[column[r] + 1]++ == 0)
+                    distinct++;
+            }
+
+            int[] valueIds = new int[distinct];
+            int[] offsets = new int[distinct + 1];
+            int n = 0;
+            int pos = 0;
+            for (int slot = 0; slot < slots.length && n < distinct; slot++) {
+                if (slots[slot] == 0)
+                    continue;
+                valueIds[n] = slot - 1;
+                offsets[n] = pos;
+                pos += slots[slot];
+                slots[slot] = offsets[n]; // becomes the next position to fill
+                n++;
+            }
+            offsets[distinct] = pos;
+
+            int[] rows = new int[rowCount];
+            for (int r = 0; r < rowCount; r++) {
+                rows[slots[column[r] + 1]++] = r;
+            }
+            for (int valueId : valueIds) {
+                slots[valueId + 1] = 0;
+            }
+
+            postingValueIds[c] = valueIds;
+            postingOffsets[c] = offsets;
+            postings[c] = rows;
+        }
+    }
+
+    private static int hash(int[] ids) {
+        int h = 1;
+        for (int id : ids) {
+            h = 31 * h + id;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private boolean keyEquals(int row, int[] keyIds) {
+        for (int i = 0; i < keyColIdx.length; i++) {
+            if (columns[keyColIdx[i]][row] != keyIds[i])
+                return false;
+        }
+        return true;
+    }
+
+    private int idOf(String value) {
+        if (value == null)
+            return NULL_ID;
+        int id = Arrays.binarySearch(values, value);
+        return id >= 0 ? id : NOT_FOUND_ID;
+    }
+
+    private String valueOf(int id) {
+        return id == NULL_ID ? null : values[id];
+    }
+
+    private String[] decodeKey(int[] keyIds) {
+        String[] key = new String[keyIds.length];
+        for (int i = 0; i < keyIds.length; i++) {
+            key[i] = valueOf(keyIds[i]);
+        }
+        return key;
+    }
+
+    private String[] decodeRow(int row) {
+        String[] result = new String[columns.length];
+        for (int c = 0; c < columns.length; c++) {
+            result[c] = valueOf(columns[c][row]);
+        }
+        return result;
+    }
+
+    @Override
+    public String[] getRow(Array<String> key) {
+        int[] keyIds = new int[keyColIdx.length];
+        for (int i = 0; i < keyIds.length; i++) {
+            keyIds[i] = idOf(key.data[i]);
+            if (keyIds[i] == NOT_FOUND_ID)
+                return null;
+        }
+
+        int slot = hash(keyIds) & indexMask;
+        while (index[slot] != 0) {
+            int row = index[slot] - 1;
+            if (keyEquals(row, keyIds))
+                return decodeRow(row);
+            slot = (slot + 1) & indexMask;
+        }
+        return null;
+    }
+
+    @Override
+    public Collection<String[]> getAllRows() {
+        return new AbstractList<String[]>() {
+            @Override
+            public String[] get(int row) {
+                return decodeRow(row);
+            }
+
+            @Override
+            public int size() {
+                return rowCount;
+            }
+        };
+    }
+
+    // adds the rows holding the given value id in the column
+    private void addRows(int col, int valueId, BitSet rows) {
+        int i = Arrays.binarySearch(postingValueIds[col], valueId);
+        if (i < 0)
+            return;
+        int[] posting = postings[col];
+        for (int j = postingOffsets[col][i], end = postingOffsets[col][i + 1]; j < end; j++) {
+            rows.set(posting[j]);
+        }
+    }
+
+    // rows holding any of the given values in the column
+    private BitSet rowsOf(int col, Collection<String> valueSet) {
+        BitSet rows = new BitSet(rowCount);
+        for (String value : valueSet) {
+            int id = idOf(value);
+            if (id >= 0)
+                addRows(col, id, rows);
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the rows whose value of the column satisfies the predicate, which is called once for each distinct
+     * value of the column, including null if the column has nulls.
+     */
+    public BitSet findRows(String col, Predicate<String> predicate) {
+        int colIdx = tableDesc.findColumnByName(col).getZeroBasedIndex();
+        int[] valueIds = postingValueIds[colIdx];
+        BitSet rows = new BitSet(rowCount);
+        for (int valueId : valueIds) {
+            if (predicate.apply(valueOf(valueId)))
+                addRows(colIdx, valueId, rows);
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the value of a column of the row, rows are numbered from 0 to {@link #getRowCount()} - 1.
+     */
+    public String getValue(int row, int col) {
+        return valueOf(columns[col][row]);
+    }
+
+    @Override
+    public List<String> scan(String col, List<String> values, String returnCol) {
+        BitSet rows = rowsOf(tableDesc.findColumnByName(col).getZeroBasedIndex(), values);
+        int[] returnColumn = columns[tableDesc.findColumnByName(returnCol).getZeroBasedIndex()];
+        ArrayList<String> result = new ArrayList<String>(rows.cardinality());
+        for (int r = rows.nextSetBit(0); r >= 0; r = rows.nextSetBit(r + 1)) {
+            result.add(valueOf(returnColumn[r]));
+        }
+        return result;
+    }
+
+    @Override
+    public Pair<String, String> mapRange(String col, String beginValue, String endValue, String returnCol) {
+        int colIdx = tableDesc.findColumnByName(col).getZeroBasedIndex();
+        int returnIdx = tableDesc.findColumnByName(returnCol).getZeroBasedIndex();
+        Comparator<String> colComp = getComparator(colIdx);
+        Comparator<String> returnComp = getComparator(returnIdx);
+
+        // a value appears in many rows, compare it only once
+        byte[] inRange = new byte[values.length]; // 0 unknown, 1 in range, 2 not in range
+        String returnBegin = null;
+        String returnEnd = null;
+        for (int r = 0; r < rowCount; r++) {
+            int id = columns[colIdx][r];
+            if (id == NULL_ID)
+                continue;
+            if (inRange[id] == 0)
+                inRange[id] = between(beginValue, values[id], endValue, colComp) ? (byte) 1 : (byte) 2;
+            if (inRange[id] == 1) {
+                String returnValue = valueOf(columns[returnIdx][r]);
+                if (returnBegin == null || returnComp.compare(returnValue, returnBegin) < 0) {
+                    returnBegin = returnValue;
+                }
+                if (returnEnd == null || returnComp.compare(returnValue, returnEnd) > 0) {
+                    returnEnd = returnValue;
+                }
+            }
+        }
+        if (returnBegin == null && returnEnd == null)
+            return null;
+        else
+            return Pair.newPair(returnBegin, returnEnd);
+    }
+
+    private boolean between(String beginValue, String v, String endValue, Comparator<String> comp) {
+        return (beginValue == null || comp.compare(beginValue, v) <= 0) && (endValue == null || comp.compare(v, endValue) <= 0);
+    }
+
+    @Override
+    public Set<String> mapValues(String col, Set<String> values, String returnCol) {
+        BitSet rows = rowsOf(tableDesc.findColumnByName(col).getZeroBasedIndex(), values);
+        int[] returnColumn = columns[tableDesc.findColumnByName(returnCol).getZeroBasedIndex()];
+        Set<String> result = Sets.newHashSetWithExpectedSize(values.size());
+        for (int r = rows.nextSetBit(0); r >= 0; r = rows.nextSetBit(r + 1)) {
+            result.add(valueOf(returnColumn[r]));
+        }
+        return result;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Estimated heap size in bytes.
+     */
+    public long getByteSize() {
+        long size = 4L * index.length + 4L * rowCount * columns.length;
+        for (int c = 0; c < columns.length; c++) {
+            size += 4L * (postingValueIds[c].length + postingOffsets[c].length + postings[c].length);
+        }
+        for (String value : values) {
+            size += 40 + 2 * value.length();
+        }
+        return size;
+    }
+
+    @Override
+    public void dump() {
+        for (int r = 0; r < rowCount; r++) {
+            int[] keyIds = new int[keyColIdx.length];
+            for (int i = 0; i < keyIds.length; i++) {
+                keyIds[i] = columns[keyColIdx[i]][r];
+            }
+            System.out.println(toString(decodeKey(keyIds)) + " => " + toString(decodeRow(r)));
+        }
+    }
+}
@@ -20,11 +20,13 @@ package org.apache.kylin.dict.lookup;
 
 import java.io.IOException;
 import java.util.NavigableSet;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.persistence.ResourceStore;
 import org.apache.kylin.metadata.MetadataManager;
@@ -34,11 +36,15 @@ import org.apache.kylin.source.IReadableTable.TableSignature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 /**
  * @author yangli9
@@ -80,6 +86,7 @@ public class SnapshotManager {
 
     // path ==>
     // SnapshotTable
+    private Cache<String, ColumnarLookupTable> lookupTableCache; // path#pk ==> lookup table shared by queries
 
     private SnapshotManager(KylinConfig config) {
         this.config = config;
@@ -96,10 +103,53 @@ public class SnapshotManager {
                         return snapshotTable;
                     }
                 });
+        this.lookupTableCache = CacheBuilder.newBuilder().maximumWeight(config.getCachedLookupTableMaxMB() * 1024)//
+                .weigher(new Weigher<String, ColumnarLookupTable>() {
+                    @Override
+                    public int weigh(String key, ColumnarLookupTable value) {
+                        return (int) Math.min(Integer.MAX_VALUE, value.getByteSize() / 1024); // in KB
+                    }
+                }).removalListener(new RemovalListener<String, ColumnarLookupTable>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<String, ColumnarLookupTable> notification) {
+                        SnapshotManager.logger.info("Lookup table " + notification.getKey() + " is removed due to " + notification.getCause());
+                    }
+                }).build();
     }
 
     public void wipeoutCache() {
         snapshotCache.invalidateAll();
+        lookupTableCache.invalidateAll();
+    }
+
+    /**
+     * Returns the lookup table of a snapshot indexed by the given primary key, shared by all callers.
+     */
+    public LookupStringTable getLookupTable(final String resourcePath, final TableDesc tableDesc, final String[] pkCols) throws IOException {
+        String key = resourcePath + "#" + StringUtils.join(pkCols, ",");
+        try {
+            return lookupTableCache.get(key, new Callable<ColumnarLookupTable>() {
+                @Override
+                public ColumnarLookupTable call() throws Exception {
+                    long start = System.currentTimeMillis();
+                    ColumnarLookupTable table = new ColumnarLookupTable(tableDesc, pkCols, getSnapshotTable(resourcePath));
+                    logger.info("Built lookup table of " + resourcePath + " on " + StringUtils.join(pkCols, ",") + ", " + table.getRowCount() + " rows, " + table.getByteSize() / 1024 + " KB, in " + (System.currentTimeMillis() - start) + " ms");
+                    return table;
+                }
+            });
+        } catch (ExecutionException e) {
+            Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+            throw new RuntimeException(e.getCause());
+        } catch (UncheckedExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    private void invalidateLookupTables(String resourcePath) {
+        for (String key : lookupTableCache.asMap().keySet()) {
+            if (key.startsWith(resourcePath + "#"))
+                lookupTableCache.invalidate(key);
+        }
     }
 
     public SnapshotTable getSnapshotTable(String resourcePath) throws IOException {
@@ -119,6 +169,7 @@ public class SnapshotManager {
         ResourceStore store = MetadataManager.getInstance(this.config).getStore();
         store.deleteResource(resourcePath);
         snapshotCache.invalidate(resourcePath);
+        invalidateLookupTables(resourcePath);
     }
 
     public SnapshotTable buildSnapshot(IReadableTable table, TableDesc tableDesc) throws IOException {
@@ -152,6 +203,7 @@ public class SnapshotManager {
 
         save(snapshot);
         snapshotCache.put(snapshot.getResourcePath(), snapshot);
+        invalidateLookupTables(snapshot.getResourcePath());
 
         return snapshot;
     }
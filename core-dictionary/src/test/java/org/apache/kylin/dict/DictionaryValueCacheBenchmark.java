@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.dict;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Encodes rows the way a cube build task does, i.e. value --> id lookups of freshly read strings, against dictionaries
+ * of low, medium and high cardinality. Lookups go uncached, to the per-dictionary soft cache that build tasks use by
+ * default, or to the shared value cache at a few sizes.
+ */
+public class DictionaryValueCacheBenchmark {
+
+    private static final int ROWS = 5 * 1000 * 1000;
+    private static final int[] CARDINALITIES = { 1000, 100 * 1000, 1000 * 1000 };
+    private static final int[] SHARED_CACHE_MB = { -1, 0, 32, 256 }; // -1 for no cache, 0 for per-dictionary cache
+
+    public static void main(String[] args) {
+        Random rand = new Random(1);
+        for (int cardinality : CARDINALITIES) {
+            List<String> values = genValues(cardinality);
+            TrieDictionaryBuilder<String> builder = new TrieDictionaryBuilder<>(new StringBytesConverter());
+            for (String v : values) {
+                builder.addValue(v);
+            }
+            TrieDictionary<String> dict = builder.build(0);
+
+            // dimension values of fact rows are skewed, a few values are in most of the rows
+            byte[][] skewed = new byte[ROWS][];
+            byte[][] uniform = new byte[ROWS][];
+            for (int i = 0; i < ROWS; i++) {
+                skewed[i] = values.get((int) (cardinality * Math.pow(rand.nextDouble(), 3))).getBytes(StandardCharsets.UTF_8);
+                uniform[i] = values.get(rand.nextInt(cardinality)).getBytes(StandardCharsets.UTF_8);
+            }
+
+            for (int cacheMB : SHARED_CACHE_MB) {
+                long skewedMs = 0, uniformMs = 0;
+                for (int round = 0; round < 2; round++) { // the first round warms up
+                    resetCache(dict, cacheMB);
+                    skewedMs = encode(dict, skewed);
+                    resetCache(dict, cacheMB);
+                    uniformMs = encode(dict, uniform);
+                }
+                String cache = cacheMB < 0 ? "no cache" : cacheMB == 0 ? "per-dictionary cache" : "shared cache " + cacheMB + "MB";
+                System.out.println("cardinality " + cardinality + ", " + cache + ": skewed rows " + skewedMs + " ms, uniform rows " + uniformMs + " ms");
+            }
+        }
+    }
+
+    private static void resetCache(TrieDictionary<String> dict, int sharedCacheMB) {
+        if (sharedCacheMB < 0)
+            dict.disableCache();
+        else
+            dict.enableCache(new DictionaryValueCache(sharedCacheMB * 1024L * 1024));
+    }
+
+    private static long encode(TrieDictionary<String> dict, byte[][] rows) {
+        long start = System.currentTimeMillis();
+        int step = 0;
+        for (byte[] row : rows) {
+            step ^= dict.getIdFromValue(new String(row, StandardCharsets.UTF_8));
+        }
+        if (step == 42)
+            System.out.print("");
+        return System.currentTimeMillis() - start;
+    }
+
+    private static List<String> genValues(int cardinality) {
+        List<String> values = new ArrayList<>(cardinality);
+        for (int i = 0; i < cardinality; i++) {
+            values.add(UUID.randomUUID().toString());
+        }
+        return values;
+    }
+}
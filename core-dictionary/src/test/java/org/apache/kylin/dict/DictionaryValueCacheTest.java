@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.dict;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class DictionaryValueCacheTest {
+
+    @Test
+    public void testAdmitOnSecondLookup() {
+        DictionaryValueCache cache = new DictionaryValueCache(1024 * 1024);
+        int dictId = cache.newDictionaryId();
+
+        DictionaryValueCache.Key key = new DictionaryValueCache.Key(dictId, true, "abc");
+        cache.admit(key, 1);
+        assertNull(cache.get(key));
+        cache.admit(new DictionaryValueCache.Key(dictId, true, "abc"), 1);
+        assertEquals(1, cache.get(key));
+
+        // same value of another dictionary or the other direction is a different entry
+        assertNull(cache.get(new DictionaryValueCache.Key(cache.newDictionaryId(), true, "abc")));
+        assertNull(cache.get(new DictionaryValueCache.Key(dictId, false, "abc")));
+    }
+
+    @Test
+    public void testBoundedBySize() {
+        DictionaryValueCache cache = new DictionaryValueCache(64 * 1024);
+        int dictId = cache.newDictionaryId();
+        for (int i = 0; i < 10000; i++) {
+            DictionaryValueCache.Key key = new DictionaryValueCache.Key(dictId, false, i);
+            cache.admit(key, "value" + i);
+            cache.admit(key, "value" + i);
+        }
+        // each entry weighs at least 96 bytes
+        assertTrue(cache.size() <= 64 * 1024 / 96);
+        assertTrue(cache.size() > 0);
+    }
+
+    @Test
+    public void testDisabled() {
+        DictionaryValueCache cache = new DictionaryValueCache(0);
+        assertFalse(cache.isEnabled());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testPerDictionaryCacheWhenDisabled() {
+        TrieDictionaryBuilder<String> builder = new TrieDictionaryBuilder<>(new StringBytesConverter());
+        builder.addValue("a");
+        builder.addValue("b");
+        TrieDictionary<String> dict = builder.build(0);
+
+        dict.enableCache(new DictionaryValueCache(0));
+        int id = dict.getIdFromValue("b");
+        assertEquals(id, dict.getIdFromValue("b"));
+        assertEquals("b", dict.getValueFromId(id));
+        assertEquals("b", dict.getValueFromId(id));
+        assertEquals(2, dict.getCacheHitCount());
+        assertEquals(2, dict.getCacheMissCount());
+    }
+
+    @Test
+    public void testSketchAging() {
+        DictionaryValueCache.FrequencySketch sketch = new DictionaryValueCache.FrequencySketch(16);
+        for (int i = 0; i < 20; i++) {
+            sketch.incrementAndEstimate(42);
+        }
+        assertEquals(15, sketch.estimate(42)); // saturated
+
+        // one reset period of other hashes halves the counters
+        for (int i = 0; i < 10 * 16 - 20; i++) {
+            sketch.incrementAndEstimate(1000 + i);
+        }
+        assertTrue(sketch.estimate(42) <= 7);
+    }
+}
@@ -32,6 +32,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -39,6 +40,7 @@ import java.util.NoSuchElementException;
 import java.util.Random;
 import java.util.TreeSet;
 
+import org.apache.kylin.common.util.ByteBufferDataInput;
 import org.junit.Test;
 
 public class TrieDictionaryTest {
@@ -417,6 +419,36 @@ public class TrieDictionaryTest {
         dict.dump(System.out);
     }
 
+    @Test
+    public void testReadInPlaceOfBuffer() throws Exception {
+        InputStream is = new FileInputStream("src/test/resources/dict/english-words.80 (scowl-2015.05.18).txt");
+        ArrayList<String> str = loadStrings(is);
+        TrieDictionary<String> dict = newDictBuilder(str).build(0);
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DataOutputStream dataout = new DataOutputStream(bout);
+        dict.write(dataout);
+        dataout.writeInt(42); // something follows
+        dataout.close();
+
+        // e.g. a memory mapped file
+        ByteBuffer buf = ByteBuffer.allocateDirect(bout.size());
+        buf.put(bout.toByteArray());
+        buf.flip();
+        ByteBufferDataInput in = new ByteBufferDataInput(buf);
+        TrieDictionary<String> inPlace = new TrieDictionary<String>();
+        inPlace.readFields(in);
+        assertEquals(42, in.readInt());
+
+        assertTrue(inPlace.isDirect());
+        assertEquals(dict, inPlace);
+        for (String s : str) {
+            int id = dict.getIdFromValue(s);
+            assertEquals(id, inPlace.getIdFromValue(s));
+            assertEquals(s, inPlace.getValueFromId(id));
+        }
+    }
+
     @Test
     public void testRounding() {
         // see NumberDictionaryTest.testRounding();
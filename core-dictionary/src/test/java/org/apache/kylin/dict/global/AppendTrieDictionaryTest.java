@@ -22,6 +22,7 @@ import static org.apache.kylin.dict.global.GlobalDictHDFSStore.V2_INDEX_NAME;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.BufferedReader;
@@ -297,6 +298,30 @@ public class AppendTrieDictionaryTest extends LocalFileMetadataTestCase {
         assertEquals(-2147483648, dict.getIdFromValue("acd", 0));
     }
 
+    @Test
+    public void testLocalCache() throws Exception {
+        KylinConfig.getInstanceFromEnv().setProperty("kylin.dictionary.append-local-cache-enabled", "true");
+        KylinConfig.getInstanceFromEnv().setProperty("kylin.dictionary.append-local-cache-dir", getLocalWorkingDirectory() + "/global_dict_cache");
+        ArrayList<String> strList = loadStrings(new FileInputStream("src/test/resources/dict/english-words.80 (scowl-2015.05.18).txt"));
+        AppendTrieDictionaryBuilder b = createBuilder(RESOURCE_DIR);
+        for (String str : strList) {
+            b.addValue(str);
+        }
+        AppendTrieDictionary<String> dict = b.build(0);
+        int[] ids = new int[strList.size()];
+        for (int i = 0; i < strList.size(); i++) {
+            ids[i] = dict.getIdFromValue(strList.get(i));
+        }
+
+        // slices are read from local disk after reopen
+        AppendTrieDictionary<String> reopened = testSerialize(dict, new StringBytesConverter());
+        for (int i = 0; i < strList.size(); i++) {
+            assertEquals(ids[i], reopened.getIdFromValue(strList.get(i)));
+        }
+        assertEquals(0, reopened.getSliceRemoteLoadCount());
+        assertTrue(reopened.getSliceLocalLoadCount() > 1);
+    }
+
     @Ignore("Only occurred when value is very long (>8000 bytes)")
     @Test
     public void testSuperLongValue() throws IOException {
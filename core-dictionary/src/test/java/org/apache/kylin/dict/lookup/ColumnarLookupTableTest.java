@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.dict.lookup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.Array;
+import org.apache.kylin.common.util.DateFormat;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.metadata.MetadataManager;
+import org.apache.kylin.metadata.model.TableDesc;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Predicate;
+
+public class ColumnarLookupTableTest extends LocalFileMetadataTestCase {
+
+    private static final String TABLE_NAME = "EDW.TEST_CAL_DT";
+    private static final String SNAPSHOT_PATH = "/table_snapshot/TEST_CAL_DT.csv/4af48c94-86de-4e22-a4fd-c49b06cbaa4f.snapshot";
+    private static final String[] PK_COLS = new String[] { "CAL_DT" };
+
+    private LookupStringTable expected;
+    private ColumnarLookupTable columnar;
+
+    @Before
+    public void setup() throws Exception {
+        createTestMetadata();
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        SnapshotTable snapshot = SnapshotManager.getInstance(config).getSnapshotTable(SNAPSHOT_PATH);
+        TableDesc tableDesc = MetadataManager.getInstance(config).getTableDesc(TABLE_NAME);
+        expected = new LookupStringTable(tableDesc, PK_COLS, snapshot);
+        columnar = new ColumnarLookupTable(tableDesc, PK_COLS, snapshot);
+    }
+
+    @After
+    public void tearDown() {
+        cleanupTestMetadata();
+    }
+
+    @Test
+    public void testGetRow() {
+        Assert.assertEquals(expected.getAllRows().size(), columnar.getRowCount());
+        Assert.assertEquals(expected.getAllRows().size(), columnar.getAllRows().size());
+        for (String[] row : expected.getAllRows()) {
+            Array<String> key = new Array<String>(new String[] { row[0] });
+            Assert.assertArrayEquals(row, columnar.getRow(key));
+        }
+        Assert.assertNull(columnar.getRow(new Array<String>(new String[] { millis("1900-01-01") })));
+        Assert.assertNull(columnar.getRow(new Array<String>(new String[] { null })));
+    }
+
+    @Test
+    public void testSameAsLookupStringTable() {
+        List<String> values = new ArrayList<String>();
+        values.add(millis("2012-01-24"));
+        values.add(millis("2012-12-30"));
+        Assert.assertEquals(sorted(expected.scan("CAL_DT", values, "YEAR_BEG_DT")), sorted(columnar.scan("CAL_DT", values, "YEAR_BEG_DT")));
+
+        Assert.assertEquals(expected.mapRange("CAL_DT", millis("2012-01-24"), millis("2012-12-30"), "QTR_BEG_DT"), //
+                columnar.mapRange("CAL_DT", millis("2012-01-24"), millis("2012-12-30"), "QTR_BEG_DT"));
+        Assert.assertEquals(expected.mapRange("WEEK_BEG_DT", millis("2013-05-01"), null, "CAL_DT"), //
+                columnar.mapRange("WEEK_BEG_DT", millis("2013-05-01"), null, "CAL_DT"));
+
+        Set<String> valueSet = new HashSet<String>(values);
+        Assert.assertEquals(expected.mapValues("CAL_DT", valueSet, "YEAR_BEG_DT"), columnar.mapValues("CAL_DT", valueSet, "YEAR_BEG_DT"));
+    }
+
+    @Test
+    public void testFindRows() {
+        final int yearIdx = columnar.tableDesc.findColumnByName("YEAR_BEG_DT").getZeroBasedIndex();
+        final String year2013 = millis("2013-01-01");
+        BitSet rows = columnar.findRows("YEAR_BEG_DT", new Predicate<String>() {
+            @Override
+            public boolean apply(String value) {
+                return year2013.equals(value);
+            }
+        });
+
+        int expectedCount = 0;
+        for (String[] row : expected.getAllRows()) {
+            if (year2013.equals(row[yearIdx]))
+                expectedCount++;
+        }
+        Assert.assertEquals(expectedCount, rows.cardinality());
+        Assert.assertTrue(expectedCount > 0);
+        for (int r = rows.nextSetBit(0); r >= 0; r = rows.nextSetBit(r + 1)) {
+            Assert.assertEquals(year2013, columnar.getValue(r, yearIdx));
+        }
+
+        // the predicate is called once per distinct value
+        final Set<String> seen = new HashSet<String>();
+        columnar.findRows("YEAR_BEG_DT", new Predicate<String>() {
+            @Override
+            public boolean apply(String value) {
+                Assert.assertTrue(seen.add(value));
+                return false;
+            }
+        });
+        Assert.assertEquals(new HashSet<String>(columnar.scan("CAL_DT", allCalDates(), "YEAR_BEG_DT")), seen);
+    }
+
+    @Test
+    public void testSharedBySnapshotManager() throws Exception {
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        TableDesc tableDesc = MetadataManager.getInstance(config).getTableDesc(TABLE_NAME);
+        SnapshotManager snapshotMgr = SnapshotManager.getInstance(config);
+        LookupStringTable table = snapshotMgr.getLookupTable(SNAPSHOT_PATH, tableDesc, PK_COLS);
+        Assert.assertSame(table, snapshotMgr.getLookupTable(SNAPSHOT_PATH, tableDesc, PK_COLS));
+
+        snapshotMgr.wipeoutCache();
+        Assert.assertNotSame(table, snapshotMgr.getLookupTable(SNAPSHOT_PATH, tableDesc, PK_COLS));
+    }
+
+    private List<String> allCalDates() {
+        List<String> result = new ArrayList<String>();
+        for (String[] row : expected.getAllRows()) {
+            result.add(row[0]);
+        }
+        return result;
+    }
+
+    private List<String> sorted(List<String> list) {
+        String[] array = list.toArray(new String[list.size()]);
+        Arrays.sort(array);
+        return Arrays.asList(array);
+    }
+
+    private String millis(String dateStr) {
+        return String.valueOf(DateFormat.stringToMillis(dateStr));
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.measure.basic;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.apache.kylin.measure.MeasureAggregator;
+
+/**
+ * Aggregation states of one basic measure (SUM/COUNT/MIN/MAX over long or double) for many groups,
+ * kept in a primitive slab indexed by group id. Compared with one aggregator object per group, there
+ * is no per-group object at all and the memory footprint is exact.
+ */
+abstract public class BasicAggregationColumn {
+
+    enum Func {
+        SUM, MIN, MAX
+    }
+
+    /**
+     * Create a column that does the same aggregation as the given aggregator,
+     * or return null if the aggregator is not a primitive basic one.
+     */
+    public static BasicAggregationColumn create(MeasureAggregator<?> aggregator) {
+        if (aggregator instanceof LongSumAggregator)
+            return new LongColumn(Func.SUM);
+        if (aggregator instanceof LongMinAggregator)
+            return new LongColumn(Func.MIN);
+        if (aggregator instanceof LongMaxAggregator)
+            return new LongColumn(Func.MAX);
+        if (aggregator instanceof DoubleSumAggregator)
+            return new DoubleColumn(Func.SUM);
+        if (aggregator instanceof DoubleMinAggregator)
+            return new DoubleColumn(Func.MIN);
+        if (aggregator instanceof DoubleMaxAggregator)
+            return new DoubleColumn(Func.MAX);
+        return null;
+    }
+
+    final Func func;
+
+    // MIN/MAX state is null until the first value, SUM state starts with zero
+    final BitSet notNull = new BitSet();
+
+    BasicAggregationColumn(Func func) {
+        this.func = func;
+    }
+
+    /** make sure group ids in [0, capacity) are addressable */
+    abstract public void ensureCapacity(int capacity);
+
+    abstract public void aggregate(int groupId, Object value);
+
+    /** return the same object as MeasureAggregator.getState() would */
+    abstract public Object getState(int groupId);
+
+    /** exact number of bytes held by the slab */
+    abstract public long getMemBytes();
+
+    int newCapacity(int current, int required) {
+        int c = Math.max(current, 16);
+        while (c < required) {
+            c = c * 2;
+            if (c < 0)
+                return Integer.MAX_VALUE;
+        }
+        return c;
+    }
+
+    long bitSetMemBytes() {
+        return (notNull.size() + 7) / 8;
+    }
+
+    static class LongColumn extends BasicAggregationColumn {
+        long[] values = new long[0];
+
+        LongColumn(Func func) {
+            super(func);
+        }
+
+        @Override
+        public void ensureCapacity(int capacity) {
+            if (capacity > values.length)
+                values = Arrays.copyOf(values, newCapacity(values.length, capacity));
+        }
+
+        @Override
+        public void aggregate(int groupId, Object value) {
+            long v = ((Number) value).longValue();
+            switch (func) {
+            case SUM:
+                values[groupId] += v;
+                break;
+            case MIN:
+                if (!notNull.get(groupId) || values[groupId] > v) {
+                    values[groupId] = v;
+                    notNull.set(groupId);
+                }
+                break;
+            case MAX:
+                if (!notNull.get(groupId) || values[groupId] < v) {
+                    values[groupId] = v;
+                    notNull.set(groupId);
+                }
+                break;
+            default:
+                throw new IllegalStateException();
+            }
+        }
+
+        @Override
+        public Object getState(int groupId) {
+            if (func != Func.SUM && !notNull.get(groupId))
+                return null;
+            return values[groupId];
+        }
+
+        @Override
+        public long getMemBytes() {
+            return values.length * 8L + bitSetMemBytes();
+        }
+    }
+
+    static class DoubleColumn extends BasicAggregationColumn {
+        double[] values = new double[0];
+
+        DoubleColumn(Func func) {
+            super(func);
+        }
+
+        @Override
+        public void ensureCapacity(int capacity) {
+            if (capacity > values.length)
+                values = Arrays.copyOf(values, newCapacity(values.length, capacity));
+        }
+
+        @Override
+        public void aggregate(int groupId, Object value) {
+            double v = ((Number) value).doubleValue();
+            switch (func) {
+            case SUM:
+                values[groupId] += v;
+                break;
+            case MIN:
+                if (!notNull.get(groupId) || values[groupId] > v) {
+                    values[groupId] = v;
+                    notNull.set(groupId);
+                }
+                break;
+            case MAX:
+                if (!notNull.get(groupId) || values[groupId] < v) {
+                    values[groupId] = v;
+                    notNull.set(groupId);
+                }
+                break;
+            default:
+                throw new IllegalStateException();
+            }
+        }
+
+        @Override
+        public Object getState(int groupId) {
+            if (func != Func.SUM && !notNull.get(groupId))
+                return null;
+            return values[groupId];
+        }
+
+        @Override
+        public long getMemBytes() {
+            return values.length * 8L + bitSetMemBytes();
+        }
+    }
+}
@@ -32,6 +32,9 @@ public class CapabilityResult {
     /** The smaller the cost, the more capable the realization */
     public int cost;
 
+    /** Rows to scan estimated from statistics, -1 if unknown; when known for both, it decides over cost */
+    public long estimatedRows = -1;
+
     /**
      * Marker objects to indicate all special features
      * (dimension-as-measure, topN etc.) that have influenced the capability check.
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.measure.basic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class BasicAggregationColumnTest {
+
+    @Test
+    public void testCreate() {
+        assertEquals(BasicAggregationColumn.LongColumn.class, BasicAggregationColumn.create(new LongSumAggregator()).getClass());
+        assertEquals(BasicAggregationColumn.LongColumn.class, BasicAggregationColumn.create(new LongMaxAggregator()).getClass());
+        assertEquals(BasicAggregationColumn.DoubleColumn.class, BasicAggregationColumn.create(new DoubleMinAggregator()).getClass());
+        assertNull(BasicAggregationColumn.create(new BigDecimalSumAggregator()));
+    }
+
+    @Test
+    public void testLongColumn() {
+        BasicAggregationColumn sum = BasicAggregationColumn.create(new LongSumAggregator());
+        BasicAggregationColumn min = BasicAggregationColumn.create(new LongMinAggregator());
+        BasicAggregationColumn max = BasicAggregationColumn.create(new LongMaxAggregator());
+        sum.ensureCapacity(100);
+        min.ensureCapacity(100);
+        max.ensureCapacity(100);
+
+        for (long i = 0; i < 10; i++) {
+            for (int g = 0; g < 100; g++) {
+                sum.aggregate(g, i);
+                min.aggregate(g, i + g);
+                max.aggregate(g, i + g);
+            }
+        }
+
+        assertEquals(45L, sum.getState(0));
+        assertEquals(45L, sum.getState(99));
+        assertEquals(99L, min.getState(99));
+        assertEquals(108L, max.getState(99));
+        assertEquals(128 * 8L, sum.getMemBytes() - sum.bitSetMemBytes());
+    }
+
+    @Test
+    public void testNullState() {
+        BasicAggregationColumn sum = BasicAggregationColumn.create(new DoubleSumAggregator());
+        BasicAggregationColumn min = BasicAggregationColumn.create(new DoubleMinAggregator());
+        sum.ensureCapacity(1);
+        min.ensureCapacity(1);
+
+        assertEquals(0.0, sum.getState(0));
+        assertNull(min.getState(0));
+
+        min.aggregate(0, 2.5);
+        min.aggregate(0, -1.5);
+        assertEquals(-1.5, min.getState(0));
+    }
+}
@@ -53,6 +53,7 @@ public class StorageContext {
     private IStorageQuery storageQuery;
     private AtomicLong processedRowCount = new AtomicLong();
     private Cuboid cuboid;
+    private long estimatedRowCount = -1; // rows to scan by cost model, -1 if unknown
     private boolean partialResultReturned = false;
 
     private Range<Long> reusedPeriod;
@@ -168,6 +169,14 @@ public class StorageContext {
         return cuboid;
     }
 
+    public long getEstimatedRowCount() {
+        return estimatedRowCount;
+    }
+
+    public void setEstimatedRowCount(long estimatedRowCount) {
+        this.estimatedRowCount = estimatedRowCount;
+    }
+
     public long getProcessedRowCount() {
         return processedRowCount.get();
     }
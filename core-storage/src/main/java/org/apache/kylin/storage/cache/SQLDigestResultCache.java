@@ -0,0 +1,300 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.cache;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.QueryContext;
+import org.apache.kylin.common.debug.BackdoorToggles;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.metadata.filter.CompareTupleFilter;
+import org.apache.kylin.metadata.filter.LogicalTupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.metadata.realization.SQLDigest;
+import org.apache.kylin.metadata.tuple.ITuple;
+import org.apache.kylin.metadata.tuple.ITupleIterator;
+import org.apache.kylin.metadata.tuple.TupleInfo;
+import org.apache.kylin.storage.StorageContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Lists;
+
+/**
+ * Storage results of cube queries, keyed by a normalized SQLDigest plus the segments of the cube.
+ *
+ * Different SQL texts that compile to the same digest share an entry, e.g. SQL differing in whitespace or in
+ * the order of ANDed conditions. Since the key includes the name and build time of every ready segment, a new
+ * or refreshed segment only makes the entries of its own cube unreachable, and {@link #invalidate(String)}
+ * frees them eagerly. Entries are evicted by their estimated size.
+ */
+public class SQLDigestResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SQLDigestResultCache.class);
+
+    private static final int TUPLE_OVERHEAD_BYTES = 32;
+    private static final int VALUE_BYTES = 32; // rough average of a boxed value or short string
+
+    private static SQLDigestResultCache instance;
+
+    public static synchronized SQLDigestResultCache getInstance() {
+        if (instance == null) {
+            KylinConfig config = KylinConfig.getInstanceFromEnv();
+            instance = new SQLDigestResultCache(config.getQueryDigestCacheMaxBytes(), config.getQueryDigestCacheMaxRows());
+        }
+        return instance;
+    }
+
+    public static boolean isEnabled(KylinConfig config) {
+        return config.isQueryDigestCacheEnabled() && config.isQueryCacheEnabled() && !BackdoorToggles.getDisableCache();
+    }
+
+    private final Cache<String, List<ITuple>> cache;
+    private final int maxRows;
+
+    SQLDigestResultCache(long maxBytes, int maxRows) {
+        this.maxRows = maxRows;
+        this.cache = CacheBuilder.newBuilder().maximumWeight(maxBytes).weigher(new Weigher<String, List<ITuple>>() {
+            @Override
+            public int weigh(String key, List<ITuple> tuples) {
+                long bytes = key.length() * 2L;
+                for (ITuple tuple : tuples) {
+                    bytes += TUPLE_OVERHEAD_BYTES + tuple.getAllValues().length * VALUE_BYTES;
+                }
+                return (int) Math.min(bytes, Integer.MAX_VALUE);
+            }
+        }).recordStats().build();
+    }
+
+    /**
+     * Return the cached result, or null if missing. Called before any storage scan is started.
+     */
+    public ITupleIterator get(String key) {
+        List<ITuple> cached = cache.getIfPresent(key);
+        if (cached == null) {
+            QueryContext.current().addAndGetDigestCacheMissCount(1);
+            return null;
+        }
+
+        QueryContext.current().addAndGetDigestCacheHitCount(1);
+        logger.info("Storage result of {} rows is found in SQLDigest cache", cached.size());
+        return new CachedTupleIterator(cached);
+    }
+
+    /**
+     * Wrap the storage result so that it is cached once fully consumed.
+     */
+    public ITupleIterator record(String key, ITupleIterator storageResult, StorageContext context) {
+        return new RecordingTupleIterator(key, storageResult, context);
+    }
+
+    /** whether the cache has an entry, without touching the hit and miss counts */
+    public boolean contains(String key) {
+        return cache.asMap().containsKey(key);
+    }
+
+    /** drop entries of given realization, e.g. after its segments changed */
+    public void invalidate(String realizationName) {
+        String prefix = keyPrefix(realizationName);
+        Iterator<String> iterator = cache.asMap().keySet().iterator();
+        int count = 0;
+        while (iterator.hasNext()) {
+            if (iterator.next().startsWith(prefix)) {
+                iterator.remove();
+                count++;
+            }
+        }
+        logger.info("Invalidated {} SQLDigest cache entries of {}", count, realizationName);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    // ============================================================================
+
+    private static String keyPrefix(String realizationName) {
+        return realizationName + "|";
+    }
+
+    /**
+     * The key of a storage query. Lists whose order does not change the result, like columns, segments and
+     * ANDed/ORed conditions, are sorted; anything that shapes the returned tuples is kept as is.
+     */
+    public static String makeKey(CubeInstance cube, Collection<CubeSegment> segments, SQLDigest digest, TupleInfo returnTupleInfo, StorageContext context) {
+        StringBuilder buf = new StringBuilder();
+        buf.append(keyPrefix(cube.getName()));
+
+        List<String> segs = Lists.newArrayList();
+        for (CubeSegment seg : segments) {
+            segs.add(seg.getUuid() + "@" + seg.getLastBuildTime());
+        }
+        Collections.sort(segs);
+        buf.append("segments=").append(segs).append("|");
+
+        buf.append("fact=").append(digest.factTable).append("|");
+        buf.append("columns=").append(sortedColumns(digest.allColumns)).append("|");
+        buf.append("groupby=").append(sortedColumns(digest.groupbyColumns)).append("|");
+        buf.append("aggrs=").append(digest.aggregations).append("|");
+        buf.append("filter=").append(normalize(digest.filter)).append("|");
+        buf.append("having=").append(normalize(digest.havingFilter)).append("|");
+        buf.append("sort=").append(digest.sortColumns).append(digest.sortOrders).append("|");
+        buf.append("raw=").append(digest.isRawQuery).append(",limitPrecedesAggr=").append(digest.limitPrecedesAggr).append("|");
+        buf.append("tuple=").append(returnTupleInfo.getAllFields()).append("|");
+        buf.append("limit=").append(context.getFinalPushDownLimit()).append(",offset=").append(context.getOffset());
+        return buf.toString();
+    }
+
+    private static List<String> sortedColumns(Collection<TblColRef> columns) {
+        List<String> result = Lists.newArrayList();
+        if (columns != null) {
+            for (TblColRef col : columns) {
+                result.add(col.getIdentity());
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    static String normalize(TupleFilter filter) {
+        if (filter == null)
+            return "null";
+
+        if (filter instanceof LogicalTupleFilter && filter.getOperator() != FilterOperatorEnum.NOT) {
+            List<String> children = Lists.newArrayList();
+            for (TupleFilter child : filter.getChildren()) {
+                children.add(normalize(child));
+            }
+            Collections.sort(children);
+            return filter.getOperator() + children.toString();
+        }
+
+        if (filter instanceof CompareTupleFilter) {
+            CompareTupleFilter compare = (CompareTupleFilter) filter;
+            List<String> values = Lists.newArrayList();
+            for (Object v : compare.getValues()) {
+                values.add(String.valueOf(v));
+            }
+            Collections.sort(values);
+            Object left = compare.getFunction() != null ? compare.getFunction() : compare.getColumn();
+            return left + " " + compare.getOperator() + " " + values;
+        }
+
+        return filter.getOperator() + "(" + filter + ")";
+    }
+
+    // ============================================================================
+
+    private static class CachedTupleIterator implements ITupleIterator {
+        final Iterator<ITuple> iterator;
+
+        CachedTupleIterator(List<ITuple> tuples) {
+            this.iterator = tuples.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public ITuple next() {
+            // a copy, in case the consumer modifies it
+            return iterator.next().makeCopy();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private class RecordingTupleIterator implements ITupleIterator {
+        final String key;
+        final ITupleIterator delegate;
+        final StorageContext context;
+        List<ITuple> recorded = Lists.newArrayList(); // null once too large
+
+        RecordingTupleIterator(String key, ITupleIterator delegate, StorageContext context) {
+            this.key = key;
+            this.delegate = delegate;
+            this.context = context;
+        }
+
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = delegate.hasNext();
+            if (!hasNext && recorded != null) {
+                // drained, unless it stopped at a threshold and returned partial result
+                if (!context.isPartialResultReturned()) {
+                    cache.put(key, recorded);
+                    logger.info("Storage result of {} rows is put into SQLDigest cache", recorded.size());
+                }
+                recorded = null;
+            }
+            return hasNext;
+        }
+
+        @Override
+        public ITuple next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            ITuple tuple = delegate.next();
+            if (recorded != null) {
+                if (recorded.size() < maxRows) {
+                    recorded.add(tuple.makeCopy()); // storage iterators reuse the tuple object
+                } else {
+                    recorded = null;
+                }
+            }
+            return tuple;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            recorded = null; // closed before drained, result is not complete
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.debug.BackdoorToggles;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.metadata.filter.CompareTupleFilter;
+import org.apache.kylin.metadata.filter.LogicalTupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
+import org.apache.kylin.metadata.model.PartitionDesc;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.storage.StorageContext;
+import org.apache.kylin.storage.gtrecord.PartitionResultIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Range;
+
+/**
+ * Storage results of single segment scans, i.e. the partial aggregates of a segment, kept off-heap.
+ *
+ * The key is segment, build time, cuboid and the result digest of the scan request. Ready segments are immutable,
+ * so an entry stays valid until the segment is refreshed, which changes its build time. Queries on different time
+ * ranges share the entries of segments fully inside their ranges, as conditions on the partition column that cover
+ * the whole segment are erased from the filter before planning, see {@link #eraseCoveredPartitionCondition}.
+ */
+public class SegmentScanResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentScanResultCache.class);
+
+    private static SegmentScanResultCache instance;
+
+    public static synchronized SegmentScanResultCache getInstance() {
+        if (instance == null) {
+            KylinConfig config = KylinConfig.getInstanceFromEnv();
+            instance = new SegmentScanResultCache(config.getQuerySegmentCacheMaxBytes(), config.getQuerySegmentCacheMaxEntryBytes());
+        }
+        return instance;
+    }
+
+    public static boolean isEnabled(KylinConfig config) {
+        return config.isQuerySegmentCacheEnabled() && config.isQueryCacheEnabled() && !BackdoorToggles.getDisableCache();
+    }
+
+    public static String makeKey(CubeSegment segment, Cuboid cuboid, GTScanRequest scanRequest) {
+        return segment.getUuid() + "@" + segment.getLastBuildTime() + "|" + cuboid.getId() + "|" + scanRequest.getResultDigest();
+    }
+
+    private final Cache<String, ByteBuffer> cache;
+    private final int maxEntryBytes;
+
+    SegmentScanResultCache(long maxBytes, int maxEntryBytes) {
+        this.maxEntryBytes = maxEntryBytes;
+        this.cache = CacheBuilder.newBuilder().maximumWeight(maxBytes).weigher(new Weigher<String, ByteBuffer>() {
+            @Override
+            public int weigh(String key, ByteBuffer value) {
+                return key.length() * 2 + value.capacity();
+            }
+        }).build();
+    }
+
+    /**
+     * Return the cached result of the scan, or null if missing.
+     */
+    public IGTScanner get(String key, GTScanRequest scanRequest) {
+        ByteBuffer stored = cache.getIfPresent(key);
+        if (stored == null)
+            return null;
+
+        // records are loaded by pointing to a heap array, copy it out once
+        byte[] data = new byte[stored.capacity()];
+        stored.duplicate().get(data);
+        return new CachedScanner(data, scanRequest.getInfo(), scanRequest.getColumns());
+    }
+
+    /**
+     * Wrap the storage scanner so that its result is cached once fully consumed.
+     */
+    public IGTScanner record(String key, IGTScanner scanner, GTScanRequest scanRequest, StorageContext context) {
+        return new RecordingScanner(key, scanner, scanRequest.getColumns(), context);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    // ============================================================================
+
+    /**
+     * Remove top level conditions on the partition date column which hold for every row of the segment. It keeps the
+     * segment result same, but makes the scan request independent of the exact time range of the query.
+     */
+    public static TupleFilter eraseCoveredPartitionCondition(CubeSegment segment, TupleFilter filter) {
+        PartitionDesc partDesc = segment.getModel().getPartitionDesc();
+        if (filter == null || !partDesc.isPartitioned() || partDesc.getPartitionDateColumnRef() == null)
+            return filter;
+        if (segment.getDateRangeStart() >= segment.getDateRangeEnd())
+            return filter;
+
+        TblColRef partCol = partDesc.getPartitionDateColumnRef();
+        Range<Long> tsRange;
+        try {
+            tsRange = TsConditionExtractor.extractTsCondition(partCol, filter);
+        } catch (RuntimeException e) {
+            // partition column of non-date format
+            return filter;
+        }
+        if (tsRange == null || !tsRange.encloses(Range.closedOpen(segment.getDateRangeStart(), segment.getDateRangeEnd())))
+            return filter;
+
+        if (isRangeCondition(filter, partCol))
+            return null;
+
+        if (filter instanceof LogicalTupleFilter && filter.getOperator() == FilterOperatorEnum.AND) {
+            List<TupleFilter> kept = Lists.newArrayList();
+            for (TupleFilter child : filter.getChildren()) {
+                if (!isRangeCondition(child, partCol))
+                    kept.add(child);
+            }
+            if (kept.size() == filter.getChildren().size())
+                return filter;
+            if (kept.isEmpty())
+                return null;
+            if (kept.size() == 1)
+                return kept.get(0);
+
+            LogicalTupleFilter and = new LogicalTupleFilter(FilterOperatorEnum.AND);
+            and.addChildren(kept);
+            return and;
+        }
+        return filter;
+    }
+
+    // the conditions understood by TsConditionExtractor
+    private static boolean isRangeCondition(TupleFilter filter, TblColRef partCol) {
+        if (!(filter instanceof CompareTupleFilter))
+            return false;
+
+        CompareTupleFilter compare = (CompareTupleFilter) filter;
+        if (!partCol.equals(compare.getColumn()))
+            return false;
+
+        switch (compare.getOperator()) {
+        case EQ:
+        case LT:
+        case LTE:
+        case GT:
+        case GTE:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    // ============================================================================
+
+    private static class CachedScanner implements IGTScanner {
+        final byte[] data;
+        final GTInfo info;
+        final ImmutableBitSet columns;
+
+        CachedScanner(byte[] data, GTInfo info, ImmutableBitSet columns) {
+            this.data = data;
+            this.info = info;
+            this.columns = columns;
+        }
+
+        @Override
+        public GTInfo getInfo() {
+            return info;
+        }
+
+        @Override
+        public Iterator<GTRecord> iterator() {
+            return new PartitionResultIterator(data, info, columns);
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    private class RecordingScanner implements IGTScanner {
+        final String key;
+        final IGTScanner delegate;
+        final ImmutableBitSet columns;
+        final StorageContext context;
+        ByteBuffer recorded = ByteBuffer.allocate(4096); // null once too large or done
+
+        RecordingScanner(String key, IGTScanner delegate, ImmutableBitSet columns, StorageContext context) {
+            this.key = key;
+            this.delegate = delegate;
+            this.columns = columns;
+            this.context = context;
+        }
+
+        @Override
+        public GTInfo getInfo() {
+            return delegate.getInfo();
+        }
+
+        @Override
+        public Iterator<GTRecord> iterator() {
+            final Iterator<GTRecord> input = delegate.iterator();
+            return new Iterator<GTRecord>() {
+                @Override
+                public boolean hasNext() {
+                    boolean hasNext = input.hasNext();
+                    if (!hasNext)
+                        onDrained();
+                    return hasNext;
+                }
+
+                @Override
+                public GTRecord next() {
+                    GTRecord record = input.next();
+                    if (recorded != null)
+                        append(record);
+                    return record;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        private void append(GTRecord record) {
+            int size = record.sizeOf(columns);
+            if (recorded.remaining() < size) {
+                int needed = recorded.position() + size;
+                if (needed > maxEntryBytes) {
+                    recorded = null;
+                    return;
+                }
+                ByteBuffer larger = ByteBuffer.allocate(Math.min(Math.max(needed, recorded.capacity() * 2), maxEntryBytes));
+                recorded.flip();
+                larger.put(recorded);
+                recorded = larger;
+            }
+            record.exportColumns(columns, recorded);
+        }
+
+        private void onDrained() {
+            if (recorded == null)
+                return;
+
+            // a threshold was hit and the result of some segment could be incomplete
+            if (!context.isPartialResultReturned()) {
+                ByteBuffer stored = ByteBuffer.allocateDirect(recorded.position());
+                recorded.flip();
+                stored.put(recorded);
+                cache.put(key, stored);
+                logger.info("Segment scan result of {} bytes is put into cache", stored.capacity());
+            }
+            recorded = null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            recorded = null; // closed before drained, result is not complete
+            delegate.close();
+        }
+    }
+}
@@ -29,6 +29,7 @@ import java.util.Set;
 import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.debug.BackdoorToggles;
 import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.ImmutableBitSet;
 import org.apache.kylin.common.util.Pair;
 import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.cube.common.FuzzyValueCombination;
@@ -64,6 +65,7 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
 
     protected int maxScanRanges;
     protected int maxFuzzyKeys;
+    protected ScanPlanCostEstimator costEstimator; // null if scan plans are not chosen by cost
 
     //non-GT
     protected CubeSegment cubeSegment;
@@ -116,10 +118,14 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
                 this.gtPartitionCol = gtInfo.colRef(index);
             }
         }
+
+        if (cubeSegment.getConfig().isQueryScanPlanCostBasedEnabled()) {
+            this.costEstimator = ScanPlanCostEstimator.create(cubeSegment, cuboid, gtInfo);
+        }
     }
 
     /**
-     * Construct  GTScanRangePlanner with incomplete information. For UT only.
+     * Construct  GTScanRangePlanner with incomplete information. For UT and {@link #mergeScanRanges} only.
      */
     public CubeScanRangePlanner(GTInfo info, Pair<ByteArray, ByteArray> gtStartAndEnd, TblColRef gtPartitionCol, TupleFilter gtFilter) {
 
@@ -148,7 +154,11 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
             scanRequest = new GTScanRequestBuilder().setInfo(gtInfo).setRanges(scanRanges).setDimensions(gtDimensions).//
                     setAggrGroupBy(gtAggrGroups).setAggrMetrics(gtAggrMetrics).setAggrMetricsFuncs(gtAggrFuncs).setFilterPushDown(gtFilter).//
                     setAllowStorageAggregation(context.isNeedStorageAggregation()).setAggCacheMemThreshold(cubeSegment.getConfig().getQueryCoprocessorMemGB()).//
-                    setStoragePushDownLimit(context.getFinalPushDownLimit()).setHavingFilterPushDown(havingFilter).createGTScanRequest();
+                    setStoragePushDownLimit(context.getFinalPushDownLimit()).setHavingFilterPushDown(havingFilter).//
+                    setHashAggregation(cubeSegment.getConfig().getQueryCoprocessorHashAggrEnabled()).createGTScanRequest();
+            if (costEstimator != null) {
+                scanRequest.setEstimatedScan(costEstimator.estimateRows(scanRanges), costEstimator.estimateBytes(scanRanges));
+            }
         } else {
             scanRequest = null;
         }
@@ -165,18 +175,110 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
         List<Collection<ColumnRange>> orAndDimRanges = translateToOrAndDimRanges(flatFilter);
 
         List<GTScanRange> scanRanges = Lists.newArrayListWithCapacity(orAndDimRanges.size());
+        List<GTScanRange> exactRanges = costEstimator == null ? null : Lists.<GTScanRange> newArrayList();
         for (Collection<ColumnRange> andDimRanges : orAndDimRanges) {
             GTScanRange scanRange = newScanRange(andDimRanges);
-            if (scanRange != null)
+            if (scanRange != null) {
                 scanRanges.add(scanRange);
+                if (exactRanges != null)
+                    exactRanges = addExactScanRanges(andDimRanges, scanRange, exactRanges);
+            }
         }
 
         List<GTScanRange> mergedRanges = mergeOverlapRanges(scanRanges);
         mergedRanges = mergeTooManyRanges(mergedRanges, maxScanRanges);
 
+        if (costEstimator != null && !scanRanges.isEmpty()) {
+            mergedRanges = chooseCheapestPlan(mergedRanges, exactRanges, scanRanges);
+        }
         return mergedRanges;
     }
 
+    /**
+     * Chooses among the default plan, which keeps fuzzy keys, the exact ranges split on leading IN columns, and one
+     * range merging all without fuzzy keys, by the estimated bytes read.
+     */
+    private List<GTScanRange> chooseCheapestPlan(List<GTScanRange> fuzzyPlan, List<GTScanRange> exactRanges, List<GTScanRange> scanRanges) {
+        List<GTScanRange> exactPlan = null;
+        if (exactRanges != null) {
+            exactPlan = mergeOverlapRanges(exactRanges);
+            if (exactPlan.size() > maxScanRanges)
+                exactPlan = null;
+        }
+        GTScanRange all = mergeKeyRange(scanRanges);
+        List<GTScanRange> mergedPlan = Lists.newArrayList(new GTScanRange(all.pkStart, all.pkEnd, Collections.<GTRecord> emptyList()));
+
+        long fuzzyBytes = costEstimator.estimateBytes(fuzzyPlan);
+        long exactBytes = exactPlan == null ? -1 : costEstimator.estimateBytes(exactPlan);
+        long mergedBytes = costEstimator.estimateBytes(mergedPlan);
+
+        List<GTScanRange> chosen = fuzzyPlan;
+        String chosenName = "fuzzy";
+        long chosenBytes = fuzzyBytes;
+        if (exactPlan != null && exactBytes < chosenBytes) {
+            chosen = exactPlan;
+            chosenName = "exact";
+            chosenBytes = exactBytes;
+        }
+        if (mergedBytes < chosenBytes) {
+            chosen = mergedPlan;
+            chosenName = "merged";
+            chosenBytes = mergedBytes;
+        }
+
+        logger.info("Chose {} scan plan of {} ranges for cuboid {} of segment {}, estimated bytes: fuzzy {} in {} ranges, exact {} in {} ranges, merged {}", //
+                chosenName, chosen.size(), cuboid.getId(), cubeSegment, fuzzyBytes, fuzzyPlan.size(), exactBytes, exactPlan == null ? 0 : exactPlan.size(), mergedBytes);
+        return chosen;
+    }
+
+    /**
+     * Adds the range split into one range per combination of values of its leading EQ and IN columns, so the values
+     * in between are not scanned. Returns null if there would be more than the max scan ranges.
+     */
+    List<GTScanRange> addExactScanRanges(Collection<ColumnRange> andDimRanges, GTScanRange scanRange, List<GTScanRange> exactRanges) {
+        Map<Integer, Set<ByteArray>> leadingValues = Maps.newHashMap();
+        Map<Integer, Set<ByteArray>> fuzzyValues = Maps.newHashMap();
+        Map<Integer, ColumnRange> rangeByCol = Maps.newHashMap();
+        for (ColumnRange range : andDimRanges) {
+            rangeByCol.put(range.column.getColumnDesc().getZeroBasedIndex(), range);
+        }
+        ImmutableBitSet pk = gtInfo.getPrimaryKey();
+        boolean leading = true;
+        for (int i = 0; i < pk.trueBitCount(); i++) {
+            int col = pk.trueBitAt(i);
+            ColumnRange range = rangeByCol.get(col);
+            boolean isIn = range != null && range.valueSet != null && !range.valueSet.isEmpty();
+            leading = leading && isIn;
+            if (leading)
+                leadingValues.put(col, range.valueSet);
+            else if (isIn)
+                fuzzyValues.put(col, range.valueSet);
+        }
+
+        List<Map<Integer, ByteArray>> combinations = FuzzyValueCombination.calculate(leadingValues, maxScanRanges - exactRanges.size());
+        if (combinations.isEmpty()) {
+            if (!leadingValues.isEmpty())
+                return null; // too many
+
+            exactRanges.add(scanRange);
+            return exactRanges;
+        }
+
+        List<GTRecord> fuzzyKeys = buildFuzzyKeys(fuzzyValues);
+        for (Map<Integer, ByteArray> combination : combinations) {
+            GTRecord pkStart = new GTRecord(gtInfo);
+            GTRecord pkEnd = new GTRecord(gtInfo);
+            pkStart.shallowCopyFrom(scanRange.pkStart);
+            pkEnd.shallowCopyFrom(scanRange.pkEnd);
+            for (Map.Entry<Integer, ByteArray> entry : combination.entrySet()) {
+                pkStart.set(entry.getKey(), entry.getValue());
+                pkEnd.set(entry.getKey(), entry.getValue());
+            }
+            exactRanges.add(new GTScanRange(pkStart, pkEnd, fuzzyKeys));
+        }
+        return exactRanges;
+    }
+
     private Set<TblColRef> replaceDerivedColumns(Set<TblColRef> input, CubeDesc cubeDesc) {
         Set<TblColRef> ret = Sets.newHashSet();
         for (TblColRef col : input) {
@@ -327,6 +429,14 @@ public class CubeScanRangePlanner extends ScanRangePlannerBase {
         return new GTScanRange(start, end, newFuzzyKeys);
     }
 
+    /**
+     * Merge ranges of several scan requests on the same GTInfo into as few ranges as possible, e.g. for a shared scan.
+     */
+    public List<GTScanRange> mergeScanRanges(List<GTScanRange> ranges) {
+        List<GTScanRange> mergedRanges = mergeOverlapRanges(Lists.newArrayList(ranges));
+        return mergeTooManyRanges(mergedRanges, maxScanRanges);
+    }
+
     protected List<GTScanRange> mergeTooManyRanges(List<GTScanRange> ranges, int maxRanges) {
         if (ranges.size() <= maxRanges) {
             return ranges;
@@ -37,6 +37,7 @@ import org.apache.kylin.metadata.filter.TupleFilterSerializer;
 import org.apache.kylin.metadata.model.FunctionDesc;
 import org.apache.kylin.metadata.model.TblColRef;
 import org.apache.kylin.storage.StorageContext;
+import org.apache.kylin.storage.cache.SegmentScanResultCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -64,6 +65,12 @@ public class CubeSegmentScanner implements IGTScanner {
         byte[] serialize = TupleFilterSerializer.serialize(originalfilter, StringCodeSystem.INSTANCE);
         TupleFilter filter = TupleFilterSerializer.deserialize(serialize, StringCodeSystem.INSTANCE);
 
+        boolean useCache = SegmentScanResultCache.isEnabled(cubeSeg.getConfig());
+        if (useCache) {
+            // so that queries on different time ranges share the result of this segment
+            filter = SegmentScanResultCache.eraseCoveredPartitionCondition(cubeSeg, filter);
+        }
+
         // translate FunctionTupleFilter to IN clause
         ITupleFilterTransformer translator = new BuiltInFunctionTransformer(cubeSeg.getDimensionEncodingMap());
         filter = translator.transform(filter);
@@ -80,7 +87,10 @@ public class CubeSegmentScanner implements IGTScanner {
         scanRequest = scanRangePlanner.planScanRequest();
         
         String gtStorage = ((GTCubeStorageQueryBase) context.getStorageQuery()).getGTStorage();
-        scanner = new ScannerWorker(cubeSeg, cuboid, scanRequest, gtStorage, context);
+        String cacheKey = useCache && scanRequest != null ? SegmentScanResultCache.makeKey(cubeSeg, cuboid, scanRequest) : null;
+        boolean shareScan = cubeSeg.getConfig().isQuerySharedScanEnabled() && scanRequest != null && SharedScanBatcher.isShareable(scanRequest, context);
+        String sharedScanKey = shareScan ? SharedScanBatcher.makeKey(cubeSeg, cuboid, gtStorage) : null;
+        scanner = new ScannerWorker(cubeSeg, cuboid, scanRequest, gtStorage, context, cacheKey, sharedScanKey);
     }
     
     public boolean isSegmentSkipped() {
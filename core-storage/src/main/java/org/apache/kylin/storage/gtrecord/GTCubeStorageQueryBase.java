@@ -32,10 +32,12 @@ import org.apache.kylin.cube.CubeManager;
 import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.cube.RawQueryLastHacker;
 import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.cuboid.CuboidCostModel;
 import org.apache.kylin.cube.model.CubeDesc;
 import org.apache.kylin.cube.model.CubeDesc.DeriveInfo;
 import org.apache.kylin.dict.lookup.LookupStringTable;
 import org.apache.kylin.measure.MeasureType;
+import org.apache.kylin.metadata.filter.BuiltInFunctionTupleFilter;
 import org.apache.kylin.metadata.filter.CaseTupleFilter;
 import org.apache.kylin.metadata.filter.ColumnTupleFilter;
 import org.apache.kylin.metadata.filter.CompareTupleFilter;
@@ -52,6 +54,7 @@ import org.apache.kylin.metadata.tuple.ITupleIterator;
 import org.apache.kylin.metadata.tuple.TupleInfo;
 import org.apache.kylin.storage.IStorageQuery;
 import org.apache.kylin.storage.StorageContext;
+import org.apache.kylin.storage.cache.SQLDigestResultCache;
 import org.apache.kylin.storage.translate.DerivedFilterTranslator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -76,6 +79,15 @@ public abstract class GTCubeStorageQueryBase implements IStorageQuery {
     public ITupleIterator search(StorageContext context, SQLDigest sqlDigest, TupleInfo returnTupleInfo) {
         GTCubeStorageQueryRequest request = getStorageQueryRequest(context, sqlDigest, returnTupleInfo);
 
+        // look up before creating scanners, which start the storage calls right away
+        String cacheKey = null;
+        if (SQLDigestResultCache.isEnabled(cubeDesc.getConfig())) {
+            cacheKey = SQLDigestResultCache.makeKey(cubeInstance, cubeInstance.getSegments(SegmentStatusEnum.READY), sqlDigest, returnTupleInfo, request.getContext());
+            ITupleIterator cached = SQLDigestResultCache.getInstance().get(cacheKey);
+            if (cached != null)
+                return cached;
+        }
+
         List<CubeSegmentScanner> scanners = Lists.newArrayList();
         for (CubeSegment cubeSeg : cubeInstance.getSegments(SegmentStatusEnum.READY)) {
             CubeSegmentScanner scanner;
@@ -93,7 +105,10 @@ public abstract class GTCubeStorageQueryBase implements IStorageQuery {
         if (scanners.isEmpty())
             return ITupleIterator.EMPTY_TUPLE_ITERATOR;
 
-        return new SequentialCubeTupleIterator(scanners, request.getCuboid(), request.getDimensions(), request.getMetrics(), returnTupleInfo, request.getContext());
+        ITupleIterator result = new SequentialCubeTupleIterator(scanners, request.getCuboid(), request.getDimensions(), request.getMetrics(), returnTupleInfo, request.getContext());
+        if (cacheKey != null)
+            result = SQLDigestResultCache.getInstance().record(cacheKey, result, request.getContext());
+        return result;
     }
 
     protected GTCubeStorageQueryRequest getStorageQueryRequest(StorageContext context, SQLDigest sqlDigest, TupleInfo returnTupleInfo) {
@@ -127,8 +142,10 @@ public abstract class GTCubeStorageQueryBase implements IStorageQuery {
         Set<TblColRef> dimensionsD = new LinkedHashSet<TblColRef>();
         dimensionsD.addAll(groupsD);
         dimensionsD.addAll(otherDimsD);
-        Cuboid cuboid = findCuboid(cubeDesc, dimensionsD, metrics);
+        CuboidCostModel costModel = CuboidCostModel.create(cubeInstance, filter);
+        Cuboid cuboid = findCuboid(cubeDesc, dimensionsD, metrics, costModel);
         context.setCuboid(cuboid);
+        context.setEstimatedRowCount(costModel == null ? -1 : costModel.estimateScanRows(cuboid.getId()));
 
         // set whether to aggr at storage
         Set<TblColRef> singleValuesD = findSingleValueColumns(filter);
@@ -151,15 +168,15 @@ public abstract class GTCubeStorageQueryBase implements IStorageQuery {
         // push down having clause filter if possible
         TupleFilter havingFilter = checkHavingCanPushDown(sqlDigest.havingFilter, groupsD, sqlDigest.aggregations, metrics);
 
-        logger.info("Cuboid identified: cube={}, cuboidId={}, groupsD={}, filterD={}, limitPushdown={}, storageAggr={}", cubeInstance.getName(), cuboid.getId(), groupsD, filterColumnD, context.getFinalPushDownLimit(), context.isNeedStorageAggregation());
+        logger.info("Cuboid identified: cube={}, cuboidId={}, groupsD={}, filterD={}, limitPushdown={}, storageAggr={}, estimatedRows={}", cubeInstance.getName(), cuboid.getId(), groupsD, filterColumnD, context.getFinalPushDownLimit(), context.isNeedStorageAggregation(), context.getEstimatedRowCount());
 
         return new GTCubeStorageQueryRequest(cuboid, dimensionsD, groupsD, filterColumnD, metrics, filterD, havingFilter, context);
     }
 
     protected abstract String getGTStorage();
 
-    protected Cuboid findCuboid(CubeDesc cubeDesc, Set<TblColRef> dimensionsD, Set<FunctionDesc> metrics) {
-        return Cuboid.identifyCuboid(cubeDesc, dimensionsD, metrics);
+    protected Cuboid findCuboid(CubeDesc cubeDesc, Set<TblColRef> dimensionsD, Set<FunctionDesc> metrics, CuboidCostModel costModel) {
+        return Cuboid.identifyCuboid(cubeDesc, dimensionsD, metrics, costModel);
     }
 
     protected ITupleConverter newCubeTupleConverter(CubeSegment cubeSeg, Cuboid cuboid, Set<TblColRef> selectedDimensions, Set<FunctionDesc> selectedMetrics, int[] gtColIdx, TupleInfo tupleInfo) {
@@ -274,6 +291,10 @@ public abstract class GTCubeStorageQueryBase implements IStorageQuery {
             return translateDerivedInCompare((CompareTupleFilter) filter, collector);
         }
 
+        if (filter instanceof BuiltInFunctionTupleFilter) {
+            return translateDerivedInFunction((BuiltInFunctionTupleFilter) filter, collector);
+        }
+
         List<TupleFilter> children = (List<TupleFilter>) filter.getChildren();
         List<TupleFilter> newChildren = Lists.newArrayListWithCapacity(children.size());
         boolean modified = false;
@@ -327,6 +348,30 @@ public abstract class GTCubeStorageQueryBase implements IStorageQuery {
         return translatedFilter;
     }
 
+    private TupleFilter translateDerivedInFunction(BuiltInFunctionTupleFilter funcf, Set<TblColRef> collector) {
+        if (funcf.getColumnContainerFilter() == null)
+            return funcf;
+
+        TblColRef derived = funcf.getColumn();
+        if (cubeDesc.isDerived(derived) == false)
+            return funcf;
+
+        DeriveInfo hostInfo = cubeDesc.getHostInfo(derived);
+        CubeManager cubeMgr = CubeManager.getInstance(this.cubeInstance.getConfig());
+        CubeSegment seg = cubeInstance.getLatestReadySegment();
+        LookupStringTable lookup = cubeMgr.getLookupTable(seg, hostInfo.join);
+        Pair<TupleFilter, Boolean> translated = DerivedFilterTranslator.translate(lookup, hostInfo, funcf);
+        if (translated == null)
+            return funcf;
+
+        TupleFilter translatedFilter = translated.getFirst();
+        boolean loosened = translated.getSecond();
+        if (loosened) {
+            collectColumnsRecursively(translatedFilter, collector);
+        }
+        return translatedFilter;
+    }
+
     private void collectColumnsRecursively(TupleFilter filter, Set<TblColRef> collector) {
         if (filter == null)
             return;
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.gtrecord;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRange;
+import org.apache.kylin.metadata.model.TblColRef;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Estimates the rows and bytes the storage reads for scan ranges on a cuboid of a segment, from the cuboid row count
+ * (see {@link CubeSegment#getCuboidRowCounts()}) and the dictionary cardinality of rowkey columns, assuming the rows
+ * spread evenly over the values of each column.
+ *
+ * A range reads the rows between its start and end key. With fuzzy keys, only the rows matching a fuzzy key are read,
+ * but the scan seeks once for every candidate prefix up to the last fuzzy column, each seek costing about a block.
+ */
+public class ScanPlanCostEstimator {
+
+    /**
+     * @return the estimator, or null if the segment has no row count of the cuboid
+     */
+    public static ScanPlanCostEstimator create(CubeSegment seg, Cuboid cuboid, GTInfo info) {
+        Map<Long, Long> rowCounts = seg.getCuboidRowCounts();
+        if (rowCounts == null || rowCounts.get(cuboid.getId()) == null)
+            return null;
+
+        long totalRows = 0;
+        for (Long rows : rowCounts.values()) {
+            totalRows += rows;
+        }
+        double bytesPerRow = seg.getSizeKB() > 0 && totalRows > 0 ? seg.getSizeKB() * 1024.0 / totalRows : info.getMaxRecordLength();
+
+        Map<String, Object[]> stats = Maps.newHashMap();
+        for (Object[] stat : seg.getRowkeyStats()) {
+            // [column identity, dictionary size, size of id]
+            stats.put((String) stat[0], stat);
+        }
+        List<TblColRef> dims = cuboid.getCuboidToGridTableMapping().getCuboidDimensionsInGTOrder();
+        long[] cardinality = new long[info.getColumnCount()];
+        int[] idLength = new int[info.getColumnCount()];
+        for (int i = 0; i < dims.size(); i++) {
+            Object[] stat = stats.get(dims.get(i).getIdentity());
+            if (stat != null) {
+                cardinality[i] = ((Number) stat[1]).longValue();
+                idLength[i] = ((Number) stat[2]).intValue();
+            }
+        }
+
+        return new ScanPlanCostEstimator(info, rowCounts.get(cuboid.getId()), bytesPerRow, cardinality, idLength, seg.getConfig().getQueryScanPlanSeekBytes());
+    }
+
+    private final GTInfo info;
+    private final long cuboidRows;
+    private final double bytesPerRow;
+    private final long[] cardinality; // GT column ==> dictionary size, 0 if not dictionary encoded
+    private final int[] idLength; // GT column ==> size of dictionary id
+    private final long seekBytes;
+
+    ScanPlanCostEstimator(GTInfo info, long cuboidRows, double bytesPerRow, long[] cardinality, int[] idLength, long seekBytes) {
+        this.info = info;
+        this.cuboidRows = cuboidRows;
+        this.bytesPerRow = bytesPerRow;
+        this.cardinality = cardinality;
+        this.idLength = idLength;
+        this.seekBytes = seekBytes;
+    }
+
+    public long estimateRows(List<GTScanRange> ranges) {
+        long rows = 0;
+        for (GTScanRange range : ranges) {
+            rows += estimate(range)[0];
+        }
+        return rows;
+    }
+
+    public long estimateBytes(List<GTScanRange> ranges) {
+        long bytes = 0;
+        for (GTScanRange range : ranges) {
+            long[] rowsAndSeeks = estimate(range);
+            bytes += Math.round(rowsAndSeeks[0] * bytesPerRow) + rowsAndSeeks[1] * seekBytes;
+        }
+        return bytes;
+    }
+
+    // returns rows read and seeks of the range
+    long[] estimate(GTScanRange range) {
+        ImmutableBitSet pk = info.getPrimaryKey();
+        int n = pk.trueBitCount();
+
+        // the leading columns of one value and the first column of more narrow the range, later ones do not
+        long[] valuesInRange = new long[n]; // 0 if unknown
+        double fraction = 1;
+        int firstFree = n;
+        for (int i = 0; i < n; i++) {
+            int col = pk.trueBitAt(i);
+            long card = cardinality[col];
+            if (firstFree < n || card <= 0) {
+                valuesInRange[i] = card;
+                firstFree = Math.min(firstFree, i);
+                continue;
+            }
+
+            long begin = code(range.pkStart.get(col), col, 0);
+            long end = code(range.pkEnd.get(col), col, card - 1);
+            if (begin > end)
+                return new long[] { 0, 1 };
+
+            valuesInRange[i] = end - begin + 1;
+            fraction *= (double) valuesInRange[i] / card;
+            if (begin != end)
+                firstFree = i;
+        }
+        long rangeRows = Math.max(1, Math.round(cuboidRows * fraction));
+
+        if (range.fuzzyKeys == null || range.fuzzyKeys.isEmpty())
+            return new long[] { rangeRows, 1 };
+
+        double matchFraction = 1;
+        long[] fuzzyValues = new long[n];
+        int lastFuzzy = -1;
+        for (int i = firstFree; i < n; i++) {
+            fuzzyValues[i] = countFuzzyValues(range.fuzzyKeys, pk.trueBitAt(i));
+            if (fuzzyValues[i] > 0) {
+                lastFuzzy = i;
+                if (valuesInRange[i] > 0)
+                    matchFraction *= Math.min(1.0, (double) fuzzyValues[i] / valuesInRange[i]);
+            }
+        }
+        if (lastFuzzy < 0)
+            return new long[] { rangeRows, 1 };
+
+        // every candidate prefix up to the last fuzzy column costs a seek
+        double prefixes = 1;
+        for (int i = firstFree; i <= lastFuzzy; i++) {
+            long v = fuzzyValues[i] > 0 ? fuzzyValues[i] : valuesInRange[i];
+            if (v <= 0) {
+                prefixes = rangeRows;
+                break;
+            }
+            prefixes *= v;
+        }
+        long seeks = Math.max(1, Math.round(Math.min(rangeRows, prefixes)));
+        long rows = Math.min(rangeRows, Math.round(rangeRows * matchFraction) + seeks);
+        return new long[] { rows, seeks };
+    }
+
+    private long code(ByteArray value, int col, long defaultCode) {
+        if (value == null || value.array() == null || value.length() != idLength[col])
+            return defaultCode;
+        // the id of null is all 0xff, larger than any other
+        return Math.min(BytesUtil.readLong(value.array(), value.offset(), value.length()), cardinality[col] - 1);
+    }
+
+    // distinct values of the column among fuzzy keys, 0 if any key leaves it open
+    private static int countFuzzyValues(List<GTRecord> fuzzyKeys, int col) {
+        Set<ByteArray> values = Sets.newHashSet();
+        for (GTRecord key : fuzzyKeys) {
+            ByteArray value = key.get(col);
+            if (value == null || value.array() == null)
+                return 0;
+            values.add(value);
+        }
+        return values.size();
+    }
+}
@@ -31,6 +31,7 @@ import org.apache.kylin.gridtable.IGTScanner;
 import org.apache.kylin.gridtable.IGTStorage;
 import org.apache.kylin.metadata.model.ISegment;
 import org.apache.kylin.storage.StorageContext;
+import org.apache.kylin.storage.cache.SegmentScanResultCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,17 +41,38 @@ public class ScannerWorker {
     private IGTScanner internal = null;
 
     public ScannerWorker(ISegment segment, Cuboid cuboid, GTScanRequest scanRequest, String gtStorage, StorageContext context) {
+        this(segment, cuboid, scanRequest, gtStorage, context, null, null);
+    }
+
+    /**
+     * @param cacheKey key in {@link SegmentScanResultCache}, or null not to use the cache
+     * @param sharedScanKey key in {@link SharedScanBatcher}, or null not to share the scan with other queries
+     */
+    public ScannerWorker(ISegment segment, Cuboid cuboid, GTScanRequest scanRequest, String gtStorage, StorageContext context, String cacheKey, String sharedScanKey) {
         if (scanRequest == null) {
             logger.info("Segment {} will be skipped", segment);
             internal = new EmptyGTScanner();
             return;
         }
 
+        if (cacheKey != null) {
+            internal = SegmentScanResultCache.getInstance().get(cacheKey, scanRequest);
+            if (internal != null) {
+                logger.info("Segment {} is served from segment scan result cache", segment);
+                return;
+            }
+        }
+
         final GTInfo info = scanRequest.getInfo();
 
         try {
             IGTStorage rpc = (IGTStorage) Class.forName(gtStorage).getConstructor(ISegment.class, Cuboid.class, GTInfo.class, StorageContext.class).newInstance(segment, cuboid, info, context); // default behavior
-            internal = rpc.getGTScanner(scanRequest);
+            if (sharedScanKey != null)
+                internal = SharedScanBatcher.getInstance().scan(sharedScanKey, rpc, scanRequest);
+            else
+                internal = rpc.getGTScanner(scanRequest);
+            if (cacheKey != null)
+                internal = SegmentScanResultCache.getInstance().record(cacheKey, internal, scanRequest, context);
         } catch (IOException | InstantiationException | InvocationTargetException | IllegalAccessException | ClassNotFoundException | NoSuchMethodException e) {
             throw new RuntimeException(e);
         }
@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.gtrecord;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.exceptions.KylinTimeoutException;
+import org.apache.kylin.metadata.tuple.ITuple;
+import org.apache.kylin.metadata.tuple.ITupleIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Reads the tuples of the segments of a query ahead in a pool shared by all queries, at most a given number of
+ * segments at a time, into a bounded buffer per segment. The iterators returned give the tuples of each segment in
+ * the original order, so they can be concatenated or merge sorted just like the segment iterators.
+ *
+ * A segment not picked up by the pool, because the query is at its parallelism or all threads of the pool are busy,
+ * is read by the query thread when it gets there, as in sequential scanning. So under load queries fall back to
+ * scanning segments one after another instead of waiting for threads.
+ */
+public class SegmentTuplePrefetcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentTuplePrefetcher.class);
+
+    private static final int NEW = 0;
+    private static final int PREFETCHING = 1;
+    private static final int DIRECT = 2; // read by the query thread
+
+    private static final long POLL_MILLIS = 100;
+
+    private static ThreadPoolExecutor pool;
+
+    static synchronized ThreadPoolExecutor getPool(int maxThreads) {
+        if (pool == null) {
+            // no queue, a segment is rejected when all threads are busy
+            pool = new ThreadPoolExecutor(0, maxThreads, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), //
+                    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("segment-prefetch-%d").build());
+        }
+        return pool;
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final List<Segment> segments;
+    private final int parallelism;
+    private final long deadline;
+    private final KylinConfig config;
+
+    private int nextSegment; // guarded by this
+    private int running; // guarded by this
+    private volatile boolean closed;
+
+    public SegmentTuplePrefetcher(List<? extends ITupleIterator> sources, int parallelism, int maxThreads, int bufferRows, long deadline) {
+        this(getPool(maxThreads), sources, parallelism, bufferRows, deadline);
+    }
+
+    SegmentTuplePrefetcher(ThreadPoolExecutor executor, List<? extends ITupleIterator> sources, int parallelism, int bufferRows, long deadline) {
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.deadline = deadline;
+        this.config = KylinConfig.getInstanceFromEnv();
+        this.segments = Lists.newArrayListWithCapacity(sources.size());
+        for (ITupleIterator source : sources) {
+            segments.add(new Segment(source, bufferRows));
+        }
+        schedule();
+    }
+
+    @SuppressWarnings("unchecked")
+    public Iterator<Iterator<ITuple>> iterators() {
+        return (Iterator<Iterator<ITuple>>) (Iterator<?>) segments.iterator();
+    }
+
+    /**
+     * Stops reading ahead and closes the segment iterators. A segment being read by the pool is closed by its thread
+     * once the current storage call returns.
+     */
+    public void close() {
+        closed = true;
+        int prefetched = 0;
+        for (Segment segment : segments) {
+            if (segment.state.compareAndSet(NEW, DIRECT) || segment.state.get() == DIRECT) {
+                segment.source.close();
+            } else {
+                prefetched++;
+            }
+        }
+        logger.info("{} of {} segments were read ahead", prefetched, segments.size());
+    }
+
+    private synchronized void schedule() {
+        while (!closed && running < parallelism && nextSegment < segments.size()) {
+            Segment segment = segments.get(nextSegment);
+            if (segment.state.get() != NEW) {
+                nextSegment++;
+                continue;
+            }
+            try {
+                executor.execute(segment);
+            } catch (RejectedExecutionException e) {
+                logger.debug("Segment prefetch pool is busy, segment {} will be read by the query thread unless a slot frees up", nextSegment);
+                return;
+            }
+            running++;
+            nextSegment++;
+        }
+    }
+
+    private void onSegmentDone() {
+        synchronized (this) {
+            running--;
+        }
+        schedule();
+    }
+
+    private class Segment implements Iterator<ITuple>, Runnable {
+        final ITupleIterator source;
+        final BlockingQueue<ITuple> buffer;
+        final AtomicInteger state = new AtomicInteger(NEW);
+        volatile boolean done;
+        volatile Throwable error;
+        ITuple next;
+
+        Segment(ITupleIterator source, int bufferRows) {
+            this.source = source;
+            this.buffer = new ArrayBlockingQueue<ITuple>(bufferRows);
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (state.compareAndSet(NEW, PREFETCHING))
+                    prefetch();
+            } finally {
+                onSegmentDone();
+            }
+        }
+
+        private void prefetch() {
+            KylinConfig.setKylinConfigThreadLocal(config);
+            try {
+                while (!closed && source.hasNext()) {
+                    // the source reuses its tuple
+                    ITuple tuple = source.next().makeCopy();
+                    while (!buffer.offer(tuple, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                        if (closed)
+                            return;
+                    }
+                }
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                done = true;
+                source.close();
+                KylinConfig.setKylinConfigThreadLocal(null);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null)
+                return true;
+
+            if (state.get() == NEW)
+                state.compareAndSet(NEW, DIRECT);
+
+            if (state.get() == DIRECT) {
+                if (!source.hasNext())
+                    return false;
+                next = source.next();
+                return true;
+            }
+
+            try {
+                while (true) {
+                    next = buffer.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (next != null)
+                        return true;
+
+                    if (done) {
+                        // the last tuples may be offered just before done is set
+                        next = buffer.poll();
+                        if (next != null)
+                            return true;
+                        if (error != null)
+                            throw Throwables.propagate(error);
+                        return false;
+                    }
+
+                    if (System.currentTimeMillis() > deadline)
+                        throw new KylinTimeoutException("Query timeout after \"kylin.query.timeout-seconds\" seconds");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for segment tuples", e);
+            }
+        }
+
+        @Override
+        public ITuple next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            ITuple result = next;
+            next = null;
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
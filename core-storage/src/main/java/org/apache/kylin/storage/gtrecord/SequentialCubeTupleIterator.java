@@ -24,8 +24,10 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
+import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.exceptions.KylinTimeoutException;
 import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.cuboid.CuboidHitManager;
 import org.apache.kylin.metadata.model.FunctionDesc;
 import org.apache.kylin.metadata.model.TblColRef;
 import org.apache.kylin.metadata.tuple.ITuple;
@@ -47,6 +49,8 @@ public class SequentialCubeTupleIterator implements ITupleIterator {
     protected List<SegmentCubeTupleIterator> segmentCubeTupleIterators;
     protected Iterator<ITuple> tupleIterator;
     protected StorageContext context;
+    protected Cuboid cuboid;
+    protected SegmentTuplePrefetcher prefetcher; // null if segments are read one after another
 
     private int scanCount;
     private int scanCountDelta;
@@ -55,21 +59,32 @@ public class SequentialCubeTupleIterator implements ITupleIterator {
             Set<FunctionDesc> selectedMetrics, TupleInfo returnTupleInfo, StorageContext context) {
         this.context = context;
         this.scanners = scanners;
+        this.cuboid = cuboid;
 
         segmentCubeTupleIterators = Lists.newArrayList();
         for (CubeSegmentScanner scanner : scanners) {
             segmentCubeTupleIterators.add(new SegmentCubeTupleIterator(scanner, cuboid, selectedDimensions, selectedMetrics, returnTupleInfo, context));
         }
 
+        Iterator<Iterator<ITuple>> segmentIterators = (Iterator<Iterator<ITuple>>) (Iterator<?>) segmentCubeTupleIterators.iterator();
+        if (scanners.size() > 1) {
+            KylinConfig config = scanners.get(0).cubeSeg.getConfig();
+            int parallelism = Math.min(config.getQuerySegmentScanParallelism(), scanners.size());
+            if (parallelism > 1) {
+                logger.info("Reading {} segments ahead with parallelism {}", scanners.size(), parallelism);
+                prefetcher = new SegmentTuplePrefetcher(segmentCubeTupleIterators, parallelism, config.getQuerySegmentScanMaxThreads(), config.getQuerySegmentScanBufferRows(), context.getDeadline());
+                segmentIterators = prefetcher.iterators();
+            }
+        }
+
         if (context.mergeSortPartitionResults()) {
             //query with limit
             logger.info("Using SortedIteratorMergerWithLimit to merge segment results");
-            Iterator<Iterator<ITuple>> transformed = (Iterator<Iterator<ITuple>>) (Iterator<?>) segmentCubeTupleIterators.iterator();
-            tupleIterator = new SortedIteratorMergerWithLimit<ITuple>(transformed, context.getFinalPushDownLimit(), getTupleDimensionComparator(cuboid, returnTupleInfo)).getIterator();
+            tupleIterator = new SortedIteratorMergerWithLimit<ITuple>(segmentIterators, context.getFinalPushDownLimit(), getTupleDimensionComparator(cuboid, returnTupleInfo)).getIterator();
         } else {
             //normal case
             logger.info("Using Iterators.concat to merge segment results");
-            tupleIterator = Iterators.concat(segmentCubeTupleIterators.iterator());
+            tupleIterator = Iterators.concat(segmentIterators);
         }
     }
 
@@ -152,8 +167,17 @@ public class SequentialCubeTupleIterator implements ITupleIterator {
         // close all the remaining segmentIterator
         flushScanCountDelta();
 
-        for (SegmentCubeTupleIterator iterator : segmentCubeTupleIterators) {
-            iterator.close();
+        if (prefetcher != null) {
+            prefetcher.close();
+        } else {
+            for (SegmentCubeTupleIterator iterator : segmentCubeTupleIterators) {
+                iterator.close();
+            }
+        }
+
+        if (!scanners.isEmpty()) {
+            String cubeName = scanners.get(0).cubeSeg.getCubeInstance().getName();
+            CuboidHitManager.getInstance(KylinConfig.getInstanceFromEnv()).record(cubeName, cuboid, scanCount);
         }
     }
 
@@ -0,0 +1,324 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.gtrecord;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRange;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.GTScanRequestBuilder;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.gridtable.IGTStorage;
+import org.apache.kylin.metadata.filter.LogicalTupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
+import org.apache.kylin.storage.StorageContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Merges the scan requests of concurrent queries on the same segment and cuboid, e.g. a dashboard loading many charts
+ * at once, into one storage visit.
+ *
+ * The first request opens a batch and waits for the window, compatible requests arriving within it join the batch.
+ * The combined request scans the union of ranges, keeps rows matching any of the filters, and aggregates by all the
+ * columns any member needs. Its result is buffered, then each member applies its own filter, aggregation and having
+ * filter on the buffer. If the result is larger than the buffer limit, members fall back to scan separately.
+ *
+ * Requests with a storage push down limit or stream aggregation need sorted and limited results, they are not shared.
+ */
+public class SharedScanBatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedScanBatcher.class);
+
+    private static SharedScanBatcher instance;
+
+    public static synchronized SharedScanBatcher getInstance() {
+        if (instance == null) {
+            KylinConfig config = KylinConfig.getInstanceFromEnv();
+            instance = new SharedScanBatcher(config.getQuerySharedScanWindowMillis(), config.getQuerySharedScanMaxQueries(), config.getQuerySharedScanMaxResultBytes());
+        }
+        return instance;
+    }
+
+    public static boolean isShareable(GTScanRequest scanRequest, StorageContext context) {
+        return scanRequest.hasAggregation() && context.getFinalPushDownLimit() == Integer.MAX_VALUE && !context.isStreamAggregateEnabled();
+    }
+
+    public static String makeKey(CubeSegment segment, Cuboid cuboid, String gtStorage) {
+        return segment.getUuid() + "@" + segment.getLastBuildTime() + "|" + cuboid.getId() + "|" + gtStorage;
+    }
+
+    private final long windowMillis;
+    private final int maxQueries;
+    private final int maxResultBytes;
+    private final Map<String, Batch> openBatches = Maps.newHashMap();
+
+    SharedScanBatcher(long windowMillis, int maxQueries, int maxResultBytes) {
+        this.windowMillis = windowMillis;
+        this.maxQueries = maxQueries;
+        this.maxResultBytes = maxResultBytes;
+    }
+
+    /**
+     * Scan by joining the open batch of the key, or by opening a new one and running the combined request by the given
+     * storage when the window is over.
+     */
+    public IGTScanner scan(String key, IGTStorage storage, GTScanRequest scanRequest) throws IOException {
+        Batch batch;
+        boolean leader = false;
+        synchronized (openBatches) {
+            batch = openBatches.get(key);
+            if (batch == null || !batch.join(scanRequest)) {
+                batch = new Batch(scanRequest);
+                openBatches.put(key, batch);
+                leader = true;
+            }
+        }
+
+        if (!leader)
+            return batch.getScanner(scanRequest, storage);
+
+        List<GTScanRequest> members = batch.close();
+        synchronized (openBatches) {
+            if (openBatches.get(key) == batch)
+                openBatches.remove(key);
+        }
+
+        if (members.size() == 1)
+            return storage.getGTScanner(scanRequest);
+
+        logger.info("Sharing one scan among {} queries on {}", members.size(), key);
+        GTScanRequest combined = null;
+        byte[] result = null;
+        Throwable error = null;
+        try {
+            combined = combine(members);
+            result = drain(storage.getGTScanner(combined), combined.getColumns());
+        } catch (Throwable e) {
+            error = e;
+        } finally {
+            batch.complete(combined, result, error);
+        }
+        return batch.getScanner(scanRequest, storage);
+    }
+
+    private byte[] drain(IGTScanner scanner, ImmutableBitSet columns) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        try {
+            for (GTRecord record : scanner) {
+                int size = record.sizeOf(columns);
+                if (buffer.remaining() < size) {
+                    int needed = buffer.position() + size;
+                    if (needed > maxResultBytes)
+                        return null;
+                    ByteBuffer larger = ByteBuffer.allocate(Math.min(Math.max(needed, buffer.capacity() * 2), maxResultBytes));
+                    buffer.flip();
+                    larger.put(buffer);
+                    buffer = larger;
+                }
+                record.exportColumns(columns, buffer);
+            }
+        } finally {
+            scanner.close();
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    static GTScanRequest combine(List<GTScanRequest> members) {
+        GTScanRequest first = members.get(0);
+        GTInfo info = first.getInfo();
+
+        List<GTScanRange> ranges = Lists.newArrayList();
+        ImmutableBitSet columns = ImmutableBitSet.EMPTY;
+        ImmutableBitSet metrics = ImmutableBitSet.EMPTY;
+        Map<Integer, String> metricFuncs = Maps.newHashMap();
+        List<TupleFilter> filters = Lists.newArrayList();
+        boolean allFiltered = true;
+        boolean allowStorageAggregation = false;
+        int storageScanRowNumThreshold = 0;
+        for (GTScanRequest member : members) {
+            for (GTScanRange range : member.getGTScanRanges()) {
+                ranges.add(range.replaceGTInfo(info));
+            }
+            columns = columns.or(member.getColumns());
+            metrics = metrics.or(member.getAggrMetrics());
+            for (int i = 0; i < member.getAggrMetrics().trueBitCount(); i++) {
+                metricFuncs.put(member.getAggrMetrics().trueBitAt(i), member.getAggrMetricsFuncs()[i]);
+            }
+            if (member.hasFilterPushDown())
+                filters.add(member.getFilterPushDown());
+            else
+                allFiltered = false;
+            allowStorageAggregation = allowStorageAggregation || member.isAllowStorageAggregation();
+            storageScanRowNumThreshold = Math.max(storageScanRowNumThreshold, member.getStorageScanRowNumThreshold());
+        }
+
+        String[] aggrFuncs = new String[metrics.trueBitCount()];
+        for (int i = 0; i < aggrFuncs.length; i++) {
+            aggrFuncs[i] = metricFuncs.get(metrics.trueBitAt(i));
+        }
+
+        TupleFilter filter = null;
+        if (allFiltered) {
+            LogicalTupleFilter or = new LogicalTupleFilter(FilterOperatorEnum.OR);
+            or.addChildren(filters);
+            filter = or;
+        }
+
+        // filter columns of every member are kept in group by, so that each member can evaluate its own filter
+        return new GTScanRequestBuilder().setInfo(info).setRanges(new CubeScanRangePlanner(info, null, null, null).mergeScanRanges(ranges)).setDimensions(columns).//
+                setAggrGroupBy(columns.andNot(metrics)).setAggrMetrics(metrics).setAggrMetricsFuncs(aggrFuncs).setFilterPushDown(filter).//
+                setAllowStorageAggregation(allowStorageAggregation).setAggCacheMemThreshold(first.getAggCacheMemThreshold()).//
+                setStorageScanRowNumThreshold(storageScanRowNumThreshold).setHashAggregation(first.isHashAggregation()).//
+                setStorageBehavior(first.getStorageBehavior()).setStartTime(first.getStartTime()).setTimeout(first.getTimeout()).createGTScanRequest();
+    }
+
+    static boolean isCompatible(GTScanRequest a, GTScanRequest b) {
+        if (a.getInfo().getColumnCount() != b.getInfo().getColumnCount() || !a.getInfo().getPrimaryKey().equals(b.getInfo().getPrimaryKey()))
+            return false;
+
+        // a metric of one must not be a dimension of the other, nor be aggregated by another function
+        if (a.getColumns().andNot(a.getAggrMetrics()).intersects(b.getAggrMetrics()) || b.getColumns().andNot(b.getAggrMetrics()).intersects(a.getAggrMetrics()))
+            return false;
+        for (int i = 0; i < a.getAggrMetrics().trueBitCount(); i++) {
+            int col = a.getAggrMetrics().trueBitAt(i);
+            if (b.getAggrMetrics().get(col) && !a.getAggrMetricsFuncs()[i].equals(b.getAggrMetricsFuncs()[b.getAggrMetrics().trueBitIndexOf(col)]))
+                return false;
+        }
+        return true;
+    }
+
+    // ============================================================================
+
+    private class Batch {
+        final List<GTScanRequest> members = Lists.newArrayList();
+        final CountDownLatch done = new CountDownLatch(1);
+        boolean closed = false;
+
+        GTScanRequest combined;
+        byte[] result; // null if too large to share
+        Throwable error;
+
+        Batch(GTScanRequest leader) {
+            members.add(leader);
+        }
+
+        synchronized boolean join(GTScanRequest scanRequest) {
+            if (closed)
+                return false;
+            for (GTScanRequest member : members) {
+                if (!isCompatible(member, scanRequest))
+                    return false;
+            }
+
+            members.add(scanRequest);
+            if (members.size() >= maxQueries) {
+                closed = true;
+                notifyAll();
+            }
+            return true;
+        }
+
+        // wait for the window, or until the batch is full
+        synchronized List<GTScanRequest> close() {
+            long deadline = System.currentTimeMillis() + windowMillis;
+            try {
+                long wait;
+                while (!closed && (wait = deadline - System.currentTimeMillis()) > 0) {
+                    wait(wait);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            closed = true;
+            return Lists.newArrayList(members);
+        }
+
+        void complete(GTScanRequest combined, byte[] result, Throwable error) {
+            this.combined = combined;
+            this.result = result;
+            this.error = error;
+            done.countDown();
+        }
+
+        IGTScanner getScanner(GTScanRequest scanRequest, IGTStorage storage) throws IOException {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted when waiting for shared scan", e);
+            }
+
+            if (error instanceof IOException)
+                throw (IOException) error;
+            if (error instanceof RuntimeException)
+                throw (RuntimeException) error;
+            if (error != null)
+                throw new RuntimeException("Error in shared scan", error);
+
+            if (result == null) {
+                logger.info("Result of shared scan exceeds {} bytes, scan separately", maxResultBytes);
+                return storage.getGTScanner(scanRequest);
+            }
+            return scanRequest.decorateScanner(new BufferedScanner(result, scanRequest.getInfo(), combined.getColumns()));
+        }
+    }
+
+    private static class BufferedScanner implements IGTScanner {
+        final byte[] data;
+        final GTInfo info;
+        final ImmutableBitSet columns;
+
+        BufferedScanner(byte[] data, GTInfo info, ImmutableBitSet columns) {
+            this.data = data;
+            this.info = info;
+            this.columns = columns;
+        }
+
+        @Override
+        public GTInfo getInfo() {
+            return info;
+        }
+
+        @Override
+        public Iterator<GTRecord> iterator() {
+            return new PartitionResultIterator(data, info, columns);
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+}
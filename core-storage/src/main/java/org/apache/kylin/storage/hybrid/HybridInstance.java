@@ -181,6 +181,7 @@ public class HybridInstance extends RootPersistentEntity implements IRealization
     public CapabilityResult isCapable(SQLDigest digest) {
         CapabilityResult result = new CapabilityResult();
         result.cost = Integer.MAX_VALUE;
+        result.estimatedRows = 0;
 
         for (IRealization realization : getRealizations()) {
             CapabilityResult child = realization.isCapable(digest);
@@ -188,8 +189,13 @@ public class HybridInstance extends RootPersistentEntity implements IRealization
                 result.capable = true;
                 result.cost = Math.min(result.cost, child.cost);
                 result.influences.addAll(child.influences);
+                // all children are scanned, unknown if any is unknown
+                if (result.estimatedRows >= 0)
+                    result.estimatedRows = child.estimatedRows < 0 ? -1 : result.estimatedRows + child.estimatedRows;
             }
         }
+        if (!result.capable)
+            result.estimatedRows = -1;
 
         if (result.cost > 0)
             result.cost--; // let hybrid win its children
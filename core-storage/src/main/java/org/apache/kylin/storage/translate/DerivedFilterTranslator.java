@@ -18,6 +18,7 @@
 
 package org.apache.kylin.storage.translate;
 
+import java.util.BitSet;
 import java.util.List;
 import java.util.Set;
 
@@ -27,19 +28,24 @@ import org.apache.kylin.common.util.Pair;
 import org.apache.kylin.cube.kv.RowKeyColumnOrder;
 import org.apache.kylin.cube.model.CubeDesc.DeriveInfo;
 import org.apache.kylin.cube.model.CubeDesc.DeriveType;
+import org.apache.kylin.dict.lookup.ColumnarLookupTable;
 import org.apache.kylin.dict.lookup.LookupStringTable;
+import org.apache.kylin.metadata.filter.BuiltInFunctionTupleFilter;
 import org.apache.kylin.metadata.filter.ColumnTupleFilter;
 import org.apache.kylin.metadata.filter.CompareTupleFilter;
 import org.apache.kylin.metadata.filter.ConstantTupleFilter;
 import org.apache.kylin.metadata.filter.FilterCodeSystemFactory;
+import org.apache.kylin.metadata.filter.IFilterCodeSystem;
 import org.apache.kylin.metadata.filter.LogicalTupleFilter;
 import org.apache.kylin.metadata.filter.TupleFilter;
 import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
+import org.apache.kylin.metadata.filter.function.BuiltInMethod;
 import org.apache.kylin.metadata.model.TblColRef;
 import org.apache.kylin.metadata.tuple.IEvaluatableTuple;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Predicate;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
@@ -50,11 +56,10 @@ public class DerivedFilterTranslator {
 
     private static final Logger logger = LoggerFactory.getLogger(DerivedFilterTranslator.class);
 
-    public static Pair<TupleFilter, Boolean> translate(LookupStringTable lookup, DeriveInfo hostInfo, CompareTupleFilter compf) {
+    public static Pair<TupleFilter, Boolean> translate(LookupStringTable lookup, DeriveInfo hostInfo, final CompareTupleFilter compf) {
 
         TblColRef derivedCol = compf.getColumn();
         TblColRef[] hostCols = hostInfo.columns;
-        TblColRef[] pkCols = hostInfo.join.getPrimaryKeyColumns();
 
         if (hostInfo.type == DeriveType.PK_FK) {
             assert hostCols.length == 1;
@@ -64,6 +69,52 @@ public class DerivedFilterTranslator {
             return new Pair<TupleFilter, Boolean>(newComp, false);
         }
 
+        final IFilterCodeSystem<?> cs = FilterCodeSystemFactory.getFilterCodeSystem(derivedCol.getColumnDesc().getType());
+        final SingleColumnTuple tuple = new SingleColumnTuple(derivedCol);
+        return translate(lookup, hostInfo, derivedCol, new Predicate<String>() {
+            @Override
+            public boolean apply(String value) {
+                tuple.value = value;
+                return compf.evaluate(tuple, cs);
+            }
+        });
+    }
+
+    /**
+     * Translates a function filter like LIKE on a derived column of a lookup table, returns null if the function
+     * cannot be evaluated on the lookup values or does not give a boolean. A null value matches neither the function
+     * nor its reverse.
+     */
+    public static Pair<TupleFilter, Boolean> translate(LookupStringTable lookup, DeriveInfo hostInfo, final BuiltInFunctionTupleFilter funcf) {
+        if (hostInfo.type != DeriveType.LOOKUP || !funcf.isValid())
+            return null;
+        if (BuiltInMethod.MAP.get(funcf.getName()).method.getReturnType() != boolean.class)
+            return null;
+
+        try {
+            return translate(lookup, hostInfo, funcf.getColumn(), new Predicate<String>() {
+                @Override
+                public boolean apply(String value) {
+                    if (value == null)
+                        return false;
+                    try {
+                        return (Boolean) funcf.invokeFunction(value) != funcf.isReversed();
+                    } catch (Exception e) {
+                        throw new IllegalArgumentException("Failed to evaluate " + funcf + " on " + value, e);
+                    }
+                }
+            });
+        } catch (IllegalArgumentException e) {
+            logger.debug(e.getMessage());
+            return null;
+        }
+    }
+
+    private static Pair<TupleFilter, Boolean> translate(LookupStringTable lookup, DeriveInfo hostInfo, TblColRef derivedCol, Predicate<String> predicate) {
+
+        TblColRef[] hostCols = hostInfo.columns;
+        TblColRef[] pkCols = hostInfo.join.getPrimaryKeyColumns();
+
         assert hostInfo.type == DeriveType.LOOKUP;
         assert hostCols.length == pkCols.length;
 
@@ -75,11 +126,18 @@ public class DerivedFilterTranslator {
         }
 
         Set<Array<String>> satisfyingHostRecords = Sets.newHashSet();
-        SingleColumnTuple tuple = new SingleColumnTuple(derivedCol);
-        for (String[] row : lookup.getAllRows()) {
-            tuple.value = row[di];
-            if (compf.evaluate(tuple, FilterCodeSystemFactory.getFilterCodeSystem(derivedCol.getColumnDesc().getType()))) {
-                collect(row, pi, satisfyingHostRecords);
+        if (lookup instanceof ColumnarLookupTable) {
+            // evaluates the filter once per distinct value by the inverted index
+            ColumnarLookupTable columnar = (ColumnarLookupTable) lookup;
+            BitSet rows = columnar.findRows(derivedCol.getName(), predicate);
+            for (int r = rows.nextSetBit(0); r >= 0; r = rows.nextSetBit(r + 1)) {
+                collect(columnar, r, pi, satisfyingHostRecords);
+            }
+        } else {
+            for (String[] row : lookup.getAllRows()) {
+                if (predicate.apply(row[di])) {
+                    collect(row, pi, satisfyingHostRecords);
+                }
             }
         }
 
@@ -99,6 +157,14 @@ public class DerivedFilterTranslator {
         return new Pair<TupleFilter, Boolean>(translated, loosened);
     }
 
+    private static void collect(ColumnarLookupTable lookup, int row, int[] pi, Set<Array<String>> satisfyingHostRecords) {
+        String[] rec = new String[pi.length];
+        for (int i = 0; i < pi.length; i++) {
+            rec[i] = lookup.getValue(row, pi[i]);
+        }
+        satisfyingHostRecords.add(new Array<String>(rec));
+    }
+
     private static void collect(String[] row, int[] pi, Set<Array<String>> satisfyingHostRecords) {
         // TODO when go beyond IN_THRESHOLD, only keep min/max is enough
         String[] rec = new String[pi.length];
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.apache.kylin.metadata.filter.ColumnTupleFilter;
+import org.apache.kylin.metadata.filter.CompareTupleFilter;
+import org.apache.kylin.metadata.filter.ConstantTupleFilter;
+import org.apache.kylin.metadata.filter.LogicalTupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
+import org.apache.kylin.metadata.model.TableDesc;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.junit.Test;
+
+public class SQLDigestResultCacheTest {
+
+    private final TableDesc table = TableDesc.mockup("DEFAULT.TABLE_NAME");
+    private final TblColRef col1 = TblColRef.mockup(table, 1, "COL1", "string");
+    private final TblColRef col2 = TblColRef.mockup(table, 2, "COL2", "string");
+
+    @Test
+    public void testNormalizeLogicalOrder() {
+        TupleFilter a = and(compare(col1, FilterOperatorEnum.EQ, "x"), compare(col2, FilterOperatorEnum.GT, "1"));
+        TupleFilter b = and(compare(col2, FilterOperatorEnum.GT, "1"), compare(col1, FilterOperatorEnum.EQ, "x"));
+        assertEquals(SQLDigestResultCache.normalize(a), SQLDigestResultCache.normalize(b));
+
+        TupleFilter c = and(compare(col1, FilterOperatorEnum.EQ, "x"), compare(col2, FilterOperatorEnum.LT, "1"));
+        assertNotEquals(SQLDigestResultCache.normalize(a), SQLDigestResultCache.normalize(c));
+    }
+
+    @Test
+    public void testNormalizeInValues() {
+        TupleFilter a = compare(col1, FilterOperatorEnum.IN, "x", "y", "z");
+        TupleFilter b = compare(col1, FilterOperatorEnum.IN, "z", "x", "y");
+        assertEquals(SQLDigestResultCache.normalize(a), SQLDigestResultCache.normalize(b));
+        assertEquals("null", SQLDigestResultCache.normalize(null));
+    }
+
+    private TupleFilter and(TupleFilter... children) {
+        LogicalTupleFilter and = new LogicalTupleFilter(FilterOperatorEnum.AND);
+        for (TupleFilter child : children) {
+            and.addChild(child);
+        }
+        return and;
+    }
+
+    private TupleFilter compare(TblColRef col, FilterOperatorEnum op, String... values) {
+        CompareTupleFilter compare = new CompareTupleFilter(op);
+        compare.addChild(new ColumnTupleFilter(col));
+        for (String v : values) {
+            compare.addChild(new ConstantTupleFilter(v));
+        }
+        return compare;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.GTScanRequestBuilder;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.gridtable.UnitTestSupport;
+import org.apache.kylin.storage.StorageContext;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class SegmentScanResultCacheTest {
+
+    private final GTInfo info = UnitTestSupport.basicInfo();
+
+    @Test
+    public void testResultDigest() {
+        GTScanRequest a = newRequest(100, 1000);
+        GTScanRequest b = newRequest(100, 2000);
+        GTScanRequest c = newRequest(200, 1000);
+        assertEquals(a.getResultDigest(), b.getResultDigest());
+        assertNotEquals(a.getResultDigest(), c.getResultDigest());
+    }
+
+    @Test
+    public void testRecordAndGet() throws IOException {
+        SegmentScanResultCache cache = new SegmentScanResultCache(1024 * 1024, 1024 * 1024);
+        GTScanRequest req = newRequest(100, 1000);
+        List<GTRecord> data = UnitTestSupport.mockupData(info, 50);
+
+        assertNull(cache.get("k", req));
+        IGTScanner recording = cache.record("k", new ListScanner(data), req, new StorageContext());
+        int count = 0;
+        for (Iterator<GTRecord> it = recording.iterator(); it.hasNext(); it.next()) {
+            count++;
+        }
+        recording.close();
+        assertEquals(50, count);
+
+        IGTScanner cached = cache.get("k", req);
+        List<GTRecord> result = Lists.newArrayList();
+        for (GTRecord r : cached) {
+            result.add(r.copy());
+        }
+        assertEquals(data, result);
+    }
+
+    @Test
+    public void testNotCachedIfIncomplete() throws IOException {
+        SegmentScanResultCache cache = new SegmentScanResultCache(1024 * 1024, 1024 * 1024);
+        GTScanRequest req = newRequest(100, 1000);
+
+        // closed before drained
+        IGTScanner recording = cache.record("k1", new ListScanner(UnitTestSupport.mockupData(info, 50)), req, new StorageContext());
+        recording.iterator().next();
+        recording.close();
+        assertNull(cache.get("k1", req));
+
+        // too large
+        cache = new SegmentScanResultCache(1024 * 1024, 100);
+        recording = cache.record("k2", new ListScanner(UnitTestSupport.mockupData(info, 50)), req, new StorageContext());
+        Iterator<GTRecord> it = recording.iterator();
+        while (it.hasNext()) {
+            it.next();
+        }
+        assertFalse(it.hasNext());
+        assertNull(cache.get("k2", req));
+    }
+
+    private GTScanRequest newRequest(int limit, long timeout) {
+        return new GTScanRequestBuilder().setInfo(info).setRanges(null).setDimensions(null).setStoragePushDownLimit(limit).setTimeout(timeout).createGTScanRequest();
+    }
+
+    private class ListScanner implements IGTScanner {
+        final List<GTRecord> data;
+
+        ListScanner(List<GTRecord> data) {
+            this.data = data;
+        }
+
+        @Override
+        public GTInfo getInfo() {
+            return info;
+        }
+
+        @Override
+        public Iterator<GTRecord> iterator() {
+            return data.iterator();
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.gtrecord;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.Dictionary;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.gridtable.CubeGridTable;
+import org.apache.kylin.cube.gridtable.ScanRangePlannerBase.ColumnRange;
+import org.apache.kylin.cube.kv.CubeDimEncMap;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRange;
+import org.apache.kylin.metadata.filter.ColumnTupleFilter;
+import org.apache.kylin.metadata.filter.CompareTupleFilter;
+import org.apache.kylin.metadata.filter.ConstantTupleFilter;
+import org.apache.kylin.metadata.filter.LogicalTupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
+import org.apache.kylin.metadata.model.FunctionDesc;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.storage.StorageContext;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+public class CubeScanRangePlannerTest extends LocalFileMetadataTestCase {
+
+    // GT columns of the base cuboid: CAL_DT, LEAF_CATEG_ID and LSTG_SITE_ID
+    private static final int CAL_DT = 0;
+    private static final int LEAF_CATEG_ID = 1;
+    private static final int LSTG_SITE_ID = 6;
+
+    private CubeSegment segment;
+    private Cuboid cuboid;
+    private GTInfo info;
+    private List<TblColRef> dims;
+
+    // the values of the grid of keys, the first ones of each column are in the filter
+    private List<String> calDts = Lists.newArrayList("2012-01-01", "2012-01-02", "2012-01-03", "2012-01-04");
+    private List<String> leafCategIds;
+    private List<String> siteIds;
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+        CubeInstance cube = CubeManager.getInstance(KylinConfig.getInstanceFromEnv()).getCube("test_kylin_cube_without_slr_ready");
+        cube.getConfig().setProperty("kylin.query.scan-plan-cost-based-enabled", "true");
+        segment = cube.getFirstSegment();
+        cuboid = Cuboid.getBaseCuboid(cube.getDescriptor());
+        info = CubeGridTable.newGTInfo(cuboid, new CubeDimEncMap(segment));
+        dims = cuboid.getCuboidToGridTableMapping().getCuboidDimensionsInGTOrder();
+
+        // the row counts and rowkey stats a build saves to the segment
+        Map<Long, Long> rowCounts = Maps.newHashMap();
+        rowCounts.put(cuboid.getId(), 100000000L);
+        segment.setCuboidRowCounts(rowCounts);
+        for (TblColRef col : dims) {
+            Dictionary<String> dict = segment.getDictionary(col);
+            if (dict != null)
+                segment.getRowkeyStats().add(new Object[] { col.getIdentity(), dict.getSize(), dict.getSizeOfId() });
+        }
+
+        leafCategIds = dictValues(dims.get(LEAF_CATEG_ID), 3);
+        siteIds = dictValues(dims.get(LSTG_SITE_ID), 3);
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testExactRangesSplitOnLeadingIn() {
+        CubeScanRangePlanner planner = planner();
+        Collection<ColumnRange> andDimRanges = andDimRanges(planner);
+        GTScanRange scanRange = planner.newScanRange(andDimRanges);
+        Assert.assertEquals(12, scanRange.fuzzyKeys.size());
+
+        List<GTScanRange> exactRanges = planner.addExactScanRanges(andDimRanges, scanRange, Lists.<GTScanRange> newArrayList());
+        Assert.assertEquals(6, exactRanges.size());
+
+        Set<List<ByteArray>> leadingValues = Sets.newHashSet();
+        for (GTScanRange range : exactRanges) {
+            // the leading IN columns are fixed, the site id is left to the fuzzy keys
+            Assert.assertEquals(range.pkStart.get(CAL_DT), range.pkEnd.get(CAL_DT));
+            Assert.assertEquals(range.pkStart.get(LEAF_CATEG_ID), range.pkEnd.get(LEAF_CATEG_ID));
+            leadingValues.add(Lists.newArrayList(range.pkStart.get(CAL_DT), range.pkStart.get(LEAF_CATEG_ID)));
+
+            Assert.assertEquals(2, range.fuzzyKeys.size());
+            for (GTRecord fuzzyKey : range.fuzzyKeys) {
+                Assert.assertNull(fuzzyKey.get(CAL_DT).array());
+                Assert.assertNull(fuzzyKey.get(LEAF_CATEG_ID).array());
+                Assert.assertNotNull(fuzzyKey.get(LSTG_SITE_ID).array());
+            }
+        }
+        Assert.assertEquals(6, leadingValues.size());
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 2; j++) {
+                Assert.assertTrue(leadingValues.contains(Lists.newArrayList(enc(CAL_DT, calDts.get(i)), enc(LEAF_CATEG_ID, leafCategIds.get(j)))));
+            }
+        }
+    }
+
+    @Test
+    public void testTooManyExactRanges() {
+        CubeScanRangePlanner planner = planner();
+        planner.setMaxScanRanges(4);
+        Collection<ColumnRange> andDimRanges = andDimRanges(planner);
+        GTScanRange scanRange = planner.newScanRange(andDimRanges);
+        Assert.assertNull(planner.addExactScanRanges(andDimRanges, scanRange, Lists.<GTScanRange> newArrayList()));
+
+        // counts the exact ranges already added
+        List<GTScanRange> exactRanges = Lists.newArrayList(scanRange);
+        planner.setMaxScanRanges(6);
+        Assert.assertNull(planner.addExactScanRanges(andDimRanges, scanRange, exactRanges));
+
+        // the plan falls back to the fuzzy or the merged plan
+        planner.setMaxScanRanges(4);
+        List<GTScanRange> plan = planner.planScanRanges();
+        Assert.assertEquals(1, plan.size());
+        assertSameRows(fuzzyPlan(planner), plan);
+    }
+
+    @Test
+    public void testChosenPlanCoversFuzzyPlan() {
+        for (String seekBytes : new String[] { "0", "65536", "1000000000000" }) {
+            segment.getConfig().setProperty("kylin.query.scan-plan-seek-bytes", seekBytes);
+            CubeScanRangePlanner planner = planner();
+            assertSameRows(fuzzyPlan(planner), planner.planScanRanges());
+        }
+
+        // one range without fuzzy keys when seeks cost most
+        segment.getConfig().setProperty("kylin.query.scan-plan-seek-bytes", "1000000000000");
+        List<GTScanRange> plan = planner().planScanRanges();
+        Assert.assertEquals(1, plan.size());
+        Assert.assertTrue(plan.get(0).fuzzyKeys.isEmpty());
+    }
+
+    private CubeScanRangePlanner planner() {
+        LogicalTupleFilter filter = new LogicalTupleFilter(FilterOperatorEnum.AND);
+        filter.addChild(in(CAL_DT, calDts.subList(0, 3)));
+        filter.addChild(in(LEAF_CATEG_ID, leafCategIds.subList(0, 2)));
+        filter.addChild(in(LSTG_SITE_ID, siteIds.subList(0, 2)));
+        Set<TblColRef> dimensions = Sets.newHashSet(dims);
+        CubeScanRangePlanner planner = new CubeScanRangePlanner(segment, cuboid, filter, dimensions, dimensions, //
+                Lists.<FunctionDesc> newArrayList(), null, new StorageContext());
+        Assert.assertNotNull(planner.costEstimator);
+        return planner;
+    }
+
+    private List<GTScanRange> fuzzyPlan(CubeScanRangePlanner planner) {
+        ScanPlanCostEstimator costEstimator = planner.costEstimator;
+        planner.costEstimator = null;
+        try {
+            return planner.planScanRanges();
+        } finally {
+            planner.costEstimator = costEstimator;
+        }
+    }
+
+    private Collection<ColumnRange> andDimRanges(CubeScanRangePlanner planner) {
+        List<ColumnRange> result = Lists.newArrayList();
+        result.add(planner.new ColumnRange(info.colRef(CAL_DT), encAll(CAL_DT, calDts.subList(0, 3)), FilterOperatorEnum.IN));
+        result.add(planner.new ColumnRange(info.colRef(LEAF_CATEG_ID), encAll(LEAF_CATEG_ID, leafCategIds.subList(0, 2)), FilterOperatorEnum.IN));
+        result.add(planner.new ColumnRange(info.colRef(LSTG_SITE_ID), encAll(LSTG_SITE_ID, siteIds.subList(0, 2)), FilterOperatorEnum.IN));
+        return result;
+    }
+
+    // a plan may read more rows than the fuzzy plan, but never miss any of them
+    private void assertSameRows(List<GTScanRange> fuzzyPlan, List<GTScanRange> plan) {
+        int fuzzyRows = 0;
+        for (String calDt : calDts) {
+            for (String leafCategId : leafCategIds) {
+                for (String siteId : siteIds) {
+                    Map<Integer, ByteArray> key = Maps.newHashMap();
+                    key.put(CAL_DT, enc(CAL_DT, calDt));
+                    key.put(LEAF_CATEG_ID, enc(LEAF_CATEG_ID, leafCategId));
+                    key.put(LSTG_SITE_ID, enc(LSTG_SITE_ID, siteId));
+
+                    boolean matches = calDts.indexOf(calDt) < 3 && leafCategIds.indexOf(leafCategId) < 2 && siteIds.indexOf(siteId) < 2;
+                    Assert.assertEquals(matches, inPlan(key, fuzzyPlan));
+                    if (matches) {
+                        Assert.assertTrue(inPlan(key, plan));
+                        fuzzyRows++;
+                    }
+                }
+            }
+        }
+        Assert.assertEquals(12, fuzzyRows);
+    }
+
+    private static boolean inPlan(Map<Integer, ByteArray> key, List<GTScanRange> plan) {
+        for (GTScanRange range : plan) {
+            if (compareKey(key, range.pkStart, false) >= 0 && compareKey(key, range.pkEnd, true) <= 0 && matchesFuzzyKeys(key, range.fuzzyKeys))
+                return true;
+        }
+        return false;
+    }
+
+    // compares the key to a range bound like the rowkey bytes, the unset columns of a bound are the lowest values of
+    // a start key and the highest values of an end key
+    private static int compareKey(Map<Integer, ByteArray> key, GTRecord bound, boolean isEnd) {
+        ImmutableBitSet pk = bound.getInfo().getPrimaryKey();
+        for (int i = 0; i < pk.trueBitCount(); i++) {
+            int col = pk.trueBitAt(i);
+            ByteArray value = bound.get(col);
+            if (value == null || value.array() == null)
+                return isEnd ? -1 : 1;
+
+            int comp = key.get(col).compareTo(value);
+            if (comp != 0)
+                return comp;
+        }
+        return 0;
+    }
+
+    private static boolean matchesFuzzyKeys(Map<Integer, ByteArray> key, List<GTRecord> fuzzyKeys) {
+        if (fuzzyKeys.isEmpty())
+            return true;
+
+        for (GTRecord fuzzyKey : fuzzyKeys) {
+            boolean matches = true;
+            for (int col = 0; col < fuzzyKey.getInfo().getColumnCount(); col++) {
+                ByteArray value = fuzzyKey.get(col);
+                if (value != null && value.array() != null && !value.equals(key.get(col)))
+                    matches = false;
+            }
+            if (matches)
+                return true;
+        }
+        return false;
+    }
+
+    private CompareTupleFilter in(int col, List<String> values) {
+        CompareTupleFilter in = new CompareTupleFilter(FilterOperatorEnum.IN);
+        in.addChild(new ColumnTupleFilter(dims.get(col)));
+        in.addChild(new ConstantTupleFilter(values));
+        return in;
+    }
+
+    private List<String> dictValues(TblColRef col, int count) {
+        Dictionary<String> dict = segment.getDictionary(col);
+        List<String> result = Lists.newArrayList();
+        for (int id = dict.getMinId(); result.size() < count; id++) {
+            result.add(dict.getValueFromId(id));
+        }
+        return result;
+    }
+
+    private Set<ByteArray> encAll(int col, List<String> values) {
+        Set<ByteArray> result = Sets.newHashSet();
+        for (String value : values) {
+            result.add(enc(col, value));
+        }
+        return result;
+    }
+
+    private ByteArray enc(int col, String value) {
+        return DictGridTableTest.enc(info, col, value);
+    }
+}
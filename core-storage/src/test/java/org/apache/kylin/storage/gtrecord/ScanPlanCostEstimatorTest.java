@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.storage.gtrecord;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTSampleCodeSystem;
+import org.apache.kylin.gridtable.GTScanRange;
+import org.apache.kylin.metadata.datatype.DataType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class ScanPlanCostEstimatorTest extends LocalFileMetadataTestCase {
+
+    private GTInfo info;
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+
+        GTInfo.Builder builder = GTInfo.builder();
+        builder.setCodeSystem(new GTSampleCodeSystem());
+        DataType tint = DataType.getType("int4");
+        DataType tlong = DataType.getType("long8");
+        builder.setColumns(tint, tint, tint, tlong);
+        builder.setPrimaryKey(ImmutableBitSet.valueOf(0, 1, 2));
+        info = builder.build();
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testRangeNarrowing() {
+        ScanPlanCostEstimator estimator = estimator(1000000, 100, 100, 100);
+
+        // the leading column fixed to one value
+        GTScanRange range = range(new Integer[] { 5, null, null }, new Integer[] { 5, null, null });
+        assertArrayEquals(new long[] { 10000, 1 }, estimator.estimate(range));
+
+        // columns after the first one of more values do not narrow
+        range = range(new Integer[] { 5, 10, 3 }, new Integer[] { 5, 19, 3 });
+        assertArrayEquals(new long[] { 1000, 1 }, estimator.estimate(range));
+
+        // empty range
+        range = range(new Integer[] { 6, null, null }, new Integer[] { 5, null, null });
+        assertArrayEquals(new long[] { 0, 1 }, estimator.estimate(range));
+    }
+
+    @Test
+    public void testFuzzy() {
+        ScanPlanCostEstimator estimator = estimator(1000000, 100, 100, 100);
+
+        // 2 of 100 values of the second column match, a seek for every value of the first column and fuzzy value
+        GTScanRange range = range(new Integer[] { null, null, null }, new Integer[] { null, null, null }, fuzzyKey(null, 3, null), fuzzyKey(null, 7, null));
+        assertArrayEquals(new long[] { 20000 + 200, 200 }, estimator.estimate(range));
+    }
+
+    @Test
+    public void testFuzzyOnDeepColumnCostsMore() {
+        ScanPlanCostEstimator estimator = estimator(1000000, 1000, 1000, 10);
+
+        // the fuzzy filter seeks for nearly every row, scanning the plain range is cheaper
+        GTScanRange fuzzy = range(new Integer[] { null, null, null }, new Integer[] { null, null, null }, fuzzyKey(null, null, 1));
+        GTScanRange plain = range(new Integer[] { null, null, null }, new Integer[] { null, null, null });
+        assertTrue(estimator.estimateBytes(Lists.newArrayList(fuzzy)) > estimator.estimateBytes(Lists.newArrayList(plain)));
+
+        // a fuzzy value on the leading column skips most rows
+        fuzzy = range(new Integer[] { null, null, null }, new Integer[] { null, null, null }, fuzzyKey(1, null, null));
+        assertTrue(estimator.estimateBytes(Lists.newArrayList(fuzzy)) < estimator.estimateBytes(Lists.newArrayList(plain)));
+    }
+
+    private ScanPlanCostEstimator estimator(long rows, long... cardinality) {
+        long[] card = new long[info.getColumnCount()];
+        int[] idLength = new int[info.getColumnCount()];
+        for (int i = 0; i < cardinality.length; i++) {
+            card[i] = cardinality[i];
+            idLength[i] = 4;
+        }
+        return new ScanPlanCostEstimator(info, rows, 100, card, idLength, 64 * 1024);
+    }
+
+    private GTScanRange range(Integer[] start, Integer[] end, GTRecord... fuzzyKeys) {
+        List<GTRecord> keys = fuzzyKeys.length == 0 ? Collections.<GTRecord> emptyList() : Lists.newArrayList(fuzzyKeys);
+        return new GTScanRange(record(start), record(end), keys);
+    }
+
+    private GTRecord fuzzyKey(Integer... values) {
+        return record(values);
+    }
+
+    private GTRecord record(Integer[] values) {
+        GTRecord record = new GTRecord(info);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                byte[] bytes = new byte[4];
+                BytesUtil.writeUnsigned(values[i], bytes, 0, 4);
+                record.set(i, new ByteArray(bytes));
+            }
+        }
+        return record;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.gtrecord;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.metadata.tuple.ITuple;
+import org.apache.kylin.metadata.tuple.ITupleIterator;
+import org.apache.kylin.metadata.tuple.Tuple;
+import org.apache.kylin.metadata.tuple.TupleInfo;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+
+public class SegmentTuplePrefetcherTest extends LocalFileMetadataTestCase {
+
+    private ThreadPoolExecutor pool;
+    private TupleInfo tupleInfo;
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+        pool = new ThreadPoolExecutor(0, 2, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>());
+        tupleInfo = new TupleInfo();
+        tupleInfo.setField("V", null, 0);
+    }
+
+    @After
+    public void after() throws Exception {
+        pool.shutdownNow();
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testConcat() {
+        List<SourceIterator> sources = sources(5, 100);
+        SegmentTuplePrefetcher prefetcher = new SegmentTuplePrefetcher(pool, sources, 2, 3, Long.MAX_VALUE);
+
+        List<Integer> result = values(Iterators.concat(prefetcher.iterators()));
+        prefetcher.close();
+
+        Assert.assertEquals(500, result.size());
+        for (int i = 0; i < result.size(); i++) {
+            Assert.assertEquals(i, result.get(i).intValue());
+        }
+        for (SourceIterator source : sources) {
+            Assert.assertTrue(source.closed);
+        }
+    }
+
+    @Test
+    public void testSortedMerge() {
+        List<SourceIterator> sources = Lists.newArrayList();
+        for (int s = 0; s < 4; s++) {
+            // segment s has s, s + 4, s + 8...
+            List<Integer> values = Lists.newArrayList();
+            for (int v = s; v < 200; v += 4) {
+                values.add(v);
+            }
+            sources.add(new SourceIterator(values));
+        }
+        SegmentTuplePrefetcher prefetcher = new SegmentTuplePrefetcher(pool, sources, 2, 5, Long.MAX_VALUE);
+
+        Iterator<ITuple> merged = new SortedIteratorMergerWithLimit<ITuple>(prefetcher.iterators(), Integer.MAX_VALUE, new Comparator<ITuple>() {
+            @Override
+            public int compare(ITuple o1, ITuple o2) {
+                return (Integer) o1.getAllValues()[0] - (Integer) o2.getAllValues()[0];
+            }
+        }).getIterator();
+        List<Integer> result = values(merged);
+        prefetcher.close();
+
+        Assert.assertEquals(200, result.size());
+        for (int i = 0; i < result.size(); i++) {
+            Assert.assertEquals(i, result.get(i).intValue());
+        }
+    }
+
+    @Test
+    public void testBusyPoolFallsBackToQueryThread() throws Exception {
+        // take all threads of the pool
+        final CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < pool.getMaximumPoolSize(); i++) {
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+
+        List<SourceIterator> sources = sources(3, 10);
+        SegmentTuplePrefetcher prefetcher = new SegmentTuplePrefetcher(pool, sources, 2, 3, Long.MAX_VALUE);
+        Assert.assertEquals(30, values(Iterators.concat(prefetcher.iterators())).size());
+        for (SourceIterator source : sources) {
+            Assert.assertEquals(Thread.currentThread(), source.readBy);
+        }
+        prefetcher.close();
+        release.countDown();
+    }
+
+    @Test
+    public void testError() {
+        List<SourceIterator> sources = sources(2, 10);
+        sources.get(0).failAt = 5;
+        SegmentTuplePrefetcher prefetcher = new SegmentTuplePrefetcher(pool, sources, 2, 3, Long.MAX_VALUE);
+        try {
+            values(Iterators.concat(prefetcher.iterators()));
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("fail at 5", e.getMessage());
+        } finally {
+            prefetcher.close();
+        }
+    }
+
+    @Test
+    public void testCloseEarly() throws Exception {
+        List<SourceIterator> sources = sources(4, 1000);
+        SegmentTuplePrefetcher prefetcher = new SegmentTuplePrefetcher(pool, sources, 2, 3, Long.MAX_VALUE);
+        Iterator<ITuple> iterator = Iterators.concat(prefetcher.iterators());
+        iterator.next();
+        prefetcher.close();
+
+        long waitUntil = System.currentTimeMillis() + 10000;
+        for (SourceIterator source : sources) {
+            while (!source.closed && System.currentTimeMillis() < waitUntil) {
+                Thread.sleep(10);
+            }
+            Assert.assertTrue(source.closed);
+            Assert.assertTrue(source.position < 1000);
+        }
+    }
+
+    private List<SourceIterator> sources(int segments, int rows) {
+        List<SourceIterator> sources = Lists.newArrayList();
+        for (int s = 0; s < segments; s++) {
+            List<Integer> values = Lists.newArrayList();
+            for (int v = 0; v < rows; v++) {
+                values.add(s * rows + v);
+            }
+            sources.add(new SourceIterator(values));
+        }
+        return sources;
+    }
+
+    private List<Integer> values(Iterator<ITuple> iterator) {
+        List<Integer> result = Lists.newArrayList();
+        while (iterator.hasNext()) {
+            result.add((Integer) iterator.next().getAllValues()[0]);
+        }
+        return result;
+    }
+
+    // reuses one tuple like SegmentCubeTupleIterator
+    private class SourceIterator implements ITupleIterator {
+        final List<Integer> values;
+        final Tuple tuple = new Tuple(tupleInfo);
+        volatile int position;
+        volatile int failAt = -1;
+        volatile boolean closed;
+        volatile Thread readBy;
+
+        SourceIterator(List<Integer> values) {
+            this.values = values;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position < values.size();
+        }
+
+        @Override
+        public ITuple next() {
+            readBy = Thread.currentThread();
+            if (position == failAt)
+                throw new IllegalStateException("fail at " + position);
+            tuple.getAllValues()[0] = values.get(position++);
+            return tuple;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.gtrecord;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.kylin.common.util.ByteArray;
+import org.apache.kylin.common.util.BytesUtil;
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.gridtable.GTBuilder;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTSampleCodeSystem;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.GTScanRequestBuilder;
+import org.apache.kylin.gridtable.GridTable;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.gridtable.IGTStorage;
+import org.apache.kylin.gridtable.benchmark.SortedGTRecordGenerator;
+import org.apache.kylin.gridtable.memstore.GTSimpleMemStore;
+import org.apache.kylin.metadata.datatype.DataType;
+import org.apache.kylin.metadata.filter.ColumnTupleFilter;
+import org.apache.kylin.metadata.filter.CompareTupleFilter;
+import org.apache.kylin.metadata.filter.ConstantTupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class SharedScanBatcherTest extends LocalFileMetadataTestCase {
+
+    private GTInfo info;
+    private GridTable table;
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+
+        GTInfo.Builder builder = GTInfo.builder();
+        builder.setCodeSystem(new GTSampleCodeSystem());
+        DataType tint = DataType.getType("int4");
+        DataType tlong = DataType.getType("long8");
+        builder.setColumns(tint, tint, tint, tlong);
+        builder.setPrimaryKey(ImmutableBitSet.valueOf(0, 1, 2));
+        info = builder.build();
+
+        SortedGTRecordGenerator gen = new SortedGTRecordGenerator(info);
+        gen.addDimension(10, 4, null);
+        gen.addDimension(10, 4, null);
+        gen.addDimension(10, 4, null);
+        gen.addMeasure(8);
+
+        table = new GridTable(info, new GTSimpleMemStore(info));
+        GTBuilder tableBuilder = table.rebuild();
+        for (GTRecord r : gen.generate(2000)) {
+            tableBuilder.write(r);
+        }
+        tableBuilder.close();
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testShareScan() throws Exception {
+        CountingStorage storage = new CountingStorage();
+        SharedScanBatcher batcher = new SharedScanBatcher(10000, 2, 16 * 1024 * 1024);
+
+        List<List<String>> results = scanConcurrently(batcher, storage, requestA(), requestB());
+        assertEquals(1, storage.calls.get());
+        assertEquals(scan(table.scan(requestA())), results.get(0));
+        assertEquals(scan(table.scan(requestB())), results.get(1));
+    }
+
+    @Test
+    public void testResultTooLarge() throws Exception {
+        CountingStorage storage = new CountingStorage();
+        SharedScanBatcher batcher = new SharedScanBatcher(10000, 2, 10);
+
+        List<List<String>> results = scanConcurrently(batcher, storage, requestA(), requestB());
+        assertEquals(3, storage.calls.get()); // shared scan, then each separately
+        assertEquals(scan(table.scan(requestA())), results.get(0));
+        assertEquals(scan(table.scan(requestB())), results.get(1));
+    }
+
+    @Test
+    public void testCompatible() {
+        assertTrue(SharedScanBatcher.isCompatible(requestA(), requestB()));
+
+        GTScanRequest max = new GTScanRequestBuilder().setInfo(info).setRanges(null).setDimensions(null).//
+                setAggrGroupBy(ImmutableBitSet.valueOf(1)).setAggrMetrics(ImmutableBitSet.valueOf(3)).setAggrMetricsFuncs(new String[] { "max" }).createGTScanRequest();
+        assertFalse(SharedScanBatcher.isCompatible(requestA(), max));
+    }
+
+    private List<List<String>> scanConcurrently(final SharedScanBatcher batcher, final IGTStorage storage, GTScanRequest... requests) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(requests.length);
+        try {
+            List<Future<List<String>>> futures = Lists.newArrayList();
+            for (final GTScanRequest request : requests) {
+                futures.add(executor.submit(new Callable<List<String>>() {
+                    @Override
+                    public List<String> call() throws Exception {
+                        return scan(batcher.scan("test", storage, request));
+                    }
+                }));
+            }
+
+            List<List<String>> results = Lists.newArrayList();
+            for (Future<List<String>> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // sum(c3) group by c0 where c1 in (1, 5)
+    private GTScanRequest requestA() {
+        CompareTupleFilter filter = compare(1, FilterOperatorEnum.IN, 1, 5);
+        return new GTScanRequestBuilder().setInfo(info).setRanges(null).setDimensions(null).setFilterPushDown(filter).//
+                setAggrGroupBy(ImmutableBitSet.valueOf(0)).setAggrMetrics(ImmutableBitSet.valueOf(3)).setAggrMetricsFuncs(new String[] { "sum" }).createGTScanRequest();
+    }
+
+    // sum(c3) group by c2 where c0 > 3
+    private GTScanRequest requestB() {
+        CompareTupleFilter filter = compare(0, FilterOperatorEnum.GT, 3);
+        return new GTScanRequestBuilder().setInfo(info).setRanges(null).setDimensions(null).setFilterPushDown(filter).//
+                setAggrGroupBy(ImmutableBitSet.valueOf(2)).setAggrMetrics(ImmutableBitSet.valueOf(3)).setAggrMetricsFuncs(new String[] { "sum" }).createGTScanRequest();
+    }
+
+    private CompareTupleFilter compare(int col, FilterOperatorEnum op, int... values) {
+        CompareTupleFilter filter = new CompareTupleFilter(op);
+        filter.addChild(new ColumnTupleFilter(info.colRef(col)));
+        for (int v : values) {
+            ByteArray bytes = new ByteArray(4);
+            BytesUtil.writeLong(v, bytes.array(), bytes.offset(), 4);
+            filter.addChild(new ConstantTupleFilter(bytes));
+        }
+        return filter;
+    }
+
+    private static List<String> scan(IGTScanner scanner) throws IOException {
+        List<String> result = Lists.newArrayList();
+        for (GTRecord r : scanner) {
+            result.add(r.toString());
+        }
+        scanner.close();
+        return result;
+    }
+
+    private class CountingStorage implements IGTStorage {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public IGTScanner getGTScanner(GTScanRequest scanRequest) throws IOException {
+            calls.incrementAndGet();
+            return table.scan(scanRequest);
+        }
+    }
+}
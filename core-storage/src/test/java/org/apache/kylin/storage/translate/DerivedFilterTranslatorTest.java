@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.translate;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.common.util.Pair;
+import org.apache.kylin.cube.CubeDescManager;
+import org.apache.kylin.cube.model.CubeDesc;
+import org.apache.kylin.cube.model.CubeDesc.DeriveInfo;
+import org.apache.kylin.cube.model.CubeDesc.DeriveType;
+import org.apache.kylin.dict.lookup.ColumnarLookupTable;
+import org.apache.kylin.dict.lookup.LookupStringTable;
+import org.apache.kylin.metadata.MetadataManager;
+import org.apache.kylin.metadata.filter.BuiltInFunctionTupleFilter;
+import org.apache.kylin.metadata.filter.ColumnTupleFilter;
+import org.apache.kylin.metadata.filter.CompareTupleFilter;
+import org.apache.kylin.metadata.filter.ConstantTupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter;
+import org.apache.kylin.metadata.filter.TupleFilter.FilterOperatorEnum;
+import org.apache.kylin.metadata.model.TableDesc;
+import org.apache.kylin.metadata.model.TblColRef;
+import org.apache.kylin.source.IReadableTable;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public class DerivedFilterTranslatorTest extends LocalFileMetadataTestCase {
+
+    // SELLER_TYPE_CD, SELLER_TYPE_DESC, and the other columns of EDW.TEST_SELLER_TYPE_DIM left null
+    private static final String[][] ROWS = { //
+            row("1", "Corporate"), //
+            row("2", "Consumer"), //
+            row("3", "Company"), //
+            row("4", null), //
+            row("5", "Individual"), //
+            row("6", "Corporate") };
+
+    private TblColRef derived;
+    private DeriveInfo hostInfo;
+    private List<LookupStringTable> lookups;
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        CubeDesc cubeDesc = CubeDescManager.getInstance(config).getCubeDesc("test_kylin_cube_without_slr_desc");
+        derived = cubeDesc.getModel().findColumn("TEST_SELLER_TYPE_DIM.SELLER_TYPE_DESC");
+        hostInfo = cubeDesc.getHostInfo(derived);
+        Assert.assertEquals(DeriveType.LOOKUP, hostInfo.type);
+
+        TableDesc tableDesc = MetadataManager.getInstance(config).getTableDesc("EDW.TEST_SELLER_TYPE_DIM");
+        String[] pkCols = hostInfo.join.getPrimaryKey();
+        lookups = Lists.newArrayList(new LookupStringTable(tableDesc, pkCols, new MemTable()), new ColumnarLookupTable(tableDesc, pkCols, new MemTable()));
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testLike() {
+        for (LookupStringTable lookup : lookups) {
+            Pair<TupleFilter, Boolean> translated = DerivedFilterTranslator.translate(lookup, hostInfo, like("Co%"));
+            Assert.assertFalse(translated.getSecond());
+            assertInHosts(translated.getFirst(), "1", "2", "3", "6");
+        }
+    }
+
+    @Test
+    public void testNotLike() {
+        for (LookupStringTable lookup : lookups) {
+            // the null value matches neither LIKE nor NOT LIKE
+            Pair<TupleFilter, Boolean> translated = DerivedFilterTranslator.translate(lookup, hostInfo, (BuiltInFunctionTupleFilter) like("Co%").reverse());
+            Assert.assertFalse(translated.getSecond());
+            assertInHosts(translated.getFirst(), "5");
+        }
+    }
+
+    @Test
+    public void testNoMatch() {
+        for (LookupStringTable lookup : lookups) {
+            Pair<TupleFilter, Boolean> translated = DerivedFilterTranslator.translate(lookup, hostInfo, like("%xyz%"));
+            Assert.assertEquals(ConstantTupleFilter.FALSE, translated.getFirst());
+        }
+    }
+
+    @Test
+    public void testNonBooleanFunction() {
+        BuiltInFunctionTupleFilter upper = new BuiltInFunctionTupleFilter("UPPER");
+        upper.addChild(new ColumnTupleFilter(derived));
+        Assert.assertTrue(upper.isValid());
+        for (LookupStringTable lookup : lookups) {
+            Assert.assertNull(DerivedFilterTranslator.translate(lookup, hostInfo, upper));
+        }
+    }
+
+    private BuiltInFunctionTupleFilter like(String pattern) {
+        BuiltInFunctionTupleFilter like = new BuiltInFunctionTupleFilter("LIKE");
+        like.addChild(new ColumnTupleFilter(derived));
+        like.addChild(new ConstantTupleFilter(pattern));
+        return like;
+    }
+
+    private void assertInHosts(TupleFilter filter, String... hostValues) {
+        Assert.assertTrue(filter instanceof CompareTupleFilter);
+        CompareTupleFilter in = (CompareTupleFilter) filter;
+        Assert.assertEquals(FilterOperatorEnum.IN, in.getOperator());
+        Assert.assertEquals(hostInfo.columns[0], in.getColumn());
+        Assert.assertEquals(Sets.newHashSet(hostValues), new HashSet<Object>(in.getValues()));
+    }
+
+    private static String[] row(String sellerTypeCd, String sellerTypeDesc) {
+        String[] row = new String[9];
+        row[0] = sellerTypeCd;
+        row[1] = sellerTypeDesc;
+        return row;
+    }
+
+    private static class MemTable implements IReadableTable {
+        @Override
+        public TableReader getReader() throws IOException {
+            return new TableReader() {
+                int i = -1;
+
+                @Override
+                public boolean next() throws IOException {
+                    return ++i < ROWS.length;
+                }
+
+                @Override
+                public String[] getRow() {
+                    // the lookup table converts rows in place
+                    return Arrays.copyOf(ROWS[i], ROWS[i].length);
+                }
+
+                @Override
+                public void close() throws IOException {
+                }
+            };
+        }
+
+        @Override
+        public TableSignature getSignature() throws IOException {
+            return new TableSignature("mem", ROWS.length, 0);
+        }
+
+        @Override
+        public boolean exists() throws IOException {
+            return true;
+        }
+    }
+}
@@ -19,10 +19,13 @@
 package org.apache.kylin.engine.mr;
 
 import java.io.IOException;
+import java.util.Collection;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.kylin.common.util.Dictionary;
 import org.apache.kylin.common.util.HadoopUtil;
+import org.apache.kylin.dict.AppendTrieDictionary;
 import org.apache.kylin.engine.mr.common.BatchConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,6 +35,10 @@ import org.slf4j.LoggerFactory;
 public class KylinMapper<KEYIN, VALUEIN, KEYOUT, VALUEOUT> extends Mapper<KEYIN, VALUEIN, KEYOUT, VALUEOUT> {
     private static final Logger logger = LoggerFactory.getLogger(KylinMapper.class);
 
+    public static enum GlobalDictCounter {
+        SLICE_CACHE_HITS, SLICE_CACHE_MISSES, SLICE_LOCAL_LOADS, SLICE_REMOTE_LOADS, SLICE_LOAD_MILLIS
+    }
+
     protected int mapCounter = 0;
 
     protected void bindCurrentConfiguration(Configuration conf) {
@@ -86,4 +93,22 @@ public class KylinMapper<KEYIN, VALUEIN, KEYOUT, VALUEOUT> extends Mapper<KEYIN,
 
     protected void doCleanup(Mapper<KEYIN, VALUEIN, KEYOUT, VALUEOUT>.Context context) throws IOException, InterruptedException {
     }
+
+    // reports how slices of the global dictionaries were loaded by this mapper
+    protected void reportGlobalDictStats(Mapper<KEYIN, VALUEIN, KEYOUT, VALUEOUT>.Context context, Collection<? extends Dictionary<?>> dictionaries) {
+        for (Dictionary<?> dict : dictionaries) {
+            if (dict instanceof AppendTrieDictionary) {
+                AppendTrieDictionary<?> globalDict = (AppendTrieDictionary<?>) dict;
+                long hits = globalDict.getSliceCacheStats().hitCount();
+                long misses = globalDict.getSliceCacheStats().missCount();
+                logger.info("{}: slice cache hits {}, misses {}, loaded from local disk {}, from HDFS {}, load time {} ms", dict, hits, misses, globalDict.getSliceLocalLoadCount(), globalDict.getSliceRemoteLoadCount(), globalDict.getSliceLoadMillis());
+
+                context.getCounter(GlobalDictCounter.SLICE_CACHE_HITS).increment(hits);
+                context.getCounter(GlobalDictCounter.SLICE_CACHE_MISSES).increment(misses);
+                context.getCounter(GlobalDictCounter.SLICE_LOCAL_LOADS).increment(globalDict.getSliceLocalLoadCount());
+                context.getCounter(GlobalDictCounter.SLICE_REMOTE_LOADS).increment(globalDict.getSliceRemoteLoadCount());
+                context.getCounter(GlobalDictCounter.SLICE_LOAD_MILLIS).increment(globalDict.getSliceLoadMillis());
+            }
+        }
+    }
 }
@@ -108,6 +108,10 @@ public class BaseCuboidBuilder implements java.io.Serializable {
         return nullStrs.contains(v);
     }
 
+    public Map<TblColRef, Dictionary<String>> getDictionaryMap() {
+        return dictionaryMap;
+    }
+
     public byte[] buildKey(String[] flatRow) {
         int[] rowKeyColumnIndexes = intermediateTableDesc.getRowKeyColumnIndexes();
         List<TblColRef> columns = baseCuboid.getColumns();
@@ -0,0 +1,238 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.engine.mr.common;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.cube.CubeDescManager;
+import org.apache.kylin.cube.CubeInstance;
+import org.apache.kylin.cube.CubeManager;
+import org.apache.kylin.cube.CubeSegment;
+import org.apache.kylin.cube.cuboid.Cuboid;
+import org.apache.kylin.cube.cuboid.CuboidHitHistory;
+import org.apache.kylin.cube.cuboid.CuboidHitHistory.CuboidHit;
+import org.apache.kylin.cube.cuboid.CuboidHitManager;
+import org.apache.kylin.cube.model.CubeDesc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Recommends the cuboids to build from the cuboid hits of queries and the statistics of a segment, by the greedy
+ * algorithm of "Implementing Data Cubes Efficiently" (Harinarayan et al.): starting from the base cuboid, keep adding
+ * the cuboid of most benefit per MB until the space budget is used up. The benefit of a cuboid is the rows saved for
+ * the recorded queries it can answer, weighted by their hit count.
+ *
+ * Candidates are the built cuboids and the requested ones. Rows of a requested cuboid not built are estimated by the
+ * rows returned for its queries, bounded by the rows of built ancestors and descendants.
+ */
+public class CuboidRecommender {
+
+    private static final Logger logger = LoggerFactory.getLogger(CuboidRecommender.class);
+
+    private final long baseCuboid;
+    private final Map<Long, Long> rows; // of all candidates
+    private final Map<Long, Double> sizes; // MB of all candidates
+    private final Map<Long, Long> hits; // requested cuboid ==> hit count
+    private final Set<Long> built;
+
+    public CuboidRecommender(long baseCuboid, Map<Long, Long> cuboidRows, Map<Long, Double> cuboidSizes, Map<Long, CuboidHit> cuboidHits) {
+        this.baseCuboid = baseCuboid;
+        this.built = Sets.newHashSet(cuboidRows.keySet());
+        this.rows = Maps.newHashMap(cuboidRows);
+        this.sizes = Maps.newHashMap(cuboidSizes);
+        this.hits = Maps.newHashMap();
+
+        double mbPerRow = cuboidRows.get(baseCuboid) == 0 ? 0 : cuboidSizes.get(baseCuboid) / cuboidRows.get(baseCuboid);
+        for (Map.Entry<Long, CuboidHit> entry : cuboidHits.entrySet()) {
+            long cuboid = entry.getKey();
+            hits.put(cuboid, entry.getValue().getHitCount());
+            if (!rows.containsKey(cuboid)) {
+                long r = estimateRows(cuboid, entry.getValue().getAvgReturnedRows());
+                rows.put(cuboid, r);
+                sizes.put(cuboid, r * mbPerRow);
+            }
+        }
+    }
+
+    private long estimateRows(long cuboid, long returnedRows) {
+        long upper = Long.MAX_VALUE;
+        long lower = 0;
+        for (long c : built) {
+            if ((c & cuboid) == cuboid)
+                upper = Math.min(upper, rows.get(c));
+            else if ((c & cuboid) == c)
+                lower = Math.max(lower, rows.get(c));
+        }
+        return Math.max(lower, Math.min(upper, returnedRows));
+    }
+
+    public Set<Long> getBuiltCuboids() {
+        return built;
+    }
+
+    /**
+     * @param budget in MB
+     * @return recommended cuboids, always include the base cuboid
+     */
+    public Set<Long> recommend(double budget) {
+        Set<Long> selected = new TreeSet<>();
+        selected.add(baseCuboid);
+        double used = sizes.get(baseCuboid);
+
+        while (true) {
+            long best = -1;
+            double bestBenefitPerMB = 0;
+            for (long candidate : rows.keySet()) {
+                if (selected.contains(candidate) || used + sizes.get(candidate) > budget)
+                    continue;
+
+                double benefitPerMB = benefit(candidate, selected) / Math.max(sizes.get(candidate), Double.MIN_VALUE);
+                if (benefitPerMB > bestBenefitPerMB || (benefitPerMB == bestBenefitPerMB && best >= 0 && Cuboid.cuboidSelectComparator.compare(candidate, best) < 0)) {
+                    best = candidate;
+                    bestBenefitPerMB = benefitPerMB;
+                }
+            }
+
+            if (best < 0)
+                break;
+
+            selected.add(best);
+            used += sizes.get(best);
+        }
+
+        logger.info("Recommended " + selected.size() + " cuboids using " + used + " MB of budget " + budget + " MB");
+        return selected;
+    }
+
+    // rows saved for the hit queries, if the candidate is added
+    private double benefit(long candidate, Set<Long> selected) {
+        double benefit = 0;
+        long candidateRows = rows.get(candidate);
+        for (Map.Entry<Long, Long> hit : hits.entrySet()) {
+            long requested = hit.getKey();
+            if ((candidate & requested) != requested)
+                continue;
+
+            long current = cost(requested, selected);
+            if (current > candidateRows)
+                benefit += (double) (current - candidateRows) * hit.getValue();
+        }
+        return benefit;
+    }
+
+    // rows to scan for the requested cuboid, by the cheapest selected ancestor
+    private long cost(long requested, Set<Long> selected) {
+        long result = Long.MAX_VALUE;
+        for (long c : selected) {
+            if ((c & requested) == requested)
+                result = Math.min(result, rows.get(c));
+        }
+        return result;
+    }
+
+    // ============================================================================
+
+    /**
+     * Creates the recommender from the statistics of the latest ready segment.
+     */
+    public static CuboidRecommender create(CubeInstance cube, CuboidHitHistory history, KylinConfig config) throws IOException {
+        CubeSegment seg = cube.getLatestReadySegment();
+        if (seg == null)
+            throw new IllegalStateException("No ready segment in " + cube);
+
+        CubeStatsReader stats = new CubeStatsReader(seg, config);
+        return new CuboidRecommender(Cuboid.getBaseCuboidId(cube.getDescriptor()), stats.getCuboidRowEstimatesHLL(), stats.getCuboidSizeMap(), history.getHits());
+    }
+
+    /**
+     * Computes the cuboid black list to apply a recommendation. Cuboids no longer recommended are always added, as
+     * queries fall back to their built ancestors. Recommended cuboids are removed from the black list only if the cube
+     * has no segments; otherwise queries would be routed to cuboids that no segment has built, and they are left for
+     * a build of the missing cuboids.
+     */
+    static Set<Long> newCuboidBlackSet(Set<Long> blackSet, Set<Long> toRemove, Set<Long> toAdd, boolean hasSegments, long baseCuboid) {
+        Set<Long> result = new TreeSet<>(blackSet);
+        result.addAll(toRemove);
+        if (!hasSegments)
+            result.removeAll(toAdd);
+        result.remove(baseCuboid);
+        return result;
+    }
+
+    /**
+     * Log the recommendation of a cube. With "-apply", the recommendation is applied to the cuboid black list of cube
+     * desc, see {@link #newCuboidBlackSet}. Recommended cuboids outside the aggregation groups can only be reported.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: CuboidRecommender <cube> [-apply]");
+            return;
+        }
+
+        KylinConfig config = KylinConfig.getInstanceFromEnv();
+        CubeInstance cube = CubeManager.getInstance(config).getCube(args[0]);
+        boolean apply = args.length > 1 && "-apply".equals(args[1]);
+
+        CuboidHitHistory history = CuboidHitManager.getInstance(config).getCuboidHitHistory(cube.getName());
+        CuboidRecommender recommender = create(cube, history, config);
+        double current = sumSizes(recommender, recommender.built);
+        Set<Long> recommended = recommender.recommend(current * config.getCubeCuboidRecommendSpaceRatio());
+
+        CubeDesc desc = cube.getDescriptor();
+        Set<Long> toRemove = new TreeSet<>(Sets.difference(recommender.built, recommended));
+        Set<Long> toAdd = new TreeSet<>(Sets.difference(recommended, recommender.built));
+        Set<Long> notInDesc = Sets.newTreeSet();
+        for (long c : toAdd) {
+            if (!Cuboid.isValid(desc, c) && !desc.isBlackedCuboid(c))
+                notInDesc.add(c);
+        }
+
+        logger.info("Recommended cuboids: " + recommended);
+        logger.info("To remove: " + toRemove);
+        logger.info("To add: " + toAdd);
+        logger.info("To add, not in aggregation groups: " + notInDesc);
+
+        if (apply) {
+            boolean hasSegments = !cube.getSegments().isEmpty();
+            Set<Long> blackSet = newCuboidBlackSet(desc.getCuboidBlackSet(), toRemove, toAdd, hasSegments, Cuboid.getBaseCuboidId(desc));
+            desc.setCuboidBlackSet(blackSet);
+            CubeDescManager.getInstance(config).updateCubeDesc(desc);
+            logger.info("Updated cuboid black list of " + desc.getName() + ": " + blackSet);
+            if (hasSegments && !toAdd.isEmpty()) {
+                logger.warn("Cuboids " + toAdd + " stay in the black list, as the segments of " + cube.getName() + " do not have them. " //
+                        + "Remove them from the black list only together with a build of all segments from scratch.");
+            }
+        }
+    }
+
+    private static double sumSizes(CuboidRecommender recommender, Set<Long> cuboids) {
+        double result = 0;
+        for (long c : cuboids) {
+            result += recommender.sizes.get(c);
+        }
+        return result;
+    }
+}
@@ -72,6 +72,12 @@ abstract public class BaseCuboidMapperBase<KEYIN, VALUEIN> extends KylinMapper<K
     }
 
 
+    @Override
+    protected void doCleanup(Context context) throws IOException, InterruptedException {
+        // only the dictionaries the builder loaded, looking up the others would load them just for the stats
+        reportGlobalDictStats(context, baseCuboidBuilder.getDictionaryMap().values());
+    }
+
     protected void outputKV(String[] flatRow, Context context) throws IOException, InterruptedException {
         byte[] rowKey = baseCuboidBuilder.buildKey(flatRow);
         outputKey.set(rowKey, 0, rowKey.length);
@@ -64,6 +64,7 @@ public class InMemCuboidMapper<KEYIN> extends KylinMapper<KEYIN, Object, ByteArr
     private CubeDesc cubeDesc;
     private CubeSegment cubeSegment;
     private IMRTableInputFormat flatTableInputFormat;
+    private Map<TblColRef, Dictionary<String>> dictionaryMap;
 
     private BlockingQueue<List<String>> queue = new ArrayBlockingQueue<List<String>>(64);
     private Future<?> future;
@@ -83,7 +84,7 @@ public class InMemCuboidMapper<KEYIN> extends KylinMapper<KEYIN, Object, ByteArr
         flatTableInputFormat = MRUtil.getBatchCubingInputSide(cubeSegment).getFlatTableInputFormat();
         IJoinedFlatTableDesc flatDesc = EngineFactory.getJoinedFlatTableDesc(cubeSegment);
 
-        Map<TblColRef, Dictionary<String>> dictionaryMap = Maps.newHashMap();
+        dictionaryMap = Maps.newHashMap();
 
         // dictionary
         for (TblColRef col : cubeDesc.getAllColumnsHaveDictionary()) {
@@ -145,6 +146,8 @@ public class InMemCuboidMapper<KEYIN> extends KylinMapper<KEYIN, Object, ByteArr
             throw new IOException("Failed to build cube in mapper " + context.getTaskAttemptID().getTaskID().getId(), e);
         }
         queue.clear();
+
+        reportGlobalDictStats(context, dictionaryMap.values());
     }
 
 }
@@ -26,12 +26,14 @@ import org.apache.commons.io.IOUtils;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.common.util.HadoopUtil;
 import org.apache.kylin.cube.CubeInstance;
 import org.apache.kylin.cube.CubeManager;
 import org.apache.kylin.cube.CubeSegment;
 import org.apache.kylin.engine.mr.CubingJob;
 import org.apache.kylin.engine.mr.common.BatchConstants;
+import org.apache.kylin.engine.mr.common.CubeStatsReader;
 import org.apache.kylin.job.exception.ExecuteException;
 import org.apache.kylin.job.execution.AbstractExecutable;
 import org.apache.kylin.job.execution.ExecutableContext;
@@ -65,6 +67,7 @@ public class UpdateCubeInfoAfterBuildStep extends AbstractExecutable {
         segment.setSizeKB(cubeSizeBytes / 1024);
         segment.setInputRecords(sourceCount);
         segment.setInputRecordsSize(sourceSizeBytes);
+        updateCuboidRowCounts(segment);
 
         try {
             if (segment.isSourceOffsetsOn()) {
@@ -79,6 +82,20 @@ public class UpdateCubeInfoAfterBuildStep extends AbstractExecutable {
         }
     }
 
+    static void updateCuboidRowCounts(CubeSegment segment) {
+        // the counts go into the cube JSON that every query server loads, only keep them when a query feature reads them
+        KylinConfig config = segment.getConfig();
+        if (!config.isQueryCostBasedSelectionEnabled() && !config.isQueryScanPlanCostBasedEnabled())
+            return;
+
+        // for cost based cuboid selection at query time, not worth failing the build
+        try {
+            segment.setCuboidRowCounts(new CubeStatsReader(segment, segment.getConfig()).getCuboidRowEstimatesHLL());
+        } catch (Exception e) {
+            logger.warn("Failed to read cuboid statistics of " + segment, e);
+        }
+    }
+
     private void updateTimeRange(CubeSegment segment) throws IOException {
         final TblColRef partitionCol = segment.getCubeDesc().getModel().getPartitionDesc().getPartitionDateColumnRef();
 
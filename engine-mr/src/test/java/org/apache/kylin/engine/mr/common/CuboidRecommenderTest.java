@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.engine.mr.common;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.kylin.cube.cuboid.CuboidHitHistory.CuboidHit;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+public class CuboidRecommenderTest {
+
+    @Test
+    public void testRecommend() {
+        Map<Long, Long> rows = Maps.newHashMap();
+        Map<Long, Double> sizes = Maps.newHashMap();
+        addCuboid(7L, 1000, 10, rows, sizes);
+        addCuboid(6L, 500, 5, rows, sizes);
+        addCuboid(5L, 400, 4, rows, sizes);
+        addCuboid(3L, 300, 3, rows, sizes);
+        addCuboid(4L, 10, 0.1, rows, sizes);
+
+        Map<Long, CuboidHit> hits = Maps.newHashMap();
+        hits.put(1L, newHit(7L, 100, 5)); // not built
+        hits.put(4L, newHit(4L, 50, 10));
+        hits.put(6L, newHit(6L, 1, 500));
+
+        CuboidRecommender recommender = new CuboidRecommender(7L, rows, sizes, hits);
+
+        // tight budget, only the small and hot ones
+        assertEquals(Sets.newHashSet(7L, 1L, 4L), recommender.recommend(10.2));
+        // more budget, cuboid 6 still saves rows for its query, while 5 and 3 do not help any more
+        assertEquals(Sets.newHashSet(7L, 1L, 4L, 6L), recommender.recommend(100));
+    }
+
+    @Test
+    public void testNewCuboidBlackSet() {
+        Set<Long> blackSet = Sets.newHashSet(1L, 2L);
+        Set<Long> toRemove = Sets.newHashSet(5L, 7L);
+        Set<Long> toAdd = Sets.newHashSet(1L);
+
+        // a cube with segments only gets more cuboids in the black list, never the base cuboid
+        assertEquals(Sets.newHashSet(1L, 2L, 5L), CuboidRecommender.newCuboidBlackSet(blackSet, toRemove, toAdd, true, 7L));
+        // without segments the recommended cuboids are built by the next build
+        assertEquals(Sets.newHashSet(2L, 5L), CuboidRecommender.newCuboidBlackSet(blackSet, toRemove, toAdd, false, 7L));
+    }
+
+    private void addCuboid(long cuboid, long r, double mb, Map<Long, Long> rows, Map<Long, Double> sizes) {
+        rows.put(cuboid, r);
+        sizes.put(cuboid, mb);
+    }
+
+    private CuboidHit newHit(long servedBy, int count, long returnedRows) {
+        CuboidHit hit = new CuboidHit();
+        for (int i = 0; i < count; i++) {
+            hit.add(servedBy, false, returnedRows);
+        }
+        return hit;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.jdbc;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.kylin.jdbc.json.SQLResponseStub;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Reads the binary row batch format of "/kylin/api/query/stream", see StreamingResultWriter of the server for
+ * the layout. The rows are decoded column by column into the results of a {@link SQLResponseStub}.
+ */
+class BinaryResultReader {
+
+    static final String CONTENT_TYPE = "application/x-kylin-rowset";
+
+    private static final int MAGIC = 0x4B524F57; // "KROW"
+    private static final byte VERSION = 1;
+    private static final byte FRAME_BATCH = 1;
+    private static final byte FRAME_TRAILER = 2;
+
+    static SQLResponseStub read(InputStream input, ObjectMapper jsonMapper) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+        if (in.readInt() != MAGIC)
+            throw new IOException("Not a Kylin binary result");
+        byte version = in.readByte();
+        if (version != VERSION)
+            throw new IOException("Unsupported Kylin binary result version " + version);
+
+        List<String[]> results = new ArrayList<String[]>();
+        while (true) {
+            byte frame = in.readByte();
+            if (frame == FRAME_BATCH) {
+                readBatch(in, results);
+            } else if (frame == FRAME_TRAILER) {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                SQLResponseStub stub = jsonMapper.readValue(bytes, SQLResponseStub.class);
+                stub.setResults(results);
+                return stub;
+            } else {
+                throw new IOException("Unknown frame type " + frame + " in Kylin binary result");
+            }
+        }
+    }
+
+    private static void readBatch(DataInputStream in, List<String[]> results) throws IOException {
+        int rows = in.readInt();
+        int columns = in.readInt();
+
+        String[][] batch = new String[rows][columns];
+        byte[] nulls = new byte[(rows + 7) / 8];
+        int[] lengths = new int[rows];
+        for (int c = 0; c < columns; c++) {
+            in.readFully(nulls);
+            for (int r = 0; r < rows; r++) {
+                lengths[r] = isNull(nulls, r) ? -1 : in.readInt();
+            }
+            for (int r = 0; r < rows; r++) {
+                if (lengths[r] >= 0) {
+                    byte[] bytes = new byte[lengths[r]];
+                    in.readFully(bytes);
+                    batch[r][c] = new String(bytes, StandardCharsets.UTF_8);
+                }
+            }
+        }
+
+        for (String[] row : batch) {
+            results.add(row);
+        }
+    }
+
+    private static boolean isNull(byte[] nulls, int row) {
+        return (nulls[row >> 3] & (1 << (row & 7))) != 0;
+    }
+}
@@ -50,6 +50,11 @@ import org.apache.calcite.avatica.UnregisteredDriver;
  * <li>user: username</li>
  * <li>password: password</li>
  * <li>ssl: true/false</li>
+ * <li>streaming: true/false, fetch query results in the binary row batch format, requires a server supporting it; all rows
+ * are read before the first is returned, while rows of the default JSON format are parsed as the result set advances</li>
+ * <li>paging: true/false, run queries as async queries on server and fetch the rows page by page of the statement fetch size;
+ * the first row comes only after the whole query has finished on server, the statement query timeout bounds the wait,
+ * and closing the result set releases the rows left on server</li>
  * </ul>
  * </p>
  * 
@@ -50,8 +50,10 @@ public interface IRemoteClient extends Closeable {
     public KMetaProject retrieveMetaData(String project) throws IOException;
 
     /**
-     * Execute query remotely and get back result.
+     * Execute query remotely and get back result. Rows may be fetched from server in pages of fetchSize while the result
+     * is iterated, if the client supports it, otherwise all rows are fetched at once. An iterable that is Closeable is
+     * closed with the result set. The query is given up after timeoutSeconds, 0 for no limit, if the client supports it.
      */
-    public QueryResult executeQuery(String sql, List<AvaticaParameter> params, List<Object> paramValues, Map<String, String> queryToggles) throws IOException;
+    public QueryResult executeQuery(String sql, List<AvaticaParameter> params, List<Object> paramValues, Map<String, String> queryToggles, int fetchSize, int timeoutSeconds) throws IOException;
 
 }
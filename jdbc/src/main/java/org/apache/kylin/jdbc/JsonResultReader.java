@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.jdbc;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.kylin.jdbc.json.SQLResponseStub;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Reads the JSON SQLResponse of "/kylin/api/query" row by row. The fields before "results", which include the column
+ * metas, are read at once, the rows one at a time as they are asked for, and the fields after the rows once the last
+ * row is read.
+ *
+ * If "results" comes before "columnMetas", the rows cannot be converted before the end anyway, so they are read at
+ * once into the results of the response.
+ */
+class JsonResultReader {
+
+    private final ObjectMapper jsonMapper;
+    private final JsonParser parser;
+    private final ObjectNode fields;
+    private String[] nextRow;
+
+    JsonResultReader(InputStream input, ObjectMapper jsonMapper) throws IOException {
+        this.jsonMapper = jsonMapper;
+        this.parser = jsonMapper.getFactory().createParser(input);
+        this.fields = jsonMapper.createObjectNode();
+
+        if (parser.nextToken() != JsonToken.START_OBJECT)
+            throw new IOException("Not a Kylin query result");
+        readFields();
+    }
+
+    /**
+     * The fields read so far, all of them once there are no more rows.
+     */
+    SQLResponseStub getResponse() throws IOException {
+        return jsonMapper.treeToValue(fields, SQLResponseStub.class);
+    }
+
+    boolean hasNextRow() {
+        return nextRow != null;
+    }
+
+    String[] nextRow() throws IOException {
+        String[] row = nextRow;
+        readRow();
+        return row;
+    }
+
+    // reads fields up to the first row, or to the end of the response
+    private void readFields() throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("results".equals(name) && token == JsonToken.START_ARRAY && fields.has("columnMetas")) {
+                if (readRow())
+                    return;
+            } else {
+                JsonNode value = jsonMapper.readTree(parser);
+                fields.set(name, value);
+            }
+        }
+    }
+
+    // reads the next row of the results, or the fields after them if there are no more rows
+    private boolean readRow() throws IOException {
+        if (parser.nextToken() == JsonToken.START_ARRAY) {
+            nextRow = jsonMapper.readValue(parser, String[].class);
+            return true;
+        }
+
+        nextRow = null;
+        readFields();
+        return false;
+    }
+}
@@ -18,7 +18,9 @@
 
 package org.apache.kylin.jdbc;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.math.BigDecimal;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
@@ -27,10 +29,15 @@ import java.sql.Time;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.xml.bind.DatatypeConverter;
 
@@ -38,22 +45,30 @@ import org.apache.calcite.avatica.AvaticaParameter;
 import org.apache.calcite.avatica.ColumnMetaData;
 import org.apache.calcite.avatica.ColumnMetaData.Rep;
 import org.apache.calcite.avatica.ColumnMetaData.ScalarType;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.conn.ClientConnectionManager;
 import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.conn.ssl.TrustStrategy;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
 import org.apache.http.util.EntityUtils;
 import org.apache.kylin.jdbc.KylinMeta.KMetaCatalog;
 import org.apache.kylin.jdbc.KylinMeta.KMetaColumn;
 import org.apache.kylin.jdbc.KylinMeta.KMetaProject;
 import org.apache.kylin.jdbc.KylinMeta.KMetaSchema;
 import org.apache.kylin.jdbc.KylinMeta.KMetaTable;
+import org.apache.kylin.jdbc.json.AsyncQueryResponseStub;
 import org.apache.kylin.jdbc.json.PreparedQueryRequest;
 import org.apache.kylin.jdbc.json.QueryRequest;
 import org.apache.kylin.jdbc.json.SQLResponseStub;
@@ -70,6 +85,16 @@ public class KylinClient implements IRemoteClient {
 
     private static final Logger logger = LoggerFactory.getLogger(KylinClient.class);
 
+    // HTTP connections are pooled and kept alive across clients, i.e. across JDBC connections to the same server
+    private static final int POOL_MAX_TOTAL = 200;
+    private static final int POOL_MAX_PER_ROUTE = 100;
+    private static ClientConnectionManager plainConnManager;
+    private static ClientConnectionManager sslConnManager;
+
+    // polling interval of async queries, doubled on each poll
+    private static final long ASYNC_POLL_MIN_MS = 10;
+    private static final long ASYNC_POLL_MAX_MS = 1000;
+
     private final KylinConnection conn;
     private final Properties connProps;
     private DefaultHttpClient httpClient;
@@ -78,25 +103,44 @@ public class KylinClient implements IRemoteClient {
     public KylinClient(KylinConnection conn) {
         this.conn = conn;
         this.connProps = conn.getConnectionProperties();
-        this.httpClient = new DefaultHttpClient();
+        this.httpClient = new DefaultHttpClient(getConnectionManager(isSSL()));
         this.jsonMapper = new ObjectMapper();
+    }
 
-        // trust all certificates
-        if (isSSL()) {
-            try {
-                SSLSocketFactory sslsf = new SSLSocketFactory(new TrustStrategy() {
-                    public boolean isTrusted(final X509Certificate[] chain, String authType) throws CertificateException {
-                        // Oh, I am easy...
-                        return true;
-                    }
-                });
-                httpClient.getConnectionManager().getSchemeRegistry().register(new Scheme("https", 443, sslsf));
-            } catch (Exception e) {
-                throw new RuntimeException("Initialize HTTPS client failed", e);
+    private static synchronized ClientConnectionManager getConnectionManager(boolean ssl) {
+        if (ssl) {
+            if (sslConnManager == null) {
+                // trust all certificates
+                SchemeRegistry registry = SchemeRegistryFactory.createDefault();
+                try {
+                    SSLSocketFactory sslsf = new SSLSocketFactory(new TrustStrategy() {
+                        public boolean isTrusted(final X509Certificate[] chain, String authType) throws CertificateException {
+                            // Oh, I am easy...
+                            return true;
+                        }
+                    });
+                    registry.register(new Scheme("https", 443, sslsf));
+                } catch (Exception e) {
+                    throw new RuntimeException("Initialize HTTPS client failed", e);
+                }
+                sslConnManager = newPoolingConnectionManager(registry);
+            }
+            return sslConnManager;
+        } else {
+            if (plainConnManager == null) {
+                plainConnManager = newPoolingConnectionManager(SchemeRegistryFactory.createDefault());
             }
+            return plainConnManager;
         }
     }
 
+    private static ClientConnectionManager newPoolingConnectionManager(SchemeRegistry registry) {
+        PoolingClientConnectionManager connManager = new PoolingClientConnectionManager(registry);
+        connManager.setMaxTotal(POOL_MAX_TOTAL);
+        connManager.setDefaultMaxPerRoute(POOL_MAX_PER_ROUTE);
+        return connManager;
+    }
+
     @SuppressWarnings("rawtypes")
     public static Class convertType(int sqlType) {
         Class result = Object.class;
@@ -204,6 +248,14 @@ public class KylinClient implements IRemoteClient {
         return Boolean.parseBoolean(connProps.getProperty("ssl", "false"));
     }
 
+    private boolean isStreaming() {
+        return Boolean.parseBoolean(connProps.getProperty("streaming", "false"));
+    }
+
+    private boolean isPaging() {
+        return Boolean.parseBoolean(connProps.getProperty("paging", "false"));
+    }
+
     private String baseUrl() {
         return (isSSL() ? "https://" : "http://") + conn.getBaseUrl();
     }
@@ -231,6 +283,7 @@ public class KylinClient implements IRemoteClient {
             if (response.getStatusLine().getStatusCode() != 200 && response.getStatusLine().getStatusCode() != 201) {
                 throw asIOException(post, response);
             }
+            EntityUtils.consume(response.getEntity());
         } finally {
             post.releaseConnection();
         }
@@ -244,20 +297,24 @@ public class KylinClient implements IRemoteClient {
         HttpGet get = new HttpGet(url);
         addHttpHeaders(get);
 
-        HttpResponse response = httpClient.execute(get);
+        try {
+            HttpResponse response = httpClient.execute(get);
 
-        if (response.getStatusLine().getStatusCode() != 200 && response.getStatusLine().getStatusCode() != 201) {
-            throw asIOException(get, response);
-        }
+            if (response.getStatusLine().getStatusCode() != 200 && response.getStatusLine().getStatusCode() != 201) {
+                throw asIOException(get, response);
+            }
 
-        List<TableMetaStub> tableMetaStubs = jsonMapper.readValue(response.getEntity().getContent(), new TypeReference<List<TableMetaStub>>() {
-        });
+            List<TableMetaStub> tableMetaStubs = jsonMapper.readValue(response.getEntity().getContent(), new TypeReference<List<TableMetaStub>>() {
+            });
+            EntityUtils.consume(response.getEntity());
 
-        List<KMetaTable> tables = convertMetaTables(tableMetaStubs);
-        List<KMetaSchema> schemas = convertMetaSchemas(tables);
-        List<KMetaCatalog> catalogs = convertMetaCatalogs(schemas);
-        get.releaseConnection();
-        return new KMetaProject(project, catalogs);
+            List<KMetaTable> tables = convertMetaTables(tableMetaStubs);
+            List<KMetaSchema> schemas = convertMetaSchemas(tables);
+            List<KMetaCatalog> catalogs = convertMetaCatalogs(schemas);
+            return new KMetaProject(project, catalogs);
+        } finally {
+            get.releaseConnection();
+        }
     }
 
     private List<KMetaCatalog> convertMetaCatalogs(List<KMetaSchema> schemas) {
@@ -321,16 +378,12 @@ public class KylinClient implements IRemoteClient {
     }
 
     @Override
-    public QueryResult executeQuery(String sql, List<AvaticaParameter> params, List<Object> paramValues, Map<String, String> queryToggles) throws IOException {
-
-        SQLResponseStub queryResp = executeKylinQuery(sql, convertParameters(params, paramValues), queryToggles);
-        if (queryResp.getIsException())
-            throw new IOException(queryResp.getExceptionMessage());
-
-        List<ColumnMetaData> metas = convertColumnMeta(queryResp);
-        List<Object> data = convertResultData(queryResp, metas);
+    public QueryResult executeQuery(String sql, List<AvaticaParameter> params, List<Object> paramValues, Map<String, String> queryToggles, int fetchSize, int timeoutSeconds) throws IOException {
+        List<StatementParameter> statementParams = convertParameters(params, paramValues);
+        if (fetchSize > 0 && isPaging())
+            return executeAsyncQuery(sql, statementParams, queryToggles, fetchSize, timeoutSeconds);
 
-        return new QueryResult(metas, data);
+        return executeKylinQuery(sql, statementParams, queryToggles);
     }
 
     private List<StatementParameter> convertParameters(List<AvaticaParameter> params, List<Object> paramValues) {
@@ -346,22 +399,79 @@ public class KylinClient implements IRemoteClient {
         return result;
     }
 
-    private SQLResponseStub executeKylinQuery(String sql, List<StatementParameter> params, Map<String, String> queryToggles) throws IOException {
-        String url = baseUrl() + "/kylin/api/query";
-        String project = conn.getProject();
-
+    private QueryRequest newQueryRequest(String sql, List<StatementParameter> params, Map<String, String> queryToggles) {
         QueryRequest request = null;
         if (null != params) {
             request = new PreparedQueryRequest();
             ((PreparedQueryRequest) request).setParams(params);
-            url += "/prestate"; // means prepared statement..
         } else {
             request = new QueryRequest();
         }
         request.setSql(sql);
-        request.setProject(project);
+        request.setProject(conn.getProject());
         request.setBackdoorToggles(queryToggles);
+        return request;
+    }
+
+    private String queryUrl(List<StatementParameter> params) {
+        String url = baseUrl() + "/kylin/api/query";
+        if (null != params)
+            url += "/prestate"; // means prepared statement..
+        return url;
+    }
+
+    /**
+     * Rows of a JSON response are parsed as the result set advances, so the client holds one row at a time. The binary
+     * format of "/stream" has the column metas in its trailer, so its rows are all read before the first is returned.
+     */
+    private QueryResult executeKylinQuery(String sql, List<StatementParameter> params, Map<String, String> queryToggles) throws IOException {
+        String url = queryUrl(params);
+        boolean streaming = isStreaming();
+        if (streaming)
+            url += "/stream";
+
+        HttpPost post = newPost(url, newQueryRequest(sql, params, queryToggles));
+        if (streaming) {
+            post.removeHeaders("Accept");
+            post.addHeader("Accept", BinaryResultReader.CONTENT_TYPE + ", application/json");
+        }
+
+        boolean release = true;
+        try {
+            HttpResponse response = httpClient.execute(post);
+
+            if (response.getStatusLine().getStatusCode() != 200 && response.getStatusLine().getStatusCode() != 201) {
+                throw asIOException(post, response);
+            }
+
+            SQLResponseStub stub;
+            JsonResultReader reader = null;
+            Header contentType = response.getEntity().getContentType();
+            if (contentType != null && contentType.getValue().startsWith(BinaryResultReader.CONTENT_TYPE)) {
+                stub = BinaryResultReader.read(response.getEntity().getContent(), jsonMapper);
+            } else {
+                reader = new JsonResultReader(response.getEntity().getContent(), jsonMapper);
+                stub = reader.getResponse();
+            }
+            if (stub.getIsException())
+                throw new IOException(stub.getExceptionMessage());
+
+            List<ColumnMetaData> metas = convertColumnMeta(stub.getColumnMetas());
+            if (reader != null && reader.hasNextRow()) {
+                release = false; // by the result set
+                return new QueryResult(metas, new StreamedQueryResult(reader, post, response.getEntity(), metas));
+            }
 
+            EntityUtils.consume(response.getEntity()); // read to the end so the connection is kept alive
+            List<String[]> results = stub.getResults();
+            return new QueryResult(metas, convertResultData(results != null ? results : Collections.<String[]> emptyList(), metas));
+        } finally {
+            if (release)
+                post.releaseConnection();
+        }
+    }
+
+    private HttpPost newPost(String url, Object request) throws IOException {
         HttpPost post = new HttpPost(url);
         addHttpHeaders(post);
 
@@ -369,22 +479,105 @@ public class KylinClient implements IRemoteClient {
         logger.debug("Post body:\n " + postBody);
         StringEntity requestEntity = new StringEntity(postBody, ContentType.create("application/json", "UTF-8"));
         post.setEntity(requestEntity);
+        return post;
+    }
+
+    private HttpGet newGet(String url) {
+        HttpGet get = new HttpGet(url);
+        addHttpHeaders(get);
+        return get;
+    }
 
-        HttpResponse response = httpClient.execute(post);
+    /**
+     * Runs the query as an async query on server, waits for it to finish, then fetches the rows page by page of
+     * fetchSize while the result set iterates. The first row is available only after the whole query has finished,
+     * as the server gives out no rows before the query passed its ACL check; paging bounds the client memory, not the
+     * time to the first row. The server holds the result until all rows are fetched or the result set is closed.
+     * 
+     * @param timeoutSeconds how long to wait for the query to finish, 0 for no limit; the query is cancelled on timeout
+     */
+    private QueryResult executeAsyncQuery(String sql, List<StatementParameter> params, Map<String, String> queryToggles, int fetchSize, int timeoutSeconds) throws IOException {
+        AsyncQueryResponseStub status = submitAsyncQuery(sql, params, queryToggles);
+        String queryId = status.getQueryId();
+        long deadline = timeoutSeconds > 0 ? System.currentTimeMillis() + timeoutSeconds * 1000L : Long.MAX_VALUE;
+
+        long waitMs = ASYNC_POLL_MIN_MS;
+        while (AsyncQueryResponseStub.RUNNING.equals(status.getStatus())) {
+            long remainingMs = deadline - System.currentTimeMillis();
+            if (remainingMs <= 0) {
+                cancelAsyncQuery(queryId);
+                throw new IOException("Query " + queryId + " did not finish in " + timeoutSeconds + " seconds and is cancelled");
+            }
+            try {
+                Thread.sleep(Math.min(waitMs, remainingMs));
+            } catch (InterruptedException e) {
+                cancelAsyncQuery(queryId);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for query " + queryId);
+            }
+            waitMs = Math.min(waitMs * 2, ASYNC_POLL_MAX_MS);
+            status = getAsyncQueryStatus(queryId);
+        }
 
-        if (response.getStatusLine().getStatusCode() != 200 && response.getStatusLine().getStatusCode() != 201) {
-            throw asIOException(post, response);
+        if (!AsyncQueryResponseStub.SUCCEED.equals(status.getStatus())) {
+            cancelAsyncQuery(queryId);
+            throw new IOException("Query " + queryId + " is " + status.getStatus() + ": " + status.getExceptionMessage());
         }
 
-        SQLResponseStub stub = jsonMapper.readValue(response.getEntity().getContent(), SQLResponseStub.class);
-        post.releaseConnection();
-        return stub;
+        List<ColumnMetaData> metas = convertColumnMeta(status.getColumnMetas());
+        return new QueryResult(metas, new AsyncQueryResult(queryId, status.getRowCount(), fetchSize, metas));
     }
 
-    private List<ColumnMetaData> convertColumnMeta(SQLResponseStub queryResp) {
+    // the calls of the async query API below are package private, for tests to replace the server
+
+    AsyncQueryResponseStub submitAsyncQuery(String sql, List<StatementParameter> params, Map<String, String> queryToggles) throws IOException {
+        return executeAsyncRequest(newPost(queryUrl(params) + "/async", newQueryRequest(sql, params, queryToggles)));
+    }
+
+    AsyncQueryResponseStub getAsyncQueryStatus(String queryId) throws IOException {
+        return executeAsyncRequest(newGet(asyncQueryUrl(queryId)));
+    }
+
+    AsyncQueryResponseStub fetchAsyncQueryResults(String queryId, int offset, int limit) throws IOException {
+        return executeAsyncRequest(newGet(asyncQueryUrl(queryId) + "/results?offset=" + offset + "&limit=" + limit));
+    }
+
+    void cancelAsyncQuery(String queryId) {
+        HttpDelete delete = new HttpDelete(asyncQueryUrl(queryId));
+        addHttpHeaders(delete);
+        try {
+            HttpResponse response = httpClient.execute(delete);
+            EntityUtils.consume(response.getEntity());
+        } catch (IOException e) {
+            logger.warn("Failed to release query " + queryId, e); // the server releases it after a while anyway
+        } finally {
+            delete.releaseConnection();
+        }
+    }
+
+    private String asyncQueryUrl(String queryId) {
+        return baseUrl() + "/kylin/api/query/async/" + queryId;
+    }
+
+    private AsyncQueryResponseStub executeAsyncRequest(HttpRequestBase request) throws IOException {
+        try {
+            HttpResponse response = httpClient.execute(request);
+
+            if (response.getStatusLine().getStatusCode() != 200 && response.getStatusLine().getStatusCode() != 201) {
+                throw asIOException(request, response);
+            }
+            AsyncQueryResponseStub stub = jsonMapper.readValue(response.getEntity().getContent(), AsyncQueryResponseStub.class);
+            EntityUtils.consume(response.getEntity());
+            return stub;
+        } finally {
+            request.releaseConnection();
+        }
+    }
+
+    private List<ColumnMetaData> convertColumnMeta(List<SQLResponseStub.ColumnMetaStub> columnMetas) {
         List<ColumnMetaData> metas = new ArrayList<ColumnMetaData>();
-        for (int i = 0; i < queryResp.getColumnMetas().size(); i++) {
-            SQLResponseStub.ColumnMetaStub scm = queryResp.getColumnMetas().get(i);
+        for (int i = 0; i < columnMetas.size(); i++) {
+            SQLResponseStub.ColumnMetaStub scm = columnMetas.get(i);
             Class columnClass = convertType(scm.getColumnType());
             ScalarType type = ColumnMetaData.scalar(scm.getColumnType(), scm.getColumnTypeName(), Rep.of(columnClass));
 
@@ -396,20 +589,196 @@ public class KylinClient implements IRemoteClient {
         return metas;
     }
 
-    private List<Object> convertResultData(SQLResponseStub queryResp, List<ColumnMetaData> metas) {
-        List<String[]> stringResults = queryResp.getResults();
-        List<Object> data = new ArrayList<Object>(stringResults.size());
-        for (String[] result : stringResults) {
-            Object[] row = new Object[result.length];
+    /**
+     * Rows read at once are converted as the result set iterates. The parsed strings are dropped once converted, which
+     * lets them be collected early but does not lower the peak, as all of them are in memory before the first row.
+     */
+    private Iterable<Object> convertResultData(final List<String[]> stringResults, final List<ColumnMetaData> metas) {
+        return new Iterable<Object>() {
+            @Override
+            public Iterator<Object> iterator() {
+                final ListIterator<String[]> it = stringResults.listIterator();
+                return new Iterator<Object>() {
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public Object next() {
+                        String[] result = it.next();
+                        it.set(null);
+                        return convertRow(result, metas);
+                    }
 
-            for (int i = 0; i < result.length; i++) {
-                ColumnMetaData meta = metas.get(i);
-                row[i] = wrapObject(result[i], meta.type.id);
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
             }
+        };
+    }
+
+    private Object[] convertRow(String[] result, List<ColumnMetaData> metas) {
+        Object[] row = new Object[result.length];
+        for (int i = 0; i < result.length; i++) {
+            ColumnMetaData meta = metas.get(i);
+            row[i] = wrapObject(result[i], meta.type.id);
+        }
+        return row;
+    }
+
+    /**
+     * Rows parsed from the response as the result set iterates. Closed by the result set, which gives the connection
+     * back to the pool, or drops it if not all rows were read.
+     */
+    private class StreamedQueryResult implements Iterable<Object>, Closeable {
+        private final JsonResultReader reader;
+        private final HttpRequestBase request;
+        private final HttpEntity entity;
+        private final List<ColumnMetaData> metas;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        StreamedQueryResult(JsonResultReader reader, HttpRequestBase request, HttpEntity entity, List<ColumnMetaData> metas) {
+            this.reader = reader;
+            this.request = request;
+            this.entity = entity;
+            this.metas = metas;
+        }
+
+        @Override
+        public Iterator<Object> iterator() {
+            return new Iterator<Object>() {
+                @Override
+                public boolean hasNext() {
+                    return !released.get() && reader.hasNextRow();
+                }
+
+                @Override
+                public Object next() {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+
+                    try {
+                        Object[] row = convertRow(reader.nextRow(), metas);
+                        if (!reader.hasNextRow())
+                            release();
+                        return row;
+                    } catch (IOException e) {
+                        release();
+                        throw new RuntimeException("Failed to read query result", e);
+                    }
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        private void release() {
+            if (!released.compareAndSet(false, true))
+                return;
+
+            try {
+                if (reader.hasNextRow())
+                    request.abort(); // the rest of the response is not worth reading
+                else
+                    EntityUtils.consume(entity); // read to the end so the connection is kept alive
+            } catch (IOException e) {
+                logger.warn("Failed to read the end of query result", e);
+            } finally {
+                request.releaseConnection();
+            }
+        }
+
+        @Override
+        public void close() {
+            release();
+        }
+    }
+
+    /**
+     * Closed by the result set, which releases the result on server if not all rows were fetched.
+     */
+    private class AsyncQueryResult implements Iterable<Object>, Closeable {
+        private final String queryId;
+        private final int rowCount;
+        private final int fetchSize;
+        private final List<ColumnMetaData> metas;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        AsyncQueryResult(String queryId, int rowCount, int fetchSize, List<ColumnMetaData> metas) {
+            this.queryId = queryId;
+            this.rowCount = rowCount;
+            this.fetchSize = fetchSize;
+            this.metas = metas;
+        }
+
+        @Override
+        public Iterator<Object> iterator() {
+            if (rowCount == 0)
+                release();
+
+            return new Iterator<Object>() {
+                int offset = 0; // of the current page
+                List<String[]> page = Collections.emptyList();
+                int pos = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return offset + pos < rowCount;
+                }
+
+                @Override
+                public Object next() {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+
+                    if (pos == page.size()) {
+                        offset += page.size();
+                        pos = 0;
+                        page = fetchPage(offset);
+                    }
+                    return convertRow(page.get(pos++), metas);
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        private List<String[]> fetchPage(int offset) {
+            if (released.get())
+                throw new IllegalStateException("Result of query " + queryId + " is closed");
+
+            try {
+                AsyncQueryResponseStub resp = fetchAsyncQueryResults(queryId, offset, fetchSize);
+                if (resp.getResults() == null || resp.getResults().isEmpty())
+                    throw new IOException("No rows from offset " + offset + " of query " + queryId);
+
+                // all fetched, release the result on server
+                if (offset + resp.getResults().size() >= rowCount)
+                    release();
+                return resp.getResults();
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to fetch rows of query " + queryId, e);
+            }
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true))
+                cancelAsyncQuery(queryId);
+        }
 
-            data.add(row);
+        @Override
+        public void close() {
+            release();
         }
-        return (List<Object>) data;
     }
 
     private IOException asIOException(HttpRequestBase request, HttpResponse response) throws IOException {
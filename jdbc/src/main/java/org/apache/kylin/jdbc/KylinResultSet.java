@@ -18,6 +18,7 @@
 
 package org.apache.kylin.jdbc;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
@@ -34,9 +35,15 @@ import org.apache.calcite.avatica.Meta.Signature;
 import org.apache.calcite.avatica.MetaImpl;
 import org.apache.calcite.avatica.QueryState;
 import org.apache.kylin.jdbc.IRemoteClient.QueryResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class KylinResultSet extends AvaticaResultSet {
 
+    private static final Logger logger = LoggerFactory.getLogger(KylinResultSet.class);
+
+    private QueryResult result;
+
     public KylinResultSet(AvaticaStatement statement, QueryState state, Signature signature, ResultSetMetaData resultSetMetaData, TimeZone timeZone, Frame firstFrame) {
         super(statement, state, signature, resultSetMetaData, timeZone, firstFrame);
     }
@@ -64,9 +71,8 @@ public class KylinResultSet extends AvaticaResultSet {
         int maxRows = statement.getMaxRows();
         queryToggles.put("ATTR_STATEMENT_MAX_ROWS", String.valueOf(maxRows));
 
-        QueryResult result;
         try {
-            result = client.executeQuery(sql, params, paramValues, queryToggles);
+            result = client.executeQuery(sql, params, paramValues, queryToggles, statement.getFetchSize(), statement.getQueryTimeout());
         } catch (IOException e) {
             throw new SQLException(e);
         }
@@ -78,4 +84,19 @@ public class KylinResultSet extends AvaticaResultSet {
         return super.execute2(cursor, columnMetaDataList);
     }
 
+    @Override
+    public void close() {
+        super.close();
+
+        // e.g. releases a paged result on server when not all rows were read
+        if (result != null && result.iterable instanceof Closeable) {
+            try {
+                ((Closeable) result.iterable).close();
+            } catch (IOException e) {
+                logger.warn("Failed to close query result", e);
+            }
+            result = null;
+        }
+    }
+
 }
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.jdbc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.kylin.jdbc.json.SQLResponseStub;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class JsonResultReaderTest {
+
+    private static final String METAS = "\"columnMetas\":[ { \"isNullable\":1, \"label\":\"NAME\", \"name\":\"NAME\", \"columnType\":12, \"columnTypeName\":\"VARCHAR\" } ]";
+
+    @Test
+    public void testRowByRow() throws IOException {
+        String payload = "{ " + METAS + ", \"results\":[ [\"a\"], [null], [\"c\"] ], \"cube\":\"test_cube\", \"isException\":false, \"duration\":42 }";
+        CountingStream input = new CountingStream(payload);
+        JsonResultReader reader = new JsonResultReader(input, new ObjectMapper());
+
+        // the fields before the rows
+        SQLResponseStub head = reader.getResponse();
+        assertEquals("NAME", head.getColumnMetas().get(0).getLabel());
+        assertNull(head.getCube());
+
+        assertTrue(reader.hasNextRow());
+        assertArrayEquals(new String[] { "a" }, reader.nextRow());
+        assertArrayEquals(new String[] { null }, reader.nextRow());
+        assertArrayEquals(new String[] { "c" }, reader.nextRow());
+        assertFalse(reader.hasNextRow());
+
+        // the fields after the rows
+        SQLResponseStub response = reader.getResponse();
+        assertEquals("test_cube", response.getCube());
+        assertEquals(42, response.getDuration());
+        assertNull(response.getResults());
+    }
+
+    @Test
+    public void testNoRows() throws IOException {
+        String payload = "{ " + METAS + ", \"results\":[], \"isException\":true, \"exceptionMessage\":\"failed\" }";
+        JsonResultReader reader = new JsonResultReader(new CountingStream(payload), new ObjectMapper());
+        assertFalse(reader.hasNextRow());
+        assertTrue(reader.getResponse().getIsException());
+        assertEquals("failed", reader.getResponse().getExceptionMessage());
+    }
+
+    @Test
+    public void testResultsBeforeMetas() throws IOException {
+        String payload = "{ \"results\":[ [\"a\"], [\"b\"] ], " + METAS + ", \"isException\":false }";
+        JsonResultReader reader = new JsonResultReader(new CountingStream(payload), new ObjectMapper());
+        assertFalse(reader.hasNextRow());
+        assertEquals(2, reader.getResponse().getResults().size());
+        assertEquals(1, reader.getResponse().getColumnMetas().size());
+    }
+
+    @Test
+    public void testReadsAsRowsAreAsked() throws IOException {
+        StringBuilder payload = new StringBuilder("{ " + METAS + ", \"results\":[ ");
+        for (int i = 0; i < 100000; i++) {
+            payload.append(i == 0 ? "" : ", ").append("[\"row").append(i).append("\"]");
+        }
+        payload.append(" ], \"isException\":false }");
+        CountingStream input = new CountingStream(payload.toString());
+
+        JsonResultReader reader = new JsonResultReader(input, new ObjectMapper());
+        assertArrayEquals(new String[] { "row0" }, reader.nextRow());
+        assertTrue(input.read < input.length / 10);
+    }
+
+    private static class CountingStream extends InputStream {
+        final InputStream in;
+        final int length;
+        int read = 0;
+
+        CountingStream(String payload) {
+            byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+            this.in = new ByteArrayInputStream(bytes);
+            this.length = bytes.length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0)
+                read++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0)
+                read += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.apache.kylin.jdbc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.kylin.jdbc.KylinMeta.KMetaProject;
+import org.apache.kylin.jdbc.json.AsyncQueryResponseStub;
+import org.apache.kylin.jdbc.json.SQLResponseStub;
+import org.apache.kylin.jdbc.json.StatementParameter;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the paging of KylinClient against an in-memory async query server.
+ */
+public class KylinClientPagingTest {
+
+    // the server of the connections created by PagingDriver
+    private static int rowCount;
+    private static int runningPolls;
+    private static List<String> calls;
+
+    @Before
+    public void setUp() {
+        rowCount = 5;
+        runningPolls = 2;
+        calls = new ArrayList<String>();
+    }
+
+    @Test
+    public void testFetchPages() throws SQLException {
+        Connection conn = connect();
+        Statement state = conn.createStatement();
+        state.setFetchSize(2);
+        ResultSet resultSet = state.executeQuery("select * from test_table");
+
+        // the query finished before the first row
+        assertEquals(Arrays.asList("submit", "status", "status", "status"), calls);
+        calls.clear();
+
+        List<String> rows = new ArrayList<String>();
+        while (resultSet.next()) {
+            rows.add(resultSet.getString(1));
+        }
+        assertEquals(Arrays.asList("row0", "row1", "row2", "row3", "row4"), rows);
+        assertEquals(Arrays.asList("fetch 0 2", "fetch 2 2", "fetch 4 2", "cancel"), calls);
+
+        // released once only
+        resultSet.close();
+        assertEquals(4, calls.size());
+
+        state.close();
+        conn.close();
+    }
+
+    @Test
+    public void testCloseEarly() throws SQLException {
+        Connection conn = connect();
+        Statement state = conn.createStatement();
+        state.setFetchSize(2);
+        ResultSet resultSet = state.executeQuery("select * from test_table");
+        calls.clear();
+
+        Assert.assertTrue(resultSet.next());
+        assertEquals("row0", resultSet.getString(1));
+        resultSet.close();
+        assertEquals(Arrays.asList("fetch 0 2", "cancel"), calls);
+
+        state.close();
+        conn.close();
+    }
+
+    @Test
+    public void testEmptyResult() throws SQLException {
+        rowCount = 0;
+
+        Connection conn = connect();
+        Statement state = conn.createStatement();
+        state.setFetchSize(2);
+        ResultSet resultSet = state.executeQuery("select * from test_table");
+        calls.clear();
+
+        Assert.assertFalse(resultSet.next());
+        resultSet.close();
+        assertEquals(Arrays.asList("cancel"), calls);
+
+        state.close();
+        conn.close();
+    }
+
+    @Test
+    public void testPollTimeout() throws SQLException {
+        runningPolls = Integer.MAX_VALUE;
+
+        Connection conn = connect();
+        Statement state = conn.createStatement();
+        state.setFetchSize(2);
+        state.setQueryTimeout(1);
+        long start = System.currentTimeMillis();
+        try {
+            state.executeQuery("select * from test_table");
+            Assert.fail("query should time out");
+        } catch (SQLException e) {
+            // expected
+        }
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+        assertEquals("cancel", calls.get(calls.size() - 1));
+
+        state.close();
+        conn.close();
+    }
+
+    private Connection connect() throws SQLException {
+        Properties info = new Properties();
+        info.put("user", "ADMIN");
+        info.put("password", "KYLIN");
+        info.put("paging", "true");
+        return new PagingDriver().connect("jdbc:kylin://test_url/test_db", info);
+    }
+
+    public static class PagingDriver extends Driver {
+        @Override
+        protected String getFactoryClassName(JdbcVersion jdbcVersion) {
+            return PagingJdbcFactory.class.getName();
+        }
+    }
+
+    public static class PagingJdbcFactory extends KylinJdbcFactory {
+        public PagingJdbcFactory() {
+            super(4, 1);
+        }
+
+        @Override
+        public IRemoteClient newRemoteClient(KylinConnection conn) {
+            return new PagingClient(conn);
+        }
+    }
+
+    static class PagingClient extends KylinClient {
+
+        PagingClient(KylinConnection conn) {
+            super(conn);
+        }
+
+        @Override
+        public void connect() throws IOException {
+        }
+
+        @Override
+        public KMetaProject retrieveMetaData(String project) throws IOException {
+            return new DummyClient(null).retrieveMetaData(project);
+        }
+
+        @Override
+        AsyncQueryResponseStub submitAsyncQuery(String sql, List<StatementParameter> params, Map<String, String> queryToggles) throws IOException {
+            calls.add("submit");
+            return status(AsyncQueryResponseStub.RUNNING);
+        }
+
+        @Override
+        AsyncQueryResponseStub getAsyncQueryStatus(String queryId) throws IOException {
+            calls.add("status");
+            return status(runningPolls-- > 0 ? AsyncQueryResponseStub.RUNNING : AsyncQueryResponseStub.SUCCEED);
+        }
+
+        @Override
+        AsyncQueryResponseStub fetchAsyncQueryResults(String queryId, int offset, int limit) throws IOException {
+            calls.add("fetch " + offset + " " + limit);
+            List<String[]> results = new ArrayList<String[]>();
+            for (int i = offset; i < Math.min(offset + limit, rowCount); i++) {
+                results.add(new String[] { "row" + i });
+            }
+            AsyncQueryResponseStub resp = status(AsyncQueryResponseStub.SUCCEED);
+            resp.setOffset(offset);
+            resp.setResults(results);
+            return resp;
+        }
+
+        @Override
+        void cancelAsyncQuery(String queryId) {
+            calls.add("cancel");
+        }
+
+        private AsyncQueryResponseStub status(String status) {
+            AsyncQueryResponseStub resp = new AsyncQueryResponseStub();
+            resp.setQueryId("test_query");
+            resp.setStatus(status);
+            if (AsyncQueryResponseStub.SUCCEED.equals(status)) {
+                SQLResponseStub.ColumnMetaStub column = new SQLResponseStub.ColumnMetaStub();
+                column.setName("NAME");
+                column.setLabel("NAME");
+                column.setColumnType(Types.VARCHAR);
+                column.setColumnTypeName("VARCHAR");
+                column.setIsNullable(1);
+                resp.setColumnMetas(Arrays.asList(column));
+                resp.setRowCount(rowCount);
+            }
+            return resp;
+        }
+    }
+}
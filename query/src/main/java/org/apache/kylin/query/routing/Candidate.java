@@ -89,6 +89,14 @@ public class Candidate implements Comparable<Candidate> {
             return comp;
         }
 
+        // prefer the statistics when both have them
+        if (this.capability.estimatedRows >= 0 && o.capability.estimatedRows >= 0) {
+            comp = Long.compare(this.capability.estimatedRows, o.capability.estimatedRows);
+            if (comp != 0) {
+                return comp;
+            }
+        }
+
         comp = this.capability.cost - o.capability.cost;
         if (comp != 0) {
             return comp;
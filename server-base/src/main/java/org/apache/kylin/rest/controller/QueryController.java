@@ -23,9 +23,12 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.kylin.common.KylinConfig;
 import org.apache.kylin.metadata.querymeta.SelectedColumnMeta;
 import org.apache.kylin.metadata.querymeta.TableMeta;
 import org.apache.kylin.rest.exception.InternalErrorException;
@@ -34,8 +37,11 @@ import org.apache.kylin.rest.request.MetaRequest;
 import org.apache.kylin.rest.request.PrepareSqlRequest;
 import org.apache.kylin.rest.request.SQLRequest;
 import org.apache.kylin.rest.request.SaveSqlRequest;
+import org.apache.kylin.rest.response.AsyncQueryResponse;
 import org.apache.kylin.rest.response.SQLResponse;
+import org.apache.kylin.rest.service.AsyncQueryService;
 import org.apache.kylin.rest.service.QueryService;
+import org.apache.kylin.rest.util.StreamingResultWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -46,6 +52,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.supercsv.io.CsvListWriter;
 import org.supercsv.io.ICsvListWriter;
@@ -59,13 +66,16 @@ import org.supercsv.prefs.CsvPreference;
 @Controller
 public class QueryController extends BasicController {
 
-    @SuppressWarnings("unused")
     private static final Logger logger = LoggerFactory.getLogger(QueryController.class);
 
     @Autowired
     @Qualifier("queryService")
     private QueryService queryService;
 
+    @Autowired
+    @Qualifier("asyncQueryService")
+    private AsyncQueryService asyncQueryService;
+
     @RequestMapping(value = "/query", method = RequestMethod.POST, produces = { "application/json" })
     @ResponseBody
     public SQLResponse query(@RequestBody SQLRequest sqlRequest) {
@@ -79,6 +89,72 @@ public class QueryController extends BasicController {
         return queryService.doQueryWithCache(sqlRequest);
     }
 
+    /**
+     * Same as "/query" but rows are written to the response while the query iterates. The response is in the binary
+     * row batch format if the Accept header asks for {@link StreamingResultWriter#BINARY_CONTENT_TYPE}, otherwise JSON.
+     */
+    @RequestMapping(value = "/query/stream", method = RequestMethod.POST, produces = { "application/json", StreamingResultWriter.BINARY_CONTENT_TYPE })
+    public void queryStream(@RequestBody SQLRequest sqlRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        doQueryStream(sqlRequest, request, response);
+    }
+
+    @RequestMapping(value = "/query/prestate/stream", method = RequestMethod.POST, produces = { "application/json", StreamingResultWriter.BINARY_CONTENT_TYPE })
+    public void prepareQueryStream(@RequestBody PrepareSqlRequest sqlRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        doQueryStream(sqlRequest, request, response);
+    }
+
+    private void doQueryStream(SQLRequest sqlRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        boolean binary = StringUtils.contains(request.getHeader("Accept"), StreamingResultWriter.BINARY_CONTENT_TYPE);
+        response.setContentType(binary ? StreamingResultWriter.BINARY_CONTENT_TYPE : "application/json;charset=UTF-8");
+
+        StreamingResultWriter writer = StreamingResultWriter.newWriter(binary, response.getOutputStream(), KylinConfig.getInstanceFromEnv().getQueryStreamBinaryBatchRows());
+
+        SQLResponse sqlResponse;
+        try {
+            // query ACL is checked before the first row is added to the writer
+            sqlResponse = queryService.doQueryWithCache(sqlRequest, writer);
+        } catch (RuntimeException e) {
+            // the status line is gone with the first rows, report the error in the trailer instead
+            if (!writer.isStarted())
+                throw e;
+            logger.error("Query failed after result is partially written", e);
+            sqlResponse = new SQLResponse(null, null, 0, true, e.getMessage());
+        }
+        writer.finish(sqlResponse);
+    }
+
+    @RequestMapping(value = "/query/async", method = RequestMethod.POST, produces = { "application/json" })
+    @ResponseBody
+    public AsyncQueryResponse submitAsyncQuery(@RequestBody SQLRequest sqlRequest) {
+        return asyncQueryService.submit(sqlRequest);
+    }
+
+    @RequestMapping(value = "/query/prestate/async", method = RequestMethod.POST, produces = { "application/json" })
+    @ResponseBody
+    public AsyncQueryResponse submitAsyncPrepareQuery(@RequestBody PrepareSqlRequest sqlRequest) {
+        return asyncQueryService.submit(sqlRequest);
+    }
+
+    @RequestMapping(value = "/query/async/{queryId}", method = RequestMethod.GET, produces = { "application/json" })
+    @ResponseBody
+    public AsyncQueryResponse getAsyncQueryStatus(@PathVariable String queryId) {
+        return asyncQueryService.getStatus(queryId);
+    }
+
+    @RequestMapping(value = "/query/async/{queryId}/results", method = RequestMethod.GET, produces = { "application/json" })
+    @ResponseBody
+    public AsyncQueryResponse fetchAsyncQueryResults(@PathVariable String queryId, @RequestParam(value = "offset", required = false) Integer offset, @RequestParam(value = "limit", required = false) Integer limit) {
+        int coffset = (null == offset) ? 0 : offset;
+        int climit = (null == limit) ? 1000 : limit;
+        return asyncQueryService.fetch(queryId, coffset, climit);
+    }
+
+    @RequestMapping(value = "/query/async/{queryId}", method = RequestMethod.DELETE, produces = { "application/json" })
+    @ResponseBody
+    public void cancelAsyncQuery(@PathVariable String queryId) {
+        asyncQueryService.cancel(queryId);
+    }
+
     @RequestMapping(value = "/saved_queries", method = RequestMethod.POST, produces = { "application/json" })
     @ResponseBody
     public void saveQuery(@RequestBody SaveSqlRequest sqlRequest) throws IOException {
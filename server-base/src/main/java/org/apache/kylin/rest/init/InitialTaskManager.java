@@ -20,6 +20,8 @@ package org.apache.kylin.rest.init;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.kylin.common.KylinConfig;
+import org.apache.kylin.dict.DictionaryValueCache;
+import org.apache.kylin.rest.constant.Constant;
 import org.apache.kylin.rest.metrics.QueryMetricsFacade;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,6 +46,13 @@ public class InitialTaskManager implements InitializingBean {
         QueryMetricsFacade.init();
         
         KylinConfig kylinConfig = KylinConfig.getInstanceFromEnv();
+
+        // query servers cache dictionary values by default
+        String serverMode = kylinConfig.getServerMode().toLowerCase();
+        if (Constant.SERVER_MODE_QUERY.equals(serverMode) || Constant.SERVER_MODE_ALL.equals(serverMode)) {
+            DictionaryValueCache.setQueryServer();
+        }
+
         String initTasks = kylinConfig.getInitTasks();
         if (!StringUtils.isEmpty(initTasks)) {
             String[] taskClasses = initTasks.split(",");
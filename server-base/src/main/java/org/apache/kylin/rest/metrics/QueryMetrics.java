@@ -47,6 +47,10 @@ public class QueryMetrics {
     @Metric
     MutableCounterLong cacheHitCount;
     MutableQuantiles[] cacheHitCountQuantiles;
+    @Metric
+    MutableCounterLong digestCacheHitCount;
+    @Metric
+    MutableCounterLong digestCacheMissCount;
 
     @Metric
     MutableRate queryLatency;
@@ -124,6 +128,14 @@ public class QueryMetrics {
         }
     }
 
+    public void addDigestCacheHitCount(long count) {
+        digestCacheHitCount.incr(count);
+    }
+
+    public void addDigestCacheMissCount(long count) {
+        digestCacheMissCount.incr(count);
+    }
+
     public QueryMetrics registerWith(String name) {
         return DefaultMetricsSystem.instance().register(name, "Query", this);
     }
@@ -341,6 +341,10 @@ public class CnMessage extends Message {
         return "列元数据与JDBC 元数据不一致";
     }
 
+    public String getASYNC_QUERY_NOT_FOUND() {
+        return "异步查询 '%s' 不存在";
+    }
+
     // Access
     public String getACL_PERMISSION_REQUIRED() {
         return "需要授权";
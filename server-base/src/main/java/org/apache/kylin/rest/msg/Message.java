@@ -341,6 +341,10 @@ public class Message {
         return "Column metadata inconsistent with JDBC meta.";
     }
 
+    public String getASYNC_QUERY_NOT_FOUND() {
+        return "Async query '%s' not found.";
+    }
+
     // Access
     public String getACL_PERMISSION_REQUIRED() {
         return "Acl permission required.";
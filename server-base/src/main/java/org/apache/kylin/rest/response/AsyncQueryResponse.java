@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.rest.response;
+
+import java.io.Serializable;
+import java.util.List;
+
+import org.apache.kylin.metadata.querymeta.SelectedColumnMeta;
+
+/**
+ * Status of an async query, and a page of its result rows when fetched.
+ */
+public class AsyncQueryResponse implements Serializable {
+    protected static final long serialVersionUID = 1L;
+
+    public enum Status {
+        RUNNING, SUCCEED, FAILED, CANCELLED
+    }
+
+    protected String queryId;
+
+    protected Status status;
+
+    // rows available so far
+    protected int rowCount;
+
+    // below are available once the query is done
+    protected List<SelectedColumnMeta> columnMetas;
+
+    protected String cube;
+
+    protected boolean isPartial;
+
+    protected long duration;
+
+    protected long totalScanCount;
+
+    protected long totalScanBytes;
+
+    protected String exceptionMessage;
+
+    // the page of rows starting from offset, null if not fetching rows
+    protected int offset;
+
+    protected List<List<String>> results;
+
+    public AsyncQueryResponse() {
+    }
+
+    public AsyncQueryResponse(String queryId, Status status, int rowCount) {
+        this.queryId = queryId;
+        this.status = status;
+        this.rowCount = rowCount;
+    }
+
+    public String getQueryId() {
+        return queryId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public List<SelectedColumnMeta> getColumnMetas() {
+        return columnMetas;
+    }
+
+    public void setColumnMetas(List<SelectedColumnMeta> columnMetas) {
+        this.columnMetas = columnMetas;
+    }
+
+    public String getCube() {
+        return cube;
+    }
+
+    public void setCube(String cube) {
+        this.cube = cube;
+    }
+
+    public boolean isPartial() {
+        return isPartial;
+    }
+
+    public void setPartial(boolean isPartial) {
+        this.isPartial = isPartial;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    public void setDuration(long duration) {
+        this.duration = duration;
+    }
+
+    public long getTotalScanCount() {
+        return totalScanCount;
+    }
+
+    public void setTotalScanCount(long totalScanCount) {
+        this.totalScanCount = totalScanCount;
+    }
+
+    public long getTotalScanBytes() {
+        return totalScanBytes;
+    }
+
+    public void setTotalScanBytes(long totalScanBytes) {
+        this.totalScanBytes = totalScanBytes;
+    }
+
+    public String getExceptionMessage() {
+        return exceptionMessage;
+    }
+
+    public void setExceptionMessage(String exceptionMessage) {
+        this.exceptionMessage = exceptionMessage;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public List<List<String>> getResults() {
+        return results;
+    }
+
+    public void setResults(int offset, List<List<String>> results) {
+        this.offset = offset;
+        this.results = results;
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.rest.service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.kylin.common.util.DaemonThreadFactory;
+import org.apache.kylin.rest.exception.NotFoundException;
+import org.apache.kylin.rest.msg.MsgPicker;
+import org.apache.kylin.rest.request.SQLRequest;
+import org.apache.kylin.rest.response.AsyncQueryResponse;
+import org.apache.kylin.rest.response.AsyncQueryResponse.Status;
+import org.apache.kylin.rest.response.SQLResponse;
+import org.apache.kylin.rest.util.SpillableResultList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Runs queries in a separate pool instead of the servlet threads. Result rows are collected into a
+ * {@link SpillableResultList} as the query goes, and clients poll the status and fetch the rows page by page. Rows
+ * can be fetched only after the query succeeded, i.e. passed the query ACL check; the rows of a failed or cancelled
+ * query are released right away. Queries not accessed within the TTL are cancelled and their results released.
+ */
+@Component("asyncQueryService")
+public class AsyncQueryService extends BasicService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncQueryService.class);
+
+    @Autowired
+    @Qualifier("queryService")
+    private QueryService queryService;
+
+    private final ConcurrentMap<String, AsyncQuery> queries = Maps.newConcurrentMap();
+    private ExecutorService executor;
+    private ScheduledExecutorService cleaner;
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newFixedThreadPool(getConfig().getQueryAsyncMaxThreads(), new DaemonThreadFactory());
+        cleaner = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory());
+        cleaner.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                cleanExpired();
+            }
+        }, 60, 60, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        cleaner.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    public AsyncQueryResponse submit(final SQLRequest sqlRequest) {
+        final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        final AsyncQuery query = new AsyncQuery(UUID.randomUUID().toString(), authentication.getName(), new SpillableResultList(getConfig().getQueryAsyncResultMemoryRows()));
+        queries.put(query.queryId, query);
+
+        query.future = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                runQuery(query, sqlRequest, authentication);
+            }
+        });
+        logger.info("Async query {} submitted", query.queryId);
+        return query.toResponse();
+    }
+
+    private void runQuery(AsyncQuery query, SQLRequest sqlRequest, Authentication authentication) {
+        if (query.status != Status.RUNNING)
+            return;
+
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        try {
+            SQLResponse response = queryService.doQueryWithCache(sqlRequest, query.buffer);
+            query.finish(Status.SUCCEED, response);
+        } catch (Throwable e) {
+            logger.warn("Async query " + query.queryId + " failed", e);
+            query.finish(Status.FAILED, new SQLResponse(null, null, 0, true, e.getMessage()));
+        } finally {
+            SecurityContextHolder.clearContext();
+            Thread.interrupted(); // the thread is pooled, clear the interruption of cancel
+        }
+    }
+
+    public AsyncQueryResponse getStatus(String queryId) {
+        return getQuery(queryId).toResponse();
+    }
+
+    public AsyncQueryResponse fetch(String queryId, int offset, int limit) {
+        AsyncQuery query = getQuery(queryId);
+        AsyncQueryResponse response = query.toResponse();
+
+        List<List<String>> results = query.getResults();
+        int end = (int) Math.min(results.size(), (long) offset + limit);
+        List<List<String>> page = Lists.newArrayListWithCapacity(Math.max(0, end - offset));
+        for (int i = Math.max(0, offset); i < end; i++) {
+            page.add(results.get(i));
+        }
+        response.setResults(offset, page);
+        return response;
+    }
+
+    public void cancel(String queryId) {
+        AsyncQuery query = getQuery(queryId);
+        queries.remove(queryId);
+        query.cancel();
+        logger.info("Async query {} cancelled", queryId);
+    }
+
+    private AsyncQuery getQuery(String queryId) {
+        AsyncQuery query = queries.get(queryId);
+        String user = SecurityContextHolder.getContext().getAuthentication().getName();
+        if (query == null || !query.user.equals(user)) {
+            throw new NotFoundException(String.format(MsgPicker.getMsg().getASYNC_QUERY_NOT_FOUND(), queryId));
+        }
+        query.lastAccessTime = System.currentTimeMillis();
+        return query;
+    }
+
+    void cleanExpired() {
+        long expireTime = System.currentTimeMillis() - getConfig().getQueryAsyncResultTTLSeconds() * 1000L;
+        for (Map.Entry<String, AsyncQuery> entry : queries.entrySet()) {
+            AsyncQuery query = entry.getValue();
+            if (query.lastAccessTime < expireTime && queries.remove(entry.getKey(), query)) {
+                logger.info("Async query {} is not accessed for a while, release it", query.queryId);
+                query.cancel();
+            }
+        }
+    }
+
+    // ============================================================================
+
+    private static class AsyncQuery {
+        final String queryId;
+        final String user;
+        final SpillableResultList buffer; // not visible to clients before the query succeeds
+        volatile Future<?> future;
+        volatile long lastAccessTime = System.currentTimeMillis();
+
+        // below are guarded by this
+        Status status = Status.RUNNING;
+        SQLResponse response; // when done, results are not used
+
+        AsyncQuery(String queryId, String user, SpillableResultList buffer) {
+            this.queryId = queryId;
+            this.user = user;
+            this.buffer = buffer;
+        }
+
+        synchronized void finish(Status status, SQLResponse response) {
+            if (this.status != Status.RUNNING)
+                return;
+
+            this.status = status;
+            this.response = response;
+            if (status != Status.SUCCEED)
+                IOUtils.closeQuietly(buffer);
+        }
+
+        synchronized void cancel() {
+            if (status == Status.RUNNING) {
+                status = Status.CANCELLED;
+                if (future != null)
+                    future.cancel(true);
+            }
+            IOUtils.closeQuietly(buffer);
+        }
+
+        synchronized List<List<String>> getResults() {
+            // rows collected before the ACL check must not leak
+            if (status != Status.SUCCEED)
+                return Collections.emptyList();
+
+            // from query cache, or intercepted
+            if (response != null && response.getResults() != null && response.getResults() != buffer)
+                return response.getResults();
+            return buffer;
+        }
+
+        synchronized AsyncQueryResponse toResponse() {
+            AsyncQueryResponse result = new AsyncQueryResponse(queryId, status, getResults().size());
+            if (response != null) {
+                result.setColumnMetas(response.getColumnMetas());
+                result.setCube(response.getCube());
+                result.setPartial(response.isPartial());
+                result.setDuration(response.getDuration());
+                result.setTotalScanCount(response.getTotalScanCount());
+                result.setTotalScanBytes(response.getTotalScanBytes());
+                result.setExceptionMessage(response.getExceptionMessage());
+            }
+            return result;
+        }
+    }
+}
@@ -27,6 +27,8 @@ import org.apache.kylin.metadata.cachesync.Broadcaster;
 import org.apache.kylin.metadata.cachesync.Broadcaster.Event;
 import org.apache.kylin.metadata.project.ProjectInstance;
 import org.apache.kylin.query.QueryDataSource;
+import org.apache.kylin.storage.cache.SQLDigestResultCache;
+import org.apache.kylin.storage.cache.SegmentScanResultCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -73,6 +75,7 @@ public class CacheService extends BasicService {
         public void onEntityChange(Broadcaster broadcaster, String entity, Event event, String cacheKey) throws IOException {
             if ("cube".equals(entity) && event == Event.UPDATE) {
                 final String cubeName = cacheKey;
+                SQLDigestResultCache.getInstance().invalidate(cubeName);
                 new Thread() { // do not block the event broadcast thread
                     public void run() {
                         try {
@@ -127,6 +130,8 @@ public class CacheService extends BasicService {
         } else {
             logger.warn("skip cleaning all storage cache");
         }
+        SQLDigestResultCache.getInstance().invalidateAll();
+        SegmentScanResultCache.getInstance().invalidateAll();
     }
 
     private void removeOLAPDataSource(String project) {
@@ -155,11 +155,18 @@ public class QueryService extends BasicService {
     }
 
     public SQLResponse query(SQLRequest sqlRequest) throws Exception {
+        return query(sqlRequest, null);
+    }
+
+    /**
+     * @param resultHolder where result rows are added to, or null to collect them in a new list
+     */
+    public SQLResponse query(SQLRequest sqlRequest, List<List<String>> resultHolder) throws Exception {
         try {
             final String user = SecurityContextHolder.getContext().getAuthentication().getName();
             badQueryDetector.queryStart(Thread.currentThread(), sqlRequest, user);
 
-            return queryWithSqlMassage(sqlRequest);
+            return queryWithSqlMassage(sqlRequest, resultHolder);
 
         } finally {
             badQueryDetector.queryEnd(Thread.currentThread());
@@ -218,6 +225,7 @@ public class QueryService extends BasicService {
         final String user = aclUtil.getCurrentUserName();
         final List<String> realizationNames = new LinkedList<>();
         final Set<Long> cuboidIds = new HashSet<Long>();
+        long estimatedRows = -1;
         float duration = response.getDuration() / (float) 1000;
         boolean storageCacheUsed = response.isStorageCacheUsed();
         boolean isAdHoc = response.isAdHoc();
@@ -229,6 +237,9 @@ public class QueryService extends BasicService {
                     //Some queries do not involve cuboid, e.g. lookup table query
                     cuboidIds.add(cuboid.getId());
                 }
+                if (ctx.storageContext.getEstimatedRowCount() >= 0) {
+                    estimatedRows = Math.max(estimatedRows, 0) + ctx.storageContext.getEstimatedRowCount();
+                }
 
                 if (ctx.realization != null) {
                     realizationNames.add(ctx.realization.getCanonicalName());
@@ -254,6 +265,7 @@ public class QueryService extends BasicService {
         stringBuilder.append("Project: ").append(request.getProject()).append(newLine);
         stringBuilder.append("Realization Names: ").append(realizationNames).append(newLine);
         stringBuilder.append("Cuboid Ids: ").append(cuboidIds).append(newLine);
+        stringBuilder.append("Estimated scan count: ").append(estimatedRows).append(newLine);
         stringBuilder.append("Total scan count: ").append(response.getTotalScanCount()).append(newLine);
         stringBuilder.append("Total scan bytes: ").append(response.getTotalScanBytes()).append(newLine);
         stringBuilder.append("Result row count: ").append(resultRowCount).append(newLine);
@@ -269,6 +281,13 @@ public class QueryService extends BasicService {
     }
 
     public void checkAuthorization(SQLResponse sqlResponse, String project) throws AccessDeniedException {
+        checkAuthorization(sqlResponse.getCube(), project);
+    }
+
+    /**
+     * @param realizationsStr the realizations a query is answered by, empty for ad-hoc queries
+     */
+    public void checkAuthorization(String realizationsStr, String project) throws AccessDeniedException {
 
         //project 
         ProjectInstance projectInstance = getProjectManager().getProject(project);
@@ -281,8 +300,7 @@ public class QueryService extends BasicService {
             //just continue
         }
 
-        String realizationsStr = sqlResponse.getCube();//CUBE[name=abc],HYBRID[name=xyz]
-
+        //CUBE[name=abc],HYBRID[name=xyz]
         if (StringUtils.isEmpty(realizationsStr)) {
             throw new AccessDeniedException("Ad-hoc query requires having READ permission on project, please ask Administrator to grant you permissions");
         }
@@ -325,6 +343,14 @@ public class QueryService extends BasicService {
     }
 
     public SQLResponse doQueryWithCache(SQLRequest sqlRequest) {
+        return doQueryWithCache(sqlRequest, null);
+    }
+
+    /**
+     * @param resultHolder where result rows are added to, or null to collect them in a new list. Responses using a
+     *                     given holder are not put into query cache, the holder is owned by the caller.
+     */
+    public SQLResponse doQueryWithCache(SQLRequest sqlRequest, List<List<String>> resultHolder) {
         Message msg = MsgPicker.getMsg();
 
         KylinConfig kylinConfig = KylinConfig.getInstanceFromEnv();
@@ -364,7 +390,7 @@ public class QueryService extends BasicService {
 
             try {
                 if (null == sqlResponse) {
-                    sqlResponse = query(sqlRequest);
+                    sqlResponse = query(sqlRequest, resultHolder);
 
                     long durationThreshold = kylinConfig.getQueryDurationCacheThreshold();
                     long scanCountThreshold = kylinConfig.getQueryScanCountCacheThreshold();
@@ -373,6 +399,7 @@ public class QueryService extends BasicService {
                     logger.info("Stats of SQL response: isException: {}, duration: {}, total scan count {}", //
                             String.valueOf(sqlResponse.getIsException()), String.valueOf(sqlResponse.getDuration()), String.valueOf(sqlResponse.getTotalScanCount()));
                     if (checkCondition(queryCacheEnabled, "query cache is disabled") //
+                            && checkCondition(resultHolder == null, "query result is streamed to the given holder") //
                             && checkCondition(!sqlResponse.getIsException(), "query has exception") //
                             && checkCondition(sqlResponse.getDuration() > durationThreshold || sqlResponse.getTotalScanCount() > scanCountThreshold || sqlResponse.getTotalScanBytes() > scanBytesThreshold, //
                                     "query is too lightweight with duration: {} (threshold {}), scan count: {} (threshold {}), scan bytes: {} (threshold {})", sqlResponse.getDuration(), durationThreshold, sqlResponse.getTotalScanCount(), scanCountThreshold, sqlResponse.getTotalScanBytes(), scanBytesThreshold)
@@ -438,12 +465,18 @@ public class QueryService extends BasicService {
     }
 
     protected void checkQueryAuth(SQLResponse sqlResponse, String project) throws AccessDeniedException {
-        if (!sqlResponse.getIsException() && KylinConfig.getInstanceFromEnv().isQuerySecureEnabled()) {
-            checkAuthorization(sqlResponse, project);
+        if (!sqlResponse.getIsException()) {
+            checkQueryAuth(sqlResponse.getCube(), project);
         }
     }
 
-    private SQLResponse queryWithSqlMassage(SQLRequest sqlRequest) throws Exception {
+    protected void checkQueryAuth(String realizationsStr, String project) throws AccessDeniedException {
+        if (KylinConfig.getInstanceFromEnv().isQuerySecureEnabled()) {
+            checkAuthorization(realizationsStr, project);
+        }
+    }
+
+    private SQLResponse queryWithSqlMassage(SQLRequest sqlRequest, List<List<String>> resultHolder) throws Exception {
         String userInfo = SecurityContextHolder.getContext().getAuthentication().getName();
         final Collection<? extends GrantedAuthority> grantedAuthorities = SecurityContextHolder.getContext().getAuthentication().getAuthorities();
         for (GrantedAuthority grantedAuthority : grantedAuthorities) {
@@ -473,7 +506,7 @@ public class QueryService extends BasicService {
         // force clear the query context before a new query
         OLAPContext.clearThreadLocalContexts();
 
-        return execute(correctedSql, sqlRequest);
+        return execute(correctedSql, sqlRequest, resultHolder);
 
     }
 
@@ -681,16 +714,17 @@ public class QueryService extends BasicService {
     /**
      * @param correctedSql
      * @param sqlRequest
+     * @param resultHolder
      * @return
      * @throws Exception
      */
-    private SQLResponse execute(String correctedSql, SQLRequest sqlRequest) throws Exception {
+    private SQLResponse execute(String correctedSql, SQLRequest sqlRequest, List<List<String>> resultHolder) throws Exception {
         Connection conn = null;
         Statement stat = null;
         ResultSet resultSet = null;
         Boolean isAdHoc = false;
 
-        List<List<String>> results = Lists.newArrayList();
+        List<List<String>> results = resultHolder != null ? resultHolder : Lists.<List<String>> newArrayList();
         List<SelectedColumnMeta> columnMetas = Lists.newArrayList();
 
         try {
@@ -719,8 +753,15 @@ public class QueryService extends BasicService {
                 columnMetas.add(new SelectedColumnMeta(metaData.isAutoIncrement(i), metaData.isCaseSensitive(i), metaData.isSearchable(i), metaData.isCurrency(i), metaData.isNullable(i), metaData.isSigned(i), metaData.getColumnDisplaySize(i), metaData.getColumnLabel(i), metaData.getColumnName(i), metaData.getSchemaName(i), metaData.getCatalogName(i), metaData.getTableName(i), metaData.getPrecision(i), metaData.getScale(i), metaData.getColumnType(i), metaData.getColumnTypeName(i), metaData.isReadOnly(i), metaData.isWritable(i), metaData.isDefinitelyWritable(i)));
             }
 
+            // realizations are chosen once the query is executed, check ACL before any row reaches the result holder
+            checkQueryAuth(getQueriedRealizations(), sqlRequest.getProject());
+
             // fill in results
             while (resultSet.next()) {
+                // e.g. an async query is cancelled
+                if (Thread.currentThread().isInterrupted())
+                    throw new InterruptedException("Query is interrupted");
+
                 List<String> oneRow = Lists.newArrayListWithCapacity(columnCount);
                 for (int i = 0; i < columnCount; i++) {
                     oneRow.add((resultSet.getString(i + 1)));
@@ -729,35 +770,50 @@ public class QueryService extends BasicService {
                 results.add(oneRow);
             }
         } catch (SQLException sqlException) {
-            isAdHoc = AdHocUtil.doAdHocQuery(sqlRequest.getProject(), correctedSql, results, columnMetas, sqlException);
+            // the ad-hoc runner adds all rows at once, keep them off the result holder until ACL is checked
+            List<List<String>> adHocResults = Lists.newArrayList();
+            isAdHoc = AdHocUtil.doAdHocQuery(sqlRequest.getProject(), correctedSql, adHocResults, columnMetas, sqlException);
+            checkQueryAuth("", sqlRequest.getProject());
+            results.addAll(adHocResults);
         } finally {
             close(resultSet, stat, conn);
         }
 
         boolean isPartialResult = false;
-        StringBuilder cubeSb = new StringBuilder();
         StringBuilder logSb = new StringBuilder("Processed rows for each storageContext: ");
         if (OLAPContext.getThreadLocalContexts() != null) { // contexts can be null in case of 'explain plan for'
             for (OLAPContext ctx : OLAPContext.getThreadLocalContexts()) {
                 if (ctx.realization != null) {
                     isPartialResult |= ctx.storageContext.isPartialResultReturned();
-                    if (cubeSb.length() > 0) {
-                        cubeSb.append(",");
-                    }
-                    cubeSb.append(ctx.realization.getCanonicalName());
                     logSb.append(ctx.storageContext.getProcessedRowCount()).append(" ");
                 }
             }
         }
         logger.info(logSb.toString());
 
-        SQLResponse response = new SQLResponse(columnMetas, results, cubeSb.toString(), 0, false, null, isPartialResult, isAdHoc);
+        SQLResponse response = new SQLResponse(columnMetas, results, getQueriedRealizations(), 0, false, null, isPartialResult, isAdHoc);
         response.setTotalScanCount(QueryContext.current().getScannedRows());
         response.setTotalScanBytes(QueryContext.current().getScannedBytes());
 
         return response;
     }
 
+    // e.g. CUBE[name=abc],HYBRID[name=xyz], empty if no realization is chosen
+    private String getQueriedRealizations() {
+        StringBuilder cubeSb = new StringBuilder();
+        if (OLAPContext.getThreadLocalContexts() != null) { // contexts can be null in case of 'explain plan for'
+            for (OLAPContext ctx : OLAPContext.getThreadLocalContexts()) {
+                if (ctx.realization != null) {
+                    if (cubeSb.length() > 0) {
+                        cubeSb.append(",");
+                    }
+                    cubeSb.append(ctx.realization.getCanonicalName());
+                }
+            }
+        }
+        return cubeSb.toString();
+    }
+
     /**
      * @param preparedState
      * @param param
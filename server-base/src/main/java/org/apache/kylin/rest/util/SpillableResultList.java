@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.rest.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Result rows of a query, the first rows are kept in memory and the rest are spilled to a local temp file.
+ * Rows can be read while being appended, it's safe for one writer and many readers.
+ */
+public class SpillableResultList extends AbstractList<List<String>> implements Closeable {
+
+    private final int maxMemoryRows;
+    private final List<List<String>> memoryRows;
+
+    private File spillFile;
+    private RandomAccessFile spill;
+    private long[] spillOffsets = new long[1024]; // start of each spilled row, and the end of the last
+    private int spillRows = 0;
+
+    private volatile int size = 0;
+    private boolean closed = false;
+
+    public SpillableResultList(int maxMemoryRows) {
+        this.maxMemoryRows = maxMemoryRows;
+        this.memoryRows = Lists.newArrayListWithCapacity(Math.min(maxMemoryRows, 1024));
+    }
+
+    @Override
+    public synchronized boolean add(List<String> row) {
+        if (closed)
+            throw new IllegalStateException("Result is closed");
+
+        if (memoryRows.size() < maxMemoryRows) {
+            memoryRows.add(row);
+        } else {
+            try {
+                spill(row);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to spill query result to " + spillFile, e);
+            }
+        }
+        size++;
+        return true;
+    }
+
+    private void spill(List<String> row) throws IOException {
+        if (spill == null) {
+            spillFile = File.createTempFile("kylin-query-result-", ".spill");
+            spill = new RandomAccessFile(spillFile, "rw");
+        }
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buf);
+        out.writeInt(row.size());
+        for (String cell : row) {
+            if (cell == null) {
+                out.writeInt(-1);
+            } else {
+                byte[] bytes = cell.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+        out.close();
+
+        if (spillRows + 1 >= spillOffsets.length)
+            spillOffsets = Arrays.copyOf(spillOffsets, spillOffsets.length * 2);
+
+        long start = spillOffsets[spillRows];
+        spill.seek(start);
+        spill.write(buf.toByteArray());
+        spillRows++;
+        spillOffsets[spillRows] = start + buf.size();
+    }
+
+    @Override
+    public synchronized List<String> get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        if (closed)
+            throw new IllegalStateException("Result is closed");
+
+        if (index < memoryRows.size())
+            return memoryRows.get(index);
+
+        int i = index - memoryRows.size();
+        try {
+            byte[] bytes = new byte[(int) (spillOffsets[i + 1] - spillOffsets[i])];
+            spill.seek(spillOffsets[i]);
+            spill.readFully(bytes);
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            int columns = in.readInt();
+            List<String> row = Lists.newArrayListWithCapacity(columns);
+            for (int c = 0; c < columns; c++) {
+                int len = in.readInt();
+                if (len < 0) {
+                    row.add(null);
+                } else {
+                    byte[] cell = new byte[len];
+                    in.readFully(cell);
+                    row.add(new String(cell, StandardCharsets.UTF_8));
+                }
+            }
+            return row;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read query result from " + spillFile, e);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public synchronized boolean isSpilled() {
+        return spill != null;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed)
+            return;
+
+        closed = true;
+        size = 0;
+        memoryRows.clear();
+        if (spill != null) {
+            spill.close();
+            if (!spillFile.delete())
+                spillFile.deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.rest.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kylin.rest.response.SQLResponse;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+
+/**
+ * Writes result rows to the output as they are added, instead of keeping them for serializing the whole
+ * {@link SQLResponse} at the end. Pass it as the result holder of a query, then call {@link #finish(SQLResponse)}
+ * to write the other fields of the response. Not thread safe.
+ *
+ * Two formats are supported:
+ * <ul>
+ * <li>JSON, same as the serialized SQLResponse except that "results" comes first</li>
+ * <li>binary ({@link #BINARY_CONTENT_TYPE}), row batches encoded column by column followed by a JSON trailer.
+ * The stream is MAGIC VERSION frame*, a frame is either
+ * BATCH rowCount columnCount column*, where a column is a null bitmap of (rowCount + 7) / 8 bytes, the byte length
+ * of each non-null value and then the UTF-8 bytes of them, or
+ * TRAILER length jsonBytes, the last frame holding the SQLResponse without results.
+ * Integers are 4 bytes big endian.</li>
+ * </ul>
+ */
+public abstract class StreamingResultWriter extends AbstractList<List<String>> {
+
+    public static final String BINARY_CONTENT_TYPE = "application/x-kylin-rowset";
+
+    public static final int BINARY_MAGIC = 0x4B524F57; // "KROW"
+    public static final byte BINARY_VERSION = 1;
+    public static final byte FRAME_BATCH = 1;
+    public static final byte FRAME_TRAILER = 2;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    static {
+        mapper.addMixIn(SQLResponse.class, NoResultsMixIn.class);
+    }
+
+    public static StreamingResultWriter newWriter(boolean binary, OutputStream out, int batchRows) throws IOException {
+        return binary ? new BinaryWriter(out, batchRows) : new JsonWriter(out);
+    }
+
+    private int rowCount = 0;
+    private boolean started = false;
+
+    @Override
+    public boolean add(List<String> row) {
+        try {
+            ensureStarted();
+            writeRow(row);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write query result", e);
+        }
+        rowCount++;
+        return true;
+    }
+
+    @Override
+    public List<String> get(int index) {
+        throw new UnsupportedOperationException("Rows are written out, not kept");
+    }
+
+    @Override
+    public int size() {
+        return rowCount;
+    }
+
+    /**
+     * True once anything is written, after that errors can only be reported in the trailer.
+     */
+    public boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * Writes the rest of the response and flushes. The results of the response are written as well if they were not
+     * added to this writer, e.g. the response is from query cache.
+     */
+    public void finish(SQLResponse response) throws IOException {
+        List<List<String>> results = response.getResults();
+        if (results != null && results != this) {
+            for (List<String> row : results) {
+                add(row);
+            }
+        }
+
+        ensureStarted();
+        writeTrailer(mapper.valueToTree(response));
+    }
+
+    private void ensureStarted() throws IOException {
+        if (!started) {
+            started = true;
+            start();
+        }
+    }
+
+    abstract protected void start() throws IOException;
+
+    abstract protected void writeRow(List<String> row) throws IOException;
+
+    abstract protected void writeTrailer(JsonNode trailer) throws IOException;
+
+    @JsonIgnoreProperties({ "results" })
+    private static abstract class NoResultsMixIn {
+    }
+
+    // ============================================================================
+
+    private static class JsonWriter extends StreamingResultWriter {
+        private final JsonGenerator gen;
+
+        JsonWriter(OutputStream out) throws IOException {
+            this.gen = mapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        }
+
+        @Override
+        protected void start() throws IOException {
+            gen.writeStartObject();
+            gen.writeArrayFieldStart("results");
+        }
+
+        @Override
+        protected void writeRow(List<String> row) throws IOException {
+            gen.writeStartArray();
+            for (String cell : row) {
+                gen.writeString(cell);
+            }
+            gen.writeEndArray();
+        }
+
+        @Override
+        protected void writeTrailer(JsonNode trailer) throws IOException {
+            gen.writeEndArray();
+            Iterator<Map.Entry<String, JsonNode>> fields = trailer.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                gen.writeFieldName(field.getKey());
+                gen.writeTree(field.getValue());
+            }
+            gen.writeEndObject();
+            gen.flush();
+        }
+    }
+
+    private static class BinaryWriter extends StreamingResultWriter {
+        private final DataOutputStream out;
+        private final int batchRows;
+        private final List<List<String>> batch;
+
+        BinaryWriter(OutputStream out, int batchRows) {
+            this.out = new DataOutputStream(out);
+            this.batchRows = batchRows;
+            this.batch = Lists.newArrayListWithCapacity(batchRows);
+        }
+
+        @Override
+        protected void start() throws IOException {
+            out.writeInt(BINARY_MAGIC);
+            out.writeByte(BINARY_VERSION);
+        }
+
+        @Override
+        protected void writeRow(List<String> row) throws IOException {
+            batch.add(row);
+            if (batch.size() >= batchRows) {
+                writeBatch();
+                out.flush(); // give the client something to work on
+            }
+        }
+
+        private void writeBatch() throws IOException {
+            if (batch.isEmpty())
+                return;
+
+            int rows = batch.size();
+            int columns = batch.get(0).size();
+            out.writeByte(FRAME_BATCH);
+            out.writeInt(rows);
+            out.writeInt(columns);
+
+            ByteArrayOutputStream values = new ByteArrayOutputStream();
+            for (int c = 0; c < columns; c++) {
+                byte[] nulls = new byte[(rows + 7) / 8];
+                values.reset();
+                for (int r = 0; r < rows; r++) {
+                    if (batch.get(r).get(c) == null)
+                        nulls[r >> 3] |= 1 << (r & 7);
+                }
+                out.write(nulls);
+                for (int r = 0; r < rows; r++) {
+                    String cell = batch.get(r).get(c);
+                    if (cell != null) {
+                        byte[] bytes = cell.getBytes(StandardCharsets.UTF_8);
+                        out.writeInt(bytes.length);
+                        values.write(bytes);
+                    }
+                }
+                values.writeTo(out);
+            }
+            batch.clear();
+        }
+
+        @Override
+        protected void writeTrailer(JsonNode trailer) throws IOException {
+            writeBatch();
+            byte[] bytes = mapper.writeValueAsBytes(trailer);
+            out.writeByte(FRAME_TRAILER);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.flush();
+        }
+    }
+}
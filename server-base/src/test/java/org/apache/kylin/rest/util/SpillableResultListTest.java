@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.rest.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SpillableResultListTest {
+
+    @Test
+    public void testSpill() throws Exception {
+        SpillableResultList list = new SpillableResultList(10);
+        for (int i = 0; i < 3000; i++) {
+            list.add(row(i));
+        }
+
+        Assert.assertTrue(list.isSpilled());
+        Assert.assertEquals(3000, list.size());
+        Assert.assertEquals(row(0), list.get(0));
+        Assert.assertEquals(row(9), list.get(9));
+        Assert.assertEquals(row(10), list.get(10));
+        Assert.assertEquals(row(2999), list.get(2999));
+        Assert.assertEquals(row(1500), list.get(1500));
+
+        // readable while appending
+        list.add(row(3000));
+        Assert.assertEquals(row(3000), list.get(3000));
+
+        list.close();
+        Assert.assertEquals(0, list.size());
+        try {
+            list.add(row(0));
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testInMemory() throws Exception {
+        SpillableResultList list = new SpillableResultList(10);
+        list.add(row(1));
+        Assert.assertFalse(list.isSpilled());
+        Assert.assertEquals(row(1), list.get(0));
+        list.close();
+    }
+
+    private List<String> row(int i) {
+        return Arrays.asList(String.valueOf(i), i % 3 == 0 ? null : "中文-" + i, "");
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.rest.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.kylin.rest.response.SQLResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+
+public class StreamingResultWriterTest {
+
+    @Test
+    public void testJson() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        StreamingResultWriter writer = StreamingResultWriter.newWriter(false, bytes, 2);
+        writer.add(Arrays.asList("1", null));
+        writer.add(Arrays.asList("2", "中文"));
+        Assert.assertTrue(writer.isStarted());
+        Assert.assertEquals(2, writer.size());
+
+        SQLResponse response = new SQLResponse(null, writer, "CUBE[name=test]", 0, false, null, false, false);
+        response.setDuration(42);
+        writer.finish(response);
+
+        JsonNode node = new ObjectMapper().readTree(bytes.toByteArray());
+        Assert.assertEquals(2, node.get("results").size());
+        Assert.assertTrue(node.get("results").get(0).get(1).isNull());
+        Assert.assertEquals("中文", node.get("results").get(1).get(1).asText());
+        Assert.assertEquals("CUBE[name=test]", node.get("cube").asText());
+        Assert.assertEquals(42, node.get("duration").asLong());
+    }
+
+    @Test
+    public void testBinaryWithCachedResults() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        StreamingResultWriter writer = StreamingResultWriter.newWriter(true, bytes, 2);
+
+        // e.g. from query cache, rows are not added while querying
+        List<List<String>> results = Lists.newArrayList();
+        results.add(Arrays.asList("1", null));
+        results.add(Arrays.asList("2", "b"));
+        results.add(Arrays.asList(null, "cc"));
+        writer.finish(new SQLResponse(null, results, 0, false, null));
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Assert.assertEquals(StreamingResultWriter.BINARY_MAGIC, in.readInt());
+        Assert.assertEquals(StreamingResultWriter.BINARY_VERSION, in.readByte());
+
+        // first batch, 2 rows
+        Assert.assertEquals(StreamingResultWriter.FRAME_BATCH, in.readByte());
+        Assert.assertEquals(2, in.readInt());
+        Assert.assertEquals(2, in.readInt());
+        Assert.assertEquals(0, in.readByte()); // no nulls in column 0
+        Assert.assertEquals(1, in.readInt());
+        Assert.assertEquals(1, in.readInt());
+        Assert.assertEquals("12", readString(in, 2));
+        Assert.assertEquals(1, in.readByte()); // row 0 of column 1 is null
+        Assert.assertEquals(1, in.readInt());
+        Assert.assertEquals("b", readString(in, 1));
+
+        // second batch, the last row
+        Assert.assertEquals(StreamingResultWriter.FRAME_BATCH, in.readByte());
+        Assert.assertEquals(1, in.readInt());
+        Assert.assertEquals(2, in.readInt());
+        Assert.assertEquals(1, in.readByte());
+        Assert.assertEquals(0, in.readByte());
+        Assert.assertEquals(2, in.readInt());
+        Assert.assertEquals("cc", readString(in, 2));
+
+        Assert.assertEquals(StreamingResultWriter.FRAME_TRAILER, in.readByte());
+        JsonNode trailer = new ObjectMapper().readTree(readString(in, in.readInt()));
+        Assert.assertNull(trailer.get("results"));
+        Assert.assertFalse(trailer.get("isException").asBoolean());
+        Assert.assertEquals(-1, in.read());
+    }
+
+    private String readString(DataInputStream in, int len) throws Exception {
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
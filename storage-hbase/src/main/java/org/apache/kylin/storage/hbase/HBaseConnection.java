@@ -69,12 +69,14 @@ public class HBaseConnection {
     private static final ThreadLocal<Configuration> configThreadLocal = new ThreadLocal<>();
 
     private static ExecutorService coprocessorPool = null;
+    private static ExecutorService endpointRPCPool = null;
 
     static {
         Runtime.getRuntime().addShutdownHook(new Thread() {
             @Override
             public void run() {
                 closeCoprocessorPool();
+                closeEndpointRPCPool();
 
                 for (Connection conn : connPool.values()) {
                     try {
@@ -115,6 +117,39 @@ public class HBaseConnection {
         }
     }
 
+    public static ExecutorService getEndpointRPCPool() {
+        if (endpointRPCPool != null) {
+            return endpointRPCPool;
+        }
+
+        synchronized (HBaseConnection.class) {
+            if (endpointRPCPool != null) {
+                return endpointRPCPool;
+            }
+
+            KylinConfig config = KylinConfig.getInstanceFromEnv();
+
+            // bounded, a burst of queries waits in the queue instead of creating threads without limit
+            int maxThreads = config.getEndpointRPCMaxThreads();
+            LinkedBlockingQueue<Runnable> workQueue = new LinkedBlockingQueue<Runnable>(config.getEndpointRPCMaxQueueSize());
+            ThreadPoolExecutor tpe = new ThreadPoolExecutor(maxThreads, maxThreads, config.getHBaseConnectionThreadPoolAliveSeconds(), TimeUnit.SECONDS, workQueue, //
+                    Threads.newDaemonThreadFactory("kylin-endpoint-rpc-"));
+            tpe.allowCoreThreadTimeOut(true);
+
+            logger.info("Creating endpoint rpc thread pool with max of {}, queue size of {}", maxThreads, config.getEndpointRPCMaxQueueSize());
+
+            endpointRPCPool = tpe;
+            return endpointRPCPool;
+        }
+    }
+
+    private static void closeEndpointRPCPool() {
+        if (endpointRPCPool == null)
+            return;
+
+        endpointRPCPool.shutdownNow();
+    }
+
     private static void closeCoprocessorPool() {
         if (coprocessorPool == null)
             return;
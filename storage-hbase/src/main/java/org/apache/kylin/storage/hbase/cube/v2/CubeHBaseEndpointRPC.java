@@ -22,9 +22,10 @@ import java.io.IOException;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.zip.DataFormatException;
 
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.Connection;
@@ -38,9 +39,8 @@ import org.apache.kylin.common.exceptions.ResourceLimitExceededException;
 import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.BytesSerializer;
 import org.apache.kylin.common.util.BytesUtil;
-import org.apache.kylin.common.util.CompressionUtils;
+import org.apache.kylin.common.util.CompressionAlgorithm;
 import org.apache.kylin.common.util.ImmutableBitSet;
-import org.apache.kylin.common.util.LoggableCachedThreadPool;
 import org.apache.kylin.common.util.Pair;
 import org.apache.kylin.cube.cuboid.Cuboid;
 import org.apache.kylin.gridtable.GTInfo;
@@ -68,8 +68,6 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
 
     private static final Logger logger = LoggerFactory.getLogger(CubeHBaseEndpointRPC.class);
 
-    private static ExecutorService executorService = new LoggableCachedThreadPool();
-
     public CubeHBaseEndpointRPC(ISegment segment, Cuboid cuboid, GTInfo fullGTInfo, StorageContext context) {
         super(segment, cuboid, fullGTInfo, context);
     }
@@ -130,14 +128,28 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
         List<RawScan> rawScans = preparedHBaseScans(scanRequest.getGTScanRanges(), selectedColBlocks);
         rawScanByteString = serializeRawScans(rawScans);
 
+        // KylinConfig: use env instance instead of CubeSegment, because KylinConfig will share among queries
+        // for different cubes until redeployment of coprocessor jar.
+        final KylinConfig kylinConfig = KylinConfig.getInstanceFromEnv();
+        // the coprocessor takes the codec and frames its result into chunks only if the request of the serialization
+        // level carries them, a coprocessor of an older level ignores them
+        final int serialLevel = kylinConfig.getGTScanRequestSerializationLevel();
+        final CompressionAlgorithm codec = CompressionAlgorithm.of(GTScanRequest.isResultCodecSerialized(serialLevel) ? kylinConfig.getEndpointResultCodec() : kylinConfig.getEndpointLegacyResultCodec());
+        final int resultChunkBytes = GTScanRequest.isResultChunkSerialized(serialLevel) ? Math.max(0, kylinConfig.getEndpointResultChunkBytes()) : 0;
+        final boolean chunkedResult = resultChunkBytes > 0;
+
         int coprocessorTimeout = getCoprocessorTimeoutMillis();
         scanRequest.setTimeout(coprocessorTimeout);
+        scanRequest.setResultChunkBytes(resultChunkBytes);
+        scanRequest.setResultCodec(codec.name());
         scanRequest.clearScanRanges();//since raw scans are sent to coprocessor, we don't need to duplicate sending it
+        long serializeStart = System.currentTimeMillis();
         scanRequestByteString = serializeGTScanReq(scanRequest);
+        long serializeMillis = System.currentTimeMillis() - serializeStart;
 
-        final ExpectedSizeIterator epResultItr = new ExpectedSizeIterator(shardNum, coprocessorTimeout);
+        final ExpectedSizeIterator epResultItr = new ExpectedSizeIterator(shardNum, coprocessorTimeout, kylinConfig.getEndpointResultWindowBytes());
 
-        logger.info("Serialized scanRequestBytes {} bytes, rawScanBytesString {} bytes", scanRequestByteString.size(), rawScanByteString.size());
+        logger.info("Serialized scanRequestBytes {} bytes in {} ms, rawScanBytesString {} bytes", scanRequestByteString.size(), serializeMillis, rawScanByteString.size());
 
         logger.info("The scan {} for segment {} is as below with {} separate raw scans, shard part of start/end key is set to 0", Integer.toHexString(System.identityHashCode(scanRequest)), cubeSeg, rawScans.size());
         for (RawScan rs : rawScans) {
@@ -146,10 +158,6 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
 
         logger.debug("Submitting rpc to {} shards starting from shard {}, scan range count {}", shardNum, cuboidBaseShard, rawScans.size());
 
-        // KylinConfig: use env instance instead of CubeSegment, because KylinConfig will share among queries
-        // for different cubes until redeployment of coprocessor jar.
-        final KylinConfig kylinConfig = KylinConfig.getInstanceFromEnv();
-        final boolean compressionResult = kylinConfig.getCompressionResult();
         final CubeVisitProtos.CubeVisitRequest.Builder builder = CubeVisitProtos.CubeVisitRequest.newBuilder();
         builder.setGtScanRequest(scanRequestByteString).setHbaseRawScan(rawScanByteString);
         for (IntList intList : hbaseColumnsToGTIntList) {
@@ -164,16 +172,29 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
         builder.setSpillEnabled(cubeSeg.getConfig().getQueryCoprocessorSpillEnabled());
         builder.setMaxScanBytes(cubeSeg.getConfig().getPartitionMaxScanBytes());
 
-        for (final Pair<byte[], byte[]> epRange : getEPKeyRanges(cuboidBaseShard, shardNum, totalShards)) {
-            executorService.submit(new Runnable() {
+        // region calls of the same query share one concurrency limit over the hconnection pool
+        List<Pair<byte[], byte[]>> epRanges = getEPKeyRanges(cuboidBaseShard, shardNum, totalShards);
+        final PerQueryExecutor regionCallExecutor = PerQueryExecutor.acquire(queryId != null ? queryId : Integer.toHexString(System.identityHashCode(scanRequest)), //
+                HBaseConnection.getCoprocessorPool(), kylinConfig.getQueryMaxConcurrentRegionCalls());
+        final AtomicInteger remainingEPRanges = new AtomicInteger(epRanges.size());
+        final AtomicLong scannedRows = new AtomicLong();
+        final AtomicLong scannedBytes = new AtomicLong();
+        if (epRanges.isEmpty()) {
+            PerQueryExecutor.release(regionCallExecutor);
+        }
+
+        for (final Pair<byte[], byte[]> epRange : epRanges) {
+            final long submitTime = System.currentTimeMillis();
+            Runnable rpc = new Runnable() {
                 @Override
                 public void run() {
 
                     final String logHeader = String.format("<sub-thread for Query %s GTScanRequest %s>", queryId, Integer.toHexString(System.identityHashCode(scanRequest)));
                     final AtomicReference<RuntimeException> regionErrorHolder = new AtomicReference<>();
 
+                    logger.debug(logHeader + "Waited {} ms in endpoint rpc queue", System.currentTimeMillis() - submitTime);
                     try {
-                        Table table = conn.getTable(TableName.valueOf(cubeSeg.getStorageLocationIdentifier()), HBaseConnection.getCoprocessorPool());
+                        Table table = conn.getTable(TableName.valueOf(cubeSeg.getStorageLocationIdentifier()), regionCallExecutor);
 
                         final CubeVisitRequest request = builder.build();
                         final byte[] startKey = epRange.getFirst();
@@ -203,6 +224,8 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
                                         Stats stats = result.getStats();
                                         queryContext.addAndGetScannedRows(stats.getScannedRowCount());
                                         queryContext.addAndGetScannedBytes(stats.getScannedBytes());
+                                        scannedRows.addAndGet(stats.getScannedRowCount());
+                                        scannedBytes.addAndGet(stats.getScannedBytes());
 
                                         // if any other region has responded with error, skip further processing
                                         if (regionErrorHolder.get() != null) {
@@ -220,12 +243,18 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
                                         }
 
                                         try {
-                                            if (compressionResult) {
-                                                epResultItr.append(CompressionUtils.decompress(HBaseZeroCopyByteString.zeroCopyGetBytes(result.getCompressedRows())));
+                                            byte[] compressedRows = HBaseZeroCopyByteString.zeroCopyGetBytes(result.getCompressedRows());
+                                            long decompressMillis;
+                                            if (chunkedResult) {
+                                                decompressMillis = appendChunks(epResultItr, compressedRows, codec);
                                             } else {
-                                                epResultItr.append(HBaseZeroCopyByteString.zeroCopyGetBytes(result.getCompressedRows()));
+                                                long start = System.currentTimeMillis();
+                                                byte[] rows = codec.decompress(compressedRows);
+                                                decompressMillis = System.currentTimeMillis() - start;
+                                                epResultItr.append(rows);
                                             }
-                                        } catch (IOException | DataFormatException e) {
+                                            logger.info(logHeader + "Decompressed {} bytes from shard {} by {} in {} ms", compressedRows.length, BytesUtil.toHex(region), codec, decompressMillis);
+                                        } catch (IOException e) {
                                             throw new RuntimeException(logHeader + "Error when decompressing", e);
                                         }
                                     }
@@ -235,6 +264,11 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
                         logger.error(logHeader + "Error when visiting cubes by endpoint", ex); // double log coz the query thread may already timeout
                         epResultItr.notifyCoprocException(ex);
                         return;
+                    } finally {
+                        if (remainingEPRanges.decrementAndGet() == 0) {
+                            PerQueryExecutor.release(regionCallExecutor);
+                            logScanEstimate(scanRequest, scannedRows.get(), scannedBytes.get());
+                        }
                     }
 
                     if (regionErrorHolder.get() != null) {
@@ -243,12 +277,42 @@ public class CubeHBaseEndpointRPC extends CubeHBaseRPC {
                         epResultItr.notifyCoprocException(exception);
                     }
                 }
-            });
+            };
+
+            try {
+                HBaseConnection.getEndpointRPCPool().execute(rpc);
+            } catch (RejectedExecutionException e) {
+                if (remainingEPRanges.decrementAndGet() == 0) {
+                    PerQueryExecutor.release(regionCallExecutor);
+                }
+                epResultItr.notifyCoprocException(new RuntimeException("Too many concurrent queries, the endpoint rpc queue is full", e));
+            }
         }
 
         return new StorageResponseGTScatter(scanRequest, new DummyPartitionStreamer(epResultItr), storageContext);
     }
 
+    /**
+     * Decode the chunks framed by ChunkedResultWriter one by one, so the query thread can start on the first chunk
+     * while later ones are being decoded. Return the time spent on decompressing.
+     */
+    private long appendChunks(ExpectedSizeIterator epResultItr, byte[] frames, CompressionAlgorithm codec) throws IOException {
+        long decompressNanos = 0;
+        ByteBuffer in = ByteBuffer.wrap(frames);
+        while (in.hasRemaining()) {
+            int length = in.getInt();
+            int offset = in.position();
+            in.position(offset + length);
+
+            long start = System.nanoTime();
+            byte[] chunk = codec.decompress(frames, offset, length);
+            decompressNanos += System.nanoTime() - start;
+            epResultItr.appendChunk(chunk);
+        }
+        epResultItr.regionDone();
+        return decompressNanos / 1000000;
+    }
+
     private ByteString serializeGTScanReq(GTScanRequest scanRequest) {
         ByteString scanRequestByteString;
         int scanRequestBufferSize = BytesSerializer.SERIALIZE_BUFFER_SIZE;
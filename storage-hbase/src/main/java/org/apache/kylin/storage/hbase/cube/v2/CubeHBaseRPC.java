@@ -47,6 +47,7 @@ import org.apache.kylin.cube.model.HBaseMappingDesc;
 import org.apache.kylin.gridtable.GTInfo;
 import org.apache.kylin.gridtable.GTRecord;
 import org.apache.kylin.gridtable.GTScanRange;
+import org.apache.kylin.gridtable.GTScanRequest;
 import org.apache.kylin.gridtable.IGTStorage;
 import org.apache.kylin.metadata.model.ISegment;
 import org.apache.kylin.storage.StorageContext;
@@ -285,6 +286,17 @@ public abstract class CubeHBaseRPC implements IGTStorage {
         logger.info(info.toString());
     }
 
+    /**
+     * Logs the rows and bytes a scan actually read next to the estimate of its plan, if any.
+     */
+    protected void logScanEstimate(GTScanRequest scanRequest, long scannedRows, long scannedBytes) {
+        if (scanRequest.getEstimatedScanRows() < 0)
+            return;
+
+        logger.info("Scanned {} rows, {} bytes from cuboid {} of segment {}, the scan plan estimated {} rows, {} bytes", //
+                scannedRows, scannedBytes, cuboid.getId(), cubeSeg, scanRequest.getEstimatedScanRows(), scanRequest.getEstimatedScanBytes());
+    }
+
     protected int getCoprocessorTimeoutMillis() {
         int coopTimeout;
         if (BackdoorToggles.getQueryTimeout() != -1) {
@@ -165,6 +165,7 @@ public class CubeHBaseScanRPC extends CubeHBaseRPC {
             public void close() throws IOException {
                 queryContext.addAndGetScannedRows(scannedRows);
                 queryContext.addAndGetScannedBytes(scannedBytes);
+                logScanEstimate(scanRequest, scannedRows, scannedBytes);
 
                 for (ResultScanner scanner : scanners) {
                     scanner.close();
@@ -19,8 +19,9 @@
 package org.apache.kylin.storage.hbase.cube.v2;
 
 import java.util.Iterator;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.NoSuchElementException;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.NotImplementedException;
@@ -28,17 +29,33 @@ import org.apache.kylin.gridtable.GTScanRequest;
 
 import com.google.common.base.Throwables;
 
+/**
+ * Blocks returned by the regions of one scan. A region may append its result as one block, or as several
+ * chunks followed by {@link #regionDone()}, so the query thread can consume early chunks while later ones
+ * are still decoding. Appending waits when the appended but not yet consumed blocks exceed the window size.
+ */
 class ExpectedSizeIterator implements Iterator<byte[]> {
+    private static final byte[] REGION_DONE = new byte[0];
+
     private BlockingQueue<byte[]> queue;
     private int expectedSize;
     private int current = 0;
+    private byte[] next;
     private int coprocessorTimeout;
     private long deadline;
     private volatile Throwable coprocException;
 
+    private final long windowBytes;
+    private long bufferedBytes = 0; // guarded by queue
+
     public ExpectedSizeIterator(int expectedSize, int coprocessorTimeout) {
+        this(expectedSize, coprocessorTimeout, Long.MAX_VALUE);
+    }
+
+    public ExpectedSizeIterator(int expectedSize, int coprocessorTimeout, long windowBytes) {
         this.expectedSize = expectedSize;
-        this.queue = new ArrayBlockingQueue<byte[]>(expectedSize);
+        this.queue = new LinkedBlockingQueue<byte[]>();
+        this.windowBytes = windowBytes;
 
         this.coprocessorTimeout = coprocessorTimeout;
         //longer timeout than coprocessor so that query thread will not timeout faster than coprocessor
@@ -47,16 +64,29 @@ class ExpectedSizeIterator implements Iterator<byte[]> {
 
     @Override
     public boolean hasNext() {
-        return (current < expectedSize);
+        while (next == null && current < expectedSize) {
+            byte[] ret = take();
+            if (ret == REGION_DONE) {
+                current++;
+            } else {
+                next = ret;
+            }
+        }
+        return next != null;
     }
 
     @Override
     public byte[] next() {
-        if (current >= expectedSize) {
-            throw new IllegalStateException("Won't have more data");
+        if (!hasNext()) {
+            throw new NoSuchElementException("Won't have more data");
         }
+        byte[] ret = next;
+        next = null;
+        return ret;
+    }
+
+    private byte[] take() {
         try {
-            current++;
             byte[] ret = null;
 
             while (ret == null && coprocException == null && deadline > System.currentTimeMillis()) {
@@ -72,6 +102,7 @@ class ExpectedSizeIterator implements Iterator<byte[]> {
                         GTScanRequest.terminateCheckInterval + " scanned rows, the configured timeout(" + coprocessorTimeout + ") cannot support this many scans?");
             }
 
+            release(ret.length);
             return ret;
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -84,8 +115,22 @@ class ExpectedSizeIterator implements Iterator<byte[]> {
         throw new NotImplementedException();
     }
 
+    /** append the whole result of a region */
     public void append(byte[] data) {
+        appendChunk(data);
+        regionDone();
+    }
+
+    /** append part of the result of a region, waiting for room in the window */
+    public void appendChunk(byte[] data) {
         try {
+            synchronized (queue) {
+                // a chunk bigger than the window is still accepted once the window is empty
+                while (bufferedBytes > 0 && bufferedBytes + data.length > windowBytes && coprocException == null && deadline > System.currentTimeMillis()) {
+                    queue.wait(1000);
+                }
+                bufferedBytes += data.length;
+            }
             queue.put(data);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -93,6 +138,20 @@ class ExpectedSizeIterator implements Iterator<byte[]> {
         }
     }
 
+    /** the region has appended all its chunks */
+    public void regionDone() {
+        queue.add(REGION_DONE);
+    }
+
+    private void release(int length) {
+        if (length == 0)
+            return;
+        synchronized (queue) {
+            bufferedBytes -= length;
+            queue.notifyAll();
+        }
+    }
+
     public void notifyCoprocException(Throwable ex) {
         coprocException = ex;
     }
@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.hbase.cube.v2;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A view of a shared pool that runs at most a given number of tasks of one query at a time. Tasks beyond the limit
+ * wait in a per-query queue, so one query fanning out to many regions cannot take all threads of the shared pool.
+ *
+ * All scans of the same query share one instance, obtained by {@link #acquire} and given back by {@link #release}.
+ * Time spent by tasks in the per-query queue and in the shared pool queue is logged when the query releases it.
+ */
+public class PerQueryExecutor extends AbstractExecutorService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PerQueryExecutor.class);
+
+    private static final Map<String, PerQueryExecutor> executors = new HashMap<>(); // guarded by itself
+
+    public static PerQueryExecutor acquire(String queryId, Executor sharedPool, int maxConcurrent) {
+        synchronized (executors) {
+            PerQueryExecutor executor = executors.get(queryId);
+            if (executor == null) {
+                executor = new PerQueryExecutor(queryId, sharedPool, maxConcurrent);
+                executors.put(queryId, executor);
+            }
+            executor.refCount++;
+            return executor;
+        }
+    }
+
+    public static void release(PerQueryExecutor executor) {
+        synchronized (executors) {
+            if (--executor.refCount > 0)
+                return;
+            executors.remove(executor.queryId);
+        }
+        executor.logStats();
+    }
+
+    private final String queryId;
+    private final Executor sharedPool;
+    private final int maxConcurrent;
+    private int refCount; // guarded by executors
+
+    private final Queue<Runnable> pending = new ArrayDeque<>(); // guarded by this
+    private int running; // guarded by this
+
+    private long taskCount; // guarded by this
+    private long totalQueueNanos; // guarded by this
+    private long maxQueueNanos; // guarded by this
+
+    PerQueryExecutor(String queryId, Executor sharedPool, int maxConcurrent) {
+        this.queryId = queryId;
+        this.sharedPool = sharedPool;
+        this.maxConcurrent = maxConcurrent > 0 ? maxConcurrent : Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        Runnable task = new Task(command);
+        synchronized (this) {
+            if (running >= maxConcurrent) {
+                pending.add(task);
+                return;
+            }
+            running++;
+        }
+        dispatch(task);
+    }
+
+    private void dispatch(Runnable task) {
+        try {
+            sharedPool.execute(task);
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                running--;
+            }
+            throw e;
+        }
+    }
+
+    private void onTaskDone(long queueNanos) {
+        Runnable next;
+        synchronized (this) {
+            taskCount++;
+            totalQueueNanos += queueNanos;
+            maxQueueNanos = Math.max(maxQueueNanos, queueNanos);
+
+            next = pending.poll();
+            if (next == null) {
+                running--;
+                return;
+            }
+        }
+        try {
+            sharedPool.execute(next);
+        } catch (RejectedExecutionException e) {
+            // nobody else would run it, and this is already a pool thread
+            next.run();
+        }
+    }
+
+    synchronized int getRunning() {
+        return running;
+    }
+
+    synchronized long getTaskCount() {
+        return taskCount;
+    }
+
+    private synchronized void logStats() {
+        if (taskCount == 0)
+            return;
+        logger.info("Query {} ran {} region calls, queue time avg {} ms, max {} ms", queryId, taskCount, TimeUnit.NANOSECONDS.toMillis(totalQueueNanos / taskCount), TimeUnit.NANOSECONDS.toMillis(maxQueueNanos));
+    }
+
+    private class Task implements Runnable {
+        final Runnable command;
+        final long createTime = System.nanoTime();
+
+        Task(Runnable command) {
+            this.command = command;
+        }
+
+        @Override
+        public void run() {
+            long queueNanos = System.nanoTime() - createTime;
+            try {
+                command.run();
+            } finally {
+                onTaskDone(queueNanos);
+            }
+        }
+    }
+
+    // the executor is a view and has no life cycle of its own
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return false;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return false;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+        return false;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.kylin.common.util.CompressionAlgorithm;
+
+/**
+ * Writes the rows of a region visit as a sequence of chunks, each framed as [int length][bytes].
+ *
+ * A chunk is cut at record boundary once it reaches the chunk size, and is compressed on its own,
+ * so the client can decode and consume the chunks one by one instead of inflating the whole result.
+ */
+public class ChunkedResultWriter {
+
+    private final int chunkBytes;
+    private final CompressionAlgorithm codec;
+
+    private final ByteArrayOutputStream chunk;
+    private final ByteArrayOutputStream output;
+    private final byte[] lengthBuf = new byte[4];
+
+    private long rawBytes;
+    private int chunkCount;
+    private long compressNanos;
+
+    public ChunkedResultWriter(int chunkBytes, CompressionAlgorithm codec) {
+        this.chunkBytes = chunkBytes;
+        this.codec = codec;
+        this.chunk = new ByteArrayOutputStream(chunkBytes);
+        this.output = new ByteArrayOutputStream(chunkBytes);
+    }
+
+    /** write one record, the record is never split across chunks */
+    public void write(byte[] record, int offset, int length) throws IOException {
+        chunk.write(record, offset, length);
+        rawBytes += length;
+        if (chunk.size() >= chunkBytes) {
+            flushChunk();
+        }
+    }
+
+    private void flushChunk() throws IOException {
+        if (chunk.size() == 0)
+            return;
+
+        byte[] bytes = chunk.toByteArray();
+        chunk.reset();
+        long start = System.nanoTime();
+        bytes = codec.compress(bytes);
+        compressNanos += System.nanoTime() - start;
+        ByteBuffer.wrap(lengthBuf).putInt(bytes.length);
+        output.write(lengthBuf);
+        output.write(bytes);
+        chunkCount++;
+    }
+
+    /** flush the last chunk and return all the framed chunks */
+    public byte[] finish() throws IOException {
+        flushChunk();
+        return output.toByteArray();
+    }
+
+    public long getRawBytes() {
+        return rawBytes;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    public long getCompressMillis() {
+        return compressNanos / 1000000;
+    }
+}
@@ -26,6 +26,7 @@ import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.ArrayUtils;
@@ -45,9 +46,12 @@ import org.apache.kylin.common.exceptions.KylinTimeoutException;
 import org.apache.kylin.common.exceptions.ResourceLimitExceededException;
 import org.apache.kylin.common.util.Bytes;
 import org.apache.kylin.common.util.BytesUtil;
-import org.apache.kylin.common.util.CompressionUtils;
+import org.apache.kylin.common.util.CompressionAlgorithm;
 import org.apache.kylin.common.util.SetThreadName;
 import org.apache.kylin.cube.kv.RowConstants;
+import org.apache.kylin.gridtable.GTAggregateScanner;
+import org.apache.kylin.gridtable.GTFilterScanner;
+import org.apache.kylin.gridtable.GTInfo;
 import org.apache.kylin.gridtable.GTRecord;
 import org.apache.kylin.gridtable.GTScanRequest;
 import org.apache.kylin.gridtable.IGTScanner;
@@ -146,27 +150,40 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
         private final long timeout;
         private final long deadline;
 
-        private long rowCount;
-        private long rowBytes;
+        // shared by iterators that scan partitions of the same region in parallel
+        private final AtomicLong rowCount;
+        private final AtomicLong rowBytes;
+        private long localRowCount;
 
         ResourceTrackingCellListIterator(Iterator<List<Cell>> delegate,
                                          long rowCountLimit, long bytesLimit, long timeout) {
+            this(delegate, rowCountLimit, bytesLimit, timeout, System.currentTimeMillis() + timeout, new AtomicLong(), new AtomicLong());
+        }
+
+        private ResourceTrackingCellListIterator(Iterator<List<Cell>> delegate, long rowCountLimit, long bytesLimit, long timeout, long deadline, AtomicLong rowCount, AtomicLong rowBytes) {
             this.delegate = delegate;
             this.rowCountLimit = rowCountLimit;
             this.bytesLimit = bytesLimit;
             this.timeout = timeout;
-            this.deadline = System.currentTimeMillis() + timeout;
+            this.deadline = deadline;
+            this.rowCount = rowCount;
+            this.rowBytes = rowBytes;
+        }
+
+        /** create an iterator that shares limits and counters with this one */
+        ResourceTrackingCellListIterator share(Iterator<List<Cell>> anotherDelegate) {
+            return new ResourceTrackingCellListIterator(anotherDelegate, rowCountLimit, bytesLimit, timeout, deadline, rowCount, rowBytes);
         }
 
         @Override
         public boolean hasNext() {
-            if (rowCount > rowCountLimit) {
+            if (rowCount.get() > rowCountLimit) {
                 throw new ResourceLimitExceededException("scanned row count exceeds threshold " + rowCountLimit);
             }
-            if (rowBytes > bytesLimit) {
-                throw new ResourceLimitExceededException("scanned bytes " + rowBytes + " exceeds threshold " + bytesLimit);
+            if (rowBytes.get() > bytesLimit) {
+                throw new ResourceLimitExceededException("scanned bytes " + rowBytes.get() + " exceeds threshold " + bytesLimit);
             }
-            if ((rowCount % GTScanRequest.terminateCheckInterval == 1) && System.currentTimeMillis() > deadline) {
+            if ((localRowCount % GTScanRequest.terminateCheckInterval == 1) && System.currentTimeMillis() > deadline) {
                 throw new KylinTimeoutException("coprocessor timeout after " + timeout + " ms");
             }
             return delegate.hasNext();
@@ -175,19 +192,22 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
         @Override
         public List<Cell> next() {
             List<Cell> result = delegate.next();
-            rowCount++;
+            localRowCount++;
+            rowCount.incrementAndGet();
+            long bytes = 0;
             for (Cell cell : result) {
-                rowBytes += CellUtil.estimatedSizeOf(cell);
+                bytes += CellUtil.estimatedSizeOf(cell);
             }
+            rowBytes.addAndGet(bytes);
             return result;
         }
 
         public long getTotalScannedRowCount() {
-            return rowCount;
+            return rowCount.get();
         }
 
         public long getTotalScannedRowBytes() {
-            return rowBytes;
+            return rowBytes.get();
         }
     }
 
@@ -210,6 +230,19 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
         return ret;
     }
 
+    private int decideScanParallelism(GTScanRequest scanReq, StorageSideBehavior behavior, int rawScanCount, KylinConfig kylinConfig) {
+        int maxPerQuery = kylinConfig.getQueryCoprocessorScanParallelism();
+        if (maxPerQuery <= 1 || rawScanCount <= 1)
+            return 1;
+
+        // partial aggregations can only be merged when the storage does the full aggregation without limit
+        boolean aggregating = scanReq.hasAggregation() && (scanReq.isAllowStorageAggregation() || scanReq.getHavingFilterPushDown() != null);
+        if (!aggregating || !behavior.filterToggledOn() || !behavior.aggrToggledOn() || scanReq.getStoragePushDownLimit() != Integer.MAX_VALUE)
+            return 1;
+
+        return ParallelPartitionScanner.decideParallelism(maxPerQuery, kylinConfig.getQueryCoprocessorScanPoolSize(), rawScanCount);
+    }
+
     private void appendProfileInfo(StringBuilder sb, String info) {
         if (info != null) {
             sb.append(info);
@@ -225,7 +258,6 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
         HRegion region = null;
 
         StringBuilder sb = new StringBuilder();
-        byte[] allRows;
         String debugGitTag = "";
 
         CubeVisitProtos.CubeVisitResponse.ErrorInfo errorInfo = null;
@@ -244,7 +276,10 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
 
             debugGitTag = region.getTableDesc().getValue(IRealizationConstants.HTableGitTag);
 
-            final GTScanRequest scanReq = GTScanRequest.serializer.deserialize(ByteBuffer.wrap(HBaseZeroCopyByteString.zeroCopyGetBytes(request.getGtScanRequest())));
+            final byte[] scanReqBytes = HBaseZeroCopyByteString.zeroCopyGetBytes(request.getGtScanRequest());
+            long deserializeStart = System.currentTimeMillis();
+            final GTScanRequest scanReq = GTScanRequest.serializer.deserialize(ByteBuffer.wrap(scanReqBytes));
+            long deserializeMillis = System.currentTimeMillis() - deserializeStart;
             List<List<Integer>> hbaseColumnsToGT = Lists.newArrayList();
             for (IntList intList : request.getHbaseColumnsToGTList()) {
                 hbaseColumnsToGT.add(intList.getIntsList());
@@ -253,6 +288,7 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
             final List<RawScan> hbaseRawScans = deserializeRawScans(ByteBuffer.wrap(HBaseZeroCopyByteString.zeroCopyGetBytes(request.getHbaseRawScan())));
 
             appendProfileInfo(sb, "start latency: " + (this.serviceStartTime - scanReq.getStartTime()));
+            appendProfileInfo(sb, "request of " + scanReqBytes.length + " bytes deserialized in " + deserializeMillis + "ms, GTInfo cache hit rate " + GTInfo.getDigestCacheStats().hitRate());
 
             final List<InnerScannerAsIterator> cellListsForeachRawScan = Lists.newArrayList();
 
@@ -290,20 +326,54 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
 
             final long storagePushDownLimit = scanReq.getStoragePushDownLimit();
 
+            final int parallelism = decideScanParallelism(scanReq, behavior, cellListsForeachRawScan.size(), kylinConfig);
+
             ResourceTrackingCellListIterator cellListIterator = new ResourceTrackingCellListIterator(
                     allCellLists,
                     scanReq.getStorageScanRowNumThreshold(), // for old client (scan threshold)
                     !request.hasMaxScanBytes() ? Long.MAX_VALUE : request.getMaxScanBytes(), // for new client
                     scanReq.getTimeout());
 
-            IGTStore store = new HBaseReadonlyStore(cellListIterator, scanReq, hbaseRawScans.get(0).hbaseColumns, hbaseColumnsToGT, request.getRowkeyPreambleSize(), behavior.delayToggledOn());
+            IGTScanner finalScanner;
+            if (parallelism > 1) {
+                // split the raw scans into contiguous partitions, each is filtered and partially aggregated on a worker thread
+                List<IGTScanner> partitionScanners = Lists.newArrayListWithCapacity(parallelism);
+                int rawScanCount = cellListsForeachRawScan.size();
+                for (int i = 0; i < parallelism; i++) {
+                    List<InnerScannerAsIterator> partition = cellListsForeachRawScan.subList(rawScanCount * i / parallelism, rawScanCount * (i + 1) / parallelism);
+                    // each partition has its own copy of the request, as filters are not thread safe
+                    GTScanRequest partitionReq = GTScanRequest.serializer.deserialize(ByteBuffer.wrap(scanReqBytes));
+                    if (behavior.ordinal() < StorageSideBehavior.SCAN_FILTER_AGGR_CHECKMEM.ordinal()) {
+                        partitionReq.disableAggCacheMemCheck();
+                    }
+
+                    CellListIterator partitionCells = cellListIterator.share(Iterators.concat(partition.iterator()));
+                    IGTStore partitionStore = new HBaseReadonlyStore(partitionCells, partitionReq, hbaseRawScans.get(0).hbaseColumns, hbaseColumnsToGT, request.getRowkeyPreambleSize(), behavior.delayToggledOn());
+                    IGTScanner partitionScanner = partitionStore.scan(partitionReq);
+                    if (partitionReq.hasFilterPushDown()) {
+                        partitionScanner = new GTFilterScanner(partitionScanner, partitionReq);
+                    }
+                    partitionScanners.add(GTAggregateScanner.newPartialScanner(partitionScanner, partitionReq, request.getSpillEnabled(), parallelism));
+                }
+                appendProfileInfo(sb, "parallel scan of " + parallelism + " partitions");
+                IGTScanner mergedScanner = new ParallelPartitionScanner(partitionScanners, kylinConfig.getQueryCoprocessorScanPoolSize(), queryId, scanReq.getTimeout());
+                finalScanner = new GTAggregateScanner(mergedScanner, scanReq, request.getSpillEnabled());
+            } else {
+                IGTStore store = new HBaseReadonlyStore(cellListIterator, scanReq, hbaseRawScans.get(0).hbaseColumns, hbaseColumnsToGT, request.getRowkeyPreambleSize(), behavior.delayToggledOn());
 
-            IGTScanner rawScanner = store.scan(scanReq);
-            IGTScanner finalScanner = scanReq.decorateScanner(rawScanner, behavior.filterToggledOn(), behavior.aggrToggledOn(), false, request.getSpillEnabled());
+                IGTScanner rawScanner = store.scan(scanReq);
+                finalScanner = scanReq.decorateScanner(rawScanner, behavior.filterToggledOn(), behavior.aggrToggledOn(), false, request.getSpillEnabled());
+            }
 
             ByteBuffer buffer = ByteBuffer.allocate(BufferedMeasureCodec.DEFAULT_BUFFER_SIZE);
 
             ByteArrayOutputStream outputStream = new ByteArrayOutputStream(BufferedMeasureCodec.DEFAULT_BUFFER_SIZE);//ByteArrayOutputStream will auto grow
+            // the codec asked by the query server, which has to decode the result
+            CompressionAlgorithm codec = scanReq.getResultCodec() != null ? CompressionAlgorithm.of(scanReq.getResultCodec()) : CompressionAlgorithm.of(kylinConfig.getEndpointLegacyResultCodec());
+            ChunkedResultWriter chunkWriter = null;
+            if (scanReq.getResultChunkBytes() > 0) {
+                chunkWriter = new ChunkedResultWriter(scanReq.getResultChunkBytes(), codec);
+            }
             int finalRowCount = 0;
 
             try {
@@ -316,7 +386,11 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
                         oneRecord.exportColumns(scanReq.getColumns(), buffer);
                     }
 
-                    outputStream.write(buffer.array(), 0, buffer.position());
+                    if (chunkWriter != null) {
+                        chunkWriter.write(buffer.array(), 0, buffer.position());
+                    } else {
+                        outputStream.write(buffer.array(), 0, buffer.position());
+                    }
 
                     finalRowCount++;
 
@@ -349,19 +423,29 @@ public class CubeVisitService extends CubeVisitProtos.CubeVisitService implement
 
             //outputStream.close() is not necessary
             byte[] compressedAllRows;
-            if (errorInfo == null) {
-                allRows = outputStream.toByteArray();
+            long rawResultBytes;
+            long compressMillis;
+            if (chunkWriter != null) {
+                // chunks are compressed on the fly while writing
+                compressedAllRows = errorInfo == null ? chunkWriter.finish() : new byte[0];
+                rawResultBytes = errorInfo == null ? chunkWriter.getRawBytes() : 0;
+                compressMillis = chunkWriter.getCompressMillis();
+                appendProfileInfo(sb, chunkWriter.getChunkCount() + " chunks");
             } else {
-                allRows = new byte[0];
-            }
-            if (!kylinConfig.getCompressionResult()) {
-                compressedAllRows = allRows;
-            } else {
-                compressedAllRows = CompressionUtils.compress(allRows);
+                byte[] allRows;
+                if (errorInfo == null) {
+                    allRows = outputStream.toByteArray();
+                } else {
+                    allRows = new byte[0];
+                }
+                long compressStart = System.currentTimeMillis();
+                compressedAllRows = codec.compress(allRows);
+                compressMillis = System.currentTimeMillis() - compressStart;
+                rawResultBytes = allRows.length;
             }
 
-            appendProfileInfo(sb, "compress done");
-            logger.info("Size of final result = {} ({} before compressing)", compressedAllRows.length, allRows.length);
+            appendProfileInfo(sb, "compress done by " + codec + " in " + compressMillis + "ms");
+            logger.info("Size of final result = {} ({} before compressing by {} in {} ms)", compressedAllRows.length, rawResultBytes, codec, compressMillis);
 
             OperatingSystemMXBean operatingSystemMXBean = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
             double systemCpuLoad = operatingSystemMXBean.getSystemCpuLoad();
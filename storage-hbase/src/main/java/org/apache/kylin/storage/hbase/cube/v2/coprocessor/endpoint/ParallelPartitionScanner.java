@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.kylin.common.util.SetThreadName;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Runs the scanners of several partitions of a region on a region server wide worker pool, and returns
+ * their outputs as one stream in no particular order. Each partition scanner is expected to be partially
+ * aggregated, so the merged stream should go through a final GTAggregateScanner.
+ *
+ * The pool is bounded, and concurrent queries share it fairly: a query gets at most
+ * pool size / running queries threads, capped by the per-query parallelism.
+ */
+public class ParallelPartitionScanner implements IGTScanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelPartitionScanner.class);
+
+    private static final Object END_OF_PARTITION = new Object();
+    private static final int QUEUE_CAPACITY = 10000;
+    private static final long OFFER_WAIT_MS = 100;
+
+    private static ExecutorService pool;
+    private static final AtomicInteger runningQueries = new AtomicInteger();
+
+    private static synchronized ExecutorService getPool(int poolSize) {
+        if (pool == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "kylin-coprocessor-scan-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+            pool = executor;
+            logger.info("Created coprocessor scan pool of size {}", poolSize);
+        }
+        return pool;
+    }
+
+    /**
+     * Decide how many partitions a new query should be split into, giving each running query a fair share of the pool.
+     */
+    public static int decideParallelism(int maxPerQuery, int poolSize, int maxPartitions) {
+        int share = poolSize / (runningQueries.get() + 1);
+        return Math.max(1, Math.min(Math.min(maxPerQuery, share), maxPartitions));
+    }
+
+    private final GTInfo info;
+    private final List<IGTScanner> partitions;
+    private final ExecutorService executor;
+    private final String queryId;
+    private final long deadline;
+
+    private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicReference<Throwable> error = new AtomicReference<>();
+    private volatile boolean aborted = false;
+    private boolean started = false;
+    private CountDownLatch finished;
+    private List<PartitionTask> tasks;
+
+    /**
+     * @param timeout partition scanners are expected to give up by themselves after this many milliseconds
+     */
+    public ParallelPartitionScanner(List<IGTScanner> partitions, int poolSize, String queryId, long timeout) {
+        this.info = partitions.get(0).getInfo();
+        this.partitions = partitions;
+        this.executor = getPool(poolSize);
+        this.queryId = queryId;
+        this.deadline = System.currentTimeMillis() + timeout;
+    }
+
+    @Override
+    public GTInfo getInfo() {
+        return info;
+    }
+
+    @Override
+    public Iterator<GTRecord> iterator() {
+        if (started)
+            throw new IllegalStateException("ParallelPartitionScanner can be iterated only once");
+
+        started = true;
+        finished = new CountDownLatch(partitions.size());
+        runningQueries.incrementAndGet();
+        logger.info("Scanning {} partitions in parallel, {} queries running parallel scan", partitions.size(), runningQueries.get());
+
+        tasks = Lists.newArrayListWithCapacity(partitions.size());
+        for (IGTScanner partition : partitions) {
+            PartitionTask task = new PartitionTask(partition);
+            tasks.add(task);
+            executor.execute(task);
+        }
+
+        return new Iterator<GTRecord>() {
+            int remaining = partitions.size();
+            GTRecord next = null;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && remaining > 0) {
+                    Object o = take();
+                    if (o == END_OF_PARTITION)
+                        remaining--;
+                    else
+                        next = (GTRecord) o;
+                }
+                return next != null;
+            }
+
+            @Override
+            public GTRecord next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                GTRecord result = next;
+                next = null;
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private class PartitionTask implements Runnable {
+        final IGTScanner partition;
+        final AtomicBoolean claimed = new AtomicBoolean(); // by a worker, or by close() if no worker took it yet
+
+        PartitionTask(IGTScanner partition) {
+            this.partition = partition;
+        }
+
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true))
+                return;
+
+            try (SetThreadName ignored = new SetThreadName("Query %s", queryId)) {
+                if (aborted)
+                    return;
+                for (GTRecord record : partition) {
+                    if (aborted)
+                        break;
+                    put(record.copy());
+                }
+            } catch (Throwable t) {
+                error.compareAndSet(null, t);
+            } finally {
+                put(END_OF_PARTITION);
+                finished.countDown();
+            }
+        }
+    }
+
+    private void put(Object o) {
+        try {
+            while (!aborted) {
+                if (queue.offer(o, OFFER_WAIT_MS, TimeUnit.MILLISECONDS))
+                    return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Object take() {
+        try {
+            Object o = queue.take();
+            rethrowError();
+            return o;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for partition scans", e);
+        }
+    }
+
+    private void rethrowError() {
+        Throwable t = error.get();
+        if (t == null)
+            return;
+
+        aborted = true;
+        if (t instanceof RuntimeException)
+            throw (RuntimeException) t;
+        if (t instanceof Error)
+            throw (Error) t;
+        throw new RuntimeException(t);
+    }
+
+    /**
+     * Stops the partition scans and waits for the running ones, however long they take. The partitions and the region
+     * scanners they read are closed only after, as a worker checks for abort per row but may be inside a storage call.
+     */
+    @Override
+    public void close() throws IOException {
+        aborted = true;
+        if (started) {
+            // partitions still in the pool queue are never scanned
+            for (PartitionTask task : tasks) {
+                if (task.claimed.compareAndSet(false, true))
+                    finished.countDown();
+            }
+
+            if (!Uninterruptibles.awaitUninterruptibly(finished, Math.max(0, deadline - System.currentTimeMillis()) + OFFER_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                logger.warn("Partition scans of query {} did not finish in time, waiting for {} still running", queryId, finished.getCount());
+                Uninterruptibles.awaitUninterruptibly(finished);
+            }
+
+            runningQueries.decrementAndGet();
+            started = false;
+        }
+        for (IGTScanner partition : partitions) {
+            IOUtils.closeQuietly(partition);
+        }
+    }
+}
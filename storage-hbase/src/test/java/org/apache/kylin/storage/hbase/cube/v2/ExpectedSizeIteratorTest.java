@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.hbase.cube.v2;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.kylin.common.util.CompressionAlgorithm;
+import org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint.ChunkedResultWriter;
+import org.junit.Test;
+
+public class ExpectedSizeIteratorTest {
+
+    @Test
+    public void testChunksOfRegions() {
+        ExpectedSizeIterator itr = new ExpectedSizeIterator(2, 60000);
+        itr.appendChunk(new byte[] { 1 });
+        itr.append(new byte[] { 2 });
+        itr.appendChunk(new byte[] { 3 });
+        itr.regionDone();
+
+        int sum = 0;
+        int count = 0;
+        while (itr.hasNext()) {
+            sum += itr.next()[0];
+            count++;
+        }
+        assertEquals(3, count);
+        assertEquals(6, sum);
+        assertFalse(itr.hasNext());
+    }
+
+    @Test
+    public void testWindow() throws InterruptedException {
+        final ExpectedSizeIterator itr = new ExpectedSizeIterator(1, 60000, 10);
+        final AtomicInteger appended = new AtomicInteger();
+
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 5; i++) {
+                    itr.appendChunk(new byte[6]);
+                    appended.incrementAndGet();
+                }
+                itr.regionDone();
+            }
+        };
+        producer.start();
+
+        Thread.sleep(500);
+        // the second chunk does not fit in the window until the first one is consumed
+        assertEquals(1, appended.get());
+
+        int count = 0;
+        while (itr.hasNext()) {
+            itr.next();
+            count++;
+        }
+        producer.join();
+        assertEquals(5, count);
+    }
+
+    @Test
+    public void testChunkedResultWriter() throws Exception {
+        ChunkedResultWriter writer = new ChunkedResultWriter(8, CompressionAlgorithm.DEFLATE);
+        byte[] record = new byte[] { 1, 2, 3, 4, 5 };
+        for (int i = 0; i < 5; i++) {
+            writer.write(record, 0, record.length);
+        }
+        byte[] frames = writer.finish();
+        assertEquals(3, writer.getChunkCount());
+        assertEquals(25, writer.getRawBytes());
+
+        ByteBuffer in = ByteBuffer.wrap(frames);
+        int total = 0;
+        while (in.hasRemaining()) {
+            int length = in.getInt();
+            byte[] chunk = CompressionAlgorithm.DEFLATE.decompress(frames, in.position(), length);
+            in.position(in.position() + length);
+            assertTrue(chunk.length % record.length == 0);
+            for (int i = 0; i < chunk.length; i += record.length) {
+                byte[] one = new byte[record.length];
+                System.arraycopy(chunk, i, one, 0, record.length);
+                assertArrayEquals(record, one);
+            }
+            total += chunk.length;
+        }
+        assertEquals(25, total);
+    }
+}
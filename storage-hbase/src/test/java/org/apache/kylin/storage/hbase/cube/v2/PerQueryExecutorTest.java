@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.hbase.cube.v2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class PerQueryExecutorTest {
+
+    @Test
+    public void testConcurrencyLimit() throws Exception {
+        ExecutorService shared = Executors.newFixedThreadPool(16);
+        try {
+            PerQueryExecutor executor = PerQueryExecutor.acquire("q1", shared, 3);
+            final AtomicInteger concurrent = new AtomicInteger();
+            final AtomicInteger maxConcurrent = new AtomicInteger();
+
+            List<Future<?>> futures = Lists.newArrayList();
+            for (int i = 0; i < 30; i++) {
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        int c = concurrent.incrementAndGet();
+                        synchronized (maxConcurrent) {
+                            maxConcurrent.set(Math.max(maxConcurrent.get(), c));
+                        }
+                        try {
+                            Thread.sleep(10);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        concurrent.decrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+
+            assertTrue(maxConcurrent.get() <= 3);
+            assertEquals(30, executor.getTaskCount());
+            assertEquals(0, executor.getRunning());
+            PerQueryExecutor.release(executor);
+        } finally {
+            shared.shutdown();
+        }
+    }
+
+    @Test
+    public void testSharedByQuery() {
+        ExecutorService shared = Executors.newSingleThreadExecutor();
+        try {
+            PerQueryExecutor a = PerQueryExecutor.acquire("q2", shared, 3);
+            PerQueryExecutor b = PerQueryExecutor.acquire("q2", shared, 3);
+            assertSame(a, b);
+            PerQueryExecutor c = PerQueryExecutor.acquire("q3", shared, 3);
+            assertNotSame(a, c);
+            PerQueryExecutor.release(c);
+
+            PerQueryExecutor.release(a);
+            assertSame(a, PerQueryExecutor.acquire("q2", shared, 3));
+            PerQueryExecutor.release(a);
+            PerQueryExecutor.release(a);
+
+            PerQueryExecutor d = PerQueryExecutor.acquire("q2", shared, 3);
+            assertNotSame(a, d);
+            PerQueryExecutor.release(d);
+        } finally {
+            shared.shutdown();
+        }
+    }
+}
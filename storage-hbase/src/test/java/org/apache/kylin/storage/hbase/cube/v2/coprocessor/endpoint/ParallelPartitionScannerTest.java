@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.kylin.storage.hbase.cube.v2.coprocessor.endpoint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.kylin.common.util.ImmutableBitSet;
+import org.apache.kylin.common.util.LocalFileMetadataTestCase;
+import org.apache.kylin.gridtable.GTAggregateScanner;
+import org.apache.kylin.gridtable.GTInfo;
+import org.apache.kylin.gridtable.GTRecord;
+import org.apache.kylin.gridtable.GTScanRequest;
+import org.apache.kylin.gridtable.GTScanRequestBuilder;
+import org.apache.kylin.gridtable.IGTScanner;
+import org.apache.kylin.gridtable.UnitTestSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class ParallelPartitionScannerTest extends LocalFileMetadataTestCase {
+
+    @Before
+    public void setUp() throws Exception {
+        this.createTestMetadata();
+    }
+
+    @After
+    public void after() throws Exception {
+        this.cleanupTestMetadata();
+    }
+
+    @Test
+    public void testMergePartialAggregation() throws IOException {
+        GTInfo info = UnitTestSupport.basicInfo();
+        List<GTRecord> data = UnitTestSupport.mockupData(info, 1000);
+        GTScanRequest req = new GTScanRequestBuilder().setInfo(info).setRanges(null).setDimensions(null)//
+                .setAggrGroupBy(ImmutableBitSet.valueOf(1)).setAggrMetrics(ImmutableBitSet.valueOf(3, 4))//
+                .setAggrMetricsFuncs(new String[] { "SUM", "SUM" }).createGTScanRequest();
+
+        int nPartitions = 4;
+        List<IGTScanner> partitions = Lists.newArrayList();
+        for (int i = 0; i < nPartitions; i++) {
+            List<GTRecord> slice = data.subList(data.size() * i / nPartitions, data.size() * (i + 1) / nPartitions);
+            partitions.add(GTAggregateScanner.newPartialScanner(new ListScanner(info, slice), req, true, nPartitions));
+        }
+
+        GTAggregateScanner scanner = new GTAggregateScanner(new ParallelPartitionScanner(partitions, 2, "test", 60000), req);
+        int count = 0;
+        for (GTRecord record : scanner) {
+            Object[] values = record.getValues();
+            assertEquals(1000L, ((Long) values[3]).longValue());
+            assertEquals(0, new BigDecimal("1050").compareTo((BigDecimal) values[4]));
+            count++;
+        }
+        scanner.close();
+        assertEquals(10, count);
+    }
+
+    @Test
+    public void testCloseWaitsForRunningPartitions() throws IOException {
+        GTInfo info = UnitTestSupport.basicInfo();
+        List<GTRecord> data = UnitTestSupport.mockupData(info, 10);
+        List<SlowScanner> partitions = Lists.newArrayList(new SlowScanner(info, data), new SlowScanner(info, data));
+
+        // times out while the partitions are still being read
+        ParallelPartitionScanner scanner = new ParallelPartitionScanner(Lists.<IGTScanner> newArrayList(partitions), 2, "test", 10);
+        Iterator<GTRecord> iterator = scanner.iterator();
+        assertTrue(iterator.hasNext());
+        iterator.next();
+        scanner.close();
+
+        for (SlowScanner partition : partitions) {
+            assertTrue(partition.closed);
+            assertFalse(partition.closedWhileReading);
+        }
+    }
+
+    @Test
+    public void testDecideParallelism() {
+        assertEquals(4, ParallelPartitionScanner.decideParallelism(4, 16, 10));
+        assertEquals(2, ParallelPartitionScanner.decideParallelism(4, 16, 2));
+        assertEquals(1, ParallelPartitionScanner.decideParallelism(4, 0, 10));
+    }
+
+    private static class ListScanner implements IGTScanner {
+        final GTInfo info;
+        final List<GTRecord> records;
+
+        ListScanner(GTInfo info, List<GTRecord> records) {
+            this.info = info;
+            this.records = records;
+        }
+
+        @Override
+        public GTInfo getInfo() {
+            return info;
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+
+        @Override
+        public Iterator<GTRecord> iterator() {
+            return records.iterator();
+        }
+    }
+
+    // takes a while for every row, like a region scanner on a slow disk
+    private static class SlowScanner extends ListScanner {
+        volatile boolean reading;
+        volatile boolean closed;
+        volatile boolean closedWhileReading;
+
+        SlowScanner(GTInfo info, List<GTRecord> records) {
+            super(info, records);
+        }
+
+        @Override
+        public void close() throws IOException {
+            closedWhileReading = reading;
+            closed = true;
+        }
+
+        @Override
+        public Iterator<GTRecord> iterator() {
+            final Iterator<GTRecord> iterator = super.iterator();
+            return new Iterator<GTRecord>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public GTRecord next() {
+                    reading = true;
+                    try {
+                        Thread.sleep(200);
+                        return iterator.next();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    } finally {
+                        reading = false;
+                    }
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+}